@@ -2,8 +2,10 @@ package nl.trickjurgen.recipes;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class RecipeAppApplication {
 
 	public static void main(String[] args) {
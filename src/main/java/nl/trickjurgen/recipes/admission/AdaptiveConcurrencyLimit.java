@@ -0,0 +1,230 @@
+package nl.trickjurgen.recipes.admission;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * concurrency limit for one class of requests that adapts to their latency (AIMD, like tcp congestion control):
+ * while responses are about as fast as usual for their route, the limit grows by one per limit's worth of responses;
+ * when the (smoothed, so one gc pause doesn't count) latency relative to that baseline gets above the tolerance, the
+ * requests are queueing up somewhere (threads, connection pool, database) and every response shrinks the limit by 10%.
+ * The baseline is kept per route, a cached read of one recipe and a list from the database are not compared with each
+ * other: the 10th percentile of a window of the route's samples, so a few lucky fast responses don't set it. It drops
+ * to a faster window right away but rises by at most 2% per window: sustained overload doesn't become the new normal
+ * after a few windows (which would let the limit grow back while still overloaded), a catalogue that grows over days
+ * is still followed.
+ * Requests over the limit wait in a bounded queue for a bounded time, after that they are rejected.
+ */
+public class AdaptiveConcurrencyLimit {
+
+    private static final double BACKOFF = 0.9;
+    private static final double SMOOTHING = 0.2;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final int maxQueue;
+    private final long maxQueueWaitNanos;
+    private final double latencyTolerance;
+    private final int sampleWindow;
+    private final LongSupplier nanoClock;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition permitAvailable = lock.newCondition();
+    private double limit;
+    private int inFlight;
+    private int queued;
+    private final Map<String, RouteBaseline> baselines = new HashMap<>();
+    private double smoothedRatio = -1;
+
+    public AdaptiveConcurrencyLimit(final int initialLimit, final int minLimit, final int maxLimit, final int maxQueue,
+                                    final Duration maxQueueWait, final double latencyTolerance, final int sampleWindow) {
+        this(initialLimit, minLimit, maxLimit, maxQueue, maxQueueWait, latencyTolerance, sampleWindow, System::nanoTime);
+    }
+
+    /*default (for test)*/ AdaptiveConcurrencyLimit(final int initialLimit, final int minLimit, final int maxLimit, final int maxQueue,
+                                                   final Duration maxQueueWait, final double latencyTolerance,
+                                                   final int sampleWindow, final LongSupplier nanoClock) {
+        if (minLimit < 1 || minLimit > maxLimit || initialLimit < minLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("need 1 <= min-limit <= initial-limit <= max-limit");
+        }
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.maxQueue = maxQueue;
+        this.maxQueueWaitNanos = maxQueueWait.toNanos();
+        this.latencyTolerance = latencyTolerance;
+        this.sampleWindow = sampleWindow;
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * a permit right away when under the limit, else after waiting in the queue
+     *
+     * @return the permit, to release when the request is done; null when the queue is full or the wait took too long
+     */
+    public Permit acquire() throws InterruptedException {
+        final long start = nanoClock.getAsLong();
+        lock.lock();
+        try {
+            if (inFlight < (int) limit) {
+                inFlight++;
+                return new Permit(0L);
+            }
+            if (queued >= maxQueue) return null;
+            queued++;
+            try {
+                long remaining = maxQueueWaitNanos;
+                while (inFlight >= (int) limit) {
+                    if (remaining <= 0L) return null;
+                    remaining = permitAvailable.awaitNanos(remaining);
+                }
+                inFlight++;
+                return new Permit(nanoClock.getAsLong() - start);
+            } finally {
+                queued--;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release() {
+        lock.lock();
+        try {
+            inFlight--;
+            permitAvailable.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void sample(final String route, final long rttNanos) {
+        lock.lock();
+        try {
+            adjustLimit(route, rttNanos);
+            permitAvailable.signalAll(); // the limit may have grown by more than one permit's worth
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void adjustLimit(final String route, final long rttNanos) {
+        final long baseline = baselines.computeIfAbsent(route, r -> new RouteBaseline(sampleWindow)).add(rttNanos);
+        final double ratio = (double) rttNanos / Math.max(1L, baseline);
+        smoothedRatio = smoothedRatio < 0 ? ratio : smoothedRatio + SMOOTHING * (ratio - smoothedRatio);
+        if (smoothedRatio > latencyTolerance) {
+            limit = Math.max(minLimit, limit * BACKOFF);
+        } else if (inFlight + 1 >= limit / 2) { // only grow a limit that is actually used
+            limit = Math.min(maxLimit, limit + 1.0 / limit);
+        }
+    }
+
+    // the usual latency of one route: low percentile of its windows of samples, a minimum that only rises slowly
+    private static class RouteBaseline {
+
+        private static final double PERCENTILE = 0.1;
+        private static final double MAX_RISE_PER_WINDOW = 0.02;
+
+        private final long[] window;
+        private int samples;
+        private long baseline = Long.MAX_VALUE;
+
+        RouteBaseline(final int sampleWindow) {
+            this.window = new long[sampleWindow];
+        }
+
+        // adds the sample, returns the baseline to compare it with
+        long add(final long rttNanos) {
+            window[samples++] = rttNanos;
+            if (samples == window.length) {
+                final long windowBaseline = percentile(samples);
+                baseline = windowBaseline <= baseline ? windowBaseline
+                        : Math.min(windowBaseline, (long) Math.ceil(baseline * (1 + MAX_RISE_PER_WINDOW)));
+                samples = 0;
+            }
+            if (baseline != Long.MAX_VALUE) return baseline;
+            return percentile(samples); // first window of the route, not complete yet
+        }
+
+        private long percentile(final int count) {
+            final long[] sorted = Arrays.copyOf(window, count);
+            Arrays.sort(sorted);
+            return sorted[(int) (PERCENTILE * (count - 1))];
+        }
+
+    }
+
+    public int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getQueued() {
+        lock.lock();
+        try {
+            return queued;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * an admitted request. Its latency sample is the time from admission to sample(), the slot is taken until
+     * release(), for a streamed response that can be later: the time the client takes to read it isn't server latency
+     */
+    public class Permit {
+
+        private final long queueNanos;
+        private final long admitted = nanoClock.getAsLong();
+        private final AtomicBoolean sampled = new AtomicBoolean();
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(final long queueNanos) {
+            this.queueNanos = queueNanos;
+        }
+
+        public long getQueueTime(final TimeUnit unit) {
+            return unit.convert(queueNanos, TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * the request is handled: the time so far is a latency sample for its route. Only the first call counts
+         *
+         * @param route like "GET /recipes/{recipeId}", requests of a route are compared with each other only
+         */
+        public void sample(final String route) {
+            if (sampled.compareAndSet(false, true)) {
+                AdaptiveConcurrencyLimit.this.sample(route, nanoClock.getAsLong() - admitted);
+            }
+        }
+
+        // only the first call counts
+        public void release() {
+            if (released.compareAndSet(false, true)) {
+                AdaptiveConcurrencyLimit.this.release();
+            }
+        }
+
+    }
+
+}
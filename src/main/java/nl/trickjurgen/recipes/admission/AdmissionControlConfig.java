@@ -0,0 +1,60 @@
+package nl.trickjurgen.recipes.admission;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * bulkheads between search and crud traffic (recipes.admission.*, on unless recipes.admission.enabled=false), for
+ * the rest and the grpc api alike:
+ * each class has its own adaptive concurrency limit and queue, so a storm of searches is rejected early instead of
+ * taking every connection of the pool and pushing up the latency of reads and writes of single recipes.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(name = "recipes.admission.enabled", matchIfMissing = true)
+public class AdmissionControlConfig {
+
+    // latency samples per window of the baseline (fastest response of the last two windows)
+    private static final int SAMPLE_WINDOW = 100;
+
+    @Bean
+    public AdaptiveConcurrencyLimit searchAdmissionLimit(@Value("${recipes.admission.search.initial-limit:4}") int initialLimit,
+                                                         @Value("${recipes.admission.search.min-limit:1}") int minLimit,
+                                                         @Value("${recipes.admission.search.max-limit:6}") int maxLimit,
+                                                         @Value("${recipes.admission.search.max-queue:20}") int maxQueue,
+                                                         @Value("${recipes.admission.search.max-queue-wait:PT0.5S}") Duration maxQueueWait,
+                                                         @Value("${recipes.admission.search.latency-tolerance:2.0}") double latencyTolerance) {
+        return new AdaptiveConcurrencyLimit(initialLimit, minLimit, maxLimit, maxQueue, maxQueueWait, latencyTolerance, SAMPLE_WINDOW);
+    }
+
+    @Bean
+    public AdaptiveConcurrencyLimit crudAdmissionLimit(@Value("${recipes.admission.crud.initial-limit:20}") int initialLimit,
+                                                       @Value("${recipes.admission.crud.min-limit:4}") int minLimit,
+                                                       @Value("${recipes.admission.crud.max-limit:100}") int maxLimit,
+                                                       @Value("${recipes.admission.crud.max-queue:100}") int maxQueue,
+                                                       @Value("${recipes.admission.crud.max-queue-wait:PT0.2S}") Duration maxQueueWait,
+                                                       @Value("${recipes.admission.crud.latency-tolerance:3.0}") double latencyTolerance) {
+        return new AdaptiveConcurrencyLimit(initialLimit, minLimit, maxLimit, maxQueue, maxQueueWait, latencyTolerance, SAMPLE_WINDOW);
+    }
+
+    @Bean
+    public AdmissionControlFilter admissionControlFilter(@Qualifier("searchAdmissionLimit") AdaptiveConcurrencyLimit searchLimit,
+                                                         @Qualifier("crudAdmissionLimit") AdaptiveConcurrencyLimit crudLimit,
+                                                         MeterRegistry meterRegistry) {
+        return new AdmissionControlFilter(searchLimit, crudLimit, meterRegistry);
+    }
+
+    // picked up by the GrpcServer
+    @Bean
+    public AdmissionServerInterceptor admissionServerInterceptor(@Qualifier("searchAdmissionLimit") AdaptiveConcurrencyLimit searchLimit,
+                                                                 @Qualifier("crudAdmissionLimit") AdaptiveConcurrencyLimit crudLimit,
+                                                                 MeterRegistry meterRegistry) {
+        return new AdmissionServerInterceptor(searchLimit, crudLimit, meterRegistry);
+    }
+
+}
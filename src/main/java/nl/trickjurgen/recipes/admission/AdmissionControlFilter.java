@@ -0,0 +1,137 @@
+package nl.trickjurgen.recipes.admission;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * admission control per request class: a request gets a permit from the limit of its class (waiting in its queue if
+ * needed) or is rejected right away with 503 and Retry-After, before it takes a connection or any real work.
+ * The latency sample is taken when the handler returns, per route (method and mapped path pattern); a streamed
+ * (ndjson) search keeps its permit until the async response is complete, but how fast the client reads isn't sampled.
+ * Metrics per class (tag 'class'): recipes.admission.rejected, recipes.admission.queue.time and the gauges
+ * recipes.admission.limit, .inflight and .queued.
+ */
+public class AdmissionControlFilter extends OncePerRequestFilter {
+
+    private final Map<RequestClass, AdaptiveConcurrencyLimit> limits = new EnumMap<>(RequestClass.class);
+    private final Map<RequestClass, Counter> rejectedCounters = new EnumMap<>(RequestClass.class);
+    private final Map<RequestClass, Timer> queueTimers = new EnumMap<>(RequestClass.class);
+
+    public AdmissionControlFilter(final AdaptiveConcurrencyLimit searchLimit, final AdaptiveConcurrencyLimit crudLimit,
+                                  final MeterRegistry meterRegistry) {
+        limits.put(RequestClass.SEARCH, searchLimit);
+        limits.put(RequestClass.CRUD, crudLimit);
+        limits.forEach((requestClass, limit) -> {
+            final String tag = requestClass.tag();
+            rejectedCounters.put(requestClass, rejectedCounter(requestClass, meterRegistry));
+            queueTimers.put(requestClass, queueTimer(requestClass, meterRegistry));
+            Gauge.builder("recipes.admission.limit", limit, AdaptiveConcurrencyLimit::getLimit).tag("class", tag)
+                    .description("current concurrency limit").register(meterRegistry);
+            Gauge.builder("recipes.admission.inflight", limit, AdaptiveConcurrencyLimit::getInFlight).tag("class", tag)
+                    .description("requests holding a permit").register(meterRegistry);
+            Gauge.builder("recipes.admission.queued", limit, AdaptiveConcurrencyLimit::getQueued).tag("class", tag)
+                    .description("requests waiting for a permit").register(meterRegistry);
+        });
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        final RequestClass requestClass = RequestClass.of(request);
+        if (requestClass == null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        final AdaptiveConcurrencyLimit.Permit permit;
+        try {
+            permit = limits.get(requestClass).acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            reject(requestClass, response);
+            return;
+        }
+        if (permit == null) {
+            reject(requestClass, response);
+            return;
+        }
+        queueTimers.get(requestClass).record(permit.getQueueTime(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
+        boolean releaseOnAsyncComplete = false;
+        try {
+            filterChain.doFilter(request, response);
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new ReleaseOnComplete(permit));
+                releaseOnAsyncComplete = true;
+            }
+        } finally {
+            permit.sample(routeOf(request));
+            if (!releaseOnAsyncComplete) permit.release();
+        }
+    }
+
+    // shared with the grpc interceptor, both count against the same meters
+    static Counter rejectedCounter(final RequestClass requestClass, final MeterRegistry meterRegistry) {
+        return Counter.builder("recipes.admission.rejected").tag("class", requestClass.tag())
+                .description("requests rejected with 503 (grpc UNAVAILABLE), queue full or waited too long").register(meterRegistry);
+    }
+
+    static Timer queueTimer(final RequestClass requestClass, final MeterRegistry meterRegistry) {
+        return Timer.builder("recipes.admission.queue.time").tag("class", requestClass.tag())
+                .description("time admitted requests waited for a permit").register(meterRegistry);
+    }
+
+    static String routeOf(final HttpServletRequest request) {
+        final Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        return request.getMethod() + " " + (pattern != null ? pattern : "unmatched");
+    }
+
+    private void reject(final RequestClass requestClass, final HttpServletResponse response) throws IOException {
+        rejectedCounters.get(requestClass).increment();
+        response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+        response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "too many " + requestClass.tag() + " requests");
+    }
+
+    // the async dispatch of a streamed response isn't filtered again, its permit is released by the listener
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return true;
+    }
+
+    private record ReleaseOnComplete(AdaptiveConcurrencyLimit.Permit permit) implements AsyncListener {
+
+        // also called after a timeout or error
+        @Override
+        public void onComplete(AsyncEvent event) {
+            permit.release();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+
+    }
+
+}
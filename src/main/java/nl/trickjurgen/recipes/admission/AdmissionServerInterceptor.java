@@ -0,0 +1,109 @@
+package nl.trickjurgen.recipes.admission;
+
+import io.grpc.ForwardingServerCallListener;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * the admission control of the AdmissionControlFilter for grpc calls, against the same limits: a search over grpc
+ * takes a search permit like one over http, so neither api can starve the other of connections. A call over the limit
+ * (queue full or waited too long) is closed with UNAVAILABLE, the grpc code of a 503, which clients may retry.
+ * The latency sample is taken when the service method returns (for the search stream: when the cursor is done), per
+ * grpc method; the permit is released when the call is complete or cancelled.
+ */
+public class AdmissionServerInterceptor implements ServerInterceptor {
+
+    private final Map<RequestClass, AdaptiveConcurrencyLimit> limits = new EnumMap<>(RequestClass.class);
+    private final Map<RequestClass, Counter> rejectedCounters = new EnumMap<>(RequestClass.class);
+    private final Map<RequestClass, Timer> queueTimers = new EnumMap<>(RequestClass.class);
+
+    public AdmissionServerInterceptor(final AdaptiveConcurrencyLimit searchLimit, final AdaptiveConcurrencyLimit crudLimit,
+                                      final MeterRegistry meterRegistry) {
+        limits.put(RequestClass.SEARCH, searchLimit);
+        limits.put(RequestClass.CRUD, crudLimit);
+        for (RequestClass requestClass : RequestClass.values()) {
+            rejectedCounters.put(requestClass, AdmissionControlFilter.rejectedCounter(requestClass, meterRegistry));
+            queueTimers.put(requestClass, AdmissionControlFilter.queueTimer(requestClass, meterRegistry));
+        }
+    }
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call, Metadata headers,
+                                                                 ServerCallHandler<ReqT, RespT> next) {
+        final RequestClass requestClass = RequestClass.of(call.getMethodDescriptor());
+        AdaptiveConcurrencyLimit.Permit permit;
+        try {
+            permit = limits.get(requestClass).acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            permit = null;
+        }
+        if (permit == null) {
+            rejectedCounters.get(requestClass).increment();
+            call.close(Status.UNAVAILABLE.withDescription("too many " + requestClass.tag() + " requests"), new Metadata());
+            return new ServerCall.Listener<>() {
+            };
+        }
+        queueTimers.get(requestClass).record(permit.getQueueTime(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
+        final ServerCall.Listener<ReqT> listener;
+        try {
+            listener = next.startCall(call, headers);
+        } catch (RuntimeException e) {
+            permit.release();
+            throw e;
+        }
+        return new PermitListener<>(listener, permit, call.getMethodDescriptor().getFullMethodName());
+    }
+
+    // unary and server streaming methods run in onHalfClose, exactly one of onComplete and onCancel ends every call
+    private static class PermitListener<ReqT> extends ForwardingServerCallListener.SimpleForwardingServerCallListener<ReqT> {
+
+        private final AdaptiveConcurrencyLimit.Permit permit;
+        private final String route;
+
+        PermitListener(final ServerCall.Listener<ReqT> delegate, final AdaptiveConcurrencyLimit.Permit permit, final String route) {
+            super(delegate);
+            this.permit = permit;
+            this.route = route;
+        }
+
+        @Override
+        public void onHalfClose() {
+            try {
+                super.onHalfClose();
+            } finally {
+                permit.sample(route);
+            }
+        }
+
+        @Override
+        public void onComplete() {
+            try {
+                super.onComplete();
+            } finally {
+                permit.release();
+            }
+        }
+
+        @Override
+        public void onCancel() {
+            try {
+                super.onCancel();
+            } finally {
+                permit.release();
+            }
+        }
+
+    }
+
+}
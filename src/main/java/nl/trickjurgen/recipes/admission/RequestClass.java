@@ -0,0 +1,40 @@
+package nl.trickjurgen.recipes.admission;
+
+import io.grpc.MethodDescriptor;
+import jakarta.servlet.http.HttpServletRequest;
+import nl.trickjurgen.recipes.grpc.proto.RecipeApiGrpc;
+import org.springframework.web.util.UrlPathHelper;
+
+/**
+ * the classes of requests that each get their own concurrency limit (bulkhead), so a storm of one can't take the
+ * threads and connections the other needs
+ */
+public enum RequestClass {
+
+    SEARCH, CRUD;
+
+    /**
+     * classified on the path as spring mvc matches it (decoded, ;parameters and double slashes removed), so
+     * /recipesearch;x=1 or /recipe%73earch, which reach the search handler, don't get past the search limit
+     *
+     * @return the class of the request, null for requests that are not limited (actuator, api docs)
+     */
+    public static RequestClass of(final HttpServletRequest request) {
+        final String path = UrlPathHelper.defaultInstance.getPathWithinApplication(request);
+        if (path.equals("/recipesearch") || path.startsWith("/recipesearch/")) return SEARCH;
+        if (path.equals("/recipes") || path.startsWith("/recipes/")) return CRUD;
+        return null;
+    }
+
+    /**
+     * @return the class of a grpc call, every method of the grpc api is limited
+     */
+    public static RequestClass of(final MethodDescriptor<?, ?> method) {
+        return method.getFullMethodName().equals(RecipeApiGrpc.getSearchRecipesMethod().getFullMethodName()) ? SEARCH : CRUD;
+    }
+
+    public String tag() {
+        return name().toLowerCase();
+    }
+
+}
@@ -22,7 +22,7 @@ import lombok.Setter;
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
-@EqualsAndHashCode
+@EqualsAndHashCode(onlyExplicitlyIncluded = true) // a type occurs once per recipe; volume and remark change on update
 
 @Entity
 @Table(name = "ingredients")
@@ -31,6 +31,7 @@ public class Ingredient {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
+    @EqualsAndHashCode.Include
     @ManyToOne(fetch = FetchType.EAGER, cascade = CascadeType.MERGE)
     private IngredientType ingredientType;
 
@@ -1,5 +1,6 @@
 package nl.trickjurgen.recipes.datamodel;
 
+import jakarta.persistence.Basic;
 import jakarta.persistence.CascadeType;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
@@ -8,9 +9,8 @@ import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
-import jakarta.persistence.JoinTable;
 import jakarta.persistence.Lob;
-import jakarta.persistence.ManyToMany;
+import jakarta.persistence.OneToMany;
 import jakarta.persistence.Table;
 import jakarta.validation.constraints.NotNull;
 import lombok.AllArgsConstructor;
@@ -48,15 +48,14 @@ public class Recipe {
     private int servings;
 
     @Lob // make this string a text field in database instead of default 255 char
+    @Basic(fetch = FetchType.LAZY) // only loaded on first access (bytecode enhanced), listings and filters don't need the text
     @Column(name = "instructions", nullable = false)
     @NotNull
     private String instructions;
 
     @Builder.Default
-    @ManyToMany(fetch = FetchType.LAZY, cascade = {CascadeType.MERGE, CascadeType.REMOVE})
-    @JoinTable(name = "recipe_ingredients",
-            joinColumns = {@JoinColumn(name = "recipe_id")},
-            inverseJoinColumns = {@JoinColumn(name = "ingredient_id")})
+    @OneToMany(fetch = FetchType.LAZY, cascade = CascadeType.ALL, orphanRemoval = true)
+    @JoinColumn(name = "recipe_id", nullable = false, updatable = false) // an ingredient (volume + remark) belongs to exactly one recipe
     private Set<Ingredient> ingredients = new HashSet<>();
 
 }
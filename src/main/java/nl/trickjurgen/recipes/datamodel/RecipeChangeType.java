@@ -0,0 +1,7 @@
+package nl.trickjurgen.recipes.datamodel;
+
+public enum RecipeChangeType {
+    CREATED,
+    UPDATED,
+    DELETED
+}
@@ -0,0 +1,56 @@
+package nl.trickjurgen.recipes.datasource;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * read-your-writes on top of the replica routing: a write request gets a short-lived cookie back, and while a client
+ * sends it, its reads go to the primary: on the request thread, in tasks it submits to the application task executor,
+ * and past the recipe detail cache (that is filled from replica reads). The cookie lifetime should cover the usual
+ * replica lag. Clients that don't keep cookies may read a stale replica right after their own write.
+ */
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+
+    public static final String PIN_COOKIE = "recipes-read-primary";
+
+    private static final Set<String> WRITE_METHODS = Set.of(HttpMethod.POST.name(), HttpMethod.PUT.name(),
+            HttpMethod.PATCH.name(), HttpMethod.DELETE.name());
+
+    private final Duration window;
+
+    public ReadYourWritesFilter(final Duration window) {
+        this.window = window;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        if (WRITE_METHODS.contains(request.getMethod())) {
+            // before the chain, the response may be committed after it
+            final Cookie pin = new Cookie(PIN_COOKIE, "1");
+            pin.setPath("/");
+            pin.setHttpOnly(true);
+            pin.setMaxAge((int) Math.max(1L, window.toSeconds()));
+            response.addCookie(pin);
+        }
+        final boolean pinned = request.getCookies() != null
+                && Arrays.stream(request.getCookies()).anyMatch(cookie -> PIN_COOKIE.equals(cookie.getName()));
+        if (pinned) ReplicaOrPinnedPrimaryDataSource.pinToPrimary();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            ReplicaOrPinnedPrimaryDataSource.unpin();
+        }
+    }
+
+}
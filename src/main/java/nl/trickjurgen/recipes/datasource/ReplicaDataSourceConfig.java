@@ -0,0 +1,68 @@
+package nl.trickjurgen.recipes.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.flyway.FlywayDataSource;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/**
+ * read/write split when a replica is configured (recipes.datasource.replica.url): read-only transactions get a
+ * replica connection, everything else the primary from spring.datasource. A client that just wrote something is
+ * pinned to the primary for a while (see ReadYourWritesFilter), so it doesn't read its own change from a lagging replica,
+ * also in tasks it hands to the application task executor (streamed responses, parallel detail fetches).
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(name = "recipes.datasource.replica.url")
+public class ReplicaDataSourceConfig {
+
+    @Bean
+    @FlywayDataSource // migrations only run on the primary, the replica gets them through replication
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties dataSourceProperties) {
+        return dataSourceProperties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    @Bean
+    @ConfigurationProperties("recipes.datasource.replica.hikari")
+    public HikariDataSource replicaDataSource(@Value("${recipes.datasource.replica.url}") String url,
+                                              @Value("${recipes.datasource.replica.username:}") String username,
+                                              @Value("${recipes.datasource.replica.password:}") String password) {
+        return DataSourceBuilder.create().type(HikariDataSource.class).url(url).username(username).password(password).build();
+    }
+
+    // the connection is only fetched at the first statement, when it is known whether the transaction is read-only.
+    // not traced (jdbc.excluded-datasource-bean-names): the jdbc spans come from the pools behind it
+    @Bean
+    @Primary
+    public DataSource routingDataSource(@Qualifier("primaryDataSource") DataSource primaryDataSource,
+                                 @Qualifier("replicaDataSource") DataSource replicaDataSource) {
+        final LazyConnectionDataSourceProxy routingDataSource = new LazyConnectionDataSourceProxy(primaryDataSource);
+        routingDataSource.setReadOnlyDataSource(new ReplicaOrPinnedPrimaryDataSource(replicaDataSource, primaryDataSource));
+        return routingDataSource;
+    }
+
+    // applied by spring boot to the application task executor, which also runs the async part of streamed responses
+    @Bean
+    public TaskDecorator primaryPinTaskDecorator() {
+        return ReplicaOrPinnedPrimaryDataSource::propagatePin;
+    }
+
+    @Bean
+    public ReadYourWritesFilter readYourWritesFilter(
+            @Value("${recipes.datasource.replica.read-your-writes-window:PT5S}") Duration readYourWritesWindow) {
+        return new ReadYourWritesFilter(readYourWritesWindow);
+    }
+
+}
@@ -0,0 +1,57 @@
+package nl.trickjurgen.recipes.datasource;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+/**
+ * target for read-only connections: the replica, unless the current thread is pinned to the primary
+ */
+public class ReplicaOrPinnedPrimaryDataSource extends AbstractRoutingDataSource {
+
+    private static final ThreadLocal<Boolean> PINNED_TO_PRIMARY = ThreadLocal.withInitial(() -> false);
+
+    private enum Target {REPLICA, PRIMARY}
+
+    public ReplicaOrPinnedPrimaryDataSource(final DataSource replicaDataSource, final DataSource primaryDataSource) {
+        setTargetDataSources(Map.of(Target.REPLICA, replicaDataSource, Target.PRIMARY, primaryDataSource));
+        setDefaultTargetDataSource(replicaDataSource);
+        afterPropertiesSet();
+    }
+
+    public static void pinToPrimary() {
+        PINNED_TO_PRIMARY.set(true);
+    }
+
+    public static void unpin() {
+        PINNED_TO_PRIMARY.remove();
+    }
+
+    public static boolean isPinnedToPrimary() {
+        return PINNED_TO_PRIMARY.get();
+    }
+
+    /**
+     * for a TaskDecorator: the task runs pinned when the thread that submits it is, like the async part of a
+     * streamed response
+     */
+    public static Runnable propagatePin(final Runnable task) {
+        if (!isPinnedToPrimary()) return task;
+        return () -> {
+            final boolean alreadyPinned = isPinnedToPrimary(); // run by the submitting thread itself
+            pinToPrimary();
+            try {
+                task.run();
+            } finally {
+                if (!alreadyPinned) unpin();
+            }
+        };
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return PINNED_TO_PRIMARY.get() ? Target.PRIMARY : Target.REPLICA;
+    }
+
+}
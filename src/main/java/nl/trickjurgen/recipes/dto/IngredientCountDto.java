@@ -0,0 +1,30 @@
+package nl.trickjurgen.recipes.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Setter
+@Getter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Schema(description = "DTO for the number of recipes using an ingredient")
+public class IngredientCountDto {
+
+    @Schema(example = "Garlic Cloves", requiredMode = Schema.RequiredMode.REQUIRED)
+    @JsonProperty("name")
+    private String name;
+
+    @Schema(example = "5", requiredMode = Schema.RequiredMode.REQUIRED)
+    @JsonProperty("count")
+    private long count;
+
+}
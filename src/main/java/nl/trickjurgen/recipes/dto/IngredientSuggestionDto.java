@@ -0,0 +1,30 @@
+package nl.trickjurgen.recipes.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Setter
+@Getter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Schema(description = "DTO for an ingredient similar to a search term")
+public class IngredientSuggestionDto {
+
+    @Schema(example = "Tomatoes", requiredMode = Schema.RequiredMode.REQUIRED)
+    @JsonProperty("name")
+    private String name;
+
+    @Schema(description = "trigram similarity to the term, 0 to 1", example = "0.64", requiredMode = Schema.RequiredMode.REQUIRED)
+    @JsonProperty("similarity")
+    private double similarity;
+
+}
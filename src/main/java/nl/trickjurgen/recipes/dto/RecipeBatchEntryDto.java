@@ -0,0 +1,34 @@
+package nl.trickjurgen.recipes.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Setter
+@Getter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Schema(description = "DTO for one requested id in a batch get of recipes")
+public class RecipeBatchEntryDto {
+
+    @Schema(example = "404", requiredMode = Schema.RequiredMode.REQUIRED)
+    @JsonProperty("id")
+    private Long id;
+
+    @Schema(example = "true", requiredMode = Schema.RequiredMode.REQUIRED)
+    @JsonProperty("found")
+    private boolean found;
+
+    @Schema(description = "the recipe, left out when not found", requiredMode = Schema.RequiredMode.NOT_REQUIRED)
+    @JsonProperty("recipe")
+    private RecipeDto recipe;
+
+}
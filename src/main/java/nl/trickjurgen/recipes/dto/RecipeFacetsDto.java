@@ -0,0 +1,43 @@
+package nl.trickjurgen.recipes.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+import java.util.Map;
+
+@Setter
+@Getter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Schema(description = "DTO with result counts (facets) for a recipe search")
+public class RecipeFacetsDto {
+
+    @Schema(example = "10", requiredMode = Schema.RequiredMode.REQUIRED)
+    @JsonProperty("total")
+    private long total;
+
+    @Schema(example = "{\"false\": 5, \"true\": 5}", requiredMode = Schema.RequiredMode.REQUIRED)
+    @JsonProperty("vegetarian")
+    private Map<Boolean, Long> vegetarian;
+
+    @Schema(description = "counts per range of servings: 1-2, 3-4, 5-8 and 9+, all of them, in this order",
+            example = "{\"1-2\": 0, \"3-4\": 9, \"5-8\": 1, \"9+\": 0}", requiredMode = Schema.RequiredMode.REQUIRED)
+    @JsonProperty("servings")
+    private Map<String, Long> servings;
+
+    @Schema(example = "[{\"name\": \"Garlic Cloves\", \"count\": 5}, {\"name\": \"Onion\", \"count\": 4}]",
+            requiredMode = Schema.RequiredMode.REQUIRED)
+    @JsonProperty("topIngredients")
+    private List<IngredientCountDto> topIngredients;
+
+}
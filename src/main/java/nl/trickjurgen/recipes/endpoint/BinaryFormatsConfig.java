@@ -0,0 +1,32 @@
+package nl.trickjurgen.recipes.endpoint;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+/**
+ * Smile (application/x-jackson-smile) and CBOR (application/cbor) next to json, for service-to-service clients: same
+ * dtos and field names, binary encoded, selected with the Accept and Content-Type headers.
+ * Spring mvc already registers both converters when the dataformats are on the classpath, but with a plain object
+ * mapper; these replace them in the same place (after json, so json stays the answer to Accept: *&#47;*) with mappers
+ * from the spring boot builder, so they follow the same spring.jackson settings as json.
+ */
+@Configuration(proxyBeanMethods = false)
+public class BinaryFormatsConfig {
+
+    // the builder bean is a prototype, every injection is a new builder
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2SmileHttpMessageConverter(builder.factory(new SmileFactory()).build());
+    }
+
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2CborHttpMessageConverter(builder.factory(new CBORFactory()).build());
+    }
+
+}
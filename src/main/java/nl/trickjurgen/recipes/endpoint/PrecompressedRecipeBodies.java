@@ -0,0 +1,120 @@
+package nl.trickjurgen.recipes.endpoint;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import nl.trickjurgen.recipes.dto.RecipeDto;
+import nl.trickjurgen.recipes.service.RecipeDetailCache;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * gzipped json bodies of full recipes, made once per cached recipe version and kept with it in the RecipeDetailCache,
+ * instead of compressing the same recipe for every request (what server.compression does for all other responses).
+ * Recipes under the compression threshold (server.compression.min-response-size) are not worth it and go out as is.
+ */
+@Component
+public class PrecompressedRecipeBodies {
+
+    public static final String GZIP = "gzip";
+
+    private static final String JSON_GZIP = "json+gzip";
+    private static final byte[] BELOW_THRESHOLD = new byte[0];
+    private static final List<MediaType> OTHER_FORMATS = List.of(
+            MediaType.parseMediaType("application/x-jackson-smile"), MediaType.parseMediaType("application/cbor"));
+
+    private final RecipeDetailCache recipeDetailCache;
+    private final ObjectWriter recipeWriter;
+    private final long minSize;
+
+    @Autowired
+    public PrecompressedRecipeBodies(RecipeDetailCache recipeDetailCache, ObjectMapper objectMapper,
+                                     @Value("${server.compression.min-response-size:2KB}") DataSize minSize) {
+        this.recipeDetailCache = recipeDetailCache;
+        this.recipeWriter = objectMapper.writerFor(RecipeDto.class);
+        this.minSize = minSize.toBytes();
+    }
+
+    /**
+     * @param accept         Accept header of the request, may be null
+     * @param acceptEncoding Accept-Encoding header of the request, may be null
+     * @return the gzipped json of the recipe, or null when the client wants it otherwise, the recipe is too small or
+     * this version of it is not cached
+     */
+    public byte[] gzippedJson(final RecipeDto recipe, final String accept, final String acceptEncoding) {
+        if (!acceptsGzip(acceptEncoding) || !wantsJson(accept)) return null;
+        final byte[] body = recipeDetailCache.getEncoded(recipe, JSON_GZIP, this::gzipJson);
+        return body == null || body == BELOW_THRESHOLD ? null : body;
+    }
+
+    private byte[] gzipJson(final RecipeDto recipe) {
+        try {
+            final byte[] json = recipeWriter.writeValueAsBytes(recipe);
+            if (json.length < minSize) return BELOW_THRESHOLD;
+            final ByteArrayOutputStream compressed = new ByteArrayOutputStream(json.length / 2);
+            // paid once per version, so the smallest output is worth the extra time
+            try (GZIPOutputStream gzip = new GZIPOutputStream(compressed) {
+                {
+                    def.setLevel(Deflater.BEST_COMPRESSION);
+                }
+            }) {
+                gzip.write(json);
+            }
+            return compressed.toByteArray();
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("recipe " + recipe.getId() + " can't be written as json", e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // gzip (or any coding) listed without q=0
+    static boolean acceptsGzip(final String acceptEncoding) {
+        if (acceptEncoding == null) return false;
+        for (String coding : acceptEncoding.split(",")) {
+            final String[] parts = coding.split(";");
+            final String name = parts[0].trim();
+            if ((GZIP.equalsIgnoreCase(name) || "*".equals(name)) && !isQualityZero(parts)) return true;
+        }
+        return false;
+    }
+
+    private static boolean isQualityZero(final String[] parameters) {
+        for (int i = 1; i < parameters.length; i++) {
+            final String parameter = parameters[i].trim().replace(" ", "");
+            if (parameter.startsWith("q=")) {
+                try {
+                    return Double.parseDouble(parameter.substring(2)) == 0.0;
+                } catch (NumberFormatException e) {
+                    return true; // unreadable, don't use it
+                }
+            }
+        }
+        return false;
+    }
+
+    // json is the default: no Accept, or one that allows json and doesn't ask for one of the binary formats
+    static boolean wantsJson(final String accept) {
+        if (accept == null || accept.isBlank()) return true;
+        final List<MediaType> accepted;
+        try {
+            accepted = MediaType.parseMediaTypes(accept);
+        } catch (InvalidMediaTypeException e) {
+            return false; // leave it to the regular content negotiation
+        }
+        return accepted.stream().anyMatch(MediaType.APPLICATION_JSON::isCompatibleWith)
+                && accepted.stream().noneMatch(type -> OTHER_FORMATS.stream().anyMatch(type::equalsTypeAndSubtype));
+    }
+
+}
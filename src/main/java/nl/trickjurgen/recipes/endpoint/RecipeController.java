@@ -2,15 +2,19 @@ package nl.trickjurgen.recipes.endpoint;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import nl.trickjurgen.recipes.dto.RecipeBatchEntryDto;
 import nl.trickjurgen.recipes.dto.RecipeDto;
 import nl.trickjurgen.recipes.dto.RecipeHeaderDto;
 import nl.trickjurgen.recipes.exception.RecipeNotFoundException;
-import nl.trickjurgen.recipes.mapper.RecepAndIngrMapper;
 import nl.trickjurgen.recipes.service.RecipeService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -18,7 +22,9 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.util.List;
@@ -29,10 +35,12 @@ import java.util.List;
 public class RecipeController {
 
     private final RecipeService recipeService;
+    private final PrecompressedRecipeBodies precompressedRecipeBodies;
 
     @Autowired
-    public RecipeController(RecipeService recipeService) {
+    public RecipeController(RecipeService recipeService, PrecompressedRecipeBodies precompressedRecipeBodies) {
         this.recipeService = recipeService;
+        this.precompressedRecipeBodies = precompressedRecipeBodies;
     }
 
     // CRUD - Read All
@@ -42,19 +50,43 @@ public class RecipeController {
     @ApiResponse(responseCode = "404", description = "Not Found")
     @ApiResponse(responseCode = "500", description = "Failure")
     public ResponseEntity<List<RecipeHeaderDto>> getAllRecipeNames() {
-        final List<RecipeDto> allRecipes = recipeService.findAllRecipes();
-        if (allRecipes.isEmpty()) throw new RecipeNotFoundException("DB empty");
-        return ResponseEntity.ok(allRecipes.stream().map(RecepAndIngrMapper::RecipeDtoToHeader).toList());
+        final List<RecipeHeaderDto> allHeaders = recipeService.findAllRecipeHeaders();
+        if (allHeaders.isEmpty()) throw new RecipeNotFoundException("DB empty");
+        return ResponseEntity.ok(allHeaders);
     }
 
     // CRUD - Read 1
     @GetMapping("/{recipeId}")
     @Operation(summary = "Find a recipes by stored id", description = "Get recipe by identifier.")
-    @ApiResponse(responseCode = "200", description = "Success")
+    @ApiResponse(responseCode = "200", description = "Success", content = @Content(schema = @Schema(implementation = RecipeDto.class)))
     @ApiResponse(responseCode = "404", description = "Not Found")
-    public ResponseEntity<RecipeDto> getRecipeById(
-            @Parameter(description = "ID of the recipe to get", required = true) @PathVariable Long recipeId) {
-        return ResponseEntity.ok(recipeService.findRecipeById(recipeId));
+    public ResponseEntity<?> getRecipeById(
+            @Parameter(description = "ID of the recipe to get", required = true) @PathVariable Long recipeId,
+            @Parameter(hidden = true) @RequestHeader(name = HttpHeaders.ACCEPT, required = false) String accept,
+            @Parameter(hidden = true) @RequestHeader(name = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        final RecipeDto recipe = recipeService.findRecipeById(recipeId);
+        // a cached recipe is compressed once, not per request
+        final byte[] gzippedJson = precompressedRecipeBodies.gzippedJson(recipe, accept, acceptEncoding);
+        if (gzippedJson == null) return ResponseEntity.ok(recipe);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.CONTENT_ENCODING, PrecompressedRecipeBodies.GZIP)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+                .body(gzippedJson);
+    }
+
+    // CRUD - Read many
+    @GetMapping(params = "ids") // /recipes?ids=1,2,3
+    @Operation(summary = "Find many recipes by stored id", description = """
+            Get recipes for a list of identifiers in one call. \n
+            The result has one entry per requested id, in request order, with found=false for unknown ids.
+            """)
+    @ApiResponse(responseCode = "200", description = "Success")
+    @ApiResponse(responseCode = "400", description = "No ids, too many ids or bad id")
+    public ResponseEntity<List<RecipeBatchEntryDto>> getRecipesByIds(
+            @Parameter(description = "comma-separated list of recipe ids (max 100)", required = true)
+            @RequestParam(name = "ids") List<Long> ids) {
+        return ResponseEntity.ok(recipeService.findRecipesByIds(ids));
     }
 
     // CRUD - Delete
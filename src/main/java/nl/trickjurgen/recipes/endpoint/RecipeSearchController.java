@@ -1,31 +1,48 @@
 package nl.trickjurgen.recipes.endpoint;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import nl.trickjurgen.recipes.dto.IngredientSuggestionDto;
+import nl.trickjurgen.recipes.dto.RecipeDto;
+import nl.trickjurgen.recipes.dto.RecipeFacetsDto;
 import nl.trickjurgen.recipes.dto.RecipeHeaderDto;
+import nl.trickjurgen.recipes.service.IngredientMatch;
 import nl.trickjurgen.recipes.service.RecipeService;
 import nl.trickjurgen.recipes.utils.NameStringHelper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.util.List;
+import java.util.function.Consumer;
 
 @RestController
 @RequestMapping("/recipesearch")
 @Tag(name = "recipe search api", description = "Recipe Search Endpoint/Rest Api")
 public class RecipeSearchController {
 
+    private static final int STREAM_FLUSH_INTERVAL = 20;
+    private static final byte NEWLINE = '\n';
+
     private final RecipeService recipeService;
+    private final ObjectWriter headerWriter;
 
     @Autowired
-    public RecipeSearchController(RecipeService recipeService) {
+    public RecipeSearchController(RecipeService recipeService, ObjectMapper objectMapper) {
         this.recipeService = recipeService;
+        this.headerWriter = objectMapper.writerFor(RecipeHeaderDto.class);
     }
 
     // find recipes by specific properties
@@ -37,10 +54,12 @@ public class RecipeSearchController {
             maxServings: maximum number \n
             inclusions: (csv 'list' of) ingredients that need to be in it \n
             exclusions: (csv 'list' of) ingredients that are not allowed to be in it \n
+            ingredientMatch: exact (whole name), substring (default) or fuzzy (also similar names, for typos) \n
             instruction: text that has to be in the instructions \n
             all parts are optional.
             """)
     @ApiResponse(responseCode = "200", description = "Success")
+    @ApiResponse(responseCode = "400", description = "Unknown ingredientMatch")
     @ApiResponse(responseCode = "404", description = "Not Found")
     @ApiResponse(responseCode = "500", description = "Failure")
     public ResponseEntity<List<RecipeHeaderDto>> getMatchingRecipesForAspects(
@@ -54,13 +73,169 @@ public class RecipeSearchController {
             @RequestParam(name = "includedIngredients", required = false) String inclusions,
             @Parameter(description = "comma-separated list of ingredients to be excluded")
             @RequestParam(name = "excludedIngredients", required = false) String exclusions,
+            @Parameter(description = "how ingredients are matched: exact, substring (default) or fuzzy")
+            @RequestParam(name = "ingredientMatch", required = false) String ingredientMatch,
             @Parameter(description = "text that has to be in instructions")
             @RequestParam(name = "instruction", required = false) String instruction
     ) {
         final List<String> includes = NameStringHelper.mapCsvToList(inclusions);
         final List<String> excludes = NameStringHelper.mapCsvToList(exclusions);
-        final List<RecipeHeaderDto> recipeHeaders = recipeService.findRecipeHeadersWithGivenParams(isVegetarian, minServings, maxServings, includes, excludes, instruction);
+        final List<RecipeHeaderDto> recipeHeaders = recipeService.findRecipeHeadersWithGivenParams(isVegetarian, minServings, maxServings, includes, excludes,
+                IngredientMatch.fromParam(ingredientMatch), instruction);
         return ResponseEntity.ok(recipeHeaders);
     }
 
+    // same search, but streamed as newline delimited json while the matches are found
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE) // Accept: application/x-ndjson
+    @Operation(summary = "Streams info for relevant recipes in system", description = """
+            Same criteria as the list search, but every matching recipe header is written as one json line (NDJSON) \n
+            as soon as it is found, so the first results arrive before the search is done. \n
+            Select this mode with header 'Accept: application/x-ndjson'.
+            """)
+    @ApiResponse(responseCode = "200", description = "Success")
+    @ApiResponse(responseCode = "400", description = "Unknown ingredientMatch")
+    @ApiResponse(responseCode = "500", description = "Failure")
+    public ResponseEntity<StreamingResponseBody> streamMatchingRecipesForAspects(
+            @Parameter(description = "vegetarian: true/false")
+            @RequestParam(name = "isVegetarian", required = false) Boolean isVegetarian,
+            @Parameter(description = "min. # servings; if limited")
+            @RequestParam(name = "minServings", required = false) Integer minServings,
+            @Parameter(description = "max. # servings; if limited")
+            @RequestParam(name = "maxServings", required = false) Integer maxServings,
+            @Parameter(description = "comma-separated list of ingredients to be included")
+            @RequestParam(name = "includedIngredients", required = false) String inclusions,
+            @Parameter(description = "comma-separated list of ingredients to be excluded")
+            @RequestParam(name = "excludedIngredients", required = false) String exclusions,
+            @Parameter(description = "how ingredients are matched: exact, substring (default) or fuzzy")
+            @RequestParam(name = "ingredientMatch", required = false) String ingredientMatch,
+            @Parameter(description = "text that has to be in instructions")
+            @RequestParam(name = "instruction", required = false) String instruction
+    ) {
+        final List<String> includes = NameStringHelper.mapCsvToList(inclusions);
+        final List<String> excludes = NameStringHelper.mapCsvToList(exclusions);
+        final IngredientMatch match = IngredientMatch.fromParam(ingredientMatch); // a bad value is a 400 before streaming starts
+        // runs on the mvc async executor; blocking socket writes hold back the database cursor (back-pressure)
+        final StreamingResponseBody body = outputStream -> recipeService.streamRecipeHeadersWithGivenParams(
+                isVegetarian, minServings, maxServings, includes, excludes, match, instruction,
+                new NdJsonLineWriter(outputStream));
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
+    // count matches per vegetarian flag, servings range and ingredient, without returning the recipes
+    @GetMapping("/facets") // /recipesearch/facets?isVegetarian=true&topIngredients=5
+    @Operation(summary = "Returns result counts for relevant recipes in system", description = """
+            Count the matching recipes (same criteria as the list search) per vegetarian flag, \n
+            per range of servings (1-2, 3-4, 5-8, 9+) and for the most used ingredients. \n
+            topIngredients: number of ingredients to report (0-50, default 10) \n
+            all parts are optional.
+            """)
+    @ApiResponse(responseCode = "200", description = "Success")
+    @ApiResponse(responseCode = "400", description = "topIngredients out of range or unknown ingredientMatch")
+    @ApiResponse(responseCode = "500", description = "Failure")
+    public ResponseEntity<RecipeFacetsDto> getFacetsForAspects(
+            @Parameter(description = "vegetarian: true/false")
+            @RequestParam(name = "isVegetarian", required = false) Boolean isVegetarian,
+            @Parameter(description = "min. # servings; if limited")
+            @RequestParam(name = "minServings", required = false) Integer minServings,
+            @Parameter(description = "max. # servings; if limited")
+            @RequestParam(name = "maxServings", required = false) Integer maxServings,
+            @Parameter(description = "comma-separated list of ingredients to be included")
+            @RequestParam(name = "includedIngredients", required = false) String inclusions,
+            @Parameter(description = "comma-separated list of ingredients to be excluded")
+            @RequestParam(name = "excludedIngredients", required = false) String exclusions,
+            @Parameter(description = "how ingredients are matched: exact, substring (default) or fuzzy")
+            @RequestParam(name = "ingredientMatch", required = false) String ingredientMatch,
+            @Parameter(description = "text that has to be in instructions")
+            @RequestParam(name = "instruction", required = false) String instruction,
+            @Parameter(description = "# of most used ingredients to count")
+            @RequestParam(name = "topIngredients", required = false, defaultValue = "10") int topIngredients
+    ) {
+        final List<String> includes = NameStringHelper.mapCsvToList(inclusions);
+        final List<String> excludes = NameStringHelper.mapCsvToList(exclusions);
+        return ResponseEntity.ok(recipeService.countFacetsWithGivenParams(isVegetarian, minServings, maxServings, includes, excludes,
+                IngredientMatch.fromParam(ingredientMatch), instruction, topIngredients));
+    }
+
+    // known ingredients similar to a (misspelled) term, to suggest while typing or after an empty search
+    @GetMapping("/ingredients") // /recipesearch/ingredients?term=tomatoe&limit=5
+    @Operation(summary = "Returns known ingredients similar to a term", description = """
+            Get the ingredients a fuzzy ingredient search would match on the term, most similar first: \n
+            term: (part of) an ingredient name, typos allowed \n
+            limit: max number of ingredients to return (1-50, default 10)
+            """)
+    @ApiResponse(responseCode = "200", description = "Success")
+    @ApiResponse(responseCode = "400", description = "Limit out of range")
+    @ApiResponse(responseCode = "500", description = "Failure")
+    public ResponseEntity<List<IngredientSuggestionDto>> getSimilarIngredients(
+            @Parameter(description = "(part of) an ingredient name")
+            @RequestParam(name = "term") String term,
+            @Parameter(description = "max. # of ingredients to return")
+            @RequestParam(name = "limit", required = false, defaultValue = "10") int limit
+    ) {
+        return ResponseEntity.ok(recipeService.findSimilarIngredients(term, limit));
+    }
+
+    private class NdJsonLineWriter implements Consumer<RecipeHeaderDto> {
+        private final OutputStream outputStream;
+        private int linesWritten = 0;
+
+        NdJsonLineWriter(OutputStream outputStream) {
+            this.outputStream = outputStream;
+        }
+
+        @Override
+        public void accept(RecipeHeaderDto header) {
+            try {
+                outputStream.write(headerWriter.writeValueAsBytes(header));
+                outputStream.write(NEWLINE);
+                // first line goes out right away, after that flush in small groups
+                if (linesWritten++ % STREAM_FLUSH_INTERVAL == 0) outputStream.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException("client stopped reading search results", e);
+            }
+        }
+    }
+
+    // find recipes by specific properties and return the full recipes of the first hits ("search and show")
+    @GetMapping("/details") // /recipesearch/details?isVegetarian=true&includedIngredients=carrot&limit=5
+    @Operation(summary = "Returns full recipes for the first matching recipes in system", description = """
+            Get list of full recipes (including ingredients) of the first matching recipes, same criteria as the header search: \n
+            isVegetarian: true, false \n
+            minServings: minimum number \n
+            maxServings: maximum number \n
+            inclusions: (csv 'list' of) ingredients that need to be in it \n
+            exclusions: (csv 'list' of) ingredients that are not allowed to be in it \n
+            ingredientMatch: exact (whole name), substring (default) or fuzzy (also similar names, for typos) \n
+            instruction: text that has to be in the instructions \n
+            limit: max number of recipes to return (1-100, default 10) \n
+            all parts are optional.
+            """)
+    @ApiResponse(responseCode = "200", description = "Success")
+    @ApiResponse(responseCode = "400", description = "Limit out of range or unknown ingredientMatch")
+    @ApiResponse(responseCode = "500", description = "Failure")
+    public ResponseEntity<List<RecipeDto>> getMatchingRecipeDetailsForAspects(
+            @Parameter(description = "vegetarian: true/false")
+            @RequestParam(name = "isVegetarian", required = false) Boolean isVegetarian,
+            @Parameter(description = "min. # servings; if limited")
+            @RequestParam(name = "minServings", required = false) Integer minServings,
+            @Parameter(description = "max. # servings; if limited")
+            @RequestParam(name = "maxServings", required = false) Integer maxServings,
+            @Parameter(description = "comma-separated list of ingredients to be included")
+            @RequestParam(name = "includedIngredients", required = false) String inclusions,
+            @Parameter(description = "comma-separated list of ingredients to be excluded")
+            @RequestParam(name = "excludedIngredients", required = false) String exclusions,
+            @Parameter(description = "how ingredients are matched: exact, substring (default) or fuzzy")
+            @RequestParam(name = "ingredientMatch", required = false) String ingredientMatch,
+            @Parameter(description = "text that has to be in instructions")
+            @RequestParam(name = "instruction", required = false) String instruction,
+            @Parameter(description = "max. # of full recipes to return")
+            @RequestParam(name = "limit", required = false, defaultValue = "10") int limit
+    ) {
+        final List<String> includes = NameStringHelper.mapCsvToList(inclusions);
+        final List<String> excludes = NameStringHelper.mapCsvToList(exclusions);
+        final List<RecipeDto> recipes = recipeService.findRecipeDetailsWithGivenParams(isVegetarian, minServings, maxServings, includes, excludes,
+                IngredientMatch.fromParam(ingredientMatch), instruction, limit);
+        return ResponseEntity.ok(recipes);
+    }
+
 }
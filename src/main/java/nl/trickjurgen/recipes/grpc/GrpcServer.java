@@ -0,0 +1,105 @@
+package nl.trickjurgen.recipes.grpc;
+
+import io.grpc.BindableService;
+import io.grpc.Grpc;
+import io.grpc.InsecureServerCredentials;
+import io.grpc.Server;
+import io.grpc.ServerInterceptor;
+import io.micrometer.core.instrument.binder.grpc.ObservationGrpcServerInterceptor;
+import io.micrometer.observation.ObservationRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * runs the grpc services in the same process as the rest api, on its own port (recipes.grpc.port, 0 picks a free port,
+ * a negative port disables it). It starts when the app is ready (after the startup warm-up, like the readiness probe
+ * of the rest api) and stops with the application context. Calls are observed (traced) like http requests and go
+ * through the same interceptors as the context has (admission control).
+ */
+@Component
+public class GrpcServer implements SmartLifecycle {
+
+    private static final long SHUTDOWN_GRACE_SECONDS = 5;
+
+    private final Logger logger = LoggerFactory.getLogger(GrpcServer.class);
+
+    private final List<BindableService> services;
+    private final ObservationRegistry observationRegistry;
+    private final ObjectProvider<ServerInterceptor> interceptors;
+    private final int port;
+    private Server server;
+
+    @Autowired
+    public GrpcServer(List<BindableService> services, ObservationRegistry observationRegistry,
+                      ObjectProvider<ServerInterceptor> interceptors, @Value("${recipes.grpc.port:9090}") int port) {
+        this.services = services;
+        this.observationRegistry = observationRegistry;
+        this.interceptors = interceptors;
+        this.port = port;
+    }
+
+    // not started with the context: the warm-up (ApplicationRunners) comes after that, clients would get a cold app
+    @Override
+    public boolean isAutoStartup() {
+        return false;
+    }
+
+    @EventListener
+    public void onReadiness(final AvailabilityChangeEvent<ReadinessState> event) {
+        if (event.getState() == ReadinessState.ACCEPTING_TRAFFIC) start();
+    }
+
+    @Override
+    public synchronized void start() {
+        if (port < 0 || server != null) return;
+        final var builder = Grpc.newServerBuilderForPort(port, InsecureServerCredentials.create());
+        services.forEach(builder::addService);
+        interceptors.orderedStream().forEach(builder::intercept);
+        builder.intercept(new ObservationGrpcServerInterceptor(observationRegistry)); // added last, runs first: a span per call, rejected ones too
+        try {
+            server = builder.build().start();
+        } catch (IOException e) {
+            throw new UncheckedIOException("grpc server could not start on port " + port, e);
+        }
+        logger.info("grpc server started on port {} with {} service(s)", server.getPort(), services.size());
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (server == null) return;
+        server.shutdown(); // running calls may finish
+        try {
+            if (!server.awaitTermination(SHUTDOWN_GRACE_SECONDS, TimeUnit.SECONDS)) {
+                server.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            server.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        server = null;
+    }
+
+    @Override
+    public synchronized boolean isRunning() {
+        return server != null;
+    }
+
+    // the port it listens on, -1 when not running
+    public synchronized int getPort() {
+        return server == null ? -1 : server.getPort();
+    }
+
+}
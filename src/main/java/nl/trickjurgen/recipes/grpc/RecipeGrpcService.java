@@ -0,0 +1,168 @@
+package nl.trickjurgen.recipes.grpc;
+
+import com.google.protobuf.Empty;
+import io.grpc.Context;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import nl.trickjurgen.recipes.exception.DuplicateRecipeException;
+import nl.trickjurgen.recipes.exception.RecipeNotFoundException;
+import nl.trickjurgen.recipes.exception.RecipeParameterException;
+import nl.trickjurgen.recipes.grpc.proto.Recipe;
+import nl.trickjurgen.recipes.grpc.proto.RecipeApiGrpc;
+import nl.trickjurgen.recipes.grpc.proto.RecipeHeader;
+import nl.trickjurgen.recipes.grpc.proto.RecipeIdRequest;
+import nl.trickjurgen.recipes.grpc.proto.SearchRecipesRequest;
+import nl.trickjurgen.recipes.grpc.proto.UpdateRecipeRequest;
+import nl.trickjurgen.recipes.mapper.RecipeProtoMapper;
+import nl.trickjurgen.recipes.service.IngredientMatch;
+import nl.trickjurgen.recipes.service.RecipeService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * the grpc api (src/main/proto/recipes.proto) on top of the same RecipeService as the rest controllers. Exceptions of
+ * the service become the grpc status that matches the http status of the rest api.
+ */
+@Component
+public class RecipeGrpcService extends RecipeApiGrpc.RecipeApiImplBase {
+
+    private final Logger logger = LoggerFactory.getLogger(RecipeGrpcService.class);
+
+    private final RecipeService recipeService;
+
+    @Autowired
+    public RecipeGrpcService(RecipeService recipeService) {
+        this.recipeService = recipeService;
+    }
+
+    @Override
+    public void getRecipe(RecipeIdRequest request, StreamObserver<Recipe> responseObserver) {
+        unary(responseObserver, () -> RecipeProtoMapper.dtoToProto(recipeService.findRecipeById(request.getId())));
+    }
+
+    @Override
+    public void createRecipe(Recipe request, StreamObserver<Recipe> responseObserver) {
+        unary(responseObserver, () -> RecipeProtoMapper.dtoToProto(recipeService.saveNewRecipe(RecipeProtoMapper.protoToDto(request))));
+    }
+
+    @Override
+    public void updateRecipe(UpdateRecipeRequest request, StreamObserver<Recipe> responseObserver) {
+        unary(responseObserver, () -> RecipeProtoMapper.dtoToProto(
+                recipeService.updateRecipe(request.getId(), RecipeProtoMapper.protoToDto(request.getRecipe()))));
+    }
+
+    @Override
+    public void deleteRecipe(RecipeIdRequest request, StreamObserver<Empty> responseObserver) {
+        unary(responseObserver, () -> {
+            if (!recipeService.deleteRecipe(request.getId())) throw Status.INTERNAL.withDescription("delete failed").asRuntimeException();
+            return Empty.getDefaultInstance();
+        });
+    }
+
+    /**
+     * streams the matches from the database cursor, like the ndjson search. grpc itself would buffer every message the
+     * client has not read yet, so the cursor waits until the call is ready for more (flow control), and stops when the
+     * client cancels or its deadline passes.
+     */
+    @Override
+    public void searchRecipes(SearchRecipesRequest request, StreamObserver<RecipeHeader> responseObserver) {
+        final ServerCallStreamObserver<RecipeHeader> call = (ServerCallStreamObserver<RecipeHeader>) responseObserver;
+        final ReadyGate readyGate = new ReadyGate(call);
+        final List<String> includes = ingredientNames(request.getIncludedIngredientsList());
+        final List<String> excludes = ingredientNames(request.getExcludedIngredientsList());
+        try {
+            recipeService.streamRecipeHeadersWithGivenParams(
+                    request.hasIsVegetarian() ? request.getIsVegetarian() : null,
+                    request.hasMinServings() ? request.getMinServings() : null,
+                    request.hasMaxServings() ? request.getMaxServings() : null,
+                    includes, excludes,
+                    IngredientMatch.fromParam(request.hasIngredientMatch() ? request.getIngredientMatch() : null),
+                    request.hasInstruction() ? request.getInstruction() : null,
+                    header -> {
+                        readyGate.await();
+                        call.onNext(RecipeProtoMapper.headerToProto(header));
+                    });
+            call.onCompleted();
+        } catch (RuntimeException e) {
+            if (readyGate.isCancelled()) {
+                logger.debug("search cancelled by the client");
+                return;
+            }
+            call.onError(toStatus(e));
+        }
+    }
+
+    // same cleanup as the csv parameters of the rest search
+    private static List<String> ingredientNames(final List<String> names) {
+        return names.stream().map(String::trim).filter(name -> !name.isBlank()).toList();
+    }
+
+    private <T> void unary(final StreamObserver<T> responseObserver, final Supplier<T> operation) {
+        final T response;
+        try {
+            response = operation.get();
+        } catch (RuntimeException e) {
+            responseObserver.onError(toStatus(e));
+            return;
+        }
+        responseObserver.onNext(response);
+        responseObserver.onCompleted();
+    }
+
+    private StatusRuntimeException toStatus(final RuntimeException e) {
+        return switch (e) {
+            case StatusRuntimeException status -> status;
+            case RecipeNotFoundException notFound -> Status.NOT_FOUND.withDescription(notFound.getMessage()).asRuntimeException();
+            case DuplicateRecipeException duplicate -> Status.ALREADY_EXISTS.withDescription(duplicate.getMessage()).asRuntimeException();
+            case RecipeParameterException badRequest -> Status.INVALID_ARGUMENT.withDescription(badRequest.getMessage()).asRuntimeException();
+            default -> {
+                logger.error("grpc call failed", e);
+                yield Status.INTERNAL.withDescription("internal error").asRuntimeException();
+            }
+        };
+    }
+
+    /**
+     * blocks the streaming thread until the call can take another message. The onReady and onCancel callbacks of the
+     * call run on the same serialized executor as the service method, so they can't wake it while it blocks: readiness
+     * is polled, cancellation comes from the grpc context of the call, which is cancelled by the transport.
+     */
+    private static class ReadyGate {
+
+        private static final long POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+
+        private final ServerCallStreamObserver<?> call;
+        private final Context context = Context.current();
+
+        ReadyGate(final ServerCallStreamObserver<?> call) {
+            this.call = call;
+        }
+
+        void await() {
+            while (!call.isReady()) {
+                throwIfCancelled();
+                LockSupport.parkNanos(POLL_NANOS);
+            }
+            throwIfCancelled();
+        }
+
+        boolean isCancelled() {
+            return context.isCancelled() || call.isCancelled();
+        }
+
+        private void throwIfCancelled() {
+            if (isCancelled()) throw Status.CANCELLED.withDescription("client cancelled").asRuntimeException();
+        }
+
+    }
+
+}
@@ -6,6 +6,7 @@ import nl.trickjurgen.recipes.datamodel.Recipe;
 import nl.trickjurgen.recipes.dto.IngredientDto;
 import nl.trickjurgen.recipes.dto.RecipeDto;
 import nl.trickjurgen.recipes.dto.RecipeHeaderDto;
+import nl.trickjurgen.recipes.monitoring.RecipeMappingEvent;
 import nl.trickjurgen.recipes.utils.NameStringHelper;
 
 import java.util.Collections;
@@ -15,8 +16,9 @@ import java.util.stream.Collectors;
 public class RecepAndIngrMapper {
 
     public static Recipe dtoToRecipeNoIngr(final RecipeDto recipeDto) {
+        final RecipeMappingEvent event = RecipeMappingEvent.start("dtoToRecipeNoIngr");
         final String recipeName = NameStringHelper.toTitleCase(recipeDto.getName());
-        return Recipe.builder()
+        final Recipe recipe = Recipe.builder()
                 .id(recipeDto.getId()) // optional field
                 .name(recipeName)
                 .instructions(recipeDto.getInstructions())
@@ -24,6 +26,8 @@ public class RecepAndIngrMapper {
                 .servings(recipeDto.getServings())
                 .ingredients(new HashSet<>())
                 .build();
+        event.end(recipeDto.getId(), 0);
+        return recipe;
     }
 
     public static Ingredient dtoToIngredientWithType(final IngredientDto ingredientDto, final IngredientType ingredientType) {
@@ -35,8 +39,10 @@ public class RecepAndIngrMapper {
                 .build();
     }
 
+    // the jfr event includes lazy loads of instructions and ingredients that the mapping triggers
     public static RecipeDto recipeToDto(final Recipe recipe) {
-        return RecipeDto.builder()
+        final RecipeMappingEvent event = RecipeMappingEvent.start("recipeToDto");
+        final RecipeDto recipeDto = RecipeDto.builder()
                 .id(recipe.getId()) // optional field
                 .name(recipe.getName())
                 .isVegetarian(recipe.isVegetarian())
@@ -45,6 +51,8 @@ public class RecepAndIngrMapper {
                 .ingredients(recipe.getIngredients() == null ? Collections.emptySet() : recipe.getIngredients().stream()
                         .map(RecepAndIngrMapper::ingredientToDto).collect(Collectors.toSet()))
                 .build();
+        event.end(recipe.getId(), recipeDto.getIngredients().size());
+        return recipeDto;
     }
 
     public static IngredientDto ingredientToDto(final Ingredient ingredient) {
@@ -56,6 +64,18 @@ public class RecepAndIngrMapper {
                 .build();
     }
 
+    public static RecipeHeaderDto recipeToHeader(final Recipe recipe) {
+        final RecipeMappingEvent event = RecipeMappingEvent.start("recipeToHeader");
+        final RecipeHeaderDto header = RecipeHeaderDto.builder()
+                .id(recipe.getId())
+                .name(recipe.getName())
+                .isVegetarian(recipe.isVegetarian())
+                .servings(recipe.getServings())
+                .build();
+        event.end(recipe.getId(), 0);
+        return header;
+    }
+
     public static RecipeHeaderDto RecipeDtoToHeader(final RecipeDto recipeDto) {
         return RecipeHeaderDto.builder()
                 .id(recipeDto.getId())
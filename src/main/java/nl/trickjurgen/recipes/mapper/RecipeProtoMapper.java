@@ -0,0 +1,66 @@
+package nl.trickjurgen.recipes.mapper;
+
+import nl.trickjurgen.recipes.dto.IngredientDto;
+import nl.trickjurgen.recipes.dto.RecipeDto;
+import nl.trickjurgen.recipes.dto.RecipeHeaderDto;
+import nl.trickjurgen.recipes.grpc.proto.Ingredient;
+import nl.trickjurgen.recipes.grpc.proto.Recipe;
+import nl.trickjurgen.recipes.grpc.proto.RecipeHeader;
+
+import java.util.stream.Collectors;
+
+// between the dtos and the grpc (protobuf) messages; protobuf has no null, optional fields are left unset instead
+public class RecipeProtoMapper {
+
+    public static RecipeDto protoToDto(final Recipe recipe) {
+        return RecipeDto.builder()
+                .id(recipe.hasId() ? recipe.getId() : null)
+                .name(recipe.getName())
+                .isVegetarian(recipe.getIsVegetarian())
+                .servings(recipe.getServings())
+                .instructions(recipe.getInstructions())
+                .ingredients(recipe.getIngredientsList().stream().map(RecipeProtoMapper::protoToDto).collect(Collectors.toSet()))
+                .build();
+    }
+
+    public static IngredientDto protoToDto(final Ingredient ingredient) {
+        return IngredientDto.builder()
+                .id(ingredient.hasId() ? ingredient.getId() : null)
+                .name(ingredient.getName())
+                .volume(ingredient.getVolume())
+                .remark(ingredient.hasRemark() ? ingredient.getRemark() : null)
+                .build();
+    }
+
+    public static Recipe dtoToProto(final RecipeDto recipeDto) {
+        final Recipe.Builder recipe = Recipe.newBuilder()
+                .setName(recipeDto.getName())
+                .setIsVegetarian(recipeDto.isVegetarian())
+                .setServings(recipeDto.getServings());
+        if (recipeDto.getId() != null) recipe.setId(recipeDto.getId());
+        if (recipeDto.getInstructions() != null) recipe.setInstructions(recipeDto.getInstructions());
+        if (recipeDto.getIngredients() != null) {
+            recipeDto.getIngredients().forEach(ingredient -> recipe.addIngredients(dtoToProto(ingredient)));
+        }
+        return recipe.build();
+    }
+
+    public static Ingredient dtoToProto(final IngredientDto ingredientDto) {
+        final Ingredient.Builder ingredient = Ingredient.newBuilder()
+                .setName(ingredientDto.getName())
+                .setVolume(ingredientDto.getVolume());
+        if (ingredientDto.getId() != null) ingredient.setId(ingredientDto.getId());
+        if (ingredientDto.getRemark() != null) ingredient.setRemark(ingredientDto.getRemark());
+        return ingredient.build();
+    }
+
+    public static RecipeHeader headerToProto(final RecipeHeaderDto header) {
+        return RecipeHeader.newBuilder()
+                .setId(header.getId())
+                .setName(header.getName())
+                .setIsVegetarian(header.isVegetarian())
+                .setServings(header.getServings())
+                .build();
+    }
+
+}
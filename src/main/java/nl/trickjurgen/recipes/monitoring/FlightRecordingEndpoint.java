@@ -0,0 +1,139 @@
+package nl.trickjurgen.recipes.monitoring;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.boot.actuate.endpoint.web.WebEndpointResponse;
+import org.springframework.boot.actuate.endpoint.web.annotation.WebEndpoint;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * /actuator/flightrecording: start, stop and download a JDK Flight Recorder recording of the running app, with the
+ * recipe events (category 'Recipes') next to the JVM's own. One recording at a time; it keeps at most max-age of data.
+ * <ul>
+ *     <li>GET: state of the recording</li>
+ *     <li>POST {"action": "start", "settings": "profile"}: start, settings 'default' (about 1% overhead) or 'profile'</li>
+ *     <li>POST {"action": "stop"}: stop and discard the recording</li>
+ *     <li>GET /dump: download what is recorded so far as a .jfr file (open with JDK Mission Control or 'jfr print')</li>
+ * </ul>
+ * No authentication: only exposed with the 'diagnostics' profile, on a management port that listens on localhost.
+ * The events that list environment variables, system properties and the command line are left out of the recording.
+ */
+@Component
+@WebEndpoint(id = "flightrecording")
+public class FlightRecordingEndpoint {
+
+    private static final String RECORDING_NAME = "recipes";
+    // may contain credentials, like the datasource password
+    private static final List<String> SECRET_EVENTS = List.of("jdk.InitialEnvironmentVariable",
+            "jdk.InitialSystemProperty", "jdk.JVMInformation");
+
+    public record RecordingStatus(boolean running, Long id, String settings, Instant started, Duration maxAge, long bytes) {
+        static final RecordingStatus NONE = new RecordingStatus(false, null, null, null, null, 0L);
+    }
+
+    private final Duration maxAge;
+    private Recording recording;
+    private String settings;
+
+    private final Logger logger = LoggerFactory.getLogger(FlightRecordingEndpoint.class);
+
+    @Autowired
+    public FlightRecordingEndpoint(@Value("${recipes.flight-recording.max-age:PT30M}") Duration maxAge) {
+        this.maxAge = maxAge;
+    }
+
+    @ReadOperation
+    public synchronized RecordingStatus status() {
+        if (recording == null) return RecordingStatus.NONE;
+        return new RecordingStatus(recording.getState() == RecordingState.RUNNING, recording.getId(), settings,
+                recording.getStartTime(), recording.getMaxAge(), recording.getSize());
+    }
+
+    @WriteOperation
+    public synchronized WebEndpointResponse<RecordingStatus> control(final String action, @Nullable final String settings) {
+        switch (action) {
+            case "start" -> {
+                if (recording != null) return new WebEndpointResponse<>(status(), WebEndpointResponse.STATUS_BAD_REQUEST);
+                final String configurationName = settings == null ? "default" : settings;
+                try {
+                    recording = new Recording(Configuration.getConfiguration(configurationName));
+                } catch (IOException | ParseException e) {
+                    return new WebEndpointResponse<>(WebEndpointResponse.STATUS_BAD_REQUEST);
+                }
+                SECRET_EVENTS.forEach(recording::disable);
+                recording.setName(RECORDING_NAME);
+                recording.setToDisk(true);
+                recording.setMaxAge(maxAge);
+                recording.start();
+                this.settings = configurationName;
+                logger.info("flight recording {} started with settings '{}'", recording.getId(), configurationName);
+                return new WebEndpointResponse<>(status());
+            }
+            case "stop" -> {
+                if (recording == null) return new WebEndpointResponse<>(RecordingStatus.NONE, WebEndpointResponse.STATUS_NOT_FOUND);
+                recording.close();
+                logger.info("flight recording {} stopped", recording.getId());
+                recording = null;
+                return new WebEndpointResponse<>(RecordingStatus.NONE);
+            }
+            default -> {
+                return new WebEndpointResponse<>(status(), WebEndpointResponse.STATUS_BAD_REQUEST);
+            }
+        }
+    }
+
+    @ReadOperation(produces = "application/octet-stream")
+    public synchronized WebEndpointResponse<Resource> dump(@Selector final String dump) {
+        if (!"dump".equals(dump) || recording == null) return new WebEndpointResponse<>(WebEndpointResponse.STATUS_NOT_FOUND);
+        try {
+            final Path file = Files.createTempFile("recipes-", ".jfr");
+            recording.dump(file); // a copy of what is recorded so far, the recording keeps running
+            return new WebEndpointResponse<>(new DeleteAfterReadResource(file));
+        } catch (IOException e) {
+            throw new UncheckedIOException("failed to dump flight recording", e);
+        }
+    }
+
+    // the dump is a temporary file, remove it once it has been sent
+    private static class DeleteAfterReadResource extends FileSystemResource {
+
+        DeleteAfterReadResource(final Path file) {
+            super(file);
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return new FilterInputStream(super.getInputStream()) {
+                @Override
+                public void close() throws IOException {
+                    super.close();
+                    Files.deleteIfExists(getFile().toPath());
+                }
+            };
+        }
+
+    }
+
+}
@@ -0,0 +1,28 @@
+package nl.trickjurgen.recipes.monitoring;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.stat.spi.StatisticsFactory;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * hibernate collects statistics (spring.jpa.properties.hibernate.generate_statistics) and times every statement;
+ * the ones slower than recipes.slow-query.threshold end up in the SlowQueryLog.
+ */
+@Configuration(proxyBeanMethods = false)
+public class HibernateStatisticsConfig {
+
+    // read by hibernate's StatisticsInitiator, there is no public constant for it (anymore)
+    private static final String STATS_FACTORY = "hibernate.stats.factory";
+
+    @Bean
+    public HibernatePropertiesCustomizer slowQueryLogCustomizer(SlowQueryLog slowQueryLog) {
+        final StatisticsFactory statisticsFactory = sessionFactory -> new SlowQueryRecordingStatistics(sessionFactory, slowQueryLog);
+        return properties -> {
+            properties.put(AvailableSettings.LOG_SLOW_QUERY, slowQueryLog.getThreshold().toMillis());
+            properties.put(STATS_FACTORY, statisticsFactory);
+        };
+    }
+
+}
@@ -0,0 +1,114 @@
+package nl.trickjurgen.recipes.monitoring;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheableDataStatistics;
+import org.hibernate.stat.CollectionStatistics;
+import org.hibernate.stat.EntityStatistics;
+import org.hibernate.stat.QueryStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * /actuator/hibernate: hibernate statistics since startup (or the last reset) and the recent slow queries.
+ * Totals for queries, entities, collections and the second level cache, plus the same per entity, per collection
+ * and per query. A DELETE on the endpoint resets the statistics and the slow query log.
+ */
+@Component
+@Endpoint(id = "hibernate")
+public class HibernateStatisticsEndpoint {
+
+    public record Totals(long sessionsOpened, long transactions, long statementsPrepared, long queryExecutions,
+                         long queryMaxMillis, String slowestQuery, long entityLoads, long entityFetches,
+                         long entityInserts, long entityUpdates, long entityDeletes, long collectionLoads,
+                         long collectionFetches, CacheRatio secondLevelCache) {
+    }
+
+    public record EntityCounts(long loads, long fetches, long inserts, long updates, long deletes, CacheRatio cache) {
+    }
+
+    public record CollectionCounts(long loads, long fetches, long updates, long removes, CacheRatio cache) {
+    }
+
+    public record QueryCounts(long executions, long rows, long avgMillis, long maxMillis, CacheRatio cache) {
+    }
+
+    // hitRatio is null as long as nothing was looked up in the cache
+    public record CacheRatio(long hits, long misses, long puts, Double hitRatio) {
+        static CacheRatio of(long hits, long misses, long puts) {
+            return new CacheRatio(hits, misses, puts, hits + misses == 0 ? null : (double) hits / (hits + misses));
+        }
+
+        static CacheRatio of(CacheableDataStatistics statistics) {
+            return of(statistics.getCacheHitCount(), statistics.getCacheMissCount(), statistics.getCachePutCount());
+        }
+    }
+
+    public record HibernateStatistics(boolean enabled, Instant since, Totals totals, Map<String, EntityCounts> entities,
+                                      Map<String, CollectionCounts> collections, Map<String, QueryCounts> queries,
+                                      long slowQueryThresholdMillis, List<SlowQueryLog.SlowQuery> slowQueries) {
+    }
+
+    private final Statistics statistics;
+    private final SlowQueryLog slowQueryLog;
+
+    @Autowired
+    public HibernateStatisticsEndpoint(EntityManagerFactory entityManagerFactory, SlowQueryLog slowQueryLog) {
+        this.statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        this.slowQueryLog = slowQueryLog;
+    }
+
+    @ReadOperation
+    public HibernateStatistics statistics() {
+        final Totals totals = new Totals(statistics.getSessionOpenCount(), statistics.getTransactionCount(),
+                statistics.getPrepareStatementCount(), statistics.getQueryExecutionCount(),
+                statistics.getQueryExecutionMaxTime(), statistics.getQueryExecutionMaxTimeQueryString(),
+                statistics.getEntityLoadCount(), statistics.getEntityFetchCount(), statistics.getEntityInsertCount(),
+                statistics.getEntityUpdateCount(), statistics.getEntityDeleteCount(), statistics.getCollectionLoadCount(),
+                statistics.getCollectionFetchCount(), CacheRatio.of(statistics.getSecondLevelCacheHitCount(),
+                statistics.getSecondLevelCacheMissCount(), statistics.getSecondLevelCachePutCount()));
+        return new HibernateStatistics(statistics.isStatisticsEnabled(), statistics.getStart(), totals,
+                perName(statistics.getEntityNames(), name -> entityCounts(statistics.getEntityStatistics(name))),
+                perName(statistics.getCollectionRoleNames(), role -> collectionCounts(statistics.getCollectionStatistics(role))),
+                perName(statistics.getQueries(), query -> queryCounts(statistics.getQueryStatistics(query))),
+                slowQueryLog.getThreshold().toMillis(), slowQueryLog.getRecent());
+    }
+
+    @DeleteOperation
+    public void reset() {
+        statistics.clear();
+        slowQueryLog.clear();
+    }
+
+    private static <T> Map<String, T> perName(final String[] names, final Function<String, T> counts) {
+        return Arrays.stream(names).collect(Collectors.toMap(Function.identity(), counts, (a, b) -> a, TreeMap::new));
+    }
+
+    private static EntityCounts entityCounts(final EntityStatistics entity) {
+        return new EntityCounts(entity.getLoadCount(), entity.getFetchCount(), entity.getInsertCount(),
+                entity.getUpdateCount(), entity.getDeleteCount(), CacheRatio.of(entity));
+    }
+
+    private static CollectionCounts collectionCounts(final CollectionStatistics collection) {
+        return new CollectionCounts(collection.getLoadCount(), collection.getFetchCount(), collection.getUpdateCount(),
+                collection.getRemoveCount(), CacheRatio.of(collection));
+    }
+
+    private static QueryCounts queryCounts(final QueryStatistics query) {
+        return new QueryCounts(query.getExecutionCount(), query.getExecutionRowCount(), query.getExecutionAvgTime(),
+                query.getExecutionMaxTime(), CacheRatio.of(query.getCacheHitCount(), query.getCacheMissCount(), query.getCachePutCount()));
+    }
+
+}
@@ -0,0 +1,113 @@
+package nl.trickjurgen.recipes.monitoring;
+
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * in-process span exporter: keeps the spans of the most recent traces in memory, shown by the 'traces' actuator endpoint.
+ * Works without a collector; spring boot hands every finished span to all SpanExporter beans.
+ */
+@Component
+public class RecentTracesExporter implements SpanExporter {
+
+    public record SpanView(String name, String spanId, String parentSpanId, long startOffsetMicros, long durationMicros,
+                           String status, Map<String, String> attributes) {
+    }
+
+    public record TraceView(String traceId, String name, Instant start, long durationMicros, int spanCount, List<SpanView> spans) {
+    }
+
+    private final int maxTraces;
+    // spans of traces whose root span hasn't finished yet (the root ends last)
+    private final Map<String, List<SpanData>> unfinished;
+    private final Deque<TraceView> recent = new ArrayDeque<>();
+
+    @Autowired
+    public RecentTracesExporter(@Value("${recipes.tracing.max-traces:100}") int maxTraces) {
+        this.maxTraces = maxTraces;
+        this.unfinished = new LinkedHashMap<>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, List<SpanData>> eldest) {
+                return size() > maxTraces; // a root that never ends must not keep its spans forever
+            }
+        };
+    }
+
+    @Override
+    public synchronized CompletableResultCode export(final Collection<SpanData> spans) {
+        for (SpanData span : spans) {
+            unfinished.computeIfAbsent(span.getTraceId(), traceId -> new ArrayList<>()).add(span);
+            final boolean isRoot = !span.getParentSpanContext().isValid() || span.getParentSpanContext().isRemote();
+            if (isRoot) {
+                recent.addFirst(toTrace(span, unfinished.remove(span.getTraceId())));
+                while (recent.size() > maxTraces) {
+                    recent.pollLast();
+                }
+            }
+        }
+        return CompletableResultCode.ofSuccess();
+    }
+
+    /**
+     * @return the most recent traces, newest first
+     */
+    public synchronized List<TraceView> getRecent() {
+        return new ArrayList<>(recent);
+    }
+
+    public synchronized void clear() {
+        recent.clear();
+        unfinished.clear();
+    }
+
+    @Override
+    public CompletableResultCode flush() {
+        return CompletableResultCode.ofSuccess();
+    }
+
+    @Override
+    public CompletableResultCode shutdown() {
+        return CompletableResultCode.ofSuccess();
+    }
+
+    private static TraceView toTrace(final SpanData root, final List<SpanData> spans) {
+        final List<SpanView> spanViews = spans.stream()
+                .sorted(Comparator.comparingLong(SpanData::getStartEpochNanos))
+                .map(span -> new SpanView(span.getName(), span.getSpanId(),
+                        span.getParentSpanContext().isValid() ? span.getParentSpanContext().getSpanId() : null,
+                        micros(span.getStartEpochNanos() - root.getStartEpochNanos()),
+                        micros(span.getEndEpochNanos() - span.getStartEpochNanos()),
+                        span.getStatus().getStatusCode().name(), attributes(span)))
+                .toList();
+        return new TraceView(root.getTraceId(), root.getName(),
+                Instant.EPOCH.plusNanos(root.getStartEpochNanos()),
+                micros(root.getEndEpochNanos() - root.getStartEpochNanos()), spanViews.size(), spanViews);
+    }
+
+    private static Map<String, String> attributes(final SpanData span) {
+        final Map<String, String> attributes = new TreeMap<>();
+        span.getAttributes().forEach((key, value) -> attributes.put(key.getKey(), String.valueOf(value)));
+        return attributes;
+    }
+
+    private static long micros(final long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+}
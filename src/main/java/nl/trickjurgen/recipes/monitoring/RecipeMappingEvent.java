@@ -0,0 +1,45 @@
+package nl.trickjurgen.recipes.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event for one RecepAndIngrMapper call. Includes lazy loading the mapping triggers (like the ingredients of a recipe).
+ */
+@Name("nl.trickjurgen.recipes.RecipeMapping")
+@Label("Recipe Mapping")
+@Category("Recipes")
+@Description("Mapping between a recipe entity and its dto, including lazy loads it triggers")
+@StackTrace(false)
+public class RecipeMappingEvent extends Event {
+
+    @Label("Mapping")
+    String mapping;
+
+    @Label("Recipe Id")
+    long recipeId;
+
+    @Label("Ingredients")
+    int ingredients;
+
+    public static RecipeMappingEvent start(final String mapping) {
+        final RecipeMappingEvent event = new RecipeMappingEvent();
+        event.mapping = mapping;
+        event.begin();
+        return event;
+    }
+
+    public void end(final Long recipeId, final int ingredients) {
+        end();
+        if (shouldCommit()) {
+            this.recipeId = recipeId == null ? 0L : recipeId;
+            this.ingredients = ingredients;
+            commit();
+        }
+    }
+
+}
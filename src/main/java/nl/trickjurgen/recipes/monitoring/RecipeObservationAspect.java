@@ -0,0 +1,93 @@
+package nl.trickjurgen.recipes.monitoring;
+
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import nl.trickjurgen.recipes.dto.RecipeDto;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Optional;
+
+/**
+ * an observation (trace span + timer) around every rest controller method, every public RecipeService method and
+ * every repository method, so a trace shows http request -> controller -> service -> repository -> jdbc statements.
+ * The http span minus the controller span is filters and writing the response. The service span sits outside the
+ * transaction, so it includes getting the connection and the commit.
+ */
+@Aspect
+@Component
+@Order(1)
+public class RecipeObservationAspect {
+
+    public static final String CONTROLLER_OBSERVATION = "recipes.controller";
+    public static final String SERVICE_OBSERVATION = "recipes.service";
+    public static final String REPOSITORY_OBSERVATION = "recipes.repository";
+
+    private final ObservationRegistry observationRegistry;
+
+    @Autowired
+    public RecipeObservationAspect(ObservationRegistry observationRegistry) {
+        this.observationRegistry = observationRegistry;
+    }
+
+    @Around("execution(public * *(..)) && within(@org.springframework.web.bind.annotation.RestController nl.trickjurgen.recipes..*)")
+    public Object observeController(final ProceedingJoinPoint joinPoint) throws Throwable {
+        return observe(CONTROLLER_OBSERVATION, joinPoint.getSignature().getDeclaringType().getSimpleName(), joinPoint);
+    }
+
+    @Around("execution(public * nl.trickjurgen.recipes.service.RecipeService.*(..))")
+    public Object observeService(final ProceedingJoinPoint joinPoint) throws Throwable {
+        return observe(SERVICE_OBSERVATION, "RecipeService", joinPoint);
+    }
+
+    @Around("execution(public * org.springframework.data.repository.Repository+.*(..))")
+    public Object observeRepository(final ProceedingJoinPoint joinPoint) throws Throwable {
+        final Class<?>[] interfaces = joinPoint.getThis().getClass().getInterfaces();
+        final String repository = interfaces.length == 0 ? "Repository" : interfaces[0].getSimpleName();
+        return observe(REPOSITORY_OBSERVATION, repository, joinPoint);
+    }
+
+    private Object observe(final String name, final String component, final ProceedingJoinPoint joinPoint) throws Throwable {
+        final String method = joinPoint.getSignature().getName();
+        final Observation observation = Observation.createNotStarted(name, observationRegistry)
+                .contextualName(component + "." + method)
+                .lowCardinalityKeyValue("component", component)
+                .lowCardinalityKeyValue("method", method)
+                .start();
+        try (Observation.Scope ignored = observation.openScope()) {
+            final Object result = joinPoint.proceed();
+            addResultAttributes(observation, result);
+            return result;
+        } catch (Throwable e) {
+            observation.error(e);
+            throw e;
+        } finally {
+            observation.stop();
+        }
+    }
+
+    // only dtos are counted for ingredients: touching entity collections here could trigger lazy loads
+    private static void addResultAttributes(final Observation observation, final Object returned) {
+        final Object result = returned instanceof ResponseEntity<?> response ? response.getBody() : returned;
+        if (result instanceof Collection<?> collection) {
+            observation.highCardinalityKeyValue("result.size", String.valueOf(collection.size()));
+            final long ingredients = collection.stream()
+                    .filter(RecipeDto.class::isInstance)
+                    .mapToLong(recipe -> ((RecipeDto) recipe).getIngredients().size())
+                    .sum();
+            if (ingredients > 0) observation.highCardinalityKeyValue("result.ingredients", String.valueOf(ingredients));
+        } else if (result instanceof Optional<?> optional) {
+            observation.highCardinalityKeyValue("result.size", optional.isPresent() ? "1" : "0");
+        } else if (result instanceof RecipeDto recipe) {
+            observation.highCardinalityKeyValue("result.size", "1");
+            observation.highCardinalityKeyValue("result.ingredients", String.valueOf(recipe.getIngredients().size()));
+        }
+    }
+
+}
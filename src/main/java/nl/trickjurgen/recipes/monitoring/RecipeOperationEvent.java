@@ -0,0 +1,34 @@
+package nl.trickjurgen.recipes.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event for one call of a public RecipeService method, including its transaction (see RecipeOperationEventAspect)
+ */
+@Name("nl.trickjurgen.recipes.RecipeOperation")
+@Label("Recipe Operation")
+@Category("Recipes")
+@Description("Call of a RecipeService method, including its transaction")
+@StackTrace(false)
+public class RecipeOperationEvent extends Event {
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Arguments")
+    @Description("Argument types of the call, with ids, numbers and flags")
+    String arguments;
+
+    @Label("Result Count")
+    @Description("Size of the returned list, 1 for a single result, 0 for none")
+    int resultCount;
+
+    @Label("Failure")
+    String failure;
+
+}
@@ -0,0 +1,74 @@
+package nl.trickjurgen.recipes.monitoring;
+
+import nl.trickjurgen.recipes.dto.RecipeDto;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * records a RecipeOperationEvent around every public RecipeService method. Ordered outside the transaction advice,
+ * so the event includes getting the connection and the commit. Costs next to nothing when no recording is running.
+ * The arguments are recorded as types, with the ids, numbers and flags among them; never text or a recipe's content.
+ */
+@Aspect
+@Component
+@Order(0)
+public class RecipeOperationEventAspect {
+
+    private static final int MAX_ARGUMENTS_LENGTH = 256;
+
+    @Around("execution(public * nl.trickjurgen.recipes.service.RecipeService.*(..))")
+    public Object recordOperation(final ProceedingJoinPoint joinPoint) throws Throwable {
+        final RecipeOperationEvent event = new RecipeOperationEvent();
+        event.begin();
+        Object result = null;
+        Throwable failure = null;
+        try {
+            result = joinPoint.proceed();
+            return result;
+        } catch (Throwable e) {
+            failure = e;
+            throw e;
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.operation = joinPoint.getSignature().getName();
+                event.arguments = abbreviate(Arrays.stream(joinPoint.getArgs())
+                        .map(RecipeOperationEventAspect::describe).collect(Collectors.joining(", ", "[", "]")));
+                event.resultCount = countResults(result);
+                event.failure = failure == null ? null : failure.getClass().getSimpleName() + ": " + failure.getMessage();
+                event.commit();
+            }
+        }
+    }
+
+    private static String describe(final Object argument) {
+        if (argument == null) return "null";
+        if (argument instanceof Number || argument instanceof Boolean || argument instanceof Enum<?>) return argument.toString();
+        if (argument instanceof RecipeDto recipe) return "RecipeDto(id=" + recipe.getId() + ")";
+        if (argument instanceof Collection<?> collection) {
+            final String type = argument instanceof List ? "List" : argument instanceof Set ? "Set" : "Collection";
+            return type + "(size=" + collection.size() + ")";
+        }
+        return argument.getClass().getSimpleName();
+    }
+
+    private static int countResults(final Object result) {
+        if (result == null || result instanceof Boolean) return 0;
+        if (result instanceof Collection<?> collection) return collection.size();
+        return 1;
+    }
+
+    private static String abbreviate(final String text) {
+        return text.length() <= MAX_ARGUMENTS_LENGTH ? text : text.substring(0, MAX_ARGUMENTS_LENGTH - 3) + "...";
+    }
+
+}
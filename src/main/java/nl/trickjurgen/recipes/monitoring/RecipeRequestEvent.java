@@ -0,0 +1,33 @@
+package nl.trickjurgen.recipes.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event for a whole http request. Its duration minus the RecipeOperation within it is mostly the (jackson) response
+ * writing and the web layer.
+ */
+@Name("nl.trickjurgen.recipes.Request")
+@Label("Recipe Request")
+@Category("Recipes")
+@Description("Http request, including writing the response body")
+@StackTrace(false)
+public class RecipeRequestEvent extends Event {
+
+    @Label("Method")
+    String method;
+
+    @Label("Path")
+    String path;
+
+    @Label("Query")
+    String query;
+
+    @Label("Status")
+    int status;
+
+}
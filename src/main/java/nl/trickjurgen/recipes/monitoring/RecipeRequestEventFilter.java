@@ -0,0 +1,43 @@
+package nl.trickjurgen.recipes.monitoring;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * records a RecipeRequestEvent for every http request, around the whole chain (so including response writing)
+ */
+@Component
+public class RecipeRequestEventFilter extends OncePerRequestFilter {
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        final RecipeRequestEvent event = new RecipeRequestEvent();
+        event.begin();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.method = request.getMethod();
+                event.path = request.getRequestURI();
+                event.query = request.getQueryString();
+                event.status = response.getStatus();
+                event.commit();
+            }
+        }
+    }
+
+    // a streamed (ndjson) response is only recorded up to the start of the streaming, the streaming itself is a SearchPhase
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return true;
+    }
+
+}
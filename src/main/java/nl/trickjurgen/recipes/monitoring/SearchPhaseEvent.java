@@ -0,0 +1,54 @@
+package nl.trickjurgen.recipes.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+import java.util.function.Supplier;
+
+/**
+ * JFR event for a phase of a recipe search: loading the candidates (jpa), filtering them, finding the ids of the hits
+ * in the database, fetching details
+ */
+@Name("nl.trickjurgen.recipes.SearchPhase")
+@Label("Recipe Search Phase")
+@Category("Recipes")
+@Description("Load, filter, id or detail fetch phase of a recipe search")
+@StackTrace(false)
+public class SearchPhaseEvent extends Event {
+
+    @Label("Phase")
+    String phase;
+
+    @Label("Criteria")
+    String criteria;
+
+    @Label("Rows Loaded")
+    @Description("Recipes read from the database in this phase")
+    int rowsLoaded;
+
+    @Label("Result Count")
+    int resultCount;
+
+    public static SearchPhaseEvent start(final String phase) {
+        final SearchPhaseEvent event = new SearchPhaseEvent();
+        event.phase = phase;
+        event.begin();
+        return event;
+    }
+
+    // the criteria text is only built when the event is recorded
+    public void end(final Supplier<String> criteria, final int rowsLoaded, final int resultCount) {
+        end();
+        if (shouldCommit()) {
+            this.criteria = criteria.get();
+            this.rowsLoaded = rowsLoaded;
+            this.resultCount = resultCount;
+            commit();
+        }
+    }
+
+}
@@ -0,0 +1,82 @@
+package nl.trickjurgen.recipes.monitoring;
+
+import nl.trickjurgen.recipes.service.RecipeService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedDeque;
+
+/**
+ * keeps the most recent statements that took longer than the threshold (recipes.slow-query.threshold), with the
+ * RecipeService method they came from. Hibernate measures the statements and reports the slow ones here
+ * (see HibernateStatisticsConfig), the list is shown by the 'hibernate' actuator endpoint.
+ */
+@Component
+public class SlowQueryLog {
+
+    private static final String APP_PACKAGE = "nl.trickjurgen.recipes.";
+    private static final Set<String> RECORDING_CLASSES = Set.of(SlowQueryLog.class.getName(), SlowQueryRecordingStatistics.class.getName());
+
+    public record SlowQuery(Instant at, long millis, String origin, String sql) {
+    }
+
+    private final Duration threshold;
+    private final int maxEntries;
+    private final Deque<SlowQuery> recent = new ConcurrentLinkedDeque<>();
+
+    private final Logger logger = LoggerFactory.getLogger(SlowQueryLog.class);
+
+    @Autowired
+    public SlowQueryLog(@Value("${recipes.slow-query.threshold:PT0.2S}") Duration threshold,
+                        @Value("${recipes.slow-query.max-entries:100}") int maxEntries) {
+        this.threshold = threshold;
+        this.maxEntries = maxEntries;
+    }
+
+    public Duration getThreshold() {
+        return threshold;
+    }
+
+    public void record(final String sql, final long millis) {
+        final SlowQuery slowQuery = new SlowQuery(Instant.now(), millis, findOrigin(), sql);
+        logger.warn("slow query, {} ms in {}: {}", millis, slowQuery.origin(), sql);
+        recent.addFirst(slowQuery);
+        while (recent.size() > maxEntries) {
+            recent.pollLast();
+        }
+    }
+
+    /**
+     * @return recorded slow queries, newest first
+     */
+    public List<SlowQuery> getRecent() {
+        return new ArrayList<>(recent);
+    }
+
+    public void clear() {
+        recent.clear();
+    }
+
+    // only walks the stack for slow statements, so it costs nothing on the normal path
+    private String findOrigin() {
+        final List<StackWalker.StackFrame> appFrames = StackWalker.getInstance().walk(frames -> frames
+                .filter(frame -> frame.getClassName().startsWith(APP_PACKAGE) && !RECORDING_CLASSES.contains(frame.getClassName()))
+                .toList());
+        return appFrames.stream()
+                .filter(frame -> frame.getClassName().equals(RecipeService.class.getName()))
+                .findFirst()
+                .or(() -> appFrames.stream().findFirst()) // not called through the service, like the scheduled jobs
+                .map(frame -> frame.getClassName().substring(frame.getClassName().lastIndexOf('.') + 1) + "." + frame.getMethodName())
+                .orElse("unknown");
+    }
+
+}
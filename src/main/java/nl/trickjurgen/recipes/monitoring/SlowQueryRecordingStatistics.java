@@ -0,0 +1,24 @@
+package nl.trickjurgen.recipes.monitoring;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.stat.internal.StatisticsImpl;
+
+/**
+ * hibernate statistics that also hand every slow statement (hibernate.log_slow_query) to the SlowQueryLog
+ */
+class SlowQueryRecordingStatistics extends StatisticsImpl {
+
+    private final SlowQueryLog slowQueryLog;
+
+    SlowQueryRecordingStatistics(SessionFactoryImplementor sessionFactory, SlowQueryLog slowQueryLog) {
+        super(sessionFactory);
+        this.slowQueryLog = slowQueryLog;
+    }
+
+    @Override
+    public void slowQuery(String sql, long executionTime) {
+        super.slowQuery(sql, executionTime);
+        slowQueryLog.record(sql, executionTime);
+    }
+
+}
@@ -0,0 +1,53 @@
+package nl.trickjurgen.recipes.monitoring;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * /actuator/traces: the most recent traces (newest first) with their duration, /actuator/traces/{traceId}: all spans
+ * of one trace (http request, service call, repository calls, jdbc statements) with their start offset, duration and
+ * attributes. A DELETE clears the list.
+ */
+@Component
+@Endpoint(id = "traces")
+public class TracesEndpoint {
+
+    public record TraceSummary(String traceId, String name, Instant start, long durationMicros, int spanCount) {
+    }
+
+    private final RecentTracesExporter recentTracesExporter;
+
+    @Autowired
+    public TracesEndpoint(RecentTracesExporter recentTracesExporter) {
+        this.recentTracesExporter = recentTracesExporter;
+    }
+
+    @ReadOperation
+    public List<TraceSummary> traces() {
+        return recentTracesExporter.getRecent().stream()
+                .map(trace -> new TraceSummary(trace.traceId(), trace.name(), trace.start(), trace.durationMicros(), trace.spanCount()))
+                .toList();
+    }
+
+    // null is answered with a 404
+    @ReadOperation
+    public RecentTracesExporter.TraceView trace(@Selector final String traceId) {
+        return recentTracesExporter.getRecent().stream()
+                .filter(trace -> trace.traceId().equals(traceId))
+                .findFirst()
+                .orElse(null);
+    }
+
+    @DeleteOperation
+    public void clear() {
+        recentTracesExporter.clear();
+    }
+
+}
@@ -0,0 +1,38 @@
+package nl.trickjurgen.recipes.monitoring;
+
+import io.micrometer.observation.ObservationPredicate;
+import net.ttddyy.observation.tracing.DataSourceBaseContext;
+import nl.trickjurgen.recipes.service.RecipeChangeDispatcher;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.server.observation.ServerRequestObservationContext;
+import org.springframework.scheduling.support.ScheduledTaskObservationContext;
+
+/**
+ * keeps background noise out of the traces: actuator requests (health probes, reading the traces) and the outbox poll
+ * (twice a second) are not traced, and repository calls and jdbc statements are only traced as part of a traced
+ * operation, not each as a trace of its own.
+ */
+@Configuration(proxyBeanMethods = false)
+public class TracingConfig {
+
+    @Bean
+    public ObservationPredicate noActuatorRequestObservations() {
+        return (name, context) -> !(context instanceof ServerRequestObservationContext request
+                && request.getCarrier().getRequestURI().startsWith("/actuator"));
+    }
+
+    @Bean
+    public ObservationPredicate noOutboxPollObservations() {
+        return (name, context) -> !(context instanceof ScheduledTaskObservationContext task
+                && RecipeChangeDispatcher.class.isAssignableFrom(task.getTargetClass())
+                && "scheduledDispatch".equals(task.getMethod().getName()));
+    }
+
+    @Bean
+    public ObservationPredicate noObservationsOutsideAnOperation() {
+        return (name, context) -> context.getParentObservation() != null
+                || !(RecipeObservationAspect.REPOSITORY_OBSERVATION.equals(name) || context instanceof DataSourceBaseContext);
+    }
+
+}
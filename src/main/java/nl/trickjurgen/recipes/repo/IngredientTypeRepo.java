@@ -1,12 +1,46 @@
 package nl.trickjurgen.recipes.repo;
 
+import jakarta.persistence.LockModeType;
 import nl.trickjurgen.recipes.datamodel.IngredientType;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface IngredientTypeRepo  extends JpaRepository<IngredientType, Long> {
     Optional<IngredientType> findByName(String name);
+
+    // shared lock on the found types until the transaction ends, so the cleanup can't delete a type that is being reused
+    @Lock(LockModeType.PESSIMISTIC_READ)
+    List<IngredientType> findAndLockByNameIn(Collection<String> names);
+
+    // the types the given recipes use
+    @Query("select distinct t from Recipe r join r.ingredients i join i.ingredientType t where r.id in :recipeIds")
+    List<IngredientType> findUsedByRecipeIdIn(@Param("recipeIds") Collection<Long> recipeIds);
+
+    // types newer than the given id, a range on the primary key
+    List<IngredientType> findByIdGreaterThan(long afterId);
+
+    // ids of ingredient types no ingredient refers to, in id order after the given id (keyset batches)
+    @Query("select t.id from IngredientType t where t.id > :afterId "
+            + "and not exists (select i.id from Ingredient i where i.ingredientType = t) order by t.id")
+    List<Long> findUnusedIdsAfter(@Param("afterId") long afterId, Limit limit);
+
+    // the ones of the given ids that (still) exist
+    @Query("select t.id from IngredientType t where t.id in :ids")
+    List<Long> findIdsIn(@Param("ids") Collection<Long> ids);
+
+    // usage is checked again in the delete itself, a type that got used in the meantime is kept
+    @Modifying
+    @Query("delete from IngredientType t where t.id in :ids "
+            + "and not exists (select i.id from Ingredient i where i.ingredientType = t)")
+    int deleteUnusedByIdIn(@Param("ids") Collection<Long> ids);
 }
@@ -0,0 +1,33 @@
+package nl.trickjurgen.recipes.repo;
+
+import nl.trickjurgen.recipes.datamodel.RecipeChangeEvent;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface RecipeChangeEventRepo extends JpaRepository<RecipeChangeEvent, Long> {
+
+    // next committed events after the given id; a slower transaction may still commit a lower id later
+    List<RecipeChangeEvent> findByIdGreaterThanOrderById(long afterId, Limit limit);
+
+    // the ones of these ids committed by now, for the gaps the dispatcher is waiting for
+    List<RecipeChangeEvent> findByIdInOrderById(Collection<Long> ids);
+
+    // where a fresh dispatcher starts: the newest event written before the given time
+    @Query("select coalesce(max(e.id), 0) from RecipeChangeEvent e where e.createdAt < :before")
+    long findMaxIdCreatedBefore(@Param("before") Instant before);
+
+    @Transactional
+    @Modifying
+    @Query("delete from RecipeChangeEvent e where e.createdAt < :before")
+    int deleteCreatedBefore(@Param("before") Instant before);
+}
@@ -0,0 +1,31 @@
+package nl.trickjurgen.recipes.repo;
+
+import nl.trickjurgen.recipes.datamodel.Recipe;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * aggregate (count) and id queries over the recipes matching a filter, these never load recipe entities
+ */
+public interface RecipeFacetRepo {
+
+    record NameCount(String name, long count) {
+    }
+
+    Map<Boolean, Long> countPerVegetarian(Specification<Recipe> filter);
+
+    Map<Integer, Long> countPerServings(Specification<Recipe> filter);
+
+    /**
+     * @return the most used ingredient (type) names in the matching recipes, most used first
+     */
+    List<NameCount> countTopIngredients(Specification<Recipe> filter, int limit);
+
+    /**
+     * @return the ids of the first matching recipes, in id order
+     */
+    List<Long> findMatchingIds(Specification<Recipe> filter, int limit);
+
+}
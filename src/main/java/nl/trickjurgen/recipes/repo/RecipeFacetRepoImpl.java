@@ -0,0 +1,84 @@
+package nl.trickjurgen.recipes.repo;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Root;
+import nl.trickjurgen.recipes.datamodel.Ingredient;
+import nl.trickjurgen.recipes.datamodel.IngredientType;
+import nl.trickjurgen.recipes.datamodel.Recipe;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+// picked up by spring data as implementation of the RecipeFacetRepo fragment of RecipeRepo
+class RecipeFacetRepoImpl implements RecipeFacetRepo {
+
+    private final EntityManager entityManager;
+
+    RecipeFacetRepoImpl(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    @Override
+    public Map<Boolean, Long> countPerVegetarian(final Specification<Recipe> filter) {
+        return countPerRecipeField(filter, "isVegetarian", Boolean.class);
+    }
+
+    @Override
+    public Map<Integer, Long> countPerServings(final Specification<Recipe> filter) {
+        return countPerRecipeField(filter, "servings", Integer.class);
+    }
+
+    private <T extends Comparable<T>> Map<T, Long> countPerRecipeField(final Specification<Recipe> filter,
+                                                                       final String field, final Class<T> type) {
+        final CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        final CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        final Root<Recipe> recipe = query.from(Recipe.class);
+        final Path<T> value = recipe.get(field);
+        final Expression<Long> count = cb.count(recipe);
+        query.multiselect(value, count)
+                .where(filter.toPredicate(recipe, query, cb))
+                .groupBy(value);
+        return entityManager.createQuery(query).getResultList().stream()
+                .collect(Collectors.toMap(row -> row.get(value), row -> row.get(count), Long::sum, TreeMap::new));
+    }
+
+    @Override
+    public List<NameCount> countTopIngredients(final Specification<Recipe> filter, final int limit) {
+        final CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        final CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        final Root<Recipe> recipe = query.from(Recipe.class);
+        final Join<Recipe, Ingredient> ingredient = recipe.join("ingredients");
+        final Join<Ingredient, IngredientType> type = ingredient.join("ingredientType");
+        final Path<String> name = type.get("name");
+        final Expression<Long> count = cb.countDistinct(recipe);
+        query.multiselect(name, count)
+                .where(filter.toPredicate(recipe, query, cb))
+                .groupBy(name)
+                .orderBy(cb.desc(count), cb.asc(name));
+        return entityManager.createQuery(query).setMaxResults(limit).getResultList().stream()
+                .map(row -> new NameCount(row.get(name), row.get(count)))
+                .toList();
+    }
+
+    @Override
+    public List<Long> findMatchingIds(final Specification<Recipe> filter, final int limit) {
+        final CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        final CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        final Root<Recipe> recipe = query.from(Recipe.class);
+        final Path<Long> id = recipe.get("id");
+        query.select(id)
+                .where(filter.toPredicate(recipe, query, cb))
+                .orderBy(cb.asc(id));
+        return entityManager.createQuery(query).setMaxResults(limit).getResultList();
+    }
+
+}
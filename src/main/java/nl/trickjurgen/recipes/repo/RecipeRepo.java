@@ -1,13 +1,75 @@
 package nl.trickjurgen.recipes.repo;
 
+import jakarta.persistence.QueryHint;
 import nl.trickjurgen.recipes.datamodel.Recipe;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
 
 @Repository
-public interface RecipeRepo extends JpaRepository<Recipe, Long> {
+public interface RecipeRepo extends JpaRepository<Recipe, Long>, RecipeFacetRepo {
     Optional<Recipe> findByName(String name);
 
+    // newest first, for the cache warm-up
+    @Query("select r.id from Recipe r order by r.id desc")
+    List<Long> findRecentIds(Limit limit);
+
+    // one select for the recipes with instructions, their ingredients and ingredient types (no lazy loading per recipe).
+    // read-only entities: also used outside a (read-only) transaction by the outbox dispatcher
+    @EntityGraph(attributePaths = {"instructions", "ingredients", "ingredients.ingredientType"})
+    @QueryHints(@QueryHint(name = HINT_READ_ONLY, value = "true"))
+    @Query("select distinct r from Recipe r where r.id in :ids")
+    List<Recipe> findAllWithIngredientsByIdIn(@Param("ids") Collection<Long> ids);
+
+    // one recipe with instructions, ingredients and ingredient types in one select
+    @EntityGraph(attributePaths = {"instructions", "ingredients", "ingredients.ingredientType"})
+    Optional<Recipe> findWithIngredientsById(Long id);
+
+    // instructions are lazy, use this when all of them are needed anyway (one select instead of one per recipe)
+    @EntityGraph(attributePaths = "instructions")
+    List<Recipe> findAllWithInstructionsBy();
+
+    // searches on ingredient names: all recipes with their ingredients in one select (instead of a lazy load per recipe)
+    @EntityGraph(attributePaths = {"ingredients", "ingredients.ingredientType"})
+    List<Recipe> findAllWithIngredientsBy();
+
+    // like findAllWithIngredientsBy, including the (lazy) instructions
+    @EntityGraph(attributePaths = {"instructions", "ingredients", "ingredients.ingredientType"})
+    List<Recipe> findAllWithInstructionsAndIngredientsBy();
+
+    // cursor over all recipes in id order, to be consumed inside a transaction and closed after use
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "50"))
+    @Query("select r from Recipe r order by r.id")
+    Stream<Recipe> streamAllBy();
+
+    // cursor like streamAllBy, including the (lazy) instructions
+    @EntityGraph(attributePaths = "instructions")
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "50"))
+    @Query("select r from Recipe r order by r.id")
+    Stream<Recipe> streamAllWithInstructionsBy();
+
+    // cursors like streamAllBy, including the ingredients: one row per ingredient, hibernate puts a recipe together from
+    // consecutive rows only, so the order by id is needed, without it a recipe can come out split or twice
+    @EntityGraph(attributePaths = {"ingredients", "ingredients.ingredientType"})
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "50"))
+    @Query("select r from Recipe r order by r.id")
+    Stream<Recipe> streamAllWithIngredientsBy();
+
+    @EntityGraph(attributePaths = {"instructions", "ingredients", "ingredients.ingredientType"})
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "50"))
+    @Query("select r from Recipe r order by r.id")
+    Stream<Recipe> streamAllWithInstructionsAndIngredientsBy();
+
 }
@@ -0,0 +1,82 @@
+package nl.trickjurgen.recipes.repo;
+
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Subquery;
+import nl.trickjurgen.recipes.datamodel.Ingredient;
+import nl.trickjurgen.recipes.datamodel.Recipe;
+import org.hibernate.query.criteria.JpaExpression;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * the recipe search criteria as sql (criteria api) conditions, for queries that should not load the recipes themselves
+ */
+public class RecipeSpecifications {
+
+    // not the usual backslash, mysql would read that as the escape of the string literal itself
+    public static final char LIKE_ESCAPE = '!';
+
+    private RecipeSpecifications() {
+    }
+
+    /**
+     * same criteria as the recipe search, all optional (null or empty means no condition). The ingredients are given
+     * as ingredient type ids, as resolved by the IngredientTypeIndex
+     *
+     * @param includedTypeIds per included ingredient the ids of its types, a recipe needs one of each set
+     * @param excludedTypeIds a recipe may use none of these types
+     */
+    public static Specification<Recipe> matching(final Boolean isVeggie, final Integer minServing,
+                                                 final Integer maxServing, final List<? extends Collection<Long>> includedTypeIds,
+                                                 final Collection<Long> excludedTypeIds, final String partOfInstructions) {
+        return (root, query, cb) -> {
+            final List<Predicate> conditions = new ArrayList<>();
+            if (isVeggie != null) conditions.add(cb.equal(root.get("isVegetarian"), isVeggie));
+            if (minServing != null) conditions.add(cb.greaterThanOrEqualTo(root.get("servings"), minServing));
+            if (maxServing != null) conditions.add(cb.lessThanOrEqualTo(root.get("servings"), maxServing));
+            if (includedTypeIds != null) includedTypeIds.forEach(typeIds -> conditions.add(typeIds.isEmpty() ? cb.disjunction()
+                    : cb.exists(ingredientOfType(root, query, cb, typeIds))));
+            if (excludedTypeIds != null && !excludedTypeIds.isEmpty()) {
+                conditions.add(cb.not(cb.exists(ingredientOfType(root, query, cb, excludedTypeIds))));
+            }
+            if (partOfInstructions != null) {
+                // instructions is a lob (clob/text), cast it to a plain string so lower() is allowed on it
+                final Expression<String> instructions = ((JpaExpression<?>) root.get("instructions")).asString();
+                conditions.add(cb.like(cb.lower(instructions), containsPattern(partOfInstructions), LIKE_ESCAPE));
+            }
+            return cb.and(conditions.toArray(Predicate[]::new));
+        };
+    }
+
+    // on the foreign key of ingredients, no join with the types needed
+    private static Subquery<Integer> ingredientOfType(final Root<Recipe> root, final CriteriaQuery<?> query,
+                                                      final CriteriaBuilder cb, final Collection<Long> typeIds) {
+        final Subquery<Integer> subquery = query.subquery(Integer.class);
+        final Root<Recipe> sameRecipe = subquery.correlate(root);
+        final Join<Recipe, Ingredient> ingredient = sameRecipe.join("ingredients");
+        return subquery.select(cb.literal(1)).where(ingredient.get("ingredientType").get("id").in(typeIds));
+    }
+
+    /**
+     * a like pattern for the text anywhere, with the wildcards in the text escaped (with LIKE_ESCAPE), so it matches
+     * what String.contains matches: "50%" only finds "50%", "_" only an underscore
+     */
+    public static String containsPattern(final String text) {
+        final StringBuilder pattern = new StringBuilder("%");
+        for (char c : text.toLowerCase(Locale.ROOT).toCharArray()) {
+            if (c == '%' || c == '_' || c == LIKE_ESCAPE) pattern.append(LIKE_ESCAPE);
+            pattern.append(c);
+        }
+        return pattern.append('%').toString();
+    }
+
+}
@@ -0,0 +1,15 @@
+package nl.trickjurgen.recipes.service;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * marks a read method whose concurrent calls with equal arguments may share one execution and its result (see
+ * RequestCoalescer). Only for methods without side effects whose result is not changed by the callers.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Coalesced {
+}
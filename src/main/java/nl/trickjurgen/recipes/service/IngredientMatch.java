@@ -0,0 +1,35 @@
+package nl.trickjurgen.recipes.service;
+
+import nl.trickjurgen.recipes.exception.RecipeParameterException;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.stream.Collectors;
+
+/**
+ * how an included or excluded ingredient of a search is matched against the ingredient type names (IngredientTypeIndex)
+ */
+public enum IngredientMatch {
+
+    // the whole name, ignoring case
+    EXACT,
+    // the term anywhere in the name, ignoring case (default)
+    SUBSTRING,
+    // like SUBSTRING, plus names that look like the term (trigram similarity), for typos and plurals
+    FUZZY;
+
+    /**
+     * @param value exact, substring or fuzzy in any case; null or blank for the default
+     * @throws RecipeParameterException for any other value
+     */
+    public static IngredientMatch fromParam(final String value) {
+        if (value == null || value.isBlank()) return SUBSTRING;
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new RecipeParameterException("ingredientMatch should be one of " + Arrays.stream(values())
+                    .map(match -> match.name().toLowerCase(Locale.ROOT)).collect(Collectors.joining(", ")));
+        }
+    }
+
+}
@@ -0,0 +1,105 @@
+package nl.trickjurgen.recipes.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import nl.trickjurgen.recipes.repo.IngredientTypeRepo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * deletes ingredient types that no ingredient refers to anymore, they are left behind when recipe updates and deletes
+ * remove ingredients. Runs on a schedule, in batches of ids; each batch is one set-based delete in its own short
+ * transaction. A type that gets (re)used while the job runs is kept: the delete checks usage again, and recipe writes
+ * hold a shared lock on the types they reuse until they are stored (see IngredientTypeRepo.findAndLockByNameIn).
+ * The deleted types are taken out of the ingredient index once their batch is committed.
+ */
+@Service
+public class IngredientTypeCleanupService {
+
+    private final IngredientTypeRepo ingredientTypeRepo;
+    private final IngredientTypeIndex ingredientTypeIndex;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final Counter deletedCounter;
+    private final Counter skippedBatchCounter;
+    private final Timer runTimer;
+
+    private final Logger logger = LoggerFactory.getLogger(IngredientTypeCleanupService.class);
+
+    @Autowired
+    public IngredientTypeCleanupService(IngredientTypeRepo ingredientTypeRepo, IngredientTypeIndex ingredientTypeIndex,
+                                        PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+                                        @Value("${recipes.ingredient-type-cleanup.batch-size:500}") int batchSize) {
+        this.ingredientTypeRepo = ingredientTypeRepo;
+        this.ingredientTypeIndex = ingredientTypeIndex;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        this.deletedCounter = Counter.builder("recipes.ingredienttypes.cleanup.deleted")
+                .description("unused ingredient types deleted").register(meterRegistry);
+        this.skippedBatchCounter = Counter.builder("recipes.ingredienttypes.cleanup.skipped")
+                .description("cleanup batches skipped because of a database error, retried next run").register(meterRegistry);
+        this.runTimer = Timer.builder("recipes.ingredienttypes.cleanup")
+                .description("duration of a cleanup run").register(meterRegistry);
+    }
+
+    @Scheduled(initialDelayString = "${recipes.ingredient-type-cleanup.initial-delay:PT5M}",
+            fixedDelayString = "${recipes.ingredient-type-cleanup.delay:PT1H}")
+    public void scheduledCleanup() {
+        deleteUnusedIngredientTypes();
+    }
+
+    /**
+     * @return number of ingredient types deleted in this run
+     */
+    public int deleteUnusedIngredientTypes() {
+        final Integer deleted = runTimer.record(() -> {
+            int total = 0;
+            long afterId = 0L;
+            List<Long> candidates;
+            do {
+                candidates = ingredientTypeRepo.findUnusedIdsAfter(afterId, Limit.of(batchSize));
+                if (candidates.isEmpty()) break;
+                afterId = candidates.getLast();
+                total += deleteBatch(candidates);
+            } while (candidates.size() == batchSize);
+            return total;
+        });
+        logger.info("ingredient type cleanup deleted {} unused type(s)", deleted);
+        return deleted == null ? 0 : deleted;
+    }
+
+    private int deleteBatch(final List<Long> ids) {
+        try {
+            final Integer deleted = transactionTemplate.execute(status -> {
+                final int count = ingredientTypeRepo.deleteUnusedByIdIn(ids);
+                if (count > 0) {
+                    // the ones still there got used in the meantime
+                    final Set<Long> kept = Set.copyOf(ingredientTypeRepo.findIdsIn(ids));
+                    ingredientTypeIndex.removeDeleted(ids.stream().filter(id -> !kept.contains(id)).toList());
+                }
+                return count;
+            });
+            final int count = deleted == null ? 0 : deleted;
+            deletedCounter.increment(count);
+            return count;
+        } catch (DataAccessException e) {
+            // like a lock timeout against a recipe write, these types are simply tried again next run
+            skippedBatchCounter.increment();
+            logger.warn("skipped cleanup of {} ingredient type(s): {}", ids.size(), e.getMessage());
+            return 0;
+        }
+    }
+
+}
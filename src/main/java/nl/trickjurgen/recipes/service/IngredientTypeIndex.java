@@ -0,0 +1,346 @@
+package nl.trickjurgen.recipes.service;
+
+import nl.trickjurgen.recipes.datamodel.IngredientType;
+import nl.trickjurgen.recipes.datamodel.RecipeChangeEvent;
+import nl.trickjurgen.recipes.repo.IngredientTypeRepo;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+/**
+ * in-memory trigram index over the ingredient type names, so a search term is resolved to the ids of the matching
+ * types without scanning (like sql LIKE '%term%' would) and without matching across names (like contains on all names
+ * of a recipe joined did). Substring matches are found by intersecting the postings of the trigrams of the term,
+ * fuzzy matches by trigram similarity (shared / all distinct trigrams of the words, as postgres pg_trgm): a one word
+ * term to the words of the names, a term of more words to the whole names.
+ * Filled from the database once (warm-up, or the first search), then kept up to date by the writes of this instance
+ * (see addWritten) and by the recipe outbox for the writes of other instances. Types deleted by the cleanup are
+ * taken out after its commit (see removeDeleted); the ones the cleanup of another instance deleted stay until the
+ * index is loaded again, no recipe refers to them anymore.
+ */
+@Component
+public class IngredientTypeIndex implements RecipeChangeListener {
+
+    private final IngredientTypeRepo ingredientTypeRepo;
+    private final double fuzzyThreshold;
+    private final ReentrantLock loadLock = new ReentrantLock();
+    private volatile boolean loaded;
+    private final AtomicLong highestId = new AtomicLong();
+
+    private final Map<Long, IndexedType> typesById = new ConcurrentHashMap<>();
+    private final Map<String, Set<Long>> idsByName = new ConcurrentHashMap<>();
+    // trigrams of the whole names, for substring lookups
+    private final Map<String, Set<Long>> idsByTrigram = new ConcurrentHashMap<>();
+    // word trigrams of the words of the names, for the similarity of a one word term
+    private final Map<String, Set<Term>> wordTermsByTrigram = new ConcurrentHashMap<>();
+    // word trigrams of the whole names, for the similarity of a term of more words
+    private final Map<String, Set<Term>> nameTermsByTrigram = new ConcurrentHashMap<>();
+
+    private record IndexedType(String name, String lowerCaseName) {
+    }
+
+    private static final IndexedType REMOVED = new IndexedType("", "");
+
+    private record Term(long typeId, String text, int trigrams) {
+    }
+
+    /**
+     * an ingredient type with its similarity to a search term, 1.0 for the same trigrams
+     */
+    public record ScoredType(long id, String name, double score) {
+    }
+
+    @Autowired
+    public IngredientTypeIndex(IngredientTypeRepo ingredientTypeRepo,
+                               @Value("${recipes.ingredient-index.fuzzy-threshold:0.4}") double fuzzyThreshold) {
+        this.ingredientTypeRepo = ingredientTypeRepo;
+        this.fuzzyThreshold = fuzzyThreshold;
+    }
+
+    /**
+     * a term the index has no type for is looked up in the database (see catchUp), so a type the index missed
+     * doesn't turn an include into an empty result or an exclude into no filter at all
+     *
+     * @return ids of the ingredient types matching the term, empty when none does
+     */
+    public Set<Long> resolve(final String term, final IngredientMatch match) {
+        ensureLoaded();
+        final String lowerCaseTerm = normalize(term);
+        if (lowerCaseTerm.isEmpty()) return Set.of();
+        final Set<Long> ids = lookup(lowerCaseTerm, match);
+        if (!ids.isEmpty()) return ids;
+        catchUp();
+        return lookup(lowerCaseTerm, match);
+    }
+
+    private Set<Long> lookup(final String lowerCaseTerm, final IngredientMatch match) {
+        return switch (match) {
+            case EXACT -> Set.copyOf(idsByName.getOrDefault(lowerCaseTerm, Set.of()));
+            case SUBSTRING -> containing(lowerCaseTerm);
+            case FUZZY -> {
+                final Set<Long> ids = new HashSet<>(containing(lowerCaseTerm));
+                ids.addAll(similarity(lowerCaseTerm).keySet());
+                yield ids;
+            }
+        };
+    }
+
+    /**
+     * the ingredient types a fuzzy search would match on the term, most similar first
+     */
+    public List<ScoredType> findSimilar(final String term, final int limit) {
+        final Set<Long> ids = resolve(term, IngredientMatch.FUZZY); // catches up on a miss
+        if (ids.isEmpty()) return List.of();
+        final Map<Long, Double> scores = similarity(normalize(term));
+        return ids.stream()
+                .map(id -> new ScoredType(id, typesById.getOrDefault(id, REMOVED).name(), scores.getOrDefault(id, 0.0)))
+                .filter(type -> !type.name().isEmpty())
+                .sorted(Comparator.comparingDouble(ScoredType::score).reversed().thenComparing(ScoredType::name))
+                .limit(limit)
+                .toList();
+    }
+
+    /**
+     * @return the name of an indexed ingredient type (for the warm-up), empty when there is none
+     */
+    public Optional<String> anyName() {
+        ensureLoaded();
+        return typesById.values().stream().map(IndexedType::name).filter(name -> !name.isEmpty()).findAny();
+    }
+
+    /**
+     * load all ingredient types, unless done before
+     */
+    public void ensureLoaded() {
+        if (loaded) return;
+        loadLock.lock();
+        try {
+            if (!loaded) {
+                ingredientTypeRepo.findAll().forEach(this::add);
+                loaded = true;
+            }
+        } finally {
+            loadLock.unlock();
+        }
+    }
+
+    /**
+     * the database has the last word: index the types newer than the newest indexed one (created behind the back of
+     * the index, on another instance whose change didn't reach this one yet). Only for a term the index has no type
+     * for, and a range on the primary key, so a miss costs one cheap query, not a scan of all names. An id given out
+     * again comes in with the recipe that uses it (see onRecipeChanges).
+     */
+    private void catchUp() {
+        ingredientTypeRepo.findByIdGreaterThan(highestId.get()).forEach(this::add);
+    }
+
+    /**
+     * index the types the current transaction stored right away, so its own searches find them, and take the ones it
+     * added out again when it rolls back. Other transactions don't see recipes using them before the commit, so for
+     * them the new ids match nothing.
+     */
+    public void addWritten(final Collection<IngredientType> types) {
+        final List<IngredientType> added = types.stream()
+                .map(type -> IngredientType.builder().id(type.getId()).name(type.getName()).build())
+                .filter(this::add)
+                .toList();
+        if (added.isEmpty() || !TransactionSynchronizationManager.isSynchronizationActive()) return;
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(final int status) {
+                if (status != STATUS_COMMITTED) added.forEach(type -> remove(type.getId()));
+            }
+        });
+    }
+
+    /**
+     * take the types the cleanup deleted out, so they are no longer suggested. In a transaction only once it is
+     * committed: a rollback leaves them in the database.
+     */
+    public void removeDeleted(final Collection<Long> ids) {
+        if (ids.isEmpty()) return;
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            ids.forEach(this::remove);
+            return;
+        }
+        final List<Long> deleted = List.copyOf(ids);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                deleted.forEach(IngredientTypeIndex.this::remove);
+            }
+        });
+    }
+
+    // types added by writes on other instances, through the recipes that use them
+    @Override
+    public void onRecipeChanges(final List<RecipeChangeEvent> events) {
+        if (!loaded) return; // the full load gets them
+        final Set<Long> changedIds = events.stream().map(RecipeChangeEvent::getRecipeId).collect(Collectors.toSet());
+        ingredientTypeRepo.findUsedByRecipeIdIn(changedIds).forEach(this::add);
+    }
+
+    // loaded again on first use
+    @Override
+    public void reset() {
+        loadLock.lock();
+        try {
+            loaded = false;
+            highestId.set(0);
+            typesById.clear();
+            idsByName.clear();
+            idsByTrigram.clear();
+            wordTermsByTrigram.clear();
+            nameTermsByTrigram.clear();
+        } finally {
+            loadLock.unlock();
+        }
+    }
+
+    // false when the type was indexed already. Writes are rare, they take turns; lookups don't wait for them
+    private synchronized boolean add(final IngredientType type) {
+        if (type.getId() == null || type.getName() == null) return false;
+        final long id = type.getId();
+        final IndexedType previous = typesById.get(id);
+        if (previous != null) {
+            if (previous.name().equals(type.getName())) return false;
+            // a type keeps its name, so the id was given out again after the old type was deleted
+            remove(id);
+        }
+        final String lowerCaseName = normalize(type.getName());
+        typesById.put(id, new IndexedType(type.getName(), lowerCaseName));
+        highestId.accumulateAndGet(id, Math::max);
+        idsByName.computeIfAbsent(lowerCaseName, name -> ConcurrentHashMap.newKeySet()).add(id);
+        paddedTrigrams(lowerCaseName).forEach(trigram -> idsByTrigram.computeIfAbsent(trigram, t -> ConcurrentHashMap.newKeySet()).add(id));
+        wordTerms(id, lowerCaseName).forEach(term -> wordTrigrams(term.text())
+                .forEach(trigram -> wordTermsByTrigram.computeIfAbsent(trigram, t -> ConcurrentHashMap.newKeySet()).add(term)));
+        final Term nameTerm = nameTerm(id, lowerCaseName);
+        wordTrigrams(lowerCaseName).forEach(trigram -> nameTermsByTrigram.computeIfAbsent(trigram, t -> ConcurrentHashMap.newKeySet()).add(nameTerm));
+        return true;
+    }
+
+    // empty postings are left behind, there are few: rolled back new types and the unused ones the cleanup deleted
+    private synchronized void remove(final long id) {
+        final IndexedType indexed = typesById.remove(id);
+        if (indexed == null) return;
+        removeFrom(idsByName, indexed.lowerCaseName(), id);
+        paddedTrigrams(indexed.lowerCaseName()).forEach(trigram -> removeFrom(idsByTrigram, trigram, id));
+        wordTerms(id, indexed.lowerCaseName()).forEach(term -> wordTrigrams(term.text())
+                .forEach(trigram -> removeFrom(wordTermsByTrigram, trigram, term)));
+        final Term nameTerm = nameTerm(id, indexed.lowerCaseName());
+        wordTrigrams(indexed.lowerCaseName()).forEach(trigram -> removeFrom(nameTermsByTrigram, trigram, nameTerm));
+    }
+
+    // lower case, empty for a type removed in the meantime
+    private String nameOf(final long id) {
+        return typesById.getOrDefault(id, REMOVED).lowerCaseName();
+    }
+
+    private static <T> void removeFrom(final Map<String, Set<T>> postings, final String key, final T value) {
+        final Set<T> posting = postings.get(key);
+        if (posting != null) posting.remove(value);
+    }
+
+    private static List<Term> wordTerms(final long typeId, final String lowerCaseName) {
+        return words(lowerCaseName).stream().map(word -> new Term(typeId, word, wordTrigrams(word).size())).toList();
+    }
+
+    private static Term nameTerm(final long typeId, final String lowerCaseName) {
+        return new Term(typeId, lowerCaseName, wordTrigrams(lowerCaseName).size());
+    }
+
+    private Set<Long> containing(final String lowerCaseTerm) {
+        final Set<String> trigrams = innerTrigrams(lowerCaseTerm);
+        if (trigrams.isEmpty()) { // shorter than a trigram, check every name
+            return typesById.entrySet().stream()
+                    .filter(entry -> entry.getValue().lowerCaseName().contains(lowerCaseTerm))
+                    .map(Map.Entry::getKey)
+                    .collect(Collectors.toSet());
+        }
+        final List<Set<Long>> postings = trigrams.stream()
+                .map(trigram -> idsByTrigram.getOrDefault(trigram, Set.of()))
+                .sorted(Comparator.comparingInt(Set::size))
+                .toList();
+        // all trigrams present doesn't mean in this order, so check the candidates
+        return postings.getFirst().stream()
+                .filter(id -> postings.stream().allMatch(posting -> posting.contains(id)))
+                .filter(id -> nameOf(id).contains(lowerCaseTerm))
+                .collect(Collectors.toSet());
+    }
+
+    /**
+     * best similarity per type over its terms, for the types at or above the threshold. A term with similarity t shares
+     * at least t * (trigrams of the search term) of them, so it is in one of the postings of the rarest
+     * (trigrams - that + 1) trigrams (prefix filter): the common ones ("  s", "ed ") are only used to count.
+     */
+    private Map<Long, Double> similarity(final String lowerCaseTerm) {
+        final Set<String> trigrams = wordTrigrams(lowerCaseTerm);
+        // "smoked papprika" should not match every smoked ingredient on the one word
+        final Map<String, Set<Term>> termsByTrigram = words(lowerCaseTerm).size() > 1 ? nameTermsByTrigram : wordTermsByTrigram;
+        final List<Set<Term>> postings = trigrams.stream()
+                .map(trigram -> termsByTrigram.getOrDefault(trigram, Set.of()))
+                .sorted(Comparator.comparingInt(Set::size))
+                .toList();
+        final int minShared = Math.max(1, (int) Math.ceil(fuzzyThreshold * trigrams.size()));
+        final int candidatePostings = Math.max(0, postings.size() - minShared + 1);
+        final Set<Term> checked = new HashSet<>();
+        final Map<Long, Double> scores = new HashMap<>();
+        for (Set<Term> posting : postings.subList(0, candidatePostings)) {
+            for (Term term : posting) {
+                // too short or too long to reach the threshold, or seen in an earlier posting
+                if (term.trigrams() < minShared || term.trigrams() * fuzzyThreshold > trigrams.size() || !checked.add(term)) continue;
+                int shared = 0;
+                for (Set<Term> other : postings) {
+                    if (other.contains(term)) shared++;
+                }
+                final double score = (double) shared / (trigrams.size() + term.trigrams() - shared);
+                if (score >= fuzzyThreshold) scores.merge(term.typeId(), score, Math::max);
+            }
+        }
+        return scores;
+    }
+
+    private static String normalize(final String text) {
+        return text == null ? "" : text.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static List<String> words(final String text) {
+        return Arrays.stream(text.split("[^\\p{L}\\p{N}]+")).filter(word -> !word.isEmpty()).toList();
+    }
+
+    // two spaces before and one after, so the start of a word weighs more than its end (as pg_trgm)
+    private static Set<String> paddedTrigrams(final String text) {
+        return innerTrigrams("  " + text + " ");
+    }
+
+    // the padded trigrams of every word, none across words (as pg_trgm)
+    private static Set<String> wordTrigrams(final String text) {
+        return words(text).stream().flatMap(word -> paddedTrigrams(word).stream()).collect(Collectors.toSet());
+    }
+
+    private static Set<String> innerTrigrams(final String text) {
+        final Set<String> trigrams = new HashSet<>();
+        for (int i = 0; i + 3 <= text.length(); i++) {
+            trigrams.add(text.substring(i, i + 3));
+        }
+        return trigrams;
+    }
+
+}
@@ -0,0 +1,228 @@
+package nl.trickjurgen.recipes.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import nl.trickjurgen.recipes.datamodel.RecipeChangeEvent;
+import nl.trickjurgen.recipes.repo.RecipeChangeEventRepo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.ClassUtils;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * applies the recipe outbox to all RecipeChangeListeners, so recipe writes don't pay for maintaining derived state.
+ * Polls the outbox in batches in id order; every listener gets a batch on its own virtual thread. Progress is kept per
+ * listener: a batch that fails for a listener is retried on the next poll for that listener only, the others don't
+ * apply it again. After maxAttempts failures in a row the listener skips the events (logged with their ids, counted in
+ * recipes.outbox.skipped), so one broken listener doesn't stop the outbox for all; replayAll can apply them later.
+ * Ids are taken at insert and committed in any order, so a missing id below the newest one read may be a transaction
+ * that hasn't committed yet: such gaps are looked up again on every poll until they show up, or until gapTimeout after
+ * the event behind them was written (a rolled back transaction leaves a gap that never fills).
+ * The listeners keep their state in memory, so the position is too: a fresh instance has nothing to catch up on and
+ * starts at the events of the last gapTimeout, so a write that was still running while it started isn't missed
+ * (applying an event twice does no harm). Derived state can be rebuilt with replayAll, for the events still in the
+ * outbox (see retention).
+ */
+@Service
+public class RecipeChangeDispatcher {
+
+    private static final int MAX_OPEN_GAPS = 10_000;
+
+    private final RecipeChangeEventRepo recipeChangeEventRepo;
+    private final List<RecipeChangeListener> listeners;
+    private final MeterRegistry meterRegistry;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final Duration gapTimeout;
+    private final Duration retention;
+    private final ExecutorService listenerExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private final ReentrantLock dispatchLock = new ReentrantLock();
+    // guarded by dispatchLock
+    private Long lastDispatchedId; // null until the first dispatch
+    private final SortedMap<Long, Instant> openGaps = new TreeMap<>(); // missing id -> given up after
+    // listeners that got further than lastDispatchedId, in a batch another listener failed
+    private final Map<RecipeChangeListener, Long> appliedUpTo = new HashMap<>();
+    private final Map<RecipeChangeListener, Integer> failedAttempts = new HashMap<>();
+
+    private final Logger logger = LoggerFactory.getLogger(RecipeChangeDispatcher.class);
+
+    @Autowired
+    public RecipeChangeDispatcher(RecipeChangeEventRepo recipeChangeEventRepo,
+                                  List<RecipeChangeListener> listeners, MeterRegistry meterRegistry,
+                                  @Value("${recipes.outbox.batch-size:100}") int batchSize,
+                                  @Value("${recipes.outbox.max-attempts:10}") int maxAttempts,
+                                  @Value("${recipes.outbox.gap-timeout:PT1M}") Duration gapTimeout,
+                                  @Value("${recipes.outbox.retention:P7D}") Duration retention) {
+        this.recipeChangeEventRepo = recipeChangeEventRepo;
+        this.listeners = listeners;
+        this.meterRegistry = meterRegistry;
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.gapTimeout = gapTimeout;
+        this.retention = retention;
+    }
+
+    @PreDestroy
+    void stopListenerThreads() {
+        listenerExecutor.shutdownNow();
+    }
+
+    @Scheduled(fixedDelayString = "${recipes.outbox.poll-delay:PT0.5S}")
+    public void scheduledDispatch() {
+        dispatchPending();
+    }
+
+    /**
+     * @return number of events dispatched
+     */
+    public int dispatchPending() {
+        dispatchLock.lock();
+        try {
+            if (lastDispatchedId == null) {
+                // not read while the context starts, so a startup without database (CDS training run) gets through
+                lastDispatchedId = recipeChangeEventRepo.findMaxIdCreatedBefore(Instant.now().minus(gapTimeout));
+            }
+            int dispatched = dispatchFilledGaps();
+            if (dispatched < 0) return 0;
+            List<RecipeChangeEvent> batch;
+            do {
+                batch = recipeChangeEventRepo.findByIdGreaterThanOrderById(lastDispatchedId, Limit.of(batchSize));
+                if (batch.isEmpty() || !dispatchToListeners(batch, false)) break;
+                trackGaps(batch);
+                lastDispatchedId = batch.getLast().getId();
+                dispatched += batch.size();
+            } while (batch.size() == batchSize);
+            return dispatched;
+        } finally {
+            dispatchLock.unlock();
+        }
+    }
+
+    // the events of open gaps that were committed by now; -1 when they couldn't be applied
+    private int dispatchFilledGaps() {
+        final Instant now = Instant.now();
+        openGaps.values().removeIf(givenUpAfter -> givenUpAfter.isBefore(now));
+        if (openGaps.isEmpty()) return 0;
+        final List<RecipeChangeEvent> filled = recipeChangeEventRepo.findByIdInOrderById(openGaps.keySet());
+        if (filled.isEmpty()) return 0;
+        if (!dispatchToListeners(filled, true)) return -1;
+        filled.forEach(event -> openGaps.remove(event.getId()));
+        return filled.size();
+    }
+
+    // ids missing from a batch (or before it) may still be committed, unless the event after them is too old for that
+    private void trackGaps(final List<RecipeChangeEvent> batch) {
+        long expected = lastDispatchedId + 1;
+        for (RecipeChangeEvent event : batch) {
+            final Instant givenUpAfter = event.getCreatedAt().plus(gapTimeout);
+            if (event.getId() > expected && givenUpAfter.isAfter(Instant.now())) {
+                if (openGaps.size() + (event.getId() - expected) > MAX_OPEN_GAPS) {
+                    logger.warn("recipe change events {}..{} missing, too many to wait for", expected, event.getId() - 1);
+                } else {
+                    for (long missing = expected; missing < event.getId(); missing++) openGaps.put(missing, givenUpAfter);
+                }
+            }
+            expected = event.getId() + 1;
+        }
+    }
+
+    /**
+     * reset all listeners and dispatch the outbox again from the first event
+     *
+     * @return number of events replayed
+     */
+    public int replayAll() {
+        dispatchLock.lock();
+        try {
+            listeners.forEach(RecipeChangeListener::reset);
+            lastDispatchedId = 0L;
+            openGaps.clear();
+            appliedUpTo.clear();
+            failedAttempts.clear();
+            final int replayed = dispatchPending();
+            logger.info("replayed {} recipe change event(s) to {} listener(s)", replayed, listeners.size());
+            return replayed;
+        } finally {
+            dispatchLock.unlock();
+        }
+    }
+
+    /**
+     * every listener gets the events it hasn't applied yet: of a batch the ones after its own position, filled gaps
+     * (before all positions) all of them, applying one twice does no harm
+     *
+     * @return false when a listener failed and has attempts left, the events are dispatched again next poll
+     */
+    private boolean dispatchToListeners(final List<RecipeChangeEvent> events, final boolean filledGaps) {
+        final Map<RecipeChangeListener, List<RecipeChangeEvent>> pendingPerListener = new HashMap<>();
+        for (RecipeChangeListener listener : listeners) {
+            final long position = Math.max(lastDispatchedId, appliedUpTo.getOrDefault(listener, 0L));
+            final List<RecipeChangeEvent> pending = filledGaps ? events
+                    : events.stream().filter(event -> event.getId() > position).toList();
+            if (!pending.isEmpty()) pendingPerListener.put(listener, pending);
+        }
+        final Map<RecipeChangeListener, Future<?>> results = new HashMap<>();
+        pendingPerListener.forEach((listener, pending) -> results.put(listener, listenerExecutor.submit(() -> listener.onRecipeChanges(pending))));
+        boolean allApplied = true;
+        for (Map.Entry<RecipeChangeListener, Future<?>> result : results.entrySet()) {
+            final RecipeChangeListener listener = result.getKey();
+            final List<RecipeChangeEvent> pending = pendingPerListener.get(listener);
+            try {
+                result.getValue().get();
+                failedAttempts.remove(listener);
+            } catch (ExecutionException e) {
+                final int attempts = failedAttempts.merge(listener, 1, Integer::sum);
+                if (attempts < maxAttempts) {
+                    logger.warn("recipe change events {}..{} not applied by {} (attempt {} of {}), retry next poll",
+                            pending.getFirst().getId(), pending.getLast().getId(), listenerName(listener), attempts, maxAttempts, e.getCause());
+                    allApplied = false;
+                    continue;
+                }
+                logger.error("recipe change events {} skipped by {} after {} failed attempts",
+                        pending.stream().map(RecipeChangeEvent::getId).toList(), listenerName(listener), attempts, e.getCause());
+                skippedCounter(listener).increment(pending.size());
+                failedAttempts.remove(listener);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            if (!filledGaps) appliedUpTo.put(listener, events.getLast().getId());
+        }
+        return allApplied;
+    }
+
+    private Counter skippedCounter(final RecipeChangeListener listener) {
+        return Counter.builder("recipes.outbox.skipped").tag("listener", listenerName(listener))
+                .description("recipe change events a listener gave up on after recipes.outbox.max-attempts failures")
+                .register(meterRegistry);
+    }
+
+    private static String listenerName(final RecipeChangeListener listener) {
+        return ClassUtils.getUserClass(listener).getSimpleName();
+    }
+
+    @Scheduled(cron = "${recipes.outbox.purge-cron:0 30 3 * * *}")
+    public void purgeOldEvents() {
+        final int purged = recipeChangeEventRepo.deleteCreatedBefore(Instant.now().minus(retention));
+        logger.info("purged {} recipe change event(s) older than {}", purged, retention);
+    }
+
+}
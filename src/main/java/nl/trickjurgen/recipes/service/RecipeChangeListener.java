@@ -0,0 +1,24 @@
+package nl.trickjurgen.recipes.service;
+
+import nl.trickjurgen.recipes.datamodel.RecipeChangeEvent;
+
+import java.util.List;
+
+/**
+ * derived state (caches, indexes) kept up to date from the recipe outbox by the RecipeChangeDispatcher.
+ * Events are delivered at least once and in outbox order, so handling them has to be idempotent.
+ */
+public interface RecipeChangeListener {
+
+    /**
+     * apply a batch of changes, called on a background (virtual) thread. Throwing makes the dispatcher retry the batch.
+     */
+    void onRecipeChanges(List<RecipeChangeEvent> events);
+
+    /**
+     * drop all derived state, the outbox is about to be replayed from the start
+     */
+    default void reset() {
+    }
+
+}
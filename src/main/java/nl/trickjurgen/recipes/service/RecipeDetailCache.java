@@ -0,0 +1,139 @@
+package nl.trickjurgen.recipes.service;
+
+import nl.trickjurgen.recipes.datamodel.RecipeChangeEvent;
+import nl.trickjurgen.recipes.dto.RecipeDto;
+import nl.trickjurgen.recipes.mapper.RecepAndIngrMapper;
+import nl.trickjurgen.recipes.repo.RecipeRepo;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * full recipes by id, for findRecipeById. Writes evict their recipe right after commit (read-your-writes),
+ * the outbox dispatcher then loads the new version from the primary in the background.
+ * An entry can also hold encoded forms of its recipe (like a compressed response body), they go with the entry.
+ * A read-through load takes a stamp before it reads: a put from a load that started before an evict of its recipe is
+ * dropped, it may have read the version from before the write.
+ */
+@Component
+public class RecipeDetailCache implements RecipeChangeListener {
+
+    private final RecipeRepo recipeRepo;
+    private final int maxEntries;
+    private static final int EVICTION_STRIPES = 1024;
+
+    private final Map<Long, CachedRecipe> recipesById = new ConcurrentHashMap<>();
+    // evictions per stripe of ids, a load only puts when there was none for its stripe since its stamp
+    private final AtomicLongArray evictions = new AtomicLongArray(EVICTION_STRIPES);
+
+    // a cached version of a recipe, with its encodings made so far
+    private record CachedRecipe(RecipeDto recipe, Map<String, byte[]> encodings) {
+        CachedRecipe(final RecipeDto recipe) {
+            this(recipe, new ConcurrentHashMap<>());
+        }
+    }
+
+    @Autowired
+    public RecipeDetailCache(RecipeRepo recipeRepo, @Value("${recipes.recipe-cache.max-entries:10000}") int maxEntries) {
+        this.recipeRepo = recipeRepo;
+        this.maxEntries = maxEntries;
+    }
+
+    public RecipeDto get(final Long id) {
+        final CachedRecipe cached = id == null ? null : recipesById.get(id);
+        return cached == null ? null : cached.recipe();
+    }
+
+    /**
+     * an encoded form of a cached recipe, made by the encoder once per cached version and kept with it
+     *
+     * @param recipe  the recipe as returned by get; only that exact (cached) version is encoded and kept
+     * @param format  name of the encoding, like "json+gzip"
+     * @return the encoded recipe, or null when this version of the recipe is not (or no longer) cached
+     */
+    public byte[] getEncoded(final RecipeDto recipe, final String format, final Function<RecipeDto, byte[]> encoder) {
+        final CachedRecipe cached = recipe.getId() == null ? null : recipesById.get(recipe.getId());
+        if (cached == null || cached.recipe() != recipe) return null;
+        return cached.encodings().computeIfAbsent(format, ignored -> encoder.apply(recipe));
+    }
+
+    /**
+     * for read-through: take before reading the recipe, pass to putIfAbsent
+     */
+    public long loadStamp(final Long id) {
+        return evictions.get(stripe(id));
+    }
+
+    /**
+     * for read-through on a cache miss. Doesn't replace an entry: the caller may have read a lagging replica,
+     * while an entry present by now was refreshed by the dispatcher from the primary. Doesn't put anything when the
+     * recipe was evicted since the stamp was taken
+     */
+    public void putIfAbsent(final RecipeDto recipe, final long loadStamp) {
+        final Long id = recipe.getId();
+        if (id == null || recipesById.size() >= maxEntries || loadStamp(id) != loadStamp) return;
+        final CachedRecipe entry = new CachedRecipe(recipe);
+        if (recipesById.putIfAbsent(id, entry) == null && loadStamp(id) != loadStamp) {
+            recipesById.remove(id, entry); // evicted while putting
+        }
+    }
+
+    private void put(final RecipeDto recipe) {
+        if (recipesById.size() < maxEntries || recipesById.containsKey(recipe.getId())) {
+            recipesById.put(recipe.getId(), new CachedRecipe(recipe));
+        }
+    }
+
+    /**
+     * evict once the current transaction commits, right away when there is none
+     */
+    public void evictAfterCommit(final Long id) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            evict(id);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                evict(id);
+            }
+        });
+    }
+
+    // the stamp first, so a put that checks it after the remove sees it changed
+    private void evict(final Long id) {
+        evictions.incrementAndGet(stripe(id));
+        recipesById.remove(id);
+    }
+
+    private static int stripe(final Long id) {
+        return (int) Math.floorMod(id, (long) EVICTION_STRIPES);
+    }
+
+    @Override
+    public void onRecipeChanges(final List<RecipeChangeEvent> events) {
+        final Set<Long> changedIds = events.stream().map(RecipeChangeEvent::getRecipeId).collect(Collectors.toSet());
+        changedIds.forEach(this::evict);
+        // reload what still exists in one query, deleted recipes are simply not found
+        recipeRepo.findAllWithIngredientsByIdIn(changedIds).stream()
+                .map(RecepAndIngrMapper::recipeToDto)
+                .forEach(this::put);
+    }
+
+    @Override
+    public void reset() {
+        for (int stripe = 0; stripe < EVICTION_STRIPES; stripe++) evictions.incrementAndGet(stripe);
+        recipesById.clear();
+    }
+
+}
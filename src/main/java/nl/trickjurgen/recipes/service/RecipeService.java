@@ -1,58 +1,153 @@
 package nl.trickjurgen.recipes.service;
 
+import jakarta.persistence.EntityManager;
 import nl.trickjurgen.recipes.datamodel.Ingredient;
 import nl.trickjurgen.recipes.datamodel.IngredientType;
 import nl.trickjurgen.recipes.datamodel.Recipe;
+import nl.trickjurgen.recipes.datamodel.RecipeChangeEvent;
+import nl.trickjurgen.recipes.datamodel.RecipeChangeType;
+import nl.trickjurgen.recipes.datasource.ReplicaOrPinnedPrimaryDataSource;
+import nl.trickjurgen.recipes.dto.IngredientCountDto;
+import nl.trickjurgen.recipes.dto.IngredientSuggestionDto;
 import nl.trickjurgen.recipes.dto.IngredientDto;
+import nl.trickjurgen.recipes.dto.RecipeBatchEntryDto;
 import nl.trickjurgen.recipes.dto.RecipeDto;
+import nl.trickjurgen.recipes.dto.RecipeFacetsDto;
 import nl.trickjurgen.recipes.dto.RecipeHeaderDto;
 import nl.trickjurgen.recipes.exception.DuplicateRecipeException;
 import nl.trickjurgen.recipes.exception.RecipeNotFoundException;
 import nl.trickjurgen.recipes.exception.RecipeParameterException;
 import nl.trickjurgen.recipes.mapper.RecepAndIngrMapper;
-import nl.trickjurgen.recipes.repo.IngredientRepo;
+import nl.trickjurgen.recipes.monitoring.SearchPhaseEvent;
 import nl.trickjurgen.recipes.repo.IngredientTypeRepo;
+import nl.trickjurgen.recipes.repo.RecipeChangeEventRepo;
 import nl.trickjurgen.recipes.repo.RecipeRepo;
+import nl.trickjurgen.recipes.repo.RecipeSpecifications;
 import nl.trickjurgen.recipes.utils.NameStringHelper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class RecipeService {
 
+    public static final int MAX_DETAIL_RESULTS = 100;
+    public static final int MAX_BATCH_GET_IDS = 100;
+    public static final int MAX_TOP_INGREDIENTS = 50;
+    public static final int MAX_INGREDIENT_SUGGESTIONS = 50;
+    private static final int DETAIL_FETCH_BATCH_SIZE = 10;
+    private static final int STREAM_CLEAR_INTERVAL = 50;
+
     private final RecipeRepo recipeRepo;
     private final IngredientTypeRepo ingredientTypeRepo;
-    private final IngredientRepo ingredientRepo;
+    private final RecipeChangeEventRepo recipeChangeEventRepo;
+    private final RecipeDetailCache recipeDetailCache;
+    private final RequestCoalescer requestCoalescer;
+    private final IngredientTypeIndex ingredientTypeIndex;
+    private final Executor taskExecutor;
+    private final TransactionTemplate readOnlyTransaction;
+    private final EntityManager entityManager;
 
     private final Logger logger = LoggerFactory.getLogger(RecipeService.class);
 
     @Autowired
-    public RecipeService(RecipeRepo recipeRepo, IngredientTypeRepo ingredientTypeRepo, IngredientRepo ingredientRepo) {
+    public RecipeService(RecipeRepo recipeRepo, IngredientTypeRepo ingredientTypeRepo,
+                         RecipeChangeEventRepo recipeChangeEventRepo, RecipeDetailCache recipeDetailCache,
+                         RequestCoalescer requestCoalescer, IngredientTypeIndex ingredientTypeIndex,
+                         @Qualifier("applicationTaskExecutor") Executor taskExecutor, PlatformTransactionManager transactionManager,
+                         EntityManager entityManager) {
         this.recipeRepo = recipeRepo;
         this.ingredientTypeRepo = ingredientTypeRepo;
-        this.ingredientRepo = ingredientRepo;
+        this.recipeChangeEventRepo = recipeChangeEventRepo;
+        this.recipeDetailCache = recipeDetailCache;
+        this.requestCoalescer = requestCoalescer;
+        this.ingredientTypeIndex = ingredientTypeIndex;
+        this.taskExecutor = taskExecutor; // virtual threads when spring.threads.virtual.enabled=true
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.entityManager = entityManager;
     }
 
+    @Transactional(readOnly = true)
     public List<RecipeDto> findAllRecipes() {
-        return recipeRepo.findAll()
+        return recipeRepo.findAllWithInstructionsBy()
                 .stream()
                 .map(RecepAndIngrMapper::recipeToDto)
                 .collect(Collectors.toList());
     }
 
+    // headers only, so neither the (lazy) instructions nor the ingredients are loaded
+    @Transactional(readOnly = true)
+    public List<RecipeHeaderDto> findAllRecipeHeaders() {
+        return recipeRepo.findAll()
+                .stream()
+                .map(RecepAndIngrMapper::recipeToHeader)
+                .toList();
+    }
+
+    @Coalesced
+    @Transactional(readOnly = true)
     public RecipeDto findRecipeById(final Long id) {
-        verifyIdValidAndExists(id);
-        return RecepAndIngrMapper.recipeToDto(recipeRepo.getReferenceById(id));
+        verifyIdValidAndExists(id); // also keeps a just deleted recipe from being served out of the cache
+        // a client that just wrote reads the primary, the cache may still hold what a replica read before the write
+        final boolean pinned = ReplicaOrPinnedPrimaryDataSource.isPinnedToPrimary();
+        final long loadStamp = recipeDetailCache.loadStamp(id);
+        final RecipeDto cached = pinned ? null : recipeDetailCache.get(id);
+        if (cached != null) return cached;
+        final RecipeDto recipe = recipeRepo.findWithIngredientsById(id).map(RecepAndIngrMapper::recipeToDto)
+                .orElseThrow(() -> new RecipeNotFoundException("bad recipe id"));
+        if (!pinned) recipeDetailCache.putIfAbsent(recipe, loadStamp);
+        return recipe;
+    }
+
+    /**
+     * get many recipes by id with a single query, instead of one lookup per id
+     *
+     * @param ids requested ids, duplicates and unknown ids allowed
+     * @return one entry per requested id in request order, with found=false for ids that do not exist
+     * @throws RecipeParameterException if no ids or more than MAX_BATCH_GET_IDS ids are requested
+     */
+    @Transactional(readOnly = true)
+    public List<RecipeBatchEntryDto> findRecipesByIds(final List<Long> ids) {
+        if (ids == null || ids.isEmpty() || ids.size() > MAX_BATCH_GET_IDS) {
+            throw new RecipeParameterException("request between 1 and " + MAX_BATCH_GET_IDS + " ids");
+        }
+        final Set<Long> validIds = ids.stream().filter(id -> id != null && id > 0L).collect(Collectors.toSet());
+        final Map<Long, RecipeDto> foundById = validIds.isEmpty() ? Map.of() :
+                recipeRepo.findAllWithIngredientsByIdIn(validIds).stream()
+                        .map(RecepAndIngrMapper::recipeToDto)
+                        .collect(Collectors.toMap(RecipeDto::getId, Function.identity()));
+        return ids.stream()
+                .map(id -> RecipeBatchEntryDto.builder().id(id).found(foundById.containsKey(id)).recipe(foundById.get(id)).build())
+                .toList();
     }
 
     private void verifyIdValidAndExists(final Long id) {
@@ -61,6 +156,7 @@ public class RecipeService {
         }
     }
 
+    @Transactional // ingredient types found for reuse stay locked until the recipe is stored
     public RecipeDto saveNewRecipe(final RecipeDto recipeDto) {
         if (recipeDto.getId() != null) {
             throw new RecipeParameterException("new recipe should not have an ID");
@@ -70,20 +166,28 @@ public class RecipeService {
             logger.warn("already exists! {}", newRecipe.getName());
             throw new DuplicateRecipeException("already exists and this is not an update call");
         }
-        newRecipe.getIngredients().addAll(
-                recipeDto.getIngredients().stream().map(this::createAndSaveIngredient).toList()
-        );
-        Recipe saved = recipeRepo.save(newRecipe);
+        newRecipe.getIngredients().addAll(createIngredients(recipeDto.getIngredients()));
+        Recipe saved = recipeRepo.save(newRecipe); // ingredients are inserted along with the recipe (cascade)
+        appendChangeEvent(saved.getId(), RecipeChangeType.CREATED);
+        indexIngredientTypes(saved);
         return RecepAndIngrMapper.recipeToDto(saved);
     }
 
-    private Ingredient createAndSaveIngredient(IngredientDto ing) {
-        String correctedName = NameStringHelper.toTitleCase(ing.getName());
-        Optional<IngredientType> typeByName = ingredientTypeRepo.findByName(correctedName);
-        IngredientType ingType = typeByName.orElseGet(() -> ingredientTypeRepo.save(IngredientType.builder().name(correctedName).build()));
-        return ingredientRepo.save(RecepAndIngrMapper.dtoToIngredientWithType(ing, ingType));
+    // the existing types of all ingredients in one (locking) query, the missing ones are created
+    private List<Ingredient> createIngredients(Collection<IngredientDto> ingredientDtos) {
+        if (ingredientDtos.isEmpty()) return List.of();
+        final Set<String> correctedNames = ingredientDtos.stream().map(IngredientDto::getName)
+                .map(NameStringHelper::toTitleCase).collect(Collectors.toSet());
+        final Map<String, IngredientType> typesByName = ingredientTypeRepo.findAndLockByNameIn(correctedNames).stream()
+                .collect(Collectors.toMap(IngredientType::getName, Function.identity(), (first, second) -> first, HashMap::new));
+        return ingredientDtos.stream().map(ing -> {
+            final IngredientType ingType = typesByName.computeIfAbsent(NameStringHelper.toTitleCase(ing.getName()),
+                    name -> ingredientTypeRepo.save(IngredientType.builder().name(name).build()));
+            return RecepAndIngrMapper.dtoToIngredientWithType(ing, ingType);
+        }).toList();
     }
 
+    @Transactional
     public RecipeDto updateRecipe(final Long recipeId, final RecipeDto recipeDto) {
         verifyIdValidAndExists(recipeId);
         logger.info("id verified");
@@ -98,18 +202,27 @@ public class RecipeService {
         storedRecipe.setVegetarian(newVersionRecipe.isVegetarian());
         storedRecipe.setServings(newVersionRecipe.getServings());
         storedRecipe.setInstructions(newVersionRecipe.getInstructions());
-        final List<Ingredient> ingredientsToBeDeleted = findRedundantIngredients(storedRecipe.getIngredients(), recipeDto.getIngredients());
-        storedRecipe.setIngredients(createMergedIngredients(storedRecipe.getIngredients(), recipeDto.getIngredients()));
+        final Set<Ingredient> mergedIngredients = createMergedIngredients(storedRecipe.getIngredients(), recipeDto.getIngredients());
+        // change the stored collection in place: dropped ingredients are deleted (orphan removal), new ones inserted (cascade)
+        storedRecipe.getIngredients().retainAll(mergedIngredients);
+        storedRecipe.getIngredients().addAll(mergedIngredients);
         // overwrite mutations in repo and be happy
         Recipe saved = recipeRepo.save(storedRecipe);
-        ingredientsToBeDeleted.forEach(ingredientRepo::delete);
+        appendChangeEvent(saved.getId(), RecipeChangeType.UPDATED);
+        indexIngredientTypes(saved);
         return RecepAndIngrMapper.recipeToDto(saved);
     }
 
-    private List<Ingredient> findRedundantIngredients(Set<Ingredient> savedIngredients, Set<IngredientDto> newIngredients) {
-        final List<String> newIngredientNames = newIngredients.stream().map(IngredientDto::getName).map(NameStringHelper::toTitleCase).toList();
-        Predicate<Ingredient> oldIngredientIsNotInNewOnes = ingredient -> !newIngredientNames.contains(ingredient.getIngredientType().getName());
-        return savedIngredients.stream().filter(oldIngredientIsNotInNewOnes).toList();
+    // outbox row in the same transaction as the change, derived state is updated from it by the RecipeChangeDispatcher
+    private void appendChangeEvent(final Long recipeId, final RecipeChangeType changeType) {
+        recipeChangeEventRepo.save(RecipeChangeEvent.builder().recipeId(recipeId).changeType(changeType).createdAt(Instant.now()).build());
+        recipeDetailCache.evictAfterCommit(recipeId);
+        requestCoalescer.newGenerationAfterCommit();
+    }
+
+    // searchable by this instance right after commit, other instances get them through the outbox
+    private void indexIngredientTypes(final Recipe saved) {
+        ingredientTypeIndex.addWritten(saved.getIngredients().stream().map(Ingredient::getIngredientType).toList());
     }
 
     private Set<Ingredient> createMergedIngredients(Set<Ingredient> savedIngredients, Set<IngredientDto> newIngredients) {
@@ -119,19 +232,16 @@ public class RecipeService {
         for (Ingredient ingredient : savedIngredients) {
             final boolean oldIngredientIsInNewOnes = newIngredientNames.contains(ingredient.getIngredientType().getName());
             if (oldIngredientIsInNewOnes) {
-                Ingredient changed = updateIngredientWithDtoFields(ingredient, newIngredients);
-                ingredientRepo.save(changed);
-                mergedIngredients.add(changed);
-            } // else ignore, it will be deleted after saving merge
+                mergedIngredients.add(updateIngredientWithDtoFields(ingredient, newIngredients));
+            } // else ignore, it will be deleted when saving the merge
         }
         // add all the new ones
         final List<String> curIngrList = mergedIngredients.stream().map(i -> i.getIngredientType().getName()).toList();
         final Predicate<IngredientDto> nameIsNotInCurrentIngredientList =
                 dto -> !curIngrList.contains(NameStringHelper.toTitleCase(dto.getName()));
-        mergedIngredients.addAll(newIngredients.stream()
+        mergedIngredients.addAll(createIngredients(newIngredients.stream()
                 .filter(nameIsNotInCurrentIngredientList)
-                .map(this::createAndSaveIngredient)
-                .toList());
+                .toList()));
         return mergedIngredients;
     }
 
@@ -154,11 +264,13 @@ public class RecipeService {
                 });
     }
 
+    @Transactional
     public boolean deleteRecipe(final Long recipeId) {
         verifyIdValidAndExists(recipeId);
         try {
             Recipe storedRecipe = recipeRepo.getReferenceById(recipeId);
             recipeRepo.delete(storedRecipe);
+            appendChangeEvent(recipeId, RecipeChangeType.DELETED);
         } catch (IllegalArgumentException e) {
             logger.error("failed to delete (part of) recipe with ID {}", recipeId);
             return false;
@@ -170,44 +282,272 @@ public class RecipeService {
         if (obj != null) filters.add(predicate);
     }
 
+    @Transactional(readOnly = true)
     public List<RecipeDto> findRecipesWithSpecificDetails(final Boolean isVeggie, final Integer minServing,
                                                           final Integer maxServing, final List<String> includes,
-                                                          final List<String> excludes, final String partOfInstructions) {
-        List<Recipe> allRecipes = recipeRepo.findAll();
+                                                          final List<String> excludes, final IngredientMatch ingredientMatch,
+                                                          final String partOfInstructions) {
+        return findMatchingRecipes(isVeggie, minServing, maxServing, includes, excludes, ingredientMatch, partOfInstructions).stream()
+                .map(RecepAndIngrMapper::recipeToDto)
+                .collect(Collectors.toList());
+    }
+
+    private List<Recipe> findMatchingRecipes(final Boolean isVeggie, final Integer minServing,
+                                             final Integer maxServing, final List<String> includes,
+                                             final List<String> excludes, final IngredientMatch ingredientMatch,
+                                             final String partOfInstructions) {
+        final Supplier<String> criteria = () -> describeCriteria(isVeggie, minServing, maxServing, includes, excludes, ingredientMatch, partOfInstructions);
+        final IngredientFilter ingredientFilter = resolveIngredients(includes, excludes, ingredientMatch);
+        if (ingredientFilter.matchesNothing()) return List.of();
+        final SearchPhaseEvent loading = SearchPhaseEvent.start("load");
+        final List<Recipe> allRecipes = loadRecipesToFilter(partOfInstructions != null, ingredientFilter.isActive());
+        loading.end(criteria, allRecipes.size(), allRecipes.size());
+        final SearchPhaseEvent filtering = SearchPhaseEvent.start("filter");
+        final Predicate<Recipe> combinedFilter = buildSearchFilter(isVeggie, minServing, maxServing, ingredientFilter, partOfInstructions);
+        final List<Recipe> matching = allRecipes.stream().filter(combinedFilter).toList();
+        filtering.end(criteria, 0, matching.size());
+        return matching;
+    }
+
+    private static String describeCriteria(final Boolean isVeggie, final Integer minServing, final Integer maxServing,
+                                           final List<String> includes, final List<String> excludes,
+                                           final IngredientMatch ingredientMatch, final String partOfInstructions) {
+        return "vegetarian=" + isVeggie + " servings=" + minServing + ".." + maxServing + " includes=" + includes
+                + " excludes=" + excludes + " match=" + ingredientMatch + " instruction=" + partOfInstructions;
+    }
+
+    /**
+     * the ingredient type ids every include term resolves to (a recipe needs one of each), and the ids of all exclude terms
+     */
+    private record IngredientFilter(List<Set<Long>> includedTypeIds, Set<Long> excludedTypeIds) {
+
+        boolean isActive() {
+            return !includedTypeIds.isEmpty() || !excludedTypeIds.isEmpty();
+        }
+
+        // an include term without any matching ingredient type
+        boolean matchesNothing() {
+            return includedTypeIds.stream().anyMatch(Set::isEmpty);
+        }
+
+    }
+
+    private IngredientFilter resolveIngredients(final List<String> includes, final List<String> excludes,
+                                                final IngredientMatch ingredientMatch) {
+        final IngredientMatch match = ingredientMatch == null ? IngredientMatch.SUBSTRING : ingredientMatch;
+        final List<Set<Long>> includedTypeIds = includes == null ? List.of() :
+                includes.stream().map(term -> ingredientTypeIndex.resolve(term, match)).toList();
+        final Set<Long> excludedTypeIds = excludes == null ? Set.of() :
+                excludes.stream().flatMap(term -> ingredientTypeIndex.resolve(term, match).stream()).collect(Collectors.toSet());
+        return new IngredientFilter(includedTypeIds, excludedTypeIds);
+    }
 
+    // instructions and ingredients are lazy, only load them (in the same select) when they are searched
+    private List<Recipe> loadRecipesToFilter(final boolean withInstructions, final boolean withIngredients) {
+        if (withIngredients) {
+            return withInstructions ? recipeRepo.findAllWithInstructionsAndIngredientsBy() : recipeRepo.findAllWithIngredientsBy();
+        }
+        return withInstructions ? recipeRepo.findAllWithInstructionsBy() : recipeRepo.findAll();
+    }
+
+    private Stream<Recipe> streamRecipesToFilter(final boolean withInstructions, final boolean withIngredients) {
+        if (withIngredients) {
+            return withInstructions ? recipeRepo.streamAllWithInstructionsAndIngredientsBy() : recipeRepo.streamAllWithIngredientsBy();
+        }
+        return withInstructions ? recipeRepo.streamAllWithInstructionsBy() : recipeRepo.streamAllBy();
+    }
+
+    private Predicate<Recipe> buildSearchFilter(final Boolean isVeggie, final Integer minServing,
+                                                final Integer maxServing, final IngredientFilter ingredientFilter,
+                                                final String partOfInstructions) {
         final List<Predicate<Recipe>> filters = new ArrayList<>();
         addFilterIfObjNotNull(filters, isVeggie, recipe -> recipe.isVegetarian() == isVeggie);
         addFilterIfObjNotNull(filters, minServing, recipe -> recipe.getServings() >= minServing);
         addFilterIfObjNotNull(filters, maxServing, recipe -> recipe.getServings() <= maxServing);
-        Optional.ofNullable(includes).ifPresent(list -> list.forEach(str -> filters.add(recipe -> flattenIngredients(recipe).contains(str.toLowerCase()))));
-        Optional.ofNullable(excludes).ifPresent(list -> list.forEach(str -> filters.add(recipe -> !flattenIngredients(recipe).contains(str.toLowerCase()))));
+        ingredientFilter.includedTypeIds().forEach(typeIds -> filters.add(recipe -> usesAnyOf(recipe, typeIds)));
+        if (!ingredientFilter.excludedTypeIds().isEmpty()) {
+            filters.add(recipe -> !usesAnyOf(recipe, ingredientFilter.excludedTypeIds()));
+        }
         addFilterIfObjNotNull(filters, partOfInstructions,
                 recipe -> recipe.getInstructions().toLowerCase().contains(partOfInstructions.toLowerCase()));
 
-        final Predicate<Recipe> combinedFilter = filters.stream().reduce(Predicate::and).orElse(x -> true);
-        final List<Recipe> filteredRecipes = allRecipes.stream().filter(combinedFilter).toList();
-        return filteredRecipes.stream()
-                .map(RecepAndIngrMapper::recipeToDto)
-                .collect(Collectors.toList());
+        return filters.stream().reduce(Predicate::and).orElse(x -> true);
     }
 
-    /*default (for test)*/ String flattenIngredients(final Recipe recipe) {
-        if (recipe.getIngredients() == null || recipe.getIngredients().isEmpty()) return "";
-        final String delimiter = " ";
-        return recipe.getIngredients().stream()
-                .map(ingredient -> ingredient.getIngredientType().getName().toLowerCase())
-                .collect(Collectors.joining(delimiter));
+    private static boolean usesAnyOf(final Recipe recipe, final Set<Long> ingredientTypeIds) {
+        return recipe.getIngredients() != null && recipe.getIngredients().stream()
+                .anyMatch(ingredient -> ingredientTypeIds.contains(ingredient.getIngredientType().getId()));
     }
 
+    @Coalesced
+    @Transactional(readOnly = true)
     public List<RecipeHeaderDto> findRecipeHeadersWithGivenParams(final Boolean isVeggie, final Integer minServing,
                                                                   final Integer maxServing, final List<String> includes,
-                                                                  final List<String> excludes, final String instruction) {
-        final List<RecipeDto> fullRecipes = findRecipesWithSpecificDetails(isVeggie, minServing, maxServing, includes, excludes, instruction);
-        return fullRecipes.stream()
-                .filter(recipeDto -> recipeDto.getId() != null)
-                .map(RecepAndIngrMapper::RecipeDtoToHeader).toList();
+                                                                  final List<String> excludes, final IngredientMatch ingredientMatch,
+                                                                  final String instruction) {
+        // map the entities directly, headers don't need the (lazy) instructions
+        final List<Recipe> matchingRecipes = findMatchingRecipes(isVeggie, minServing, maxServing, includes, excludes, ingredientMatch, instruction);
+        return matchingRecipes.stream()
+                .filter(recipe -> recipe.getId() != null)
+                .map(RecepAndIngrMapper::recipeToHeader).toList();
+    }
+
+    /**
+     * search like findRecipeHeadersWithGivenParams, but hand each matching header to the sink as soon as it is found.
+     * Recipes are read with a database cursor and regularly cleared from the session, so neither the result list nor the
+     * loaded catalogue is held in memory. A slow sink (like a client reading slowly) simply slows down the cursor.
+     *
+     * @param sink receives the matching headers in order, is called on the current thread
+     */
+    @Transactional(readOnly = true)
+    public void streamRecipeHeadersWithGivenParams(final Boolean isVeggie, final Integer minServing,
+                                                   final Integer maxServing, final List<String> includes,
+                                                   final List<String> excludes, final IngredientMatch ingredientMatch,
+                                                   final String instruction, final Consumer<RecipeHeaderDto> sink) {
+        final IngredientFilter ingredientFilter = resolveIngredients(includes, excludes, ingredientMatch);
+        if (ingredientFilter.matchesNothing()) return;
+        final Predicate<Recipe> combinedFilter = buildSearchFilter(isVeggie, minServing, maxServing, ingredientFilter, instruction);
+        final SearchPhaseEvent streaming = SearchPhaseEvent.start("stream"); // load, filter and writing to the sink
+        int rowsRead = 0;
+        int matches = 0;
+        try (Stream<Recipe> allRecipes = streamRecipesToFilter(instruction != null, ingredientFilter.isActive())) {
+            for (Iterator<Recipe> recipes = allRecipes.iterator(); recipes.hasNext(); ) {
+                final Recipe recipe = recipes.next();
+                if (recipe.getId() != null && combinedFilter.test(recipe)) {
+                    sink.accept(RecepAndIngrMapper.recipeToHeader(recipe));
+                    matches++;
+                }
+                if (++rowsRead % STREAM_CLEAR_INTERVAL == 0) {
+                    entityManager.clear(); // drop checked recipes and their ingredients from the persistence context
+                }
+            }
+        } finally {
+            streaming.end(() -> describeCriteria(isVeggie, minServing, maxServing, includes, excludes, ingredientMatch, instruction), rowsRead, matches);
+        }
+    }
+
+    /**
+     * search and return full recipes for the first 'limit' hits (in id order) in one call. The database finds the ids
+     * of the hits, the recipes with their ingredients are fetched by id in batches that run in parallel on the task
+     * executor, and merged back in id order.
+     *
+     * @param limit max number of full recipes to return, 1 up to MAX_DETAIL_RESULTS
+     * @return full recipes in search order
+     * @throws RecipeParameterException if limit is out of range
+     */
+    @Coalesced
+    @Transactional(readOnly = true)
+    public List<RecipeDto> findRecipeDetailsWithGivenParams(final Boolean isVeggie, final Integer minServing,
+                                                            final Integer maxServing, final List<String> includes,
+                                                            final List<String> excludes, final IngredientMatch ingredientMatch,
+                                                            final String instruction, final int limit) {
+        if (limit < 1 || limit > MAX_DETAIL_RESULTS) {
+            throw new RecipeParameterException("limit should be between 1 and " + MAX_DETAIL_RESULTS);
+        }
+        final IngredientFilter ingredientFilter = resolveIngredients(includes, excludes, ingredientMatch);
+        if (ingredientFilter.matchesNothing()) return List.of();
+        // only the ids of the hits, filtered and limited by the database, the batches below load the recipes themselves
+        final SearchPhaseEvent finding = SearchPhaseEvent.start("findIds");
+        final List<Long> hitIds = recipeRepo.findMatchingIds(RecipeSpecifications.matching(isVeggie, minServing, maxServing,
+                ingredientFilter.includedTypeIds(), ingredientFilter.excludedTypeIds(), instruction), limit);
+        finding.end(() -> describeCriteria(isVeggie, minServing, maxServing, includes, excludes, ingredientMatch, instruction), hitIds.size(), hitIds.size());
+        final SearchPhaseEvent fetching = SearchPhaseEvent.start("fetchDetails");
+        final List<RecipeDto> details = fetchFullRecipesInParallelBatches(hitIds);
+        fetching.end(() -> describeCriteria(isVeggie, minServing, maxServing, includes, excludes, ingredientMatch, instruction), details.size(), details.size());
+        return details;
+    }
+
+    /**
+     * every batch runs in a read-only transaction of its own on the task executor (it can't join the one of the caller,
+     * that is bound to the caller's thread), so it reads from the replica like the search itself, or from the primary
+     * when the caller is pinned to it (the pin goes along with the task). The first failing batch fails the fetch right
+     * away; batches still waiting for a thread are cancelled, running ones can't be interrupted and finish unused.
+     */
+    private List<RecipeDto> fetchFullRecipesInParallelBatches(final List<Long> ids) {
+        final List<CompletableFuture<List<RecipeDto>>> batches = new ArrayList<>();
+        final CompletableFuture<Void> firstFailure = new CompletableFuture<>();
+        for (int from = 0; from < ids.size(); from += DETAIL_FETCH_BATCH_SIZE) {
+            final List<Long> batchIds = ids.subList(from, Math.min(ids.size(), from + DETAIL_FETCH_BATCH_SIZE));
+            final CompletableFuture<List<RecipeDto>> batch = CompletableFuture.supplyAsync(() -> readOnlyTransaction.execute(
+                    status -> recipeRepo.findAllWithIngredientsByIdIn(batchIds).stream()
+                            .map(RecepAndIngrMapper::recipeToDto)
+                            .toList()), taskExecutor);
+            batch.whenComplete((result, failure) -> {
+                if (failure != null) firstFailure.completeExceptionally(failure);
+            });
+            batches.add(batch);
+        }
+        try {
+            CompletableFuture.anyOf(CompletableFuture.allOf(batches.toArray(CompletableFuture[]::new)), firstFailure).join();
+        } catch (CompletionException e) {
+            batches.forEach(batch -> batch.cancel(false));
+            logger.error("failed to fetch recipe details in batches", e.getCause());
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw e;
+        }
+        final Map<Long, RecipeDto> fetchedById = batches.stream()
+                .flatMap(batch -> batch.join().stream())
+                .collect(Collectors.toMap(RecipeDto::getId, Function.identity()));
+        // a recipe deleted between search and fetch is just left out
+        return ids.stream().map(fetchedById::get).filter(Objects::nonNull).toList();
+    }
+
+    /**
+     * count the recipes matching the search criteria per vegetarian flag, per range of servings (ServingsBucket) and per
+     * ingredient.
+     * Counting is done with aggregate queries in the database, no recipes are loaded or mapped.
+     *
+     * @param topIngredients number of most used ingredients to report, 0 up to MAX_TOP_INGREDIENTS
+     * @throws RecipeParameterException if topIngredients is out of range
+     */
+    @Transactional(readOnly = true)
+    public RecipeFacetsDto countFacetsWithGivenParams(final Boolean isVeggie, final Integer minServing,
+                                                      final Integer maxServing, final List<String> includes,
+                                                      final List<String> excludes, final IngredientMatch ingredientMatch,
+                                                      final String instruction, final int topIngredients) {
+        if (topIngredients < 0 || topIngredients > MAX_TOP_INGREDIENTS) {
+            throw new RecipeParameterException("topIngredients should be between 0 and " + MAX_TOP_INGREDIENTS);
+        }
+        final IngredientFilter ingredientFilter = resolveIngredients(includes, excludes, ingredientMatch);
+        final Specification<Recipe> filter = RecipeSpecifications.matching(isVeggie, minServing, maxServing,
+                ingredientFilter.includedTypeIds(), ingredientFilter.excludedTypeIds(), instruction);
+        final Map<Boolean, Long> perVegetarian = recipeRepo.countPerVegetarian(filter);
+        final List<IngredientCountDto> ingredientCounts = topIngredients == 0 ? List.of() :
+                recipeRepo.countTopIngredients(filter, topIngredients).stream()
+                        .map(nameCount -> IngredientCountDto.builder().name(nameCount.name()).count(nameCount.count()).build())
+                        .toList();
+        return RecipeFacetsDto.builder()
+                .total(perVegetarian.values().stream().mapToLong(Long::longValue).sum())
+                .vegetarian(perVegetarian)
+                .servings(countPerServingsBucket(filter))
+                .topIngredients(ingredientCounts)
+                .build();
+    }
+
+    // every bucket, in order, also the empty ones; the database counts per number of servings (a handful of rows)
+    private Map<String, Long> countPerServingsBucket(final Specification<Recipe> filter) {
+        final Map<String, Long> perBucket = new LinkedHashMap<>();
+        for (ServingsBucket bucket : ServingsBucket.values()) perBucket.put(bucket.label(), 0L);
+        recipeRepo.countPerServings(filter).forEach((servings, count) -> perBucket.merge(ServingsBucket.of(servings).label(), count, Long::sum));
+        return perBucket;
+    }
+
+    /**
+     * the known ingredients a fuzzy search would match on the term, most similar first ("did you mean")
+     *
+     * @param limit max number of ingredients to return, 1 up to MAX_INGREDIENT_SUGGESTIONS
+     * @throws RecipeParameterException if limit is out of range
+     */
+    public List<IngredientSuggestionDto> findSimilarIngredients(final String term, final int limit) {
+        if (limit < 1 || limit > MAX_INGREDIENT_SUGGESTIONS) {
+            throw new RecipeParameterException("limit should be between 1 and " + MAX_INGREDIENT_SUGGESTIONS);
+        }
+        return ingredientTypeIndex.findSimilar(term, limit).stream()
+                .map(type -> IngredientSuggestionDto.builder().name(type.name()).similarity(Math.round(type.score() * 100) / 100.0).build())
+                .toList();
     }
 
+    @Transactional(readOnly = true)
     public RecipeDto findRecipeByName(final String name) {
         Optional<Recipe> byName = recipeRepo.findByName(name);
         return byName.map(RecepAndIngrMapper::recipeToDto).orElse(null);
@@ -0,0 +1,119 @@
+package nl.trickjurgen.recipes.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import nl.trickjurgen.recipes.datasource.ReplicaOrPinnedPrimaryDataSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * single flight for @Coalesced methods: a call with the same method and arguments as a call still running doesn't
+ * run itself, it waits for that one and gets the same result (or exception). Ordered inside the monitoring aspects
+ * (every caller still gets its span and event) and outside the transaction advice, so waiting callers don't hold a
+ * connection. A write moves on to a new generation after its commit: calls from then on start a fresh execution
+ * instead of joining one that may have read the data from before the write (read-your-writes).
+ * Calls pinned to the primary (read-your-writes) only join each other, never a call that may read the replica.
+ * Calls made inside a transaction run on their own, they may depend on its uncommitted changes.
+ * A call that has waited maxWait for the one it joined runs itself after all, a hanging execution doesn't take
+ * every identical call with it.
+ * Metrics: recipes.coalescing.calls with tags method and outcome (executed, coalesced, and timeout for a coalesced
+ * call that ran itself after all), recipes.coalescing.inflight.
+ */
+@Aspect
+@Component
+@Order(2)
+public class RequestCoalescer {
+
+    private final MeterRegistry meterRegistry;
+    private final Duration maxWait;
+    private final Map<FlightKey, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+
+    private record FlightKey(String method, List<Object> arguments, long generation, boolean pinnedToPrimary) {
+    }
+
+    @Autowired
+    public RequestCoalescer(MeterRegistry meterRegistry, @Value("${recipes.coalescing.max-wait:PT5S}") Duration maxWait) {
+        this.meterRegistry = meterRegistry;
+        this.maxWait = maxWait;
+        Gauge.builder("recipes.coalescing.inflight", inFlight, Map::size)
+                .description("executions that other calls can join").register(meterRegistry);
+    }
+
+    @Around("execution(* *(..)) && @annotation(nl.trickjurgen.recipes.service.Coalesced)")
+    public Object coalesce(final ProceedingJoinPoint joinPoint) throws Throwable {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) return joinPoint.proceed();
+        final String method = joinPoint.getSignature().getDeclaringType().getSimpleName() + "." + joinPoint.getSignature().getName();
+        final FlightKey key = new FlightKey(method, Arrays.asList(joinPoint.getArgs()), generation.get(),
+                ReplicaOrPinnedPrimaryDataSource.isPinnedToPrimary());
+        final CompletableFuture<Object> flight = new CompletableFuture<>();
+        final CompletableFuture<Object> running = inFlight.putIfAbsent(key, flight);
+        if (running != null) {
+            count(method, "coalesced");
+            try {
+                return running.get(maxWait.toNanos(), TimeUnit.NANOSECONDS);
+            } catch (ExecutionException e) {
+                throw e.getCause();
+            } catch (TimeoutException e) {
+                count(method, "timeout"); // a coalesced call that gave up waiting
+                return joinPoint.proceed();
+            }
+        }
+        count(method, "executed");
+        try {
+            final Object result = joinPoint.proceed();
+            flight.complete(result);
+            return result;
+        } catch (Throwable e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, flight);
+        }
+    }
+
+    /**
+     * calls from after the commit of the current transaction (right away when there is none) no longer join
+     * executions that started before it
+     */
+    public void newGenerationAfterCommit() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            generation.incrementAndGet();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                generation.incrementAndGet();
+            }
+        });
+    }
+
+    private void count(final String method, final String outcome) {
+        counters.computeIfAbsent(method + "/" + outcome, ignored -> Counter.builder("recipes.coalescing.calls")
+                .tag("method", method).tag("outcome", outcome)
+                .description("calls of coalesced methods, executed or sharing the result of an identical running call")
+                .register(meterRegistry)).increment();
+    }
+
+}
@@ -0,0 +1,30 @@
+package nl.trickjurgen.recipes.service;
+
+/**
+ * the ranges of servings the search facets count in: a few fixed keys the ui can rely on, instead of one per number
+ * of servings that happens to be in the catalogue
+ */
+public enum ServingsBucket {
+
+    ONE_OR_TWO("1-2", 2), THREE_OR_FOUR("3-4", 4), FIVE_TO_EIGHT("5-8", 8), NINE_OR_MORE("9+", Integer.MAX_VALUE);
+
+    private final String label;
+    private final int maxServings;
+
+    ServingsBucket(final String label, final int maxServings) {
+        this.label = label;
+        this.maxServings = maxServings;
+    }
+
+    public static ServingsBucket of(final int servings) {
+        for (ServingsBucket bucket : values()) {
+            if (servings <= bucket.maxServings) return bucket;
+        }
+        return NINE_OR_MORE;
+    }
+
+    public String label() {
+        return label;
+    }
+
+}
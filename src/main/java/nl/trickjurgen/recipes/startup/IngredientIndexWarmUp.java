@@ -0,0 +1,25 @@
+package nl.trickjurgen.recipes.startup;
+
+import nl.trickjurgen.recipes.service.IngredientTypeIndex;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * loads the ingredient type index, so the first search with ingredients doesn't wait for it.
+ */
+@Component
+public class IngredientIndexWarmUp implements WarmUpTask {
+
+    private final IngredientTypeIndex ingredientTypeIndex;
+
+    @Autowired
+    public IngredientIndexWarmUp(IngredientTypeIndex ingredientTypeIndex) {
+        this.ingredientTypeIndex = ingredientTypeIndex;
+    }
+
+    @Override
+    public void warmUp() {
+        ingredientTypeIndex.ensureLoaded();
+    }
+
+}
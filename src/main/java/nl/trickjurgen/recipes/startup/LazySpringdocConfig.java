@@ -0,0 +1,30 @@
+package nl.trickjurgen.recipes.startup;
+
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * with spring.main.lazy-initialization=true (startup optimised run, see README) only the api documentation beans
+ * (springdoc, swagger) are created lazily, at the first request to /v3/api-docs or the swagger ui. Everything else
+ * stays eager: a lazy datasource, repository or service would only move its startup cost (and startup errors) to the
+ * first user request.
+ */
+@Configuration(proxyBeanMethods = false)
+public class LazySpringdocConfig {
+
+    private static final String[] LAZY_PACKAGES = {"org.springdoc.", "io.swagger."};
+
+    @Bean
+    public static LazyInitializationExcludeFilter onlyApiDocumentationIsLazy() {
+        return (beanName, beanDefinition, beanType) -> beanType == null || !isApiDocumentation(beanType);
+    }
+
+    private static boolean isApiDocumentation(final Class<?> beanType) {
+        for (String lazyPackage : LAZY_PACKAGES) {
+            if (beanType.getName().startsWith(lazyPackage)) return true;
+        }
+        return false;
+    }
+
+}
@@ -0,0 +1,81 @@
+package nl.trickjurgen.recipes.startup;
+
+import com.google.protobuf.Descriptors;
+import com.google.protobuf.Empty;
+import net.ttddyy.dsproxy.proxy.ProxyJdbcObject;
+import nl.trickjurgen.recipes.dto.IngredientCountDto;
+import nl.trickjurgen.recipes.dto.IngredientDto;
+import nl.trickjurgen.recipes.dto.IngredientSuggestionDto;
+import nl.trickjurgen.recipes.dto.RecipeBatchEntryDto;
+import nl.trickjurgen.recipes.dto.RecipeDto;
+import nl.trickjurgen.recipes.dto.RecipeFacetsDto;
+import nl.trickjurgen.recipes.dto.RecipeHeaderDto;
+import nl.trickjurgen.recipes.grpc.proto.Recipes;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.aot.hint.TypeReference;
+import org.springframework.aot.hint.annotation.RegisterReflectionForBinding;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.ImportRuntimeHints;
+
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+/**
+ * what a native image (mvn -Pnative native:compile, see README) can't find by itself. Spring AOT already covers the
+ * beans, the jpa entities (their lombok code is plain compiled code) and the flyway scripts, springdoc and hibernate
+ * bring their own hints. Left are:
+ * - the dtos, for jackson: the ndjson search stream writes them without a message converter
+ * - the jdk proxies datasource-proxy puts around jdbc objects for the statement spans
+ * - the generated protobuf messages and their builders, which protobuf reads by reflection (field accessors of
+ *   toString, equals and the json printer), and the grpc server transport that grpc looks up by class name. The
+ *   shaded netty of grpc-netty-shaded brings its own hints.
+ */
+@Configuration(proxyBeanMethods = false)
+@ImportRuntimeHints({NativeImageHints.JdbcProxyHints.class, NativeImageHints.GrpcHints.class})
+@RegisterReflectionForBinding({RecipeDto.class, IngredientDto.class, RecipeHeaderDto.class, RecipeBatchEntryDto.class,
+        RecipeFacetsDto.class, IngredientCountDto.class, IngredientSuggestionDto.class})
+public class NativeImageHints {
+
+    static class JdbcProxyHints implements RuntimeHintsRegistrar {
+
+        // interface order as in JdkJdbcProxyFactory
+        @Override
+        public void registerHints(final RuntimeHints hints, final ClassLoader classLoader) {
+            for (Class<?> jdbcType : new Class<?>[]{Connection.class, Statement.class, PreparedStatement.class,
+                    CallableStatement.class, ResultSet.class}) {
+                hints.proxies().registerJdkProxy(ProxyJdbcObject.class, jdbcType);
+            }
+        }
+
+    }
+
+    static class GrpcHints implements RuntimeHintsRegistrar {
+
+        // found by ServerRegistry with Class.forName, next to the META-INF/services files
+        private static final String NETTY_SERVER_PROVIDER = "io.grpc.netty.shaded.io.grpc.netty.NettyServerProvider";
+
+        @Override
+        public void registerHints(final RuntimeHints hints, final ClassLoader classLoader) {
+            final String javaPackage = Recipes.getDescriptor().getOptions().getJavaPackage();
+            Recipes.getDescriptor().getMessageTypes()
+                    .forEach(message -> registerMessage(hints, javaPackage + "." + message.getName(), message));
+            registerMessage(hints, Empty.class.getName(), Empty.getDescriptor());
+            hints.reflection().registerType(TypeReference.of(NETTY_SERVER_PROVIDER), MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS);
+            hints.resources().registerPattern("META-INF/services/io.grpc.*");
+        }
+
+        private static void registerMessage(final RuntimeHints hints, final String className, final Descriptors.Descriptor message) {
+            for (String type : new String[]{className, className + "$Builder"}) {
+                hints.reflection().registerType(TypeReference.of(type), MemberCategory.INVOKE_PUBLIC_METHODS);
+            }
+            message.getNestedTypes().forEach(nested -> registerMessage(hints, className + "$" + nested.getName(), nested));
+        }
+
+    }
+
+}
@@ -0,0 +1,49 @@
+package nl.trickjurgen.recipes.startup;
+
+import nl.trickjurgen.recipes.repo.IngredientTypeRepo;
+import nl.trickjurgen.recipes.service.IngredientMatch;
+import nl.trickjurgen.recipes.service.IngredientTypeIndex;
+import nl.trickjurgen.recipes.service.RecipeService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * runs the main read queries once, so the first requests don't pay for it: hibernate translates and caches their
+ * query plans, the database reads the table and index pages they use (ingredient types included) and the service
+ * and mapper code gets its first JIT compilation. The results are thrown away.
+ * The ingredient filters use the name of a type the index knows: an unknown name would resolve to no type, which ends
+ * the search before any query with ingredients and sends the index to the database to catch up instead.
+ */
+@Component
+public class QueryWarmUp implements WarmUpTask {
+
+    private static final String NO_SUCH_NAME = "warm-up";
+
+    private final RecipeService recipeService;
+    private final IngredientTypeRepo ingredientTypeRepo;
+    private final IngredientTypeIndex ingredientTypeIndex;
+
+    @Autowired
+    public QueryWarmUp(RecipeService recipeService, IngredientTypeRepo ingredientTypeRepo, IngredientTypeIndex ingredientTypeIndex) {
+        this.recipeService = recipeService;
+        this.ingredientTypeRepo = ingredientTypeRepo;
+        this.ingredientTypeIndex = ingredientTypeIndex;
+    }
+
+    @Override
+    public void warmUp() {
+        recipeService.findAllRecipeHeaders();
+        recipeService.findRecipeByName(NO_SUCH_NAME);
+        ingredientTypeRepo.findByName(NO_SUCH_NAME);
+        // included and excluded at once: the queries with ingredients run in full, without hits to map
+        final List<String> knownIngredient = ingredientTypeIndex.anyName().map(List::of).orElse(List.of());
+        recipeService.findRecipeHeadersWithGivenParams(true, 1, 8, knownIngredient, knownIngredient,
+                IngredientMatch.SUBSTRING, NO_SUCH_NAME);
+        recipeService.countFacetsWithGivenParams(true, 1, 8, knownIngredient, knownIngredient, IngredientMatch.SUBSTRING,
+                NO_SUCH_NAME, 10);
+        recipeService.countFacetsWithGivenParams(null, null, null, null, null, null, null, 10);
+    }
+
+}
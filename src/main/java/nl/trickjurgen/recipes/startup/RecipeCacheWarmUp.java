@@ -0,0 +1,51 @@
+package nl.trickjurgen.recipes.startup;
+
+import nl.trickjurgen.recipes.mapper.RecepAndIngrMapper;
+import nl.trickjurgen.recipes.repo.RecipeRepo;
+import nl.trickjurgen.recipes.service.RecipeDetailCache;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * fills the recipe detail cache with the newest recipes (recipes.warmup.recipes), one query per batch. There are no
+ * access statistics to tell which recipes are hot, the newest are the most likely to be asked for.
+ */
+@Component
+public class RecipeCacheWarmUp implements WarmUpTask {
+
+    private static final int BATCH_SIZE = 100;
+
+    private final RecipeRepo recipeRepo;
+    private final RecipeDetailCache recipeDetailCache;
+    private final int recipes;
+
+    @Autowired
+    public RecipeCacheWarmUp(RecipeRepo recipeRepo, RecipeDetailCache recipeDetailCache,
+                             @Value("${recipes.warmup.recipes:1000}") int recipes) {
+        this.recipeRepo = recipeRepo;
+        this.recipeDetailCache = recipeDetailCache;
+        this.recipes = recipes;
+    }
+
+    @Override
+    public void warmUp() {
+        final List<Long> ids = recipeRepo.findRecentIds(Limit.of(recipes));
+        for (int from = 0; from < ids.size() && !Thread.currentThread().isInterrupted(); from += BATCH_SIZE) {
+            final List<Long> batch = ids.subList(from, Math.min(ids.size(), from + BATCH_SIZE));
+            final Map<Long, Long> loadStamps = batch.stream()
+                    .collect(Collectors.toMap(Function.identity(), recipeDetailCache::loadStamp));
+            // putIfAbsent: an entry the outbox dispatcher refreshed in the meantime is newer than this read
+            recipeRepo.findAllWithIngredientsByIdIn(batch).stream()
+                    .map(RecepAndIngrMapper::recipeToDto)
+                    .forEach(recipe -> recipeDetailCache.putIfAbsent(recipe, loadStamps.get(recipe.getId())));
+        }
+    }
+
+}
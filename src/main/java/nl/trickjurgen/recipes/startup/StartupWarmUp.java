@@ -0,0 +1,101 @@
+package nl.trickjurgen.recipes.startup;
+
+import nl.trickjurgen.recipes.service.RecipeChangeDispatcher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * warms the app up before it takes traffic: runs all WarmUpTasks in parallel, within a time budget
+ * (recipes.warmup.timeout). As an ApplicationRunner it runs before spring boot reports the app ready, so the
+ * readiness probe (/actuator/health/readiness) stays DOWN until the warm-up is done and load balancers only route to
+ * warm instances. Tasks still running at the end of the budget are interrupted and the app becomes ready anyway,
+ * serving cold beats not serving at all. A failing task is logged, it doesn't stop the startup.
+ */
+@Component
+public class StartupWarmUp implements ApplicationRunner {
+
+    public enum Outcome {WARM, TIMED_OUT, FAILED}
+
+    public record TaskResult(String task, Outcome outcome, long millis) {
+    }
+
+    private final List<WarmUpTask> tasks;
+    private final RecipeChangeDispatcher recipeChangeDispatcher;
+    private final Duration timeout;
+
+    private final Logger logger = LoggerFactory.getLogger(StartupWarmUp.class);
+
+    @Autowired
+    public StartupWarmUp(List<WarmUpTask> tasks, RecipeChangeDispatcher recipeChangeDispatcher,
+                         @Value("${recipes.warmup.timeout:PT30S}") Duration timeout) {
+        this.tasks = tasks;
+        this.recipeChangeDispatcher = recipeChangeDispatcher;
+        this.timeout = timeout;
+    }
+
+    @Override
+    public void run(final ApplicationArguments args) {
+        // fixes the outbox position first: whatever changes after the warm-up read is dispatched to the caches
+        recipeChangeDispatcher.dispatchPending();
+        warmUp();
+    }
+
+    public List<TaskResult> warmUp() {
+        final long start = System.nanoTime();
+        final long deadline = start + timeout.toNanos();
+        final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        try {
+            final Map<WarmUpTask, Future<Long>> running = new LinkedHashMap<>();
+            tasks.forEach(task -> running.put(task, executor.submit(() -> timed(task))));
+            final List<TaskResult> results = new ArrayList<>();
+            for (Map.Entry<WarmUpTask, Future<Long>> entry : running.entrySet()) {
+                results.add(await(entry.getKey().getClass().getSimpleName(), entry.getValue(), deadline));
+            }
+            logger.info("warm-up done in {} ms: {}", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), results);
+            return results;
+        } finally {
+            executor.shutdownNow(); // doesn't wait for a task that ignores the interrupt
+        }
+    }
+
+    private static long timed(final WarmUpTask task) {
+        final long start = System.nanoTime();
+        task.warmUp();
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    private TaskResult await(final String task, final Future<Long> result, final long deadline) {
+        try {
+            return new TaskResult(task, Outcome.WARM, result.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+        } catch (TimeoutException e) {
+            result.cancel(true);
+            logger.warn("warm-up of {} not done within {}, starting without it", task, timeout);
+            return new TaskResult(task, Outcome.TIMED_OUT, timeout.toMillis());
+        } catch (ExecutionException e) {
+            logger.warn("warm-up of {} failed, starting without it", task, e.getCause());
+            return new TaskResult(task, Outcome.FAILED, 0);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result.cancel(true);
+            return new TaskResult(task, Outcome.TIMED_OUT, 0);
+        }
+    }
+
+}
@@ -0,0 +1,14 @@
+package nl.trickjurgen.recipes.startup;
+
+/**
+ * something that is slow while cold (a cache, an in-memory index, hibernate's query plans) and can be prepared from
+ * the database before the app takes traffic. All WarmUpTask beans run in parallel at startup, see StartupWarmUp.
+ */
+public interface WarmUpTask {
+
+    /**
+     * called once at startup on its own (virtual) thread; should stop when interrupted, the time budget is over then
+     */
+    void warmUp();
+
+}
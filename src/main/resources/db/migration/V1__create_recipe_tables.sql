@@ -0,0 +1,37 @@
+-- initial schema, as hibernate generated it from Recipe, Ingredient and IngredientType.
+-- written for mysql; tests run it on h2 in mysql mode.
+-- an existing database created by hibernate is baselined at this version (spring.flyway.baseline-on-migrate)
+
+create table ingredient_types (
+    id bigint not null auto_increment,
+    name varchar(255) not null,
+    primary key (id),
+    constraint uk_ingredient_types_name unique (name)
+);
+
+create table ingredients (
+    id bigint not null auto_increment,
+    ingredient_type_id bigint,
+    quantity_and_unit varchar(255) not null,
+    remark varchar(255),
+    primary key (id),
+    constraint fk_ingredients_ingredient_type foreign key (ingredient_type_id) references ingredient_types (id)
+);
+
+create table recipes (
+    id bigint not null auto_increment,
+    name varchar(255) not null,
+    is_vegetarian boolean not null,
+    servings integer not null,
+    instructions longtext not null,
+    primary key (id),
+    constraint uk_recipes_name unique (name)
+);
+
+create table recipe_ingredients (
+    ingredient_id bigint not null,
+    recipe_id bigint not null,
+    primary key (ingredient_id, recipe_id),
+    constraint fk_recipe_ingredients_ingredient foreign key (ingredient_id) references ingredients (id),
+    constraint fk_recipe_ingredients_recipe foreign key (recipe_id) references recipes (id)
+);
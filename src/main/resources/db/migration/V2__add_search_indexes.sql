@@ -0,0 +1,11 @@
+-- indexes for the search and join patterns of the app, checked by QueryPlanTest
+
+-- loading the ingredients of a recipe joins on recipe_id; the primary key starts with ingredient_id so it can't be used.
+-- (ingredient_id, recipe_id) already covers the reverse direction: which recipes use an ingredient
+create index idx_recipe_ingredients_recipe on recipe_ingredients (recipe_id, ingredient_id);
+
+-- ingredients per ingredient type: top-ingredient facets and finding unused ingredient types
+create index idx_ingredients_ingredient_type on ingredients (ingredient_type_id);
+
+-- vegetarian/servings filters and facet counts, servings second so a servings range can use it too
+create index idx_recipes_vegetarian_servings on recipes (is_vegetarian, servings);
@@ -0,0 +1,19 @@
+-- an ingredient row (volume + remark) belongs to exactly one recipe: replace the recipe_ingredients join table
+-- by a recipe_id column on ingredients, so reading ingredients is one join less and writing them one insert/delete less
+
+alter table ingredients add column recipe_id bigint;
+
+-- the app never shared an ingredient row between recipes, min() only keeps the update safe if it happened anyway
+update ingredients i set recipe_id = (select min(ri.recipe_id) from recipe_ingredients ri where ri.ingredient_id = i.id);
+
+-- ingredient rows not linked to any recipe could not be reached anymore
+delete from ingredients where recipe_id is null;
+
+alter table ingredients modify recipe_id bigint not null;
+
+-- loading the ingredients of a recipe, recipe_id first so it also backs the foreign key
+create index idx_ingredients_recipe on ingredients (recipe_id, ingredient_type_id);
+
+alter table ingredients add constraint fk_ingredients_recipe foreign key (recipe_id) references recipes (id);
+
+drop table recipe_ingredients;
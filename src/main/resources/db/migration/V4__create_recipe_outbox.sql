@@ -0,0 +1,13 @@
+-- transactional outbox: every recipe create/update/delete appends a row in the same transaction,
+-- a background dispatcher applies the rows to derived state (caches, indexes) in id order.
+-- no foreign key on recipe_id, the events of a deleted recipe stay until they are purged
+create table recipe_outbox (
+    id bigint not null auto_increment,
+    recipe_id bigint not null,
+    change_type varchar(16) not null,
+    created_at datetime(6) not null,
+    primary key (id)
+);
+
+-- purge of dispatched events after the retention period
+create index idx_recipe_outbox_created_at on recipe_outbox (created_at);
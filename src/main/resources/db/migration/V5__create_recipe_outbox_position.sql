@@ -0,0 +1,8 @@
+-- how far each outbox consumer (an app instance, see recipes.outbox.consumer) got: every event up to last_id has been
+-- applied, so a restart continues there instead of skipping what was written while the instance was down
+create table recipe_outbox_position (
+    consumer varchar(100) not null,
+    last_id bigint not null,
+    updated_at datetime(6) not null,
+    primary key (consumer)
+);
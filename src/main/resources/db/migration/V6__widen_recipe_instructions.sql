@@ -0,0 +1,3 @@
+-- a database that hibernate created before flyway took over is baselined at version 1 without running V1, and older
+-- hibernate versions mapped the instructions as tinytext (255 bytes). Make sure they are longtext like V1 creates them
+alter table recipes modify instructions longtext not null;
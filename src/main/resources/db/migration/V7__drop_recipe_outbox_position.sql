@@ -0,0 +1,3 @@
+-- the outbox listeners keep their derived state in memory, a restarted instance starts with empty caches and index, so
+-- a saved position had nothing to catch up on (and instances with the same consumer name overwrote each other's)
+drop table recipe_outbox_position;
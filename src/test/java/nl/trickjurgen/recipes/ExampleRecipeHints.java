@@ -0,0 +1,17 @@
+package nl.trickjurgen.recipes;
+
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.test.context.aot.TestRuntimeHintsRegistrar;
+
+/**
+ * the example recipes (classpath:recipes/*.json) the tests load, for the native test run (mvn -PnativeTest test);
+ * registered in META-INF/spring/aot.factories
+ */
+public class ExampleRecipeHints implements TestRuntimeHintsRegistrar {
+
+    @Override
+    public void registerHints(final RuntimeHints runtimeHints, final Class<?> testClass, final ClassLoader classLoader) {
+        runtimeHints.resources().registerPattern("recipes/*.json");
+    }
+
+}
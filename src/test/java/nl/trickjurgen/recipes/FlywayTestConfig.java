@@ -0,0 +1,22 @@
+package nl.trickjurgen.recipes;
+
+import org.springframework.boot.autoconfigure.flyway.FlywayMigrationStrategy;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * test contexts share one in-memory database; clean it before migrating so every context starts empty,
+ * like the hibernate create-drop schema did before flyway owned the schema
+ */
+@Configuration
+public class FlywayTestConfig {
+
+    @Bean
+    public FlywayMigrationStrategy cleanMigrateStrategy() {
+        return flyway -> {
+            flyway.clean();
+            flyway.migrate();
+        };
+    }
+
+}
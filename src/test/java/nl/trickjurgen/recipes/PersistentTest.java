@@ -2,13 +2,11 @@ package nl.trickjurgen.recipes;
 
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import nl.trickjurgen.recipes.datamodel.Ingredient;
 import nl.trickjurgen.recipes.datamodel.IngredientType;
 import nl.trickjurgen.recipes.datamodel.Recipe;
 import nl.trickjurgen.recipes.dto.IngredientDto;
 import nl.trickjurgen.recipes.dto.RecipeDto;
 import nl.trickjurgen.recipes.mapper.RecepAndIngrMapper;
-import nl.trickjurgen.recipes.repo.IngredientRepo;
 import nl.trickjurgen.recipes.repo.IngredientTypeRepo;
 import nl.trickjurgen.recipes.repo.RecipeRepo;
 import nl.trickjurgen.recipes.utils.NameStringHelper;
@@ -20,8 +18,6 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.core.io.ResourceLoader;
 
 import java.io.File;
-import java.nio.file.Files;
-import java.nio.file.Paths;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
@@ -34,7 +30,6 @@ public class PersistentTest {
 
     private final RecipeRepo recipeRepo;
     private final IngredientTypeRepo ingredientTypeRepo;
-    private final IngredientRepo ingredientRepo;
     private final ResourceLoader resourceLoader;
     private final ObjectMapper objectMapper;
 
@@ -42,11 +37,10 @@ public class PersistentTest {
 
     @Autowired
     public PersistentTest(RecipeRepo recipeRepo, ResourceLoader resourceLoader, ObjectMapper objectMapper,
-                          IngredientRepo ingredientRepo, IngredientTypeRepo ingredientTypeRepo) {
+                          IngredientTypeRepo ingredientTypeRepo) {
         this.recipeRepo = recipeRepo;
         this.resourceLoader = resourceLoader;
         this.objectMapper = objectMapper;
-        this.ingredientRepo = ingredientRepo;
         this.ingredientTypeRepo = ingredientTypeRepo;
     }
 
@@ -61,7 +55,7 @@ public class PersistentTest {
 
         RecipeDto recipeDto;
         try {
-            byte[] bytes = Files.readAllBytes(Paths.get(resourceLoader.getResource(path).getURI()));
+            byte[] bytes = resourceLoader.getResource(path).getInputStream().readAllBytes();
             recipeDto = objectMapper.readValue(bytes, new TypeReference<>() {});
             assertThat(recipeDto).isNotNull();
             logger.info("recipe read from {}", path);
@@ -86,10 +80,9 @@ public class PersistentTest {
             String correctedName = NameStringHelper.toTitleCase(ing.getName());
             Optional<IngredientType> typeByName = ingredientTypeRepo.findByName(correctedName);
             IngredientType ingType = typeByName.orElseGet(() -> ingredientTypeRepo.save(IngredientType.builder().name(correctedName).build()));
-            Ingredient savedIngredient = ingredientRepo.save(RecepAndIngrMapper.dtoToIngredientWithType(ing, ingType));
-            newRecipe.getIngredients().add(savedIngredient);
+            newRecipe.getIngredients().add(RecepAndIngrMapper.dtoToIngredientWithType(ing, ingType));
         }
-        recipeRepo.save(newRecipe);
+        recipeRepo.save(newRecipe); // ingredients are saved along with the recipe
     }
 
 }
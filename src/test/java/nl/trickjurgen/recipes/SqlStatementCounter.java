@@ -0,0 +1,37 @@
+package nl.trickjurgen.recipes;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * sees every SQL statement hibernate prepares (registered in the test properties as
+ * hibernate.session_factory.statement_inspector), from every thread, so also from the tomcat request threads and the
+ * task executor. Tests reset it, do one request and check what was executed.
+ */
+public class SqlStatementCounter implements StatementInspector {
+
+    private static final Queue<String> STATEMENTS = new ConcurrentLinkedQueue<>();
+
+    @Override
+    public String inspect(String sql) {
+        STATEMENTS.add(sql);
+        return sql;
+    }
+
+    public static void reset() {
+        STATEMENTS.clear();
+    }
+
+    public static int count() {
+        return STATEMENTS.size();
+    }
+
+    public static List<String> statements() {
+        return new ArrayList<>(STATEMENTS);
+    }
+
+}
@@ -0,0 +1,148 @@
+package nl.trickjurgen.recipes.admission;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AdaptiveConcurrencyLimitTest {
+
+    @Test
+    void admitsUpToTheLimitThenQueuesThenRejects() throws Exception {
+        final AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(2, 1, 2, 1, Duration.ofSeconds(5), 2.0, 10);
+        final AdaptiveConcurrencyLimit.Permit first = limit.acquire();
+        final AdaptiveConcurrencyLimit.Permit second = limit.acquire();
+        assertThat(first).isNotNull();
+        assertThat(second).isNotNull();
+        assertThat(limit.getInFlight()).isEqualTo(2);
+
+        final CompletableFuture<AdaptiveConcurrencyLimit.Permit> queued = CompletableFuture.supplyAsync(() -> acquire(limit));
+        while (limit.getQueued() == 0) Thread.onSpinWait();
+        assertThat(limit.acquire()).as("queue of one is full").isNull();
+
+        first.release();
+        final AdaptiveConcurrencyLimit.Permit fromQueue = queued.get(5, TimeUnit.SECONDS);
+        assertThat(fromQueue).isNotNull();
+        assertThat(fromQueue.getQueueTime(TimeUnit.NANOSECONDS)).isPositive();
+        assertThat(limit.getQueued()).isZero();
+        assertThat(limit.getInFlight()).isEqualTo(2);
+
+        first.release(); // a second release doesn't count
+        assertThat(limit.getInFlight()).isEqualTo(2);
+    }
+
+    @Test
+    void rejectsAfterTheMaxQueueWait() throws Exception {
+        final AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(1, 1, 1, 10, Duration.ofMillis(50), 2.0, 10);
+        assertThat(limit.acquire()).isNotNull();
+        final long start = System.nanoTime();
+        assertThat(limit.acquire()).isNull();
+        assertThat(System.nanoTime() - start).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(50));
+        assertThat(limit.getQueued()).isZero();
+    }
+
+    @Test
+    void shrinksWhenLatencyGoesUpAndGrowsBackWhenItRecovers() throws Exception {
+        final AtomicLong clock = new AtomicLong();
+        final AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(10, 2, 12, 0, Duration.ZERO, 2.0, 1000, clock::get);
+        runConcurrently(limit, clock, 10, 20, Duration.ofMillis(1)); // baseline
+        assertThat(limit.getLimit()).isGreaterThanOrEqualTo(10);
+
+        runConcurrently(limit, clock, 10, 5, Duration.ofMillis(20)); // overloaded
+        assertThat(limit.getLimit()).as("limit under slow responses").isLessThan(5);
+
+        for (int round = 0; round < 50; round++) {
+            runConcurrently(limit, clock, limit.getLimit(), 1, Duration.ofMillis(1));
+        }
+        assertThat(limit.getLimit()).as("limit after recovering").isGreaterThanOrEqualTo(10).isLessThanOrEqualTo(12);
+    }
+
+    @Test
+    void overloadLastingManyWindowsKeepsTheLimitDown() throws Exception {
+        final AtomicLong clock = new AtomicLong();
+        final AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(10, 2, 12, 0, Duration.ZERO, 2.0, 100, clock::get);
+        runConcurrently(limit, clock, 10, 30, Duration.ofMillis(1)); // three windows of baseline
+        assertThat(limit.getLimit()).isGreaterThanOrEqualTo(10);
+
+        for (int round = 0; round < 500; round++) { // ten windows and more of slow responses
+            runConcurrently(limit, clock, limit.getLimit(), 1, Duration.ofMillis(20));
+        }
+        assertThat(limit.getLimit()).as("limit after a long overload").isEqualTo(2);
+    }
+
+    @Test
+    void fastAndSlowRoutesTogetherDontCollapseTheLimit() throws Exception {
+        final AtomicLong clock = new AtomicLong();
+        final AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(10, 4, 20, 0, Duration.ZERO, 3.0, 100, clock::get);
+        for (int round = 0; round < 200; round++) {
+            runConcurrently(limit, clock, "GET /recipes/{recipeId}", limit.getLimit(), 1, Duration.ofNanos(50_000));
+            runConcurrently(limit, clock, "GET /recipes", limit.getLimit(), 1, Duration.ofMillis(10));
+            if (round % 3 == 0) runConcurrently(limit, clock, "PUT /recipes", limit.getLimit(), 1, Duration.ofMillis(4));
+        }
+        assertThat(limit.getLimit()).as("limit under a steady mix of cached and database requests")
+                .isGreaterThanOrEqualTo(10);
+
+        for (int round = 0; round < 5; round++) {
+            runConcurrently(limit, clock, "GET /recipes/{recipeId}", limit.getLimit(), 1, Duration.ofMillis(2));
+            runConcurrently(limit, clock, "GET /recipes", limit.getLimit(), 1, Duration.ofMillis(200));
+        }
+        assertThat(limit.getLimit()).as("both routes slowed down").isLessThan(10);
+    }
+
+    @Test
+    void latencyIsSampledWhenTheHandlerReturnsNotWhenTheSlotIsReleased() throws Exception {
+        final AtomicLong clock = new AtomicLong();
+        final AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(10, 2, 12, 0, Duration.ZERO, 2.0, 1000, clock::get);
+        runConcurrently(limit, clock, "GET /recipesearch", 10, 20, Duration.ofMillis(1));
+        final int before = limit.getLimit();
+
+        for (int round = 0; round < 10; round++) { // streamed responses, the client takes a second to read them
+            final List<AdaptiveConcurrencyLimit.Permit> permits = new ArrayList<>();
+            for (int i = 0; i < 5; i++) permits.add(limit.acquire());
+            clock.addAndGet(Duration.ofMillis(1).toNanos());
+            permits.forEach(permit -> permit.sample("GET /recipesearch"));
+            assertThat(limit.getInFlight()).as("slots are held until released").isEqualTo(5);
+            clock.addAndGet(Duration.ofSeconds(1).toNanos());
+            permits.forEach(permit -> permit.sample("GET /recipesearch")); // only the first sample counts
+            permits.forEach(AdaptiveConcurrencyLimit.Permit::release);
+        }
+        assertThat(limit.getLimit()).isGreaterThanOrEqualTo(before);
+        assertThat(limit.getInFlight()).isZero();
+    }
+
+    private static void runConcurrently(final AdaptiveConcurrencyLimit limit, final AtomicLong clock, final int concurrency,
+                                        final int rounds, final Duration latency) throws InterruptedException {
+        runConcurrently(limit, clock, "GET /recipes", concurrency, rounds, latency);
+    }
+
+    // rounds of 'concurrency' requests on one route that all take 'latency' on the clock
+    private static void runConcurrently(final AdaptiveConcurrencyLimit limit, final AtomicLong clock, final String route,
+                                        final int concurrency, final int rounds, final Duration latency)
+            throws InterruptedException {
+        for (int round = 0; round < rounds; round++) {
+            final List<AdaptiveConcurrencyLimit.Permit> permits = new ArrayList<>();
+            for (int i = 0; i < concurrency; i++) {
+                final AdaptiveConcurrencyLimit.Permit permit = limit.acquire();
+                if (permit != null) permits.add(permit);
+            }
+            clock.addAndGet(latency.toNanos());
+            permits.forEach(permit -> permit.sample(route));
+            permits.forEach(AdaptiveConcurrencyLimit.Permit::release);
+        }
+    }
+
+    private static AdaptiveConcurrencyLimit.Permit acquire(final AdaptiveConcurrencyLimit limit) {
+        try {
+            return limit.acquire();
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
@@ -0,0 +1,107 @@
+package nl.trickjurgen.recipes.admission;
+
+import io.restassured.RestAssured;
+import nl.trickjurgen.recipes.RecipeAppApplication;
+import nl.trickjurgen.recipes.dto.IngredientDto;
+import nl.trickjurgen.recipes.dto.RecipeDto;
+import nl.trickjurgen.recipes.repo.RecipeRepo;
+import nl.trickjurgen.recipes.service.RecipeService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.MediaType;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+
+@SpringBootTest(webEnvironment = RANDOM_PORT, classes = {RecipeAppApplication.class})
+class AdmissionControlTest {
+
+    @SuppressWarnings("unused")
+    @LocalServerPort
+    private int port;
+
+    private final RecipeService recipeService;
+    private final RecipeRepo recipeRepo;
+    private final AdaptiveConcurrencyLimit searchLimit;
+
+    private final List<AdaptiveConcurrencyLimit.Permit> heldPermits = new ArrayList<>();
+
+    @Autowired
+    AdmissionControlTest(RecipeService recipeService, RecipeRepo recipeRepo,
+                         @Qualifier("searchAdmissionLimit") AdaptiveConcurrencyLimit searchLimit) {
+        this.recipeService = recipeService;
+        this.recipeRepo = recipeRepo;
+        this.searchLimit = searchLimit;
+    }
+
+    @BeforeEach
+    void setUp() {
+        RestAssured.port = port;
+        RestAssured.baseURI = "http://localhost";
+    }
+
+    @AfterEach
+    void tearDown() {
+        heldPermits.forEach(AdaptiveConcurrencyLimit.Permit::release);
+        recipeRepo.findAll().forEach(r -> recipeService.deleteRecipe(r.getId()));
+    }
+
+    @Test
+    void searchStormIsRejectedWhileCrudStillGoesThrough() throws InterruptedException {
+        final Long id = recipeService.saveNewRecipe(RecipeDto.builder().name("Bulkhead Broth").isVegetarian(true).servings(2)
+                .instructions("Simmer.").ingredients(Set.of(IngredientDto.builder().name("Water").volume("1 liter").build()))
+                .build()).getId();
+        // take every search permit, the last attempt waits out the queue time and gets none
+        AdaptiveConcurrencyLimit.Permit permit;
+        while ((permit = searchLimit.acquire()) != null) heldPermits.add(permit);
+        assertThat(heldPermits).hasSize(searchLimit.getLimit());
+
+        RestAssured.given().when().get("/recipesearch?isVegetarian=true").then()
+                .statusCode(503).header("Retry-After", "1");
+        RestAssured.given().when().get("/recipes/" + id).then().statusCode(200).body("name", equalTo("Bulkhead Broth"));
+
+        RestAssured.given().when().get("/actuator/metrics/recipes.admission.rejected?tag=class:search").then()
+                .statusCode(200).body("measurements[0].value", greaterThanOrEqualTo(1.0f));
+        RestAssured.given().when().get("/actuator/metrics/recipes.admission.inflight?tag=class:search").then()
+                .statusCode(200).body("measurements[0].value", equalTo((float) heldPermits.size()));
+
+        heldPermits.forEach(AdaptiveConcurrencyLimit.Permit::release);
+        heldPermits.clear();
+        RestAssured.given().when().get("/recipesearch?isVegetarian=true").then().statusCode(200);
+    }
+
+    @Test
+    void pathsSpringMatchesDifferentlyWrittenAreLimitedToo() throws InterruptedException {
+        final List<String> searchPaths = List.of("/recipesearch;x=1?isVegetarian=true", "/recipe%73earch?isVegetarian=true",
+                "//recipesearch?isVegetarian=true");
+        // they reach the search handler
+        searchPaths.forEach(path -> RestAssured.given().urlEncodingEnabled(false).when().get(path).then().statusCode(200));
+
+        AdaptiveConcurrencyLimit.Permit permit;
+        while ((permit = searchLimit.acquire()) != null) heldPermits.add(permit);
+        searchPaths.forEach(path -> RestAssured.given().urlEncodingEnabled(false).when().get(path).then().statusCode(503));
+    }
+
+    @Test
+    void streamedSearchReleasesItsPermitWhenTheStreamIsDone() throws InterruptedException {
+        RestAssured.given().accept(MediaType.APPLICATION_NDJSON_VALUE).when().get("/recipesearch?isVegetarian=true")
+                .then().statusCode(200);
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (searchLimit.getInFlight() > 0 && System.currentTimeMillis() < deadline) Thread.sleep(10);
+        assertThat(searchLimit.getInFlight()).isZero();
+        RestAssured.given().when().get("/actuator/metrics/recipes.admission.queue.time?tag=class:search").then()
+                .statusCode(200).body("measurements.find { it.statistic == 'COUNT' }.value", greaterThanOrEqualTo(1.0f));
+    }
+
+}
@@ -0,0 +1,122 @@
+package nl.trickjurgen.recipes.benchmark;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import nl.trickjurgen.recipes.dto.IngredientDto;
+import nl.trickjurgen.recipes.dto.RecipeDto;
+import nl.trickjurgen.recipes.dto.RecipeHeaderDto;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares json with the binary formats the api also speaks (Smile, CBOR) on the two payloads that matter for
+ * service-to-service calls: a large list of recipe headers (GET /recipes, /recipesearch) and a batch of full recipes
+ * with instructions and ingredients (GET /recipes?ids=). Logs the payload size and the median time to serialize and
+ * to deserialize it, per format.
+ * Run with: mvn test -Pbenchmark -Dtest=BinaryFormatBenchmark
+ */
+@Tag("benchmark")
+class BinaryFormatBenchmark {
+
+    private static final int HEADERS = 5000;
+    private static final int RECIPES = 100;
+    private static final int INGREDIENTS_PER_RECIPE = 8;
+    private static final int WARM_UP_RUNS = 200;
+    private static final int RUNS = 51;
+
+    private final Logger logger = LoggerFactory.getLogger(BinaryFormatBenchmark.class);
+
+    record FormatResult(String format, int bytes, long serializeMicros, long deserializeMicros) {
+    }
+
+    private final Map<String, ObjectMapper> formats = Map.of(
+            "json", Jackson2ObjectMapperBuilder.json().build(),
+            "smile", Jackson2ObjectMapperBuilder.smile().build(),
+            "cbor", Jackson2ObjectMapperBuilder.cbor().build());
+
+    @Test
+    void compareFormatsOnHeaderList() throws IOException {
+        final List<RecipeHeaderDto> headers = IntStream.range(0, HEADERS)
+                .mapToObj(i -> RecipeHeaderDto.builder().id(10_000L + i).name("Recipe number " + i)
+                        .isVegetarian(i % 3 == 0).servings(1 + i % 8).build())
+                .toList();
+        final List<FormatResult> results = compare(headers, new TypeReference<List<RecipeHeaderDto>>() {});
+        log(HEADERS + " recipe headers", results);
+        assertSmallerThanJson(results);
+    }
+
+    @Test
+    void compareFormatsOnFullRecipes() throws IOException {
+        final List<RecipeDto> recipes = IntStream.range(0, RECIPES)
+                .mapToObj(i -> RecipeDto.builder().id(10_000L + i).name("Recipe number " + i).isVegetarian(i % 3 == 0)
+                        .servings(1 + i % 8)
+                        .instructions("Prepare everything. " + (i % 2 == 0 ? "Bake in the oven " : "Cook in a pan ")
+                                + "for " + i % 60 + " minutes, stir now and then. ".repeat(8))
+                        .ingredients(IntStream.range(0, INGREDIENTS_PER_RECIPE)
+                                .mapToObj(n -> IngredientDto.builder().name("Ingredient " + (i * 7 + n * 31) % 300)
+                                        .volume((n + 1) * 50 + " gram").remark(n % 2 == 0 ? "fresh" : null).build())
+                                .collect(Collectors.toSet()))
+                        .build())
+                .toList();
+        final List<FormatResult> results = compare(recipes, new TypeReference<List<RecipeDto>>() {});
+        log(RECIPES + " recipes x " + INGREDIENTS_PER_RECIPE + " ingredients", results);
+        assertSmallerThanJson(results);
+    }
+
+    private <T> List<FormatResult> compare(final List<T> payload, final TypeReference<List<T>> type) throws IOException {
+        return List.of(measure("json", payload, type), measure("smile", payload, type), measure("cbor", payload, type));
+    }
+
+    private <T> FormatResult measure(final String format, final List<T> payload, final TypeReference<List<T>> type) throws IOException {
+        final ObjectMapper mapper = formats.get(format);
+        final byte[] encoded = mapper.writeValueAsBytes(payload);
+        assertThat(mapper.readValue(encoded, type)).hasSameSizeAs(payload);
+        for (int run = 0; run < WARM_UP_RUNS; run++) {
+            mapper.readValue(mapper.writeValueAsBytes(payload), type);
+        }
+        final long[] serialize = new long[RUNS];
+        final long[] deserialize = new long[RUNS];
+        for (int run = 0; run < RUNS; run++) {
+            final long start = System.nanoTime();
+            final byte[] bytes = mapper.writeValueAsBytes(payload);
+            final long written = System.nanoTime();
+            mapper.readValue(bytes, type);
+            serialize[run] = written - start;
+            deserialize[run] = System.nanoTime() - written;
+        }
+        return new FormatResult(format, encoded.length, median(serialize) / 1000, median(deserialize) / 1000);
+    }
+
+    private void log(final String payload, final List<FormatResult> results) {
+        logger.info("{}, median of {} runs", payload, RUNS);
+        final int jsonBytes = results.getFirst().bytes();
+        for (FormatResult result : results) {
+            logger.info("{}: {} bytes ({}% of json), serialize {} us, deserialize {} us", result.format(), result.bytes(),
+                    100 * result.bytes() / jsonBytes, result.serializeMicros(), result.deserializeMicros());
+        }
+    }
+
+    private static void assertSmallerThanJson(final List<FormatResult> results) {
+        final int jsonBytes = results.getFirst().bytes();
+        assertThat(results.subList(1, results.size())).allSatisfy(result -> assertThat(result.bytes()).isLessThan(jsonBytes));
+    }
+
+    private static long median(final long[] values) {
+        Arrays.sort(values);
+        return values[values.length / 2];
+    }
+
+}
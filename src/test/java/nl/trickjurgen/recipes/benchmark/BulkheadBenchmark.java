@@ -0,0 +1,169 @@
+package nl.trickjurgen.recipes.benchmark;
+
+import nl.trickjurgen.recipes.RecipeAppApplication;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Measures what a storm of expensive searches does to the latency of single recipe reads, with and without admission
+ * control. Starts the app twice on its own in-memory database with a large catalogue, keeps many search clients
+ * busy while a few crud clients read recipes, and logs the crud latency percentiles and how many searches were
+ * served or rejected.
+ * Run with: mvn test -Pbenchmark -Dtest=BulkheadBenchmark
+ */
+@Tag("benchmark")
+class BulkheadBenchmark {
+
+    private static final int RECIPES = 1000;
+    private static final int INGREDIENTS_PER_RECIPE = 8;
+    private static final int INGREDIENT_TYPES = 300;
+    private static final int SEARCH_CLIENTS = 100;
+    private static final int CRUD_CLIENTS = 10;
+    private static final int REQUESTS_PER_CRUD_CLIENT = 50;
+    private static final int WARMUP_REQUESTS = 200;
+
+    private final Logger logger = LoggerFactory.getLogger(BulkheadBenchmark.class);
+
+    record StormResult(String mode, int crudRequests, int crudErrors, long p50Micros, long p99Micros, long maxMicros,
+                       int searchesServed, int searchesRejected) {
+    }
+
+    @Test
+    void compareWithAndWithoutAdmissionControl() throws Exception {
+        StormResult without = runStorm("no admission control", false);
+        StormResult with = runStorm("admission control", true);
+
+        logger.info("{} search clients storming, {} crud clients x {} reads, catalogue of {} recipes",
+                SEARCH_CLIENTS, CRUD_CLIENTS, REQUESTS_PER_CRUD_CLIENT, RECIPES);
+        for (StormResult result : List.of(without, with)) {
+            logger.info("{}: crud p50 {} us, p99 {} us, max {} us, {} errors; searches {} served, {} rejected (503)",
+                    result.mode(), result.p50Micros(), result.p99Micros(), result.maxMicros(), result.crudErrors(),
+                    result.searchesServed(), result.searchesRejected());
+        }
+
+        assertThat(without.crudErrors()).isZero();
+        assertThat(with.crudErrors()).isZero();
+    }
+
+    private StormResult runStorm(final String mode, final boolean admissionControl) throws Exception {
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(RecipeAppApplication.class)
+                .properties("server.port=0",
+                        "spring.datasource.url=jdbc:h2:mem:bench-bulkhead-" + admissionControl + ";DB_CLOSE_DELAY=-1;MODE=MySQL;DATABASE_TO_LOWER=TRUE",
+                        "recipes.admission.enabled=" + admissionControl,
+                        "spring.jpa.show-sql=false")
+                .run()) {
+            fillCatalogue(context.getBean(JdbcTemplate.class));
+            int port = Integer.parseInt(context.getEnvironment().getRequiredProperty("local.server.port"));
+            URI search = URI.create("http://localhost:" + port + "/recipesearch?instruction=oven");
+            List<URI> reads = IntStream.rangeClosed(1, 50)
+                    .mapToObj(id -> URI.create("http://localhost:" + port + "/recipes/" + id)).toList();
+
+            try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor();
+                 HttpClient httpClient = HttpClient.newBuilder().executor(clients).version(HttpClient.Version.HTTP_1_1).build()) {
+                AtomicInteger ignored = new AtomicInteger();
+                for (int i = 0; i < WARMUP_REQUESTS; i++) {
+                    call(httpClient, i % 10 == 0 ? search : reads.get(i % reads.size()), ignored);
+                }
+
+                AtomicBoolean storming = new AtomicBoolean(true);
+                AtomicInteger served = new AtomicInteger();
+                AtomicInteger rejected = new AtomicInteger();
+                List<Future<?>> storm = new ArrayList<>();
+                for (int client = 0; client < SEARCH_CLIENTS; client++) {
+                    storm.add(clients.submit(() -> {
+                        while (storming.get()) {
+                            int status = status(httpClient, search);
+                            if (status == 200) served.incrementAndGet();
+                            else if (status == 503) rejected.incrementAndGet();
+                        }
+                        return null;
+                    }));
+                }
+                Thread.sleep(1000); // let the storm build up
+
+                AtomicInteger errors = new AtomicInteger();
+                List<Future<long[]>> futures = new ArrayList<>();
+                for (int client = 0; client < CRUD_CLIENTS; client++) {
+                    final int offset = client;
+                    futures.add(clients.submit(() -> {
+                        long[] latencies = new long[REQUESTS_PER_CRUD_CLIENT];
+                        for (int r = 0; r < REQUESTS_PER_CRUD_CLIENT; r++) {
+                            latencies[r] = call(httpClient, reads.get((offset + r) % reads.size()), errors);
+                        }
+                        return latencies;
+                    }));
+                }
+                long[] all = new long[CRUD_CLIENTS * REQUESTS_PER_CRUD_CLIENT];
+                int pos = 0;
+                for (Future<long[]> future : futures) {
+                    long[] latencies = future.get();
+                    System.arraycopy(latencies, 0, all, pos, latencies.length);
+                    pos += latencies.length;
+                }
+                storming.set(false);
+                for (Future<?> future : storm) future.get();
+                Arrays.sort(all);
+                return new StormResult(mode, all.length, errors.get(), percentile(all, 0.50), percentile(all, 0.99),
+                        all[all.length - 1] / 1000, served.get(), rejected.get());
+            }
+        }
+    }
+
+    private long call(final HttpClient httpClient, final URI uri, final AtomicInteger errors) throws InterruptedException {
+        long start = System.nanoTime();
+        if (status(httpClient, uri) != 200) errors.incrementAndGet();
+        return System.nanoTime() - start;
+    }
+
+    private int status(final HttpClient httpClient, final URI uri) throws InterruptedException {
+        try {
+            return httpClient.send(HttpRequest.newBuilder(uri).GET().build(), HttpResponse.BodyHandlers.discarding()).statusCode();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    private static long percentile(final long[] sortedNanos, final double fraction) {
+        int index = (int) Math.ceil(fraction * sortedNanos.length) - 1;
+        return sortedNanos[Math.max(0, index)] / 1000;
+    }
+
+    private void fillCatalogue(final JdbcTemplate jdbcTemplate) {
+        jdbcTemplate.batchUpdate("insert into ingredient_types (id, name) values (?, ?)",
+                IntStream.rangeClosed(1, INGREDIENT_TYPES).mapToObj(type -> new Object[]{type, "Ingredient " + type}).toList());
+        final List<Object[]> recipes = new ArrayList<>();
+        final List<Object[]> ingredients = new ArrayList<>();
+        for (int recipe = 1; recipe <= RECIPES; recipe++) {
+            recipes.add(new Object[]{recipe, "Recipe " + recipe, recipe % 3 == 0, 1 + recipe % 8,
+                    "Prepare everything. " + (recipe % 2 == 0 ? "Bake in the oven " : "Cook in a pan ") + "for " + recipe % 60 + " minutes."});
+            for (int i = 0; i < INGREDIENTS_PER_RECIPE; i++) {
+                ingredients.add(new Object[]{recipe, 1 + (recipe * 7 + i * 31) % INGREDIENT_TYPES, (i + 1) + " gram", null});
+            }
+        }
+        jdbcTemplate.batchUpdate("insert into recipes (id, name, is_vegetarian, servings, instructions) values (?, ?, ?, ?, ?)", recipes);
+        jdbcTemplate.batchUpdate("insert into ingredients (recipe_id, ingredient_type_id, quantity_and_unit, remark) values (?, ?, ?, ?)", ingredients);
+    }
+
+}
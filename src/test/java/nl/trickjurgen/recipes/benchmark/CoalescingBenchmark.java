@@ -0,0 +1,163 @@
+package nl.trickjurgen.recipes.benchmark;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import nl.trickjurgen.recipes.RecipeAppApplication;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Measures request coalescing: many clients run the same search at the same time, and for comparison the same
+ * number of clients run equally expensive searches that all differ (so nothing can be shared). Logs throughput,
+ * latency percentiles and how many searches were executed or coalesced. Admission control is off, it would
+ * reject most of these concurrent searches.
+ * Run with: mvn test -Pbenchmark -Dtest=CoalescingBenchmark
+ */
+@Tag("benchmark")
+class CoalescingBenchmark {
+
+    private static final int RECIPES = 1000;
+    private static final int INGREDIENTS_PER_RECIPE = 8;
+    private static final int INGREDIENT_TYPES = 300;
+    private static final int CONCURRENT_CLIENTS = 50;
+    private static final int REQUESTS_PER_CLIENT = 20;
+    private static final int WARMUP_REQUESTS = 100;
+    private static final String SEARCH_METHOD = "RecipeService.findRecipeHeadersWithGivenParams";
+
+    private final Logger logger = LoggerFactory.getLogger(CoalescingBenchmark.class);
+
+    record LoadResult(String mode, int requests, int errors, long wallMillis, long p50Micros, long p99Micros,
+                      long executed, long coalesced) {
+        double throughput() {
+            return requests * 1000.0 / Math.max(1, wallMillis);
+        }
+    }
+
+    @Test
+    void compareIdenticalWithDistinctSearches() throws Exception {
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(RecipeAppApplication.class)
+                .properties("server.port=0",
+                        "spring.datasource.url=jdbc:h2:mem:bench-coalescing;DB_CLOSE_DELAY=-1;MODE=MySQL;DATABASE_TO_LOWER=TRUE",
+                        "recipes.admission.enabled=false",
+                        "spring.jpa.show-sql=false")
+                .run()) {
+            fillCatalogue(context.getBean(JdbcTemplate.class));
+            MeterRegistry meterRegistry = context.getBean(MeterRegistry.class);
+            int port = Integer.parseInt(context.getEnvironment().getRequiredProperty("local.server.port"));
+            String search = "http://localhost:" + port + "/recipesearch?instruction=oven&maxServings=";
+
+            // every distinct search has a different max that still matches every recipe, so they cost the same
+            LoadResult distinct = runLoad("distinct", meterRegistry, request -> URI.create(search + (100 + request)));
+            LoadResult identical = runLoad("identical", meterRegistry, request -> URI.create(search + 100));
+
+            logger.info("{} concurrent clients x {} searches, catalogue of {} recipes", CONCURRENT_CLIENTS, REQUESTS_PER_CLIENT, RECIPES);
+            for (LoadResult result : List.of(distinct, identical)) {
+                logger.info("{} searches: {} req, {} errors, {} ms, {} req/s, p50 {} us, p99 {} us; {} executed, {} coalesced",
+                        result.mode(), result.requests(), result.errors(), result.wallMillis(),
+                        String.format("%.0f", result.throughput()), result.p50Micros(), result.p99Micros(),
+                        result.executed(), result.coalesced());
+            }
+
+            assertThat(distinct.errors()).isZero();
+            assertThat(identical.errors()).isZero();
+            assertThat(distinct.coalesced()).isZero();
+        }
+    }
+
+    private LoadResult runLoad(final String mode, final MeterRegistry meterRegistry, final IntFunction<URI> target) throws Exception {
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor();
+             HttpClient httpClient = HttpClient.newBuilder().executor(clients).version(HttpClient.Version.HTTP_1_1).build()) {
+            AtomicInteger errors = new AtomicInteger();
+            for (int i = 0; i < WARMUP_REQUESTS; i++) {
+                call(httpClient, target.apply(-1 - i), errors);
+            }
+            errors.set(0);
+            long executedBefore = count(meterRegistry, "executed");
+            long coalescedBefore = count(meterRegistry, "coalesced");
+
+            List<Future<long[]>> futures = new ArrayList<>();
+            long start = System.nanoTime();
+            for (int client = 0; client < CONCURRENT_CLIENTS; client++) {
+                final int offset = client * REQUESTS_PER_CLIENT;
+                futures.add(clients.submit(() -> {
+                    long[] latencies = new long[REQUESTS_PER_CLIENT];
+                    for (int r = 0; r < REQUESTS_PER_CLIENT; r++) {
+                        latencies[r] = call(httpClient, target.apply(offset + r), errors);
+                    }
+                    return latencies;
+                }));
+            }
+            long[] all = new long[CONCURRENT_CLIENTS * REQUESTS_PER_CLIENT];
+            int pos = 0;
+            for (Future<long[]> future : futures) {
+                long[] latencies = future.get();
+                System.arraycopy(latencies, 0, all, pos, latencies.length);
+                pos += latencies.length;
+            }
+            long wallMillis = (System.nanoTime() - start) / 1_000_000;
+            Arrays.sort(all);
+            return new LoadResult(mode, all.length, errors.get(), wallMillis, percentile(all, 0.50), percentile(all, 0.99),
+                    count(meterRegistry, "executed") - executedBefore, count(meterRegistry, "coalesced") - coalescedBefore);
+        }
+    }
+
+    private static long count(final MeterRegistry meterRegistry, final String outcome) {
+        Counter counter = meterRegistry.find("recipes.coalescing.calls").tag("method", SEARCH_METHOD).tag("outcome", outcome).counter();
+        return counter == null ? 0L : (long) counter.count();
+    }
+
+    private long call(final HttpClient httpClient, final URI uri, final AtomicInteger errors) throws InterruptedException {
+        long start = System.nanoTime();
+        try {
+            HttpResponse<Void> response = httpClient.send(HttpRequest.newBuilder(uri).GET().build(), HttpResponse.BodyHandlers.discarding());
+            if (response.statusCode() != 200) errors.incrementAndGet();
+        } catch (IOException e) {
+            errors.incrementAndGet();
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static long percentile(final long[] sortedNanos, final double fraction) {
+        int index = (int) Math.ceil(fraction * sortedNanos.length) - 1;
+        return sortedNanos[Math.max(0, index)] / 1000;
+    }
+
+    private void fillCatalogue(final JdbcTemplate jdbcTemplate) {
+        jdbcTemplate.batchUpdate("insert into ingredient_types (id, name) values (?, ?)",
+                IntStream.rangeClosed(1, INGREDIENT_TYPES).mapToObj(type -> new Object[]{type, "Ingredient " + type}).toList());
+        final List<Object[]> recipes = new ArrayList<>();
+        final List<Object[]> ingredients = new ArrayList<>();
+        for (int recipe = 1; recipe <= RECIPES; recipe++) {
+            recipes.add(new Object[]{recipe, "Recipe " + recipe, recipe % 3 == 0, 1 + recipe % 8,
+                    "Prepare everything. " + (recipe % 2 == 0 ? "Bake in the oven " : "Cook in a pan ") + "for " + recipe % 60 + " minutes."});
+            for (int i = 0; i < INGREDIENTS_PER_RECIPE; i++) {
+                ingredients.add(new Object[]{recipe, 1 + (recipe * 7 + i * 31) % INGREDIENT_TYPES, (i + 1) + " gram", null});
+            }
+        }
+        jdbcTemplate.batchUpdate("insert into recipes (id, name, is_vegetarian, servings, instructions) values (?, ?, ?, ?, ?)", recipes);
+        jdbcTemplate.batchUpdate("insert into ingredients (recipe_id, ingredient_type_id, quantity_and_unit, remark) values (?, ?, ?, ?)", ingredients);
+    }
+
+}
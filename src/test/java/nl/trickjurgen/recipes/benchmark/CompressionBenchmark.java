@@ -0,0 +1,124 @@
+package nl.trickjurgen.recipes.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import nl.trickjurgen.recipes.dto.IngredientDto;
+import nl.trickjurgen.recipes.dto.RecipeDto;
+import nl.trickjurgen.recipes.dto.RecipeHeaderDto;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * CPU versus bandwidth of gzip on the json responses: a single full recipe (GET /recipes/{id}), a batch of 100 full
+ * recipes and a list of 5000 recipe headers. Logs per payload the json size, and per compression level the gzip size,
+ * the median time to compress and to decompress, and the transfer time saved on a 10 Mbit/s and a 1 Gbit/s link.
+ * Compressing costs the server that time on every request, unless the body is precompressed (cached recipe details).
+ * Run with: mvn test -Pbenchmark -Dtest=CompressionBenchmark
+ */
+@Tag("benchmark")
+class CompressionBenchmark {
+
+    private static final int[] LEVELS = {Deflater.BEST_SPEED, 6, Deflater.BEST_COMPRESSION}; // 6 is the gzip (and tomcat) default
+    private static final int WARM_UP_RUNS = 200;
+    private static final int RUNS = 51;
+    private static final long SLOW_LINK_BITS_PER_SECOND = 10_000_000L;
+    private static final long FAST_LINK_BITS_PER_SECOND = 1_000_000_000L;
+
+    private final Logger logger = LoggerFactory.getLogger(CompressionBenchmark.class);
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+    @Test
+    void compareCompressionLevels() throws IOException {
+        final List<RecipeDto> recipes = IntStream.range(0, 100).mapToObj(CompressionBenchmark::recipe).toList();
+        final List<RecipeHeaderDto> headers = IntStream.range(0, 5000)
+                .mapToObj(i -> RecipeHeaderDto.builder().id(10_000L + i).name("Recipe number " + i)
+                        .isVegetarian(i % 3 == 0).servings(1 + i % 8).build())
+                .toList();
+
+        measure("1 full recipe", objectMapper.writeValueAsBytes(recipes.getFirst()));
+        measure("100 full recipes", objectMapper.writeValueAsBytes(recipes));
+        measure("5000 recipe headers", objectMapper.writeValueAsBytes(headers));
+    }
+
+    private void measure(final String payload, final byte[] json) {
+        logger.info("{}: {} bytes json, median of {} runs", payload, json.length, RUNS);
+        for (int level : LEVELS) {
+            final byte[] compressed = gzip(json, level);
+            assertThat(gunzip(compressed)).isEqualTo(json);
+            for (int run = 0; run < WARM_UP_RUNS; run++) {
+                gunzip(gzip(json, level));
+            }
+            final long[] compress = new long[RUNS];
+            final long[] decompress = new long[RUNS];
+            for (int run = 0; run < RUNS; run++) {
+                final long start = System.nanoTime();
+                final byte[] bytes = gzip(json, level);
+                final long zipped = System.nanoTime();
+                gunzip(bytes);
+                compress[run] = zipped - start;
+                decompress[run] = System.nanoTime() - zipped;
+            }
+            final long savedBits = 8L * (json.length - compressed.length);
+            logger.info("gzip level {}: {} bytes ({}% of json), compress {} us, decompress {} us, transfer saved {} us at 10 Mbit/s, {} us at 1 Gbit/s",
+                    level, compressed.length, 100 * compressed.length / json.length, median(compress) / 1000, median(decompress) / 1000,
+                    savedBits * 1_000_000 / SLOW_LINK_BITS_PER_SECOND, savedBits * 1_000_000 / FAST_LINK_BITS_PER_SECOND);
+            assertThat(compressed.length).isLessThan(json.length);
+        }
+    }
+
+    private static byte[] gzip(final byte[] data, final int level) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2);
+        try (OutputStream gzip = new GZIPOutputStream(out) {
+            {
+                def.setLevel(level);
+            }
+        }) {
+            gzip.write(data);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] gunzip(final byte[] data) {
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(data))) {
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static RecipeDto recipe(final int i) {
+        return RecipeDto.builder().id(10_000L + i).name("Recipe number " + i).isVegetarian(i % 3 == 0).servings(1 + i % 8)
+                .instructions("Prepare everything. " + (i % 2 == 0 ? "Bake in the oven " : "Cook in a pan ")
+                        + "for " + i % 60 + " minutes, stir now and then. ".repeat(8))
+                .ingredients(IntStream.range(0, 8)
+                        .mapToObj(n -> IngredientDto.builder().name("Ingredient " + (i * 7 + n * 31) % 300)
+                                .volume((n + 1) * 50 + " gram").remark(n % 2 == 0 ? "fresh" : null).build())
+                        .collect(Collectors.toSet()))
+                .build();
+    }
+
+    private static long median(final long[] values) {
+        Arrays.sort(values);
+        return values[values.length / 2];
+    }
+
+}
@@ -0,0 +1,91 @@
+package nl.trickjurgen.recipes.benchmark;
+
+import nl.trickjurgen.recipes.datamodel.IngredientType;
+import nl.trickjurgen.recipes.repo.IngredientTypeRepo;
+import nl.trickjurgen.recipes.service.IngredientMatch;
+import nl.trickjurgen.recipes.service.IngredientTypeIndex;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Measures resolving an ingredient search term to ingredient type ids on a large catalogue of types: a scan of all
+ * names (what sql LIKE '%term%' on the names does) against the trigram index, for a substring and a fuzzy match.
+ * Logs the median time per lookup and the number of matching types.
+ * Run with: mvn test -Pbenchmark -Dtest=IngredientIndexBenchmark
+ */
+@Tag("benchmark")
+class IngredientIndexBenchmark {
+
+    private static final List<String> KINDS = List.of("Fresh", "Dried", "Smoked", "Ground", "Canned", "Frozen", "Roasted",
+            "Pickled", "Sweet", "Red", "Green", "Wild", "Organic", "Baby", "Whole", "Sliced", "Crushed", "Toasted", "Raw", "Salted");
+    private static final List<String> BASES = List.of("Tomatoes", "Paprika", "Onion", "Garlic", "Basil", "Pepper", "Carrots",
+            "Mushrooms", "Almonds", "Chili", "Ginger", "Lentils", "Beans", "Spinach", "Cabbage", "Celery", "Lemon", "Apple",
+            "Cumin", "Oregano", "Parsley", "Thyme", "Rosemary", "Salmon", "Shrimp", "Chicken", "Beef", "Rice", "Noodles", "Cheese");
+    private static final int TYPES = 20_000;
+    private static final int WARM_UP_RUNS = 2_000;
+    private static final int RUNS = 501;
+
+    private final Logger logger = LoggerFactory.getLogger(IngredientIndexBenchmark.class);
+
+    @Test
+    void compareScanWithIndex() {
+        // kind + base + a brand number: 20 x 30 x 34 names
+        final List<IngredientType> types = IntStream.range(0, TYPES)
+                .mapToObj(i -> IngredientType.builder().id((long) i)
+                        .name(KINDS.get(i % KINDS.size()) + " " + BASES.get(i / KINDS.size() % BASES.size()) + " " + i / (KINDS.size() * BASES.size()))
+                        .build())
+                .toList();
+        final IngredientTypeRepo ingredientTypeRepo = mock(IngredientTypeRepo.class);
+        when(ingredientTypeRepo.findAll()).thenReturn(types);
+        final IngredientTypeIndex index = new IngredientTypeIndex(ingredientTypeRepo, 0.4);
+        index.ensureLoaded();
+
+        logger.info("{} ingredient types, median of {} runs", TYPES, RUNS);
+        for (String term : List.of("smoked paprika", "tomatoes", "ginger 3")) {
+            final Set<Long> scanned = measure("scan '" + term + "'", () -> scan(types, term));
+            final Set<Long> indexed = measure("index substring '" + term + "'", () -> index.resolve(term, IngredientMatch.SUBSTRING));
+            assertThat(indexed).isEqualTo(scanned);
+        }
+        assertThat(measure("index fuzzy 'tomatos'", () -> index.resolve("tomatos", IngredientMatch.FUZZY))).isNotEmpty();
+        assertThat(measure("index fuzzy 'smoked papprika'", () -> index.resolve("smoked papprika", IngredientMatch.FUZZY))).isNotEmpty();
+    }
+
+    private static Set<Long> scan(final List<IngredientType> types, final String term) {
+        final String lowerCaseTerm = term.toLowerCase(Locale.ROOT);
+        return types.stream()
+                .filter(type -> type.getName().toLowerCase(Locale.ROOT).contains(lowerCaseTerm))
+                .map(IngredientType::getId)
+                .collect(Collectors.toSet());
+    }
+
+    private Set<Long> measure(final String lookup, final Supplier<Set<Long>> resolve) {
+        for (int run = 0; run < WARM_UP_RUNS; run++) {
+            resolve.get();
+        }
+        final long[] nanos = new long[RUNS];
+        Set<Long> ids = Set.of();
+        for (int run = 0; run < RUNS; run++) {
+            final long start = System.nanoTime();
+            ids = resolve.get();
+            nanos[run] = System.nanoTime() - start;
+        }
+        Arrays.sort(nanos);
+        logger.info("{}: {} us, {} types", lookup, nanos[RUNS / 2] / 1000, ids.size());
+        return ids;
+    }
+
+}
@@ -0,0 +1,136 @@
+package nl.trickjurgen.recipes.benchmark;
+
+import nl.trickjurgen.recipes.RecipeAppApplication;
+import nl.trickjurgen.recipes.dto.RecipeDto;
+import nl.trickjurgen.recipes.service.IngredientMatch;
+import nl.trickjurgen.recipes.service.IngredientTypeIndex;
+import nl.trickjurgen.recipes.service.RecipeService;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Measures what a search request costs in memory with a writable session (like open-session-in-view without a
+ * transaction did: snapshots of every loaded entity, dirty check at the end) versus a read-only transaction.
+ * Fills its own in-memory database with a large catalogue and runs a search that loads every recipe with its
+ * instructions and ingredients, then logs the bytes allocated by the request and the heap still held by the
+ * session at the end of it.
+ * Run with: mvn test -Pbenchmark -Dtest=ReadOnlySessionBenchmark
+ */
+@Tag("benchmark")
+class ReadOnlySessionBenchmark {
+
+    private static final int RECIPES = 3000;
+    private static final int INGREDIENTS_PER_RECIPE = 8;
+    private static final int INGREDIENT_TYPES = 300;
+    private static final int RUNS = 5;
+
+    private final Logger logger = LoggerFactory.getLogger(ReadOnlySessionBenchmark.class);
+
+    record MemoryResult(String mode, int hits, long allocatedBytes, long sessionHeapBytes) {
+    }
+
+    @Test
+    void compareReadOnlyWithWritableSession() {
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(RecipeAppApplication.class)
+                .properties("server.port=0",
+                        "spring.datasource.url=jdbc:h2:mem:bench-readonly;DB_CLOSE_DELAY=-1;MODE=MySQL;DATABASE_TO_LOWER=TRUE",
+                        "spring.jpa.show-sql=false")
+                .run()) {
+            fillCatalogue(context.getBean(JdbcTemplate.class));
+            context.getBean(IngredientTypeIndex.class).reset(); // filled behind its back
+            RecipeService recipeService = context.getBean(RecipeService.class);
+            PlatformTransactionManager transactionManager = context.getBean(PlatformTransactionManager.class);
+
+            measure("writable", recipeService, transactionManager, false); // warm up
+            measure("read-only", recipeService, transactionManager, true);
+            MemoryResult writable = measure("writable", recipeService, transactionManager, false);
+            MemoryResult readOnly = measure("read-only", recipeService, transactionManager, true);
+
+            logger.info("catalogue of {} recipes x {} ingredients, median of {} runs", RECIPES, INGREDIENTS_PER_RECIPE, RUNS);
+            for (MemoryResult result : List.of(writable, readOnly)) {
+                logger.info("{} session: {} hits, {} KB allocated per request, {} KB held by the session",
+                        result.mode(), result.hits(), result.allocatedBytes() / 1024, result.sessionHeapBytes() / 1024);
+            }
+            logger.info("saved per search request: {} KB allocated, {} KB held",
+                    (writable.allocatedBytes() - readOnly.allocatedBytes()) / 1024,
+                    (writable.sessionHeapBytes() - readOnly.sessionHeapBytes()) / 1024);
+
+            assertThat(readOnly.hits()).isEqualTo(writable.hits()).isPositive();
+        }
+    }
+
+    /**
+     * the outer transaction keeps the session open until the end of the 'request', like open-session-in-view did,
+     * the service method joins it. With readOnly the session is read-only with flush mode MANUAL.
+     */
+    private MemoryResult measure(final String mode, final RecipeService recipeService,
+                                 final PlatformTransactionManager transactionManager, final boolean readOnly) {
+        final TransactionTemplate request = new TransactionTemplate(transactionManager);
+        request.setReadOnly(readOnly);
+        final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        final long[] allocated = new long[RUNS];
+        final long[] held = new long[RUNS];
+        int hits = 0;
+        for (int run = 0; run < RUNS; run++) {
+            final long heapBefore = usedHeapAfterGc(memory);
+            final long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+            final long[] heapInSession = new long[1];
+            final List<RecipeDto> found = request.execute(status -> {
+                final List<RecipeDto> result = recipeService.findRecipesWithSpecificDetails(null, null, null, List.of("spice"), null,
+                        IngredientMatch.SUBSTRING, "oven");
+                heapInSession[0] = usedHeapAfterGc(memory);
+                return result;
+            });
+            allocated[run] = threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+            held[run] = heapInSession[0] - heapBefore;
+            hits = found == null ? 0 : found.size();
+        }
+        return new MemoryResult(mode, hits, median(allocated), median(held));
+    }
+
+    private static long usedHeapAfterGc(final MemoryMXBean memory) {
+        System.gc();
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    private static long median(final long[] values) {
+        Arrays.sort(values);
+        return values[values.length / 2];
+    }
+
+    private void fillCatalogue(final JdbcTemplate jdbcTemplate) {
+        jdbcTemplate.batchUpdate("insert into ingredient_types (id, name) values (?, ?)",
+                IntStream.rangeClosed(1, INGREDIENT_TYPES)
+                        .mapToObj(type -> new Object[]{type, (type % 10 == 0 ? "Spice " : "Ingredient ") + type})
+                        .toList());
+        final List<Object[]> recipes = new ArrayList<>();
+        final List<Object[]> ingredients = new ArrayList<>();
+        for (int recipe = 1; recipe <= RECIPES; recipe++) {
+            recipes.add(new Object[]{recipe, "Recipe " + recipe, recipe % 3 == 0, 1 + recipe % 8,
+                    "Prepare everything. " + (recipe % 2 == 0 ? "Bake in the oven " : "Cook in a pan ") + "for " + recipe % 60 + " minutes. ".repeat(20)});
+            for (int i = 0; i < INGREDIENTS_PER_RECIPE; i++) {
+                ingredients.add(new Object[]{recipe, 1 + (recipe * 7 + i * 31) % INGREDIENT_TYPES, (i + 1) + " gram", i % 2 == 0 ? "fresh" : null});
+            }
+        }
+        jdbcTemplate.batchUpdate("insert into recipes (id, name, is_vegetarian, servings, instructions) values (?, ?, ?, ?, ?)", recipes);
+        jdbcTemplate.batchUpdate("insert into ingredients (recipe_id, ingredient_type_id, quantity_and_unit, remark) values (?, ?, ?, ?)", ingredients);
+    }
+
+}
@@ -0,0 +1,136 @@
+package nl.trickjurgen.recipes.benchmark;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Measures time-to-first-request: from starting the JVM until GET /recipes is answered, for the plain boot jar and for
+ * the startup optimised setup (extracted jar, CDS archive, AOT, lazy springdoc), with the steps in between.
+ * Every variant runs in its own JVM on an in-memory H2 database (appended to the class path, the app jar only
+ * contains the MySQL driver), so the flyway migration is part of the startup.
+ * Build the jars first, then run with:
+ * mvn package -Pstartup -DskipTests
+ * mvn test -Pbenchmark -Dtest=StartupBenchmark
+ */
+@Tag("benchmark")
+class StartupBenchmark {
+
+    private static final Path TARGET = Path.of("target");
+    private static final Path EXTRACTED = TARGET.resolve("startup");
+    private static final String MAIN_CLASS = "nl.trickjurgen.recipes.RecipeAppApplication";
+    private static final String BOOT_LAUNCHER = "org.springframework.boot.loader.launch.JarLauncher";
+    private static final int RUNS = 3;
+    private static final Duration START_TIMEOUT = Duration.ofSeconds(120);
+
+    private final Logger logger = LoggerFactory.getLogger(StartupBenchmark.class);
+    private final HttpClient httpClient = HttpClient.newBuilder().connectTimeout(Duration.ofMillis(200)).build();
+
+    record Variant(String name, Path workingDirectory, List<String> jvmOptions, String classPath, String mainClass) {
+    }
+
+    @Test
+    void timeToFirstRequest() throws Exception {
+        final Path extractedJar = findJar(EXTRACTED);
+        assumeTrue(extractedJar != null && Files.exists(EXTRACTED.resolve("recipe-app.jsa")),
+                "no startup build, run 'mvn package -Pstartup -DskipTests' first");
+        final Path bootJar = TARGET.resolve(extractedJar.getFileName());
+        final String h2Jar = Path.of(org.h2.Driver.class.getProtectionDomain().getCodeSource().getLocation().toURI()).toString();
+
+        final List<Variant> variants = List.of(
+                new Variant("default (boot jar)", TARGET, List.of(), bootJar.toAbsolutePath() + File.pathSeparator + h2Jar, BOOT_LAUNCHER),
+                new Variant("extracted jar", EXTRACTED, List.of(), extractedJar.getFileName() + File.pathSeparator + h2Jar, MAIN_CLASS),
+                new Variant("extracted + CDS", EXTRACTED, List.of("-XX:SharedArchiveFile=recipe-app.jsa"),
+                        extractedJar.getFileName() + File.pathSeparator + h2Jar, MAIN_CLASS),
+                new Variant("optimised (extracted + CDS + AOT + lazy springdoc)", EXTRACTED,
+                        List.of("-XX:SharedArchiveFile=recipe-app.jsa", "-Dspring.aot.enabled=true", "-Dspring.main.lazy-initialization=true"),
+                        extractedJar.getFileName() + File.pathSeparator + h2Jar, MAIN_CLASS));
+
+        final Map<String, Long> medians = new LinkedHashMap<>();
+        for (Variant variant : variants) {
+            final long[] millis = new long[RUNS];
+            for (int run = 0; run < RUNS; run++) {
+                millis[run] = startAndTimeFirstRequest(variant, run);
+            }
+            Arrays.sort(millis);
+            medians.put(variant.name(), millis[RUNS / 2]);
+        }
+
+        logger.info("time to first request, median of {} runs", RUNS);
+        medians.forEach((name, millis) -> logger.info("{}: {} ms", name, millis));
+        assertThat(medians.values()).allMatch(millis -> millis > 0);
+    }
+
+    private long startAndTimeFirstRequest(final Variant variant, final int run) throws Exception {
+        final int port = freePort();
+        final List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(variant.jvmOptions());
+        command.addAll(List.of("-cp", variant.classPath(), variant.mainClass(),
+                "--server.port=" + port,
+                "--spring.datasource.url=jdbc:h2:mem:startup;DB_CLOSE_DELAY=-1;MODE=MySQL;DATABASE_TO_LOWER=TRUE",
+                "--spring.datasource.driver-class-name=org.h2.Driver",
+                "--spring.datasource.username=sa",
+                "--spring.datasource.password=sa",
+                "--spring.jpa.database=h2"));
+        final File log = TARGET.resolve("startup-benchmark-" + variant.name().replaceAll("\\W+", "-") + "-" + run + ".log").toFile();
+        final HttpRequest firstRequest = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/recipes")).GET().build();
+
+        final long start = System.nanoTime();
+        final Process app = new ProcessBuilder(command).directory(variant.workingDirectory().toFile())
+                .redirectErrorStream(true).redirectOutput(log).start();
+        try {
+            while (System.nanoTime() - start < START_TIMEOUT.toNanos()) {
+                assertThat(app.isAlive()).as("%s exited during startup, see %s", variant.name(), log).isTrue();
+                try {
+                    // the database is empty, so the answer after the query is a 404
+                    if (httpClient.send(firstRequest, HttpResponse.BodyHandlers.discarding()).statusCode() == 404) {
+                        return (System.nanoTime() - start) / 1_000_000;
+                    }
+                } catch (IOException notListeningYet) {
+                    // retry below
+                }
+                Thread.sleep(10);
+            }
+            throw new AssertionError(variant.name() + " did not answer within " + START_TIMEOUT + ", see " + log);
+        } finally {
+            app.destroy();
+            app.waitFor();
+        }
+    }
+
+    private static Path findJar(final Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) return null;
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.toString().endsWith(".jar")).findFirst().orElse(null);
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+}
@@ -0,0 +1,144 @@
+package nl.trickjurgen.recipes.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import nl.trickjurgen.recipes.RecipeAppApplication;
+import nl.trickjurgen.recipes.dto.RecipeDto;
+import nl.trickjurgen.recipes.service.RecipeService;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.io.ClassPathResource;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Load test comparing request execution on the default tomcat (platform) thread pool with virtual threads.
+ * Starts the app twice on its own in-memory database, fires the same mix of detail and search calls with
+ * many concurrent clients, and logs throughput and latency percentiles for both setups.
+ * Run with: mvn test -Pbenchmark -Dtest=VirtualThreadLoadBenchmark
+ */
+@Tag("benchmark")
+class VirtualThreadLoadBenchmark {
+
+    private static final int CONCURRENT_CLIENTS = 400;
+    private static final int REQUESTS_PER_CLIENT = 25;
+    private static final int WARMUP_REQUESTS = 500;
+
+    private final Logger logger = LoggerFactory.getLogger(VirtualThreadLoadBenchmark.class);
+
+    record LoadResult(String mode, int requests, int errors, long wallMillis, long p50Micros, long p99Micros, long maxMicros) {
+        double throughput() {
+            return requests * 1000.0 / Math.max(1, wallMillis);
+        }
+    }
+
+    @Test
+    void compareThreadModels() throws Exception {
+        LoadResult platform = runLoad("platform", false);
+        LoadResult virtual = runLoad("virtual", true);
+
+        logger.info("{} concurrent clients x {} requests", CONCURRENT_CLIENTS, REQUESTS_PER_CLIENT);
+        for (LoadResult result : List.of(platform, virtual)) {
+            logger.info("{} threads: {} req, {} errors, {} ms, {} req/s, p50 {} us, p99 {} us, max {} us",
+                    result.mode(), result.requests(), result.errors(), result.wallMillis(),
+                    String.format("%.0f", result.throughput()), result.p50Micros(), result.p99Micros(), result.maxMicros());
+        }
+
+        assertThat(platform.errors()).isZero();
+        assertThat(virtual.errors()).isZero();
+    }
+
+    private LoadResult runLoad(final String mode, final boolean virtualThreads) throws Exception {
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(RecipeAppApplication.class)
+                .properties("server.port=0",
+                        "spring.datasource.url=jdbc:h2:mem:bench-" + mode + ";DB_CLOSE_DELAY=-1;MODE=MySQL;DATABASE_TO_LOWER=TRUE",
+                        "spring.threads.virtual.enabled=" + virtualThreads,
+                        "spring.jpa.show-sql=false")
+                .run()) {
+            List<Long> ids = loadTestData(context);
+            int port = Integer.parseInt(context.getEnvironment().getRequiredProperty("local.server.port"));
+            List<URI> targets = new ArrayList<>();
+            ids.forEach(id -> targets.add(URI.create("http://localhost:" + port + "/recipes/" + id)));
+            targets.add(URI.create("http://localhost:" + port + "/recipesearch?isVegetarian=true"));
+            targets.add(URI.create("http://localhost:" + port + "/recipesearch?includedIngredients=rice&instruction=mix"));
+
+            try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor();
+                 HttpClient httpClient = HttpClient.newBuilder().executor(clients).version(HttpClient.Version.HTTP_1_1).build()) {
+                AtomicInteger errors = new AtomicInteger();
+                for (int i = 0; i < WARMUP_REQUESTS; i++) {
+                    call(httpClient, targets.get(i % targets.size()), errors);
+                }
+                errors.set(0);
+
+                List<Future<long[]>> futures = new ArrayList<>();
+                long start = System.nanoTime();
+                for (int client = 0; client < CONCURRENT_CLIENTS; client++) {
+                    final int offset = client;
+                    futures.add(clients.submit(() -> {
+                        long[] latencies = new long[REQUESTS_PER_CLIENT];
+                        for (int r = 0; r < REQUESTS_PER_CLIENT; r++) {
+                            latencies[r] = call(httpClient, targets.get((offset + r) % targets.size()), errors);
+                        }
+                        return latencies;
+                    }));
+                }
+                long[] all = new long[CONCURRENT_CLIENTS * REQUESTS_PER_CLIENT];
+                int pos = 0;
+                for (Future<long[]> future : futures) {
+                    long[] latencies = future.get();
+                    System.arraycopy(latencies, 0, all, pos, latencies.length);
+                    pos += latencies.length;
+                }
+                long wallMillis = (System.nanoTime() - start) / 1_000_000;
+                Arrays.sort(all);
+                return new LoadResult(mode, all.length, errors.get(), wallMillis,
+                        percentile(all, 0.50), percentile(all, 0.99), all[all.length - 1] / 1000);
+            }
+        }
+    }
+
+    private long call(final HttpClient httpClient, final URI uri, final AtomicInteger errors) throws InterruptedException {
+        long start = System.nanoTime();
+        try {
+            HttpResponse<Void> response = httpClient.send(HttpRequest.newBuilder(uri).GET().build(), HttpResponse.BodyHandlers.discarding());
+            if (response.statusCode() != 200) errors.incrementAndGet();
+        } catch (IOException e) {
+            errors.incrementAndGet();
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static long percentile(final long[] sortedNanos, final double fraction) {
+        int index = (int) Math.ceil(fraction * sortedNanos.length) - 1;
+        return sortedNanos[Math.max(0, index)] / 1000;
+    }
+
+    private List<Long> loadTestData(final ConfigurableApplicationContext context) throws IOException {
+        ObjectMapper objectMapper = context.getBean(ObjectMapper.class);
+        RecipeService recipeService = context.getBean(RecipeService.class);
+        RecipeDto[] recipes = objectMapper.readValue(
+                new ClassPathResource("recipes/batch1-10-recipes.json").getInputStream(), RecipeDto[].class);
+        List<Long> ids = new ArrayList<>();
+        for (RecipeDto recipe : recipes) {
+            ids.add(recipeService.saveNewRecipe(recipe).getId());
+        }
+        return ids;
+    }
+
+}
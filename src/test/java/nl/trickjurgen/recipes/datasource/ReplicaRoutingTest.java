@@ -0,0 +1,111 @@
+package nl.trickjurgen.recipes.datasource;
+
+import io.restassured.RestAssured;
+import io.restassured.http.ContentType;
+import io.restassured.response.Response;
+import nl.trickjurgen.recipes.RecipeAppApplication;
+import nl.trickjurgen.recipes.dto.IngredientDto;
+import nl.trickjurgen.recipes.dto.RecipeDto;
+import nl.trickjurgen.recipes.repo.RecipeRepo;
+import nl.trickjurgen.recipes.service.RecipeDetailCache;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledInNativeImage;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+
+/**
+ * primary and replica are two separate in-memory databases without replication here,
+ * so whether a read sees a just created recipe tells which one it went to.
+ * Not in the native test run: the plain flyway used for the replica schema can't scan the migrations in a native image
+ */
+@DisabledInNativeImage
+@SpringBootTest(webEnvironment = RANDOM_PORT, classes = {RecipeAppApplication.class}, properties = {
+        "spring.datasource.url=" + ReplicaRoutingTest.PRIMARY_URL,
+        "recipes.datasource.replica.url=" + ReplicaRoutingTest.REPLICA_URL,
+        "recipes.datasource.replica.username=sa",
+        "recipes.datasource.replica.password=sa"})
+class ReplicaRoutingTest {
+
+    static final String PRIMARY_URL = "jdbc:h2:mem:primary;DB_CLOSE_DELAY=-1;MODE=MySQL;DATABASE_TO_LOWER=TRUE";
+    static final String REPLICA_URL = "jdbc:h2:mem:replica;DB_CLOSE_DELAY=-1;MODE=MySQL;DATABASE_TO_LOWER=TRUE";
+
+    @SuppressWarnings("unused")
+    @LocalServerPort
+    private int port;
+
+    private final RecipeRepo recipeRepo;
+    private final RecipeDetailCache recipeDetailCache;
+
+    @Autowired
+    ReplicaRoutingTest(RecipeRepo recipeRepo, RecipeDetailCache recipeDetailCache) {
+        this.recipeRepo = recipeRepo;
+        this.recipeDetailCache = recipeDetailCache;
+    }
+
+    @BeforeAll
+    static void createReplicaSchema() {
+        // a real replica gets the schema through replication
+        Flyway.configure().dataSource(REPLICA_URL, "sa", "sa").cleanDisabled(false).load().migrate();
+    }
+
+    @BeforeEach
+    void setUp() {
+        RestAssured.port = port;
+        RestAssured.baseURI = "http://localhost";
+    }
+
+    @Test
+    void readsGoToReplicaUnlessClientJustWrote() {
+        RecipeDto toast = RecipeDto.builder().name("Toast").isVegetarian(true).servings(1).instructions("Toast the bread.")
+                .ingredients(Set.of(IngredientDto.builder().name("bread").volume("2 slices").build())).build();
+        Response created = RestAssured.given().contentType(ContentType.JSON).body(toast)
+                .when().post("/recipes")
+                .then().statusCode(201)
+                .extract().response();
+        final Long id = created.as(RecipeDto.class).getId();
+        final String pinCookie = created.getCookie(ReadYourWritesFilter.PIN_COOKIE);
+        assertThat(pinCookie).isNotNull();
+
+        // read-only request from another client: replica, which doesn't have it
+        RestAssured.given().when().get("/recipes/" + id)
+                .then().statusCode(404);
+        // the writing client reads its own write from the primary
+        RestAssured.given().cookie(ReadYourWritesFilter.PIN_COOKIE, pinCookie).when().get("/recipes/" + id)
+                .then().statusCode(200);
+        // repository calls outside a read-only transaction (like the outbox dispatcher) use the primary
+        assertThat(recipeRepo.findAllWithIngredientsByIdIn(List.of(id))).hasSize(1);
+
+        // a cached version, read from the replica before the write, isn't served to the writing client
+        final RecipeDto stale = RecipeDto.builder().id(id).name("Stale toast").servings(1).build();
+        recipeDetailCache.putIfAbsent(stale, recipeDetailCache.loadStamp(id));
+        RestAssured.given().cookie(ReadYourWritesFilter.PIN_COOKIE, pinCookie).when().get("/recipes/" + id)
+                .then().statusCode(200).body("name", equalTo("Toast"));
+        recipeDetailCache.reset();
+
+        // the streamed search runs on the async executor, pinned like the request
+        RestAssured.given().accept("application/x-ndjson").when().get("/recipesearch?isVegetarian=true")
+                .then().statusCode(200).body(not(containsString("Toast")));
+        RestAssured.given().cookie(ReadYourWritesFilter.PIN_COOKIE, pinCookie).accept("application/x-ndjson")
+                .when().get("/recipesearch?isVegetarian=true")
+                .then().statusCode(200).body(containsString("\"Toast\""));
+
+        // writes always go to the primary
+        RestAssured.given().when().delete("/recipes/" + id)
+                .then().statusCode(204);
+        assertThat(recipeRepo.findAllWithIngredientsByIdIn(List.of(id))).isEmpty();
+    }
+
+}
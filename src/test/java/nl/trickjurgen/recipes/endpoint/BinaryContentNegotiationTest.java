@@ -0,0 +1,124 @@
+package nl.trickjurgen.recipes.endpoint;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import io.restassured.RestAssured;
+import io.restassured.config.EncoderConfig;
+import io.restassured.config.RestAssuredConfig;
+import io.restassured.response.Response;
+import nl.trickjurgen.recipes.RecipeAppApplication;
+import nl.trickjurgen.recipes.dto.IngredientDto;
+import nl.trickjurgen.recipes.dto.RecipeBatchEntryDto;
+import nl.trickjurgen.recipes.dto.RecipeDto;
+import nl.trickjurgen.recipes.dto.RecipeHeaderDto;
+import nl.trickjurgen.recipes.repo.RecipeRepo;
+import nl.trickjurgen.recipes.service.RecipeService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.MediaType;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+
+@SpringBootTest(webEnvironment = RANDOM_PORT, classes = {RecipeAppApplication.class})
+class BinaryContentNegotiationTest {
+
+    private static final String SMILE = "application/x-jackson-smile";
+    private static final String CBOR = "application/cbor";
+
+    private final ObjectMapper smileMapper = new ObjectMapper(new SmileFactory());
+    private final ObjectMapper cborMapper = new ObjectMapper(new CBORFactory());
+
+    // rest assured adds a charset to unknown content types, binary content has none
+    private final RestAssuredConfig binaryBody = RestAssuredConfig.config()
+            .encoderConfig(EncoderConfig.encoderConfig().appendDefaultContentCharsetToContentTypeIfUndefined(false));
+
+    @SuppressWarnings("unused")
+    @LocalServerPort
+    private int port;
+
+    private final RecipeService recipeService;
+    private final RecipeRepo recipeRepo;
+
+    @Autowired
+    BinaryContentNegotiationTest(RecipeService recipeService, RecipeRepo recipeRepo) {
+        this.recipeService = recipeService;
+        this.recipeRepo = recipeRepo;
+    }
+
+    @BeforeEach
+    void setUp() {
+        RestAssured.port = port;
+        RestAssured.baseURI = "http://localhost";
+    }
+
+    @AfterEach
+    void cleanUp() {
+        recipeRepo.findAll().forEach(r -> recipeService.deleteRecipe(r.getId()));
+    }
+
+    @Test
+    void createAndReadRecipeAsSmile() throws IOException {
+        final Response created = RestAssured.given().config(binaryBody).contentType(SMILE).accept(SMILE)
+                .body(smileMapper.writeValueAsBytes(recipe("Smile Soup")))
+                .when().post("/recipes");
+        assertThat(created.statusCode()).isEqualTo(201);
+        assertThat(created.contentType()).isEqualTo(SMILE);
+        final RecipeDto saved = smileMapper.readValue(created.asByteArray(), RecipeDto.class);
+        assertThat(saved.getId()).isNotNull();
+        assertThat(saved.getIngredients()).extracting(IngredientDto::getName).containsExactlyInAnyOrder("Leek", "Potato");
+
+        final Response read = RestAssured.given().accept(SMILE).when().get("/recipes/" + saved.getId());
+        assertThat(read.contentType()).isEqualTo(SMILE);
+        final RecipeDto found = smileMapper.readValue(read.asByteArray(), RecipeDto.class);
+        assertThat(found.getName()).isEqualTo("Smile Soup");
+        assertThat(found.getInstructions()).isEqualTo("Boil and blend.");
+    }
+
+    @Test
+    void listsAndSearchesAsCbor() throws IOException {
+        final Long id = cborMapper.readValue(RestAssured.given().config(binaryBody).contentType(CBOR).accept(CBOR)
+                .body(cborMapper.writeValueAsBytes(recipe("Cbor Stew")))
+                .when().post("/recipes").then().statusCode(201).contentType(CBOR).extract().asByteArray(), RecipeDto.class).getId();
+
+        final List<RecipeHeaderDto> headers = cborMapper.readValue(RestAssured.given().accept(CBOR).when().get("/recipes")
+                .then().statusCode(200).contentType(CBOR).extract().asByteArray(), new TypeReference<>() {});
+        assertThat(headers).extracting(RecipeHeaderDto::getName).containsExactly("Cbor Stew");
+
+        final List<RecipeHeaderDto> found = cborMapper.readValue(RestAssured.given().accept(CBOR)
+                .when().get("/recipesearch?isVegetarian=true&includedIngredients=leek")
+                .then().statusCode(200).contentType(CBOR).extract().asByteArray(), new TypeReference<>() {});
+        assertThat(found).extracting(RecipeHeaderDto::getId).containsExactly(id);
+
+        final List<RecipeBatchEntryDto> batch = cborMapper.readValue(RestAssured.given().accept(CBOR)
+                .when().get("/recipes?ids=" + id + ",-1")
+                .then().statusCode(200).contentType(CBOR).extract().asByteArray(), new TypeReference<>() {});
+        assertThat(batch).extracting(RecipeBatchEntryDto::isFound).containsExactly(true, false);
+    }
+
+    @Test
+    void jsonStaysTheDefault() {
+        recipeService.saveNewRecipe(recipe("Json Pie"));
+        RestAssured.given().when().get("/recipes").then().statusCode(200).contentType(MediaType.APPLICATION_JSON_VALUE);
+        RestAssured.given().accept("*/*").when().get("/recipes").then().statusCode(200).contentType(MediaType.APPLICATION_JSON_VALUE);
+        RestAssured.given().accept("application/xml").when().get("/recipes").then().statusCode(406);
+    }
+
+    private static RecipeDto recipe(final String name) {
+        return RecipeDto.builder().name(name).isVegetarian(true).servings(4).instructions("Boil and blend.")
+                .ingredients(Set.of(IngredientDto.builder().name("Leek").volume("2 pieces").build(),
+                        IngredientDto.builder().name("Potato").volume("500 gram").remark("floury").build()))
+                .build();
+    }
+
+}
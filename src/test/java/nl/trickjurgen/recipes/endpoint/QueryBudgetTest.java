@@ -0,0 +1,252 @@
+package nl.trickjurgen.recipes.endpoint;
+
+import io.restassured.RestAssured;
+import io.restassured.http.ContentType;
+import io.restassured.path.json.JsonPath;
+import nl.trickjurgen.recipes.RecipeAppApplication;
+import nl.trickjurgen.recipes.SqlStatementCounter;
+import nl.trickjurgen.recipes.datamodel.Recipe;
+import nl.trickjurgen.recipes.dto.IngredientDto;
+import nl.trickjurgen.recipes.dto.RecipeDto;
+import nl.trickjurgen.recipes.repo.RecipeRepo;
+import nl.trickjurgen.recipes.service.RecipeDetailCache;
+import nl.trickjurgen.recipes.service.RecipeService;
+import org.hibernate.Hibernate;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.MediaType;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+
+/**
+ * statement budget per REST endpoint: every endpoint is called on a small and on a large catalogue (more recipes,
+ * more ingredients per recipe) and may not execute more SQL statements than its budget, on either. The counts on
+ * both catalogues must also be equal, so a lazy load per recipe or per ingredient (N+1) fails the build. Writes send
+ * as many ingredients as the catalogue has per recipe; every new ingredient row is one insert (ids come from the
+ * database), everything else has to stay the same.
+ * The large catalogue is bigger than the streamed search clears its session at, so that is covered too.
+ */
+@SpringBootTest(webEnvironment = RANDOM_PORT, classes = {RecipeAppApplication.class})
+class QueryBudgetTest {
+
+    private final Logger logger = LoggerFactory.getLogger(QueryBudgetTest.class);
+
+    private static final String FILTERED_SEARCH = "includedIngredients=Ingredient 1&excludedIngredients=Ingredient 2&instruction=oven";
+
+    @SuppressWarnings("unused")
+    @LocalServerPort
+    private int port;
+
+    private final RecipeService recipeService;
+    private final RecipeRepo recipeRepo;
+    private final RecipeDetailCache recipeDetailCache;
+    private final TransactionTemplate readOnlyTransaction;
+
+    @Autowired
+    QueryBudgetTest(RecipeService recipeService, RecipeRepo recipeRepo, RecipeDetailCache recipeDetailCache,
+                    PlatformTransactionManager transactionManager) {
+        this.recipeService = recipeService;
+        this.recipeRepo = recipeRepo;
+        this.recipeDetailCache = recipeDetailCache;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    @BeforeEach
+    void setUp() {
+        RestAssured.port = port;
+        RestAssured.baseURI = "http://localhost";
+    }
+
+    // a call of one endpoint, with the ids of the catalogue it runs on
+    private interface EndpointCall {
+        void call(List<Long> ids);
+    }
+
+    private record Budget(String endpoint, int maxStatements, int statementsPerIngredient, EndpointCall request) {
+
+        Budget(final String endpoint, final int maxStatements, final EndpointCall request) {
+            this(endpoint, maxStatements, 0, request);
+        }
+
+        int maxStatements(final int ingredientsPerRecipe) {
+            return maxStatements + statementsPerIngredient * ingredientsPerRecipe;
+        }
+
+    }
+
+    private static final int SMALL_RECIPES = 3;
+    private static final int SMALL_INGREDIENTS = 2;
+    private static final int LARGE_RECIPES = 120; // more than the streamed search reads between two session clears
+    private static final int LARGE_INGREDIENTS = 8;
+
+    private final List<Budget> budgets = List.of(
+            new Budget("GET /recipes", 1, ids -> RestAssured.given().when().get("/recipes").then().statusCode(200)),
+            new Budget("GET /recipes/{id}", 2, ids -> RestAssured.given().when().get("/recipes/" + ids.getFirst()).then().statusCode(200)),
+            new Budget("GET /recipes?ids=", 1, ids -> RestAssured.given().when()
+                    .get("/recipes?ids=" + ids.stream().limit(RecipeService.MAX_BATCH_GET_IDS).map(String::valueOf)
+                            .collect(Collectors.joining(","))).then().statusCode(200)),
+            new Budget("GET /recipesearch", 1, ids -> RestAssured.given().when().get("/recipesearch?isVegetarian=true").then().statusCode(200)),
+            new Budget("GET /recipesearch (ingredients, instruction)", 1, ids -> RestAssured.given().when()
+                    .get("/recipesearch?" + FILTERED_SEARCH).then().statusCode(200)),
+            // an ingredient no type has: the index catches up on the newer types (one range on the key), then nothing can match
+            new Budget("GET /recipesearch (unknown ingredient)", 1, ids -> RestAssured.given().when()
+                    .get("/recipesearch?includedIngredients=Unknown Root").then().statusCode(200)),
+            new Budget("GET /recipesearch (ndjson)", 1, ids -> RestAssured.given().accept(MediaType.APPLICATION_NDJSON_VALUE).when()
+                    .get("/recipesearch?" + FILTERED_SEARCH).then().statusCode(200)),
+            new Budget("GET /recipesearch/facets", 3, ids -> RestAssured.given().when()
+                    .get("/recipesearch/facets?" + FILTERED_SEARCH + "&topIngredients=5").then().statusCode(200)),
+            new Budget("GET /recipesearch/details", 2, ids -> RestAssured.given().when()
+                    .get("/recipesearch/details?" + FILTERED_SEARCH + "&limit=5").then().statusCode(200)),
+            new Budget("POST /recipes", 6, 1, ids -> RestAssured.given().contentType(ContentType.JSON)
+                    .body(newRecipe(null, "Budget Soup", ids, ingredientsPerRecipe(ids)))
+                    .when().post("/recipes").then().statusCode(201)),
+            // the kept ingredients are updated in one jdbc batch, only the new herb is inserted
+            new Budget("PUT /recipes/{id}", 10, ids -> RestAssured.given().contentType(ContentType.JSON)
+                    .body(newRecipe(ids.getFirst(), "Budget Stew", ids, ingredientsPerRecipe(ids)))
+                    .when().put("/recipes/" + ids.getFirst()).then().statusCode(200)),
+            new Budget("DELETE /recipes/{id}", 6, ids -> RestAssured.given().when().delete("/recipes/" + ids.getLast()).then().statusCode(204))
+    );
+
+    @Test
+    void everyEndpointStaysWithinItsStatementBudget() {
+        final Map<String, Integer> small = countStatementsOnCatalogue(SMALL_RECIPES, SMALL_INGREDIENTS);
+        final Map<String, Integer> large = countStatementsOnCatalogue(LARGE_RECIPES, LARGE_INGREDIENTS);
+        for (Budget budget : budgets) {
+            logger.info("{}: {} statements on the small, {} on the large catalogue (budget {} + {} per ingredient)",
+                    budget.endpoint(), small.get(budget.endpoint()), large.get(budget.endpoint()), budget.maxStatements(),
+                    budget.statementsPerIngredient());
+        }
+        for (Budget budget : budgets) {
+            assertThat(large.get(budget.endpoint())).as("statements of %s on a larger catalogue", budget.endpoint())
+                    .isEqualTo(small.get(budget.endpoint())
+                            + budget.statementsPerIngredient() * (LARGE_INGREDIENTS - SMALL_INGREDIENTS));
+        }
+    }
+
+    @Test
+    void streamedSearchIsCompleteAcrossSessionClears() {
+        final List<Long> ids = fillCatalogue(LARGE_RECIPES, LARGE_INGREDIENTS);
+        try {
+            final Set<Long> expected = new HashSet<>();
+            for (int recipe = 0; recipe < LARGE_RECIPES; recipe++) {
+                final Set<Integer> used = ingredientNumbers(recipe, LARGE_INGREDIENTS);
+                if (used.contains(1) && !used.contains(2) && recipe % 3 == 0) expected.add(ids.get(recipe));
+            }
+            assertThat(expected).as("test data should match some, not all recipes").isNotEmpty().hasSizeLessThan(LARGE_RECIPES / 3);
+
+            assertThat(streamedIds("")).as("all recipes, each once").containsExactlyElementsOf(ids);
+            SqlStatementCounter.reset();
+            assertThat(streamedIds(FILTERED_SEARCH)).as("recipes with ingredient 1, without 2, baked in the oven")
+                    .doesNotHaveDuplicates().containsExactlyInAnyOrderElementsOf(expected);
+            // the rows of a recipe have to come one after the other, whatever order the database would pick
+            assertThat(SqlStatementCounter.statements()).filteredOn(sql -> !sql.contains("recipe_outbox"))
+                    .singleElement().satisfies(sql -> assertThat(sql).containsPattern("order by \\w+\\.id$"));
+        } finally {
+            recipeRepo.findAll().forEach(r -> recipeService.deleteRecipe(r.getId()));
+        }
+    }
+
+    // instructions is a lazy (bytecode enhanced) attribute: the entity graphs that name it have to load it in their own
+    // select, reading it afterwards may not cost a statement per recipe
+    @Test
+    void instructionsOfTheEntityGraphsNeedNoExtraStatements() {
+        final List<Long> ids = fillCatalogue(SMALL_RECIPES, SMALL_INGREDIENTS);
+        try {
+            readOnlyTransaction.executeWithoutResult(status -> {
+                SqlStatementCounter.reset();
+                final List<Recipe> recipes = new ArrayList<>(recipeRepo.findAllWithIngredientsByIdIn(ids));
+                recipes.add(recipeRepo.findWithIngredientsById(ids.getFirst()).orElseThrow());
+                recipes.addAll(recipeRepo.findAllWithInstructionsBy());
+                assertThat(recipes).allSatisfy(recipe -> assertThat(Hibernate.isPropertyInitialized(recipe, "instructions"))
+                        .as("instructions of %s loaded", recipe.getName()).isTrue());
+                assertThat(recipes).extracting(Recipe::getInstructions).allSatisfy(text -> assertThat(text).isNotBlank());
+                assertThat(SqlStatementCounter.statements()).filteredOn(sql -> !sql.contains("recipe_outbox")) // background polling
+                        .as("one select per repository call").hasSize(3);
+            });
+            // and a listing that doesn't name it leaves it out
+            readOnlyTransaction.executeWithoutResult(status -> assertThat(recipeRepo.findAll())
+                    .noneSatisfy(recipe -> assertThat(Hibernate.isPropertyInitialized(recipe, "instructions")).isTrue()));
+        } finally {
+            recipeRepo.findAll().forEach(r -> recipeService.deleteRecipe(r.getId()));
+        }
+    }
+
+    private List<Long> streamedIds(final String query) {
+        final String body = RestAssured.given().accept(MediaType.APPLICATION_NDJSON_VALUE).when()
+                .get(query.isEmpty() ? "/recipesearch" : "/recipesearch?" + query).then().statusCode(200).extract().asString();
+        return body.lines().map(line -> JsonPath.from(line).getLong("id")).toList();
+    }
+
+    private Map<String, Integer> countStatementsOnCatalogue(final int recipes, final int ingredientsPerRecipe) {
+        final List<Long> ids = fillCatalogue(recipes, ingredientsPerRecipe);
+        try {
+            final Map<String, Integer> counts = new LinkedHashMap<>();
+            for (Budget budget : budgets) {
+                recipeDetailCache.reset(); // count a cold read, not one served from the cache
+                SqlStatementCounter.reset();
+                budget.request().call(ids);
+                final List<String> statements = SqlStatementCounter.statements();
+                assertThat(statements).as("statements of %s on %d recipes x %d ingredients:%n%s", budget.endpoint(),
+                        recipes, ingredientsPerRecipe, String.join("\n", statements))
+                        .hasSizeLessThanOrEqualTo(budget.maxStatements(ingredientsPerRecipe));
+                counts.put(budget.endpoint(), statements.size());
+            }
+            return counts;
+        } finally {
+            recipeRepo.findAll().forEach(r -> recipeService.deleteRecipe(r.getId()));
+        }
+    }
+
+    private List<Long> fillCatalogue(final int recipes, final int ingredientsPerRecipe) {
+        final List<Long> ids = new ArrayList<>();
+        for (int recipe = 0; recipe < recipes; recipe++) {
+            final Set<IngredientDto> ingredients = ingredientNumbers(recipe, ingredientsPerRecipe).stream()
+                    .map(number -> IngredientDto.builder().name("Ingredient " + number).volume(number + 1 + " gram").build())
+                    .collect(Collectors.toSet());
+            ids.add(recipeService.saveNewRecipe(RecipeDto.builder().name("Budget Dish " + recipe).isVegetarian(recipe % 2 == 0)
+                    .servings(1 + recipe % 4).instructions(recipe % 3 == 0 ? "Bake in the oven." : "Stir in a pan.")
+                    .ingredients(ingredients).build()).getId());
+        }
+        return ids;
+    }
+
+    // the ingredients of a recipe in the catalogue: 'count' consecutive numbers out of 0..9, starting at the recipe's
+    private static Set<Integer> ingredientNumbers(final int recipe, final int count) {
+        return IntStream.range(0, count).mapToObj(i -> (recipe + i) % 10).collect(Collectors.toSet());
+    }
+
+    private static int ingredientsPerRecipe(final List<Long> catalogueIds) {
+        return catalogueIds.size() == SMALL_RECIPES ? SMALL_INGREDIENTS : LARGE_INGREDIENTS;
+    }
+
+    // a recipe with ingredient types the catalogue already has and one that is new on each catalogue
+    private static RecipeDto newRecipe(final Long id, final String name, final List<Long> catalogueIds,
+                                       final int ingredients) {
+        final Set<IngredientDto> ingredientDtos = new HashSet<>();
+        for (int number = 1; number < ingredients; number++) {
+            ingredientDtos.add(IngredientDto.builder().name("Ingredient " + number).volume(number + " cup").build());
+        }
+        ingredientDtos.add(IngredientDto.builder().name(name + " Herb " + catalogueIds.getFirst()).volume("1 bunch").build());
+        return RecipeDto.builder().id(id).name(name).isVegetarian(true).servings(2).instructions("Boil in a pot.")
+                .ingredients(ingredientDtos).build();
+    }
+
+}
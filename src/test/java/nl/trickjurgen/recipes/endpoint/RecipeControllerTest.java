@@ -5,6 +5,7 @@ import io.restassured.RestAssured;
 import io.restassured.http.ContentType;
 import io.restassured.response.Response;
 import nl.trickjurgen.recipes.dto.IngredientDto;
+import nl.trickjurgen.recipes.dto.RecipeBatchEntryDto;
 import nl.trickjurgen.recipes.dto.RecipeDto;
 import nl.trickjurgen.recipes.dto.RecipeHeaderDto;
 import nl.trickjurgen.recipes.exception.RecipeNotFoundException;
@@ -24,9 +25,7 @@ import org.springframework.boot.test.web.server.LocalServerPort;
 import org.springframework.core.io.ResourceLoader;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Set;
@@ -90,8 +89,7 @@ class RecipeControllerTest {
     }
 
     private RecipeDto loadRecipeFromFile(final String fileName) throws IOException {
-        File file = resourceLoader.getResource("classpath:recipes/" + fileName).getFile();
-        byte[] bytes = Files.readAllBytes(file.toPath());
+        byte[] bytes = resourceLoader.getResource("classpath:recipes/" + fileName).getInputStream().readAllBytes();
         logger.info("loaded test data from {}", fileName);
         return objectMapper.readValue(bytes, RecipeDto.class);
     }
@@ -250,6 +248,29 @@ class RecipeControllerTest {
                 .statusCode(404);
     }
 
+    @Test
+    @Order(8)
+    void getRecipesByIds() throws IOException {
+        RecipeDto soup = recipeService.saveNewRecipe(loadRecipeFromFile("r5-tom-basil-soup.json"));
+        RecipeDto salad = recipeService.saveNewRecipe(loadRecipeFromFile("r6-chicken-sald.json"));
+        long badId = 404_404L;
+
+        List<RecipeBatchEntryDto> entries = Arrays.asList(RestAssured.given()
+                .when()
+                .get(ENDPOINT_BASE_PATH + "?ids=" + salad.getId() + "," + badId + "," + soup.getId())
+                .then()
+                .statusCode(200)
+                .extract().response().as(RecipeBatchEntryDto[].class));
+
+        assertThat(entries).extracting("id").containsExactly(salad.getId(), badId, soup.getId());
+        assertThat(entries).extracting("found").containsExactly(true, false, true);
+        assertThat(entries.getFirst().getRecipe().getIngredients()).isNotEmpty();
+        assertThat(entries.getLast().getRecipe().getName()).isEqualTo(soup.getName());
+
+        RestAssured.given().when().get(ENDPOINT_BASE_PATH + "?ids=").then().statusCode(400);
+        RestAssured.given().when().get(ENDPOINT_BASE_PATH + "?ids=1,two").then().statusCode(400);
+    }
+
     @Test
     void getAllRecipeNames() throws IOException {
         RecipeDto recipeDto = loadRecipeFromFile("r3-veg-stirfry.json");
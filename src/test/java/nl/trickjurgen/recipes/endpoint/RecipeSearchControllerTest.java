@@ -5,10 +5,14 @@ import io.restassured.RestAssured;
 import io.restassured.filter.log.RequestLoggingFilter;
 import io.restassured.filter.log.ResponseLoggingFilter;
 import nl.trickjurgen.recipes.RecipeAppApplication;
+import nl.trickjurgen.recipes.dto.IngredientDto;
 import nl.trickjurgen.recipes.dto.RecipeDto;
+import nl.trickjurgen.recipes.dto.RecipeFacetsDto;
 import nl.trickjurgen.recipes.dto.RecipeHeaderDto;
+import nl.trickjurgen.recipes.repo.RecipeRepo;
 import nl.trickjurgen.recipes.service.RecipeService;
 import nl.trickjurgen.recipes.utils.NameStringHelper;
+import org.hamcrest.Matchers;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -25,13 +29,14 @@ import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Set;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
 import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
 
 @ExtendWith(SpringExtension.class)
@@ -53,13 +58,15 @@ class RecipeSearchControllerTest {
     private final ObjectMapper objectMapper;
     private final RecipeSearchController recipeSearchController;
     private final RecipeService recipeService;
+    private final RecipeRepo recipeRepo;
 
     final static String ENDPOINT_SEARCH_PATH = "/recipesearch";
 
     @Autowired
     public RecipeSearchControllerTest(RecipeService recipeService, ObjectMapper objectMapper, ResourceLoader resourceLoader,
-                                      RecipeSearchController recipeSearchController) {
+                                      RecipeSearchController recipeSearchController, RecipeRepo recipeRepo) {
         this.recipeService = recipeService;
+        this.recipeRepo = recipeRepo;
         this.resourceLoader = resourceLoader;
         this.objectMapper = objectMapper;
         this.recipeSearchController = recipeSearchController;
@@ -76,8 +83,7 @@ class RecipeSearchControllerTest {
 
     private List<RecipeDto> load10RecipesFromFile() throws IOException {
         String fileName = "batch1-10-recipes.json";
-        File file = resourceLoader.getResource("classpath:recipes/" + fileName).getFile();
-        byte[] bytes = Files.readAllBytes(file.toPath());
+        byte[] bytes = resourceLoader.getResource("classpath:recipes/" + fileName).getInputStream().readAllBytes();
         RecipeDto[] values = objectMapper.readValue(bytes, RecipeDto[].class);
         logger.info("loaded test data from {}", fileName);
         return Arrays.asList(values);
@@ -132,11 +138,11 @@ class RecipeSearchControllerTest {
         // search via service
         final List<String> includes = NameStringHelper.mapCsvToList(includesCsv);
         final List<String> excludes = NameStringHelper.mapCsvToList(excludesCsv);
-        List<RecipeHeaderDto> headersFromService = recipeService.findRecipeHeadersWithGivenParams(vegetarian, minServings, maxServings, includes, excludes, partOfInstructions);
+        List<RecipeHeaderDto> headersFromService = recipeService.findRecipeHeadersWithGivenParams(vegetarian, minServings, maxServings, includes, excludes, null, partOfInstructions);
         assertThat(headersFromService).hasSize(expectedResultSize);
 
         // search via controller
-        ResponseEntity<List<RecipeHeaderDto>> matchingRecipesForAspects = recipeSearchController.getMatchingRecipesForAspects(vegetarian, minServings, maxServings, includesCsv, excludesCsv, partOfInstructions);
+        ResponseEntity<List<RecipeHeaderDto>> matchingRecipesForAspects = recipeSearchController.getMatchingRecipesForAspects(vegetarian, minServings, maxServings, includesCsv, excludesCsv, null, partOfInstructions);
         List<RecipeHeaderDto> recipesFromController = matchingRecipesForAspects.getBody();
 
         assertThat(recipesFromController).hasSize(expectedResultSize);
@@ -164,7 +170,7 @@ class RecipeSearchControllerTest {
         String partOfInstructions = null;
         int expectedResultSize = 5;
 
-        ResponseEntity<List<RecipeHeaderDto>> matchingRecipesForAspects = recipeSearchController.getMatchingRecipesForAspects(vegetarian, minServings, maxServings, includesCsv, excludesCsv, partOfInstructions);
+        ResponseEntity<List<RecipeHeaderDto>> matchingRecipesForAspects = recipeSearchController.getMatchingRecipesForAspects(vegetarian, minServings, maxServings, includesCsv, excludesCsv, null, partOfInstructions);
         List<RecipeHeaderDto> recipesFromController = matchingRecipesForAspects.getBody();
 
         assertThat(recipesFromController).hasSize(expectedResultSize);
@@ -186,7 +192,7 @@ class RecipeSearchControllerTest {
         String partOfInstructions = null;
         int expectedResultSize = 9;
 
-        ResponseEntity<List<RecipeHeaderDto>> matchingRecipesForAspects = recipeSearchController.getMatchingRecipesForAspects(vegetarian, minServings, maxServings, includesCsv, excludesCsv, partOfInstructions);
+        ResponseEntity<List<RecipeHeaderDto>> matchingRecipesForAspects = recipeSearchController.getMatchingRecipesForAspects(vegetarian, minServings, maxServings, includesCsv, excludesCsv, null, partOfInstructions);
         List<RecipeHeaderDto> recipesFromController = matchingRecipesForAspects.getBody();
 
         assertThat(recipesFromController).hasSize(expectedResultSize);
@@ -210,11 +216,143 @@ class RecipeSearchControllerTest {
         String partOfInstructions = "mix"; // Stuffed Peppers, Salmon Teriyaki, Pancakes
         int expectedResultSize = 1; // Salmon Teriyaki
 
-        ResponseEntity<List<RecipeHeaderDto>> matchingRecipesForAspects = recipeSearchController.getMatchingRecipesForAspects(vegetarian, minServings, maxServings, includesCsv, excludesCsv, partOfInstructions);
+        ResponseEntity<List<RecipeHeaderDto>> matchingRecipesForAspects = recipeSearchController.getMatchingRecipesForAspects(vegetarian, minServings, maxServings, includesCsv, excludesCsv, null, partOfInstructions);
         List<RecipeHeaderDto> recipesFromController = matchingRecipesForAspects.getBody();
 
         assertThat(recipesFromController).hasSize(expectedResultSize);
         assertThat(recipesFromController).extracting("name").contains("Salmon Teriyaki");
     }
 
+    @Test
+    @DisplayName("facet counts for all and for vegetarian recipes")
+    @Transactional
+    void getFacetsForAspects() {
+        RecipeFacetsDto allFacets = recipeSearchController.getFacetsForAspects(null, null, null, null, null, null, null, 3).getBody();
+
+        assertThat(allFacets).isNotNull();
+        assertThat(allFacets.getTotal()).isEqualTo(10);
+        assertThat(allFacets.getVegetarian()).containsEntry(true, 5L).containsEntry(false, 5L);
+        assertThat(allFacets.getServings()).containsExactly(entry("1-2", 0L), entry("3-4", 9L), entry("5-8", 1L), entry("9+", 0L));
+        assertThat(allFacets.getTopIngredients()).extracting("name").containsExactly("Garlic Cloves", "Onion", "Butter");
+        assertThat(allFacets.getTopIngredients()).extracting("count").containsExactly(5L, 4L, 3L);
+
+        RecipeFacetsDto veggieFacets = recipeSearchController.getFacetsForAspects(true, null, null, "rice", null, null, null, 0).getBody();
+
+        assertThat(veggieFacets).isNotNull();
+        assertThat(veggieFacets.getTotal()).isEqualTo(2); // Mushroom Risotto, Stuffed Peppers
+        assertThat(veggieFacets.getVegetarian()).containsOnlyKeys(true);
+        assertThat(veggieFacets.getServings()).containsEntry("3-4", 2L);
+        assertThat(veggieFacets.getTopIngredients()).isEmpty();
+
+        RecipeFacetsDto textFacets = recipeSearchController.getFacetsForAspects(null, null, null, null, "peppers", null, "mix", 0).getBody();
+
+        assertThat(textFacets).isNotNull();
+        assertThat(textFacets.getTotal()).isEqualTo(2); // Salmon Teriyaki, Pancakes
+    }
+
+    @Test
+    @DisplayName("like wildcards in the instruction text are plain characters, in the list search and the facets alike")
+    @Transactional
+    void instructionWithWildcardsMatchesTheSameEverywhere() {
+        recipeService.saveNewRecipe(RecipeDto.builder().name("Reduced Stock").isVegetarian(true).servings(2)
+                .instructions("Reduce the stock to 50% of its volume.")
+                .ingredients(Set.of(IngredientDto.builder().name("Stock").volume("1 liter").build())).build());
+        recipeService.saveNewRecipe(RecipeDto.builder().name("Half Stock").isVegetarian(true).servings(2)
+                .instructions("Reduce the stock by 50 percent, use a snake_case label.")
+                .ingredients(Set.of(IngredientDto.builder().name("Stock").volume("1 liter").build())).build());
+
+        for (String term : List.of("50%", "_", "e_c", "%", "!")) {
+            final List<RecipeHeaderDto> listed = recipeSearchController.getMatchingRecipesForAspects(
+                    null, null, null, null, null, null, term).getBody();
+            final RecipeFacetsDto facets = recipeSearchController.getFacetsForAspects(null, null, null, null, null, null, term, 0).getBody();
+            assertThat(listed).isNotNull();
+            assertThat(facets).isNotNull();
+            assertThat(facets.getTotal()).as("facet total for instruction '%s'", term).isEqualTo(listed.size());
+        }
+        assertThat(recipeSearchController.getMatchingRecipesForAspects(null, null, null, null, null, null, "50%").getBody())
+                .extracting("name").containsExactly("Reduced Stock");
+    }
+
+    @Test
+    @DisplayName("search result streamed as ndjson")
+    void streamMatchingRecipesForAspects() throws IOException {
+        // not transactional: the stream is written on another thread, so the test data has to be committed
+        try {
+            String body = RestAssured.given().accept("application/x-ndjson").when()
+                    .get(ENDPOINT_SEARCH_PATH + "?isVegetarian=true")
+                    .then().assertThat()
+                    .statusCode(200)
+                    .contentType("application/x-ndjson")
+                    .extract().asString();
+
+            List<RecipeHeaderDto> headers = new ArrayList<>();
+            for (String line : body.split("\n")) {
+                headers.add(objectMapper.readValue(line, RecipeHeaderDto.class));
+            }
+            assertThat(headers).hasSize(5);
+            assertThat(headers).extracting("name").containsExactly("Mushroom Risotto", "Lentil Soup", "Quinoa Salad", "Stuffed Peppers", "Pancakes");
+        } finally {
+            recipeRepo.findAll().forEach(recipe -> recipeService.deleteRecipe(recipe.getId()));
+        }
+    }
+
+    @Test
+    @DisplayName("search result with full recipes for first hits")
+    void getMatchingRecipeDetailsForAspects() {
+        // not transactional: the details are fetched on other threads, so the test data has to be committed
+        try {
+            List<RecipeDto> details = Arrays.asList(RestAssured.given().when()
+                    .get(ENDPOINT_SEARCH_PATH + "/details?isVegetarian=true&limit=3")
+                    .then().assertThat()
+                    .statusCode(200)
+                    .extract().response().as(RecipeDto[].class));
+
+            assertThat(details).hasSize(3);
+            assertThat(details).extracting("name").containsExactly("Mushroom Risotto", "Lentil Soup", "Quinoa Salad");
+            assertThat(details).allSatisfy(dto -> assertThat(dto.getIngredients()).isNotEmpty());
+
+            RestAssured.given().when()
+                    .get(ENDPOINT_SEARCH_PATH + "/details?limit=0")
+                    .then().assertThat()
+                    .statusCode(400);
+        } finally {
+            recipeRepo.findAll().forEach(recipe -> recipeService.deleteRecipe(recipe.getId()));
+        }
+    }
+
+    @Test
+    @DisplayName("search with a misspelled ingredient and similar ingredients")
+    void getMatchingRecipesForAspects_ingredientMatch() {
+        try {
+            // canned tomatoes: Lentil Soup, Chili Con Carne; cherry tomatoes: Quinoa Salad
+            RestAssured.given().when()
+                    .get(ENDPOINT_SEARCH_PATH + "?includedIngredients=tomatos")
+                    .then().assertThat()
+                    .statusCode(200)
+                    .body("name", Matchers.empty());
+            RestAssured.given().when()
+                    .get(ENDPOINT_SEARCH_PATH + "?includedIngredients=tomatos&ingredientMatch=fuzzy")
+                    .then().assertThat()
+                    .statusCode(200)
+                    .body("name", Matchers.containsInAnyOrder("Lentil Soup", "Quinoa Salad", "Chili Con Carne"));
+            RestAssured.given().when()
+                    .get(ENDPOINT_SEARCH_PATH + "?includedIngredients=onion&ingredientMatch=exact")
+                    .then().assertThat()
+                    .statusCode(200)
+                    .body("name", Matchers.not(Matchers.hasItem("Quinoa Salad"))); // red onion
+            RestAssured.given().when()
+                    .get(ENDPOINT_SEARCH_PATH + "?includedIngredients=onion&ingredientMatch=sounds-like")
+                    .then().assertThat()
+                    .statusCode(400);
+
+            RestAssured.given().when()
+                    .get(ENDPOINT_SEARCH_PATH + "/ingredients?term=tomatos&limit=50")
+                    .then().assertThat()
+                    .statusCode(200)
+                    .body("name", Matchers.hasItems("Canned Tomatoes", "Cherry Tomatoes"));
+        } finally {
+            recipeRepo.findAll().forEach(recipe -> recipeService.deleteRecipe(recipe.getId()));
+        }
+    }
+
 }
\ No newline at end of file
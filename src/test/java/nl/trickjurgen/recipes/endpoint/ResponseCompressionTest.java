@@ -0,0 +1,166 @@
+package nl.trickjurgen.recipes.endpoint;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.restassured.RestAssured;
+import io.restassured.config.DecoderConfig;
+import io.restassured.config.RestAssuredConfig;
+import io.restassured.response.Response;
+import nl.trickjurgen.recipes.RecipeAppApplication;
+import nl.trickjurgen.recipes.dto.IngredientDto;
+import nl.trickjurgen.recipes.dto.RecipeDto;
+import nl.trickjurgen.recipes.repo.RecipeRepo;
+import nl.trickjurgen.recipes.service.RecipeDetailCache;
+import nl.trickjurgen.recipes.service.RecipeService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Set;
+import java.util.stream.IntStream;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+
+@SpringBootTest(webEnvironment = RANDOM_PORT, classes = {RecipeAppApplication.class})
+class ResponseCompressionTest {
+
+    private static final String LONG_INSTRUCTIONS = "Chop the vegetables and fry them gently until soft. ".repeat(60);
+
+    // the raw body as sent, rest assured would unzip it
+    private final RestAssuredConfig rawBody = RestAssuredConfig.config().decoderConfig(DecoderConfig.decoderConfig().noContentDecoders());
+
+    @SuppressWarnings("unused")
+    @LocalServerPort
+    private int port;
+
+    private final RecipeService recipeService;
+    private final RecipeRepo recipeRepo;
+    private final RecipeDetailCache recipeDetailCache;
+    private final PrecompressedRecipeBodies precompressedRecipeBodies;
+    private final ObjectMapper objectMapper;
+
+    @Autowired
+    ResponseCompressionTest(RecipeService recipeService, RecipeRepo recipeRepo, RecipeDetailCache recipeDetailCache,
+                            PrecompressedRecipeBodies precompressedRecipeBodies, ObjectMapper objectMapper) {
+        this.recipeService = recipeService;
+        this.recipeRepo = recipeRepo;
+        this.recipeDetailCache = recipeDetailCache;
+        this.precompressedRecipeBodies = precompressedRecipeBodies;
+        this.objectMapper = objectMapper;
+    }
+
+    @BeforeEach
+    void setUp() {
+        RestAssured.port = port;
+        RestAssured.baseURI = "http://localhost";
+    }
+
+    @AfterEach
+    void cleanUp() {
+        recipeRepo.findAll().forEach(r -> recipeService.deleteRecipe(r.getId()));
+    }
+
+    @Test
+    void largeRecipeIsServedPrecompressed() throws IOException {
+        final Long id = recipeService.saveNewRecipe(recipe("Large Stew", LONG_INSTRUCTIONS)).getId();
+
+        final Response response = RestAssured.given().config(rawBody).header("Accept-Encoding", "gzip")
+                .when().get("/recipes/" + id);
+        assertThat(response.statusCode()).isEqualTo(200);
+        assertThat(response.header("Content-Encoding")).isEqualTo("gzip");
+        assertThat(response.header("Vary")).contains("Accept-Encoding");
+        assertThat(response.contentType()).startsWith("application/json");
+        final byte[] json = gunzip(response.asByteArray());
+        assertThat(response.asByteArray().length).isLessThan(json.length / 4);
+        final RecipeDto served = objectMapper.readValue(json, RecipeDto.class);
+        assertThat(served.getInstructions()).isEqualTo(LONG_INSTRUCTIONS);
+        assertThat(served.getIngredients()).hasSize(2);
+
+        // without gzip in Accept-Encoding, plain json
+        final Response plain = RestAssured.given().config(rawBody).header("Accept-Encoding", "identity")
+                .when().get("/recipes/" + id);
+        assertThat(plain.header("Content-Encoding")).isNull();
+        assertThat(objectMapper.readValue(plain.asByteArray(), RecipeDto.class).getName()).isEqualTo("Large Stew");
+    }
+
+    @Test
+    void compressedOncePerCachedVersion() throws IOException {
+        final Long id = recipeService.saveNewRecipe(recipe("Versioned Stew", LONG_INSTRUCTIONS)).getId();
+        final RecipeDto cached = recipeService.findRecipeById(id);
+        final byte[] first = precompressedRecipeBodies.gzippedJson(cached, null, "gzip, deflate");
+        assertThat(first).isNotNull();
+        assertThat(precompressedRecipeBodies.gzippedJson(recipeService.findRecipeById(id), "application/json", "gzip"))
+                .isSameAs(first);
+
+        recipeService.updateRecipe(id, RecipeDto.builder().id(id).name("Versioned Stew").isVegetarian(true).servings(4)
+                .instructions(LONG_INSTRUCTIONS + "Serve hot.").ingredients(cached.getIngredients()).build());
+        final byte[] second = precompressedRecipeBodies.gzippedJson(recipeService.findRecipeById(id), null, "gzip");
+        assertThat(second).isNotSameAs(first);
+        assertThat(objectMapper.readValue(gunzip(second), RecipeDto.class).getInstructions()).endsWith("Serve hot.");
+
+        // a version that is not the cached one is not kept
+        recipeDetailCache.reset();
+        assertThat(precompressedRecipeBodies.gzippedJson(cached, null, "gzip")).isNull();
+    }
+
+    @Test
+    void smallRecipeAndOtherFormatsAreNotPrecompressed() {
+        final Long id = recipeService.saveNewRecipe(recipe("Small Salad", "Mix.")).getId();
+        final RecipeDto small = recipeService.findRecipeById(id);
+        assertThat(precompressedRecipeBodies.gzippedJson(small, null, "gzip")).isNull();
+
+        final Long largeId = recipeService.saveNewRecipe(recipe("Large Soup", LONG_INSTRUCTIONS)).getId();
+        final RecipeDto large = recipeService.findRecipeById(largeId);
+        assertThat(precompressedRecipeBodies.gzippedJson(large, "application/cbor", "gzip")).isNull();
+        assertThat(precompressedRecipeBodies.gzippedJson(large, null, "gzip;q=0, br")).isNull();
+        // tomcat still compresses the binary format on the fly
+        RestAssured.given().config(rawBody).accept("application/x-jackson-smile").header("Accept-Encoding", "gzip")
+                .when().get("/recipes/" + largeId)
+                .then().statusCode(200).contentType("application/x-jackson-smile").header("Content-Encoding", "gzip");
+    }
+
+    @Test
+    void largeHeaderListIsCompressed() {
+        IntStream.range(0, 60).forEach(i -> recipeService.saveNewRecipe(recipe("Listed Dish " + i, "Mix.")));
+        final Response response = RestAssured.given().config(rawBody).header("Accept-Encoding", "gzip").when().get("/recipes");
+        assertThat(response.statusCode()).isEqualTo(200);
+        assertThat(response.header("Content-Encoding")).isEqualTo("gzip");
+    }
+
+    @Test
+    void headerParsing() {
+        assertThat(PrecompressedRecipeBodies.acceptsGzip("gzip, deflate, br")).isTrue();
+        assertThat(PrecompressedRecipeBodies.acceptsGzip("br;q=1.0, GZIP;q=0.5")).isTrue();
+        assertThat(PrecompressedRecipeBodies.acceptsGzip("*")).isTrue();
+        assertThat(PrecompressedRecipeBodies.acceptsGzip("gzip;q=0")).isFalse();
+        assertThat(PrecompressedRecipeBodies.acceptsGzip("deflate")).isFalse();
+        assertThat(PrecompressedRecipeBodies.acceptsGzip(null)).isFalse();
+
+        assertThat(PrecompressedRecipeBodies.wantsJson(null)).isTrue();
+        assertThat(PrecompressedRecipeBodies.wantsJson("*/*")).isTrue();
+        assertThat(PrecompressedRecipeBodies.wantsJson("application/json, text/plain")).isTrue();
+        assertThat(PrecompressedRecipeBodies.wantsJson("application/x-jackson-smile, */*;q=0.1")).isFalse();
+        assertThat(PrecompressedRecipeBodies.wantsJson("application/xml")).isFalse();
+        assertThat(PrecompressedRecipeBodies.wantsJson("not a type")).isFalse();
+    }
+
+    private static byte[] gunzip(final byte[] gzipped) throws IOException {
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(gzipped))) {
+            return in.readAllBytes();
+        }
+    }
+
+    private static RecipeDto recipe(final String name, final String instructions) {
+        return RecipeDto.builder().name(name).isVegetarian(true).servings(4).instructions(instructions)
+                .ingredients(Set.of(IngredientDto.builder().name("Onion").volume("2 pieces").build(),
+                        IngredientDto.builder().name("Carrot").volume("300 gram").remark("diced").build()))
+                .build();
+    }
+
+}
@@ -0,0 +1,230 @@
+package nl.trickjurgen.recipes.grpc;
+
+import io.grpc.Grpc;
+import io.grpc.InsecureChannelCredentials;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.ServerInterceptors;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
+import nl.trickjurgen.recipes.RecipeAppApplication;
+import nl.trickjurgen.recipes.admission.AdaptiveConcurrencyLimit;
+import nl.trickjurgen.recipes.admission.AdmissionServerInterceptor;
+import nl.trickjurgen.recipes.grpc.proto.Ingredient;
+import nl.trickjurgen.recipes.grpc.proto.Recipe;
+import nl.trickjurgen.recipes.grpc.proto.RecipeApiGrpc;
+import nl.trickjurgen.recipes.grpc.proto.RecipeHeader;
+import nl.trickjurgen.recipes.grpc.proto.RecipeIdRequest;
+import nl.trickjurgen.recipes.grpc.proto.SearchRecipesRequest;
+import nl.trickjurgen.recipes.grpc.proto.UpdateRecipeRequest;
+import nl.trickjurgen.recipes.repo.RecipeRepo;
+import nl.trickjurgen.recipes.service.RecipeService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledInNativeImage;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+
+// the in-process transport of the test has no native image hints (the netty one of the app has, see NativeImageHints)
+@DisabledInNativeImage
+@SpringBootTest(webEnvironment = RANDOM_PORT, classes = {RecipeAppApplication.class})
+class RecipeGrpcServiceTest {
+
+    private final RecipeGrpcService recipeGrpcService;
+    private final GrpcServer grpcServer;
+    private final RecipeService recipeService;
+    private final RecipeRepo recipeRepo;
+    private final AdmissionServerInterceptor admissionServerInterceptor;
+    private final AdaptiveConcurrencyLimit searchLimit;
+
+    private final List<AdaptiveConcurrencyLimit.Permit> heldPermits = new ArrayList<>();
+    private Server inProcessServer;
+    private ManagedChannel channel;
+    private RecipeApiGrpc.RecipeApiBlockingStub blockingStub;
+
+    @Autowired
+    RecipeGrpcServiceTest(RecipeGrpcService recipeGrpcService, GrpcServer grpcServer, RecipeService recipeService, RecipeRepo recipeRepo,
+                          AdmissionServerInterceptor admissionServerInterceptor,
+                          @Qualifier("searchAdmissionLimit") AdaptiveConcurrencyLimit searchLimit) {
+        this.recipeGrpcService = recipeGrpcService;
+        this.grpcServer = grpcServer;
+        this.recipeService = recipeService;
+        this.recipeRepo = recipeRepo;
+        this.admissionServerInterceptor = admissionServerInterceptor;
+        this.searchLimit = searchLimit;
+    }
+
+    @BeforeEach
+    void setUp() throws IOException {
+        final String name = InProcessServerBuilder.generateName();
+        inProcessServer = InProcessServerBuilder.forName(name)
+                .addService(ServerInterceptors.intercept(recipeGrpcService, admissionServerInterceptor)).build().start();
+        channel = InProcessChannelBuilder.forName(name).build();
+        blockingStub = RecipeApiGrpc.newBlockingStub(channel);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        heldPermits.forEach(AdaptiveConcurrencyLimit.Permit::release);
+        channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        inProcessServer.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        recipeRepo.findAll().forEach(r -> recipeService.deleteRecipe(r.getId()));
+    }
+
+    @Test
+    void createGetUpdateDelete() {
+        final Recipe created = blockingStub.createRecipe(recipe("grpc soup", true));
+        assertThat(created.hasId()).isTrue();
+        assertThat(created.getName()).isEqualTo("Grpc Soup");
+
+        final Recipe found = blockingStub.getRecipe(RecipeIdRequest.newBuilder().setId(created.getId()).build());
+        assertThat(found.getInstructions()).isEqualTo("Boil for an hour.");
+        assertThat(found.getIngredientsList()).extracting(Ingredient::getName).containsExactlyInAnyOrder("Leek", "Potato");
+        assertThat(found.getIngredientsList()).filteredOn(Ingredient::getName, "Leek").singleElement()
+                .satisfies(leek -> assertThat(leek.hasRemark()).isFalse());
+
+        final Recipe changed = found.toBuilder().setServings(6).clearIngredients()
+                .addIngredients(Ingredient.newBuilder().setName("Leek").setVolume("3 pieces").build()).build();
+        final Recipe updated = blockingStub.updateRecipe(UpdateRecipeRequest.newBuilder().setId(created.getId()).setRecipe(changed).build());
+        assertThat(updated.getServings()).isEqualTo(6);
+        assertThat(updated.getIngredientsList()).extracting(Ingredient::getVolume).containsExactly("3 pieces");
+
+        blockingStub.deleteRecipe(RecipeIdRequest.newBuilder().setId(created.getId()).build());
+        assertThatThrownBy(() -> blockingStub.getRecipe(RecipeIdRequest.newBuilder().setId(created.getId()).build()))
+                .isInstanceOfSatisfying(StatusRuntimeException.class,
+                        e -> assertThat(e.getStatus().getCode()).isEqualTo(Status.Code.NOT_FOUND));
+    }
+
+    @Test
+    void errorsMapToStatusCodes() {
+        final Recipe created = blockingStub.createRecipe(recipe("grpc stew", false));
+        assertThat(codeOf(() -> blockingStub.createRecipe(recipe("grpc stew", false)))).isEqualTo(Status.Code.ALREADY_EXISTS);
+        assertThat(codeOf(() -> blockingStub.createRecipe(created))).isEqualTo(Status.Code.INVALID_ARGUMENT);
+        assertThat(codeOf(() -> blockingStub.updateRecipe(UpdateRecipeRequest.newBuilder().setId(created.getId())
+                .setRecipe(created.toBuilder().clearId()).build()))).isEqualTo(Status.Code.INVALID_ARGUMENT);
+        assertThat(codeOf(() -> blockingStub.deleteRecipe(RecipeIdRequest.newBuilder().setId(-1).build()))).isEqualTo(Status.Code.NOT_FOUND);
+    }
+
+    @Test
+    void searchStreamsMatchingHeaders() {
+        blockingStub.createRecipe(recipe("grpc soup", true));
+        blockingStub.createRecipe(recipe("grpc stew", false));
+        blockingStub.createRecipe(recipe("grpc salad", true).toBuilder().clearIngredients()
+                .addIngredients(Ingredient.newBuilder().setName("Lettuce").setVolume("1 head").build()).build());
+
+        final List<String> names = streamNames(SearchRecipesRequest.newBuilder().setIsVegetarian(true)
+                .addIncludedIngredients(" leek ").build());
+        assertThat(names).containsExactly("Grpc Soup");
+        assertThat(streamNames(SearchRecipesRequest.newBuilder().addExcludedIngredients("potato").build())).containsExactly("Grpc Salad");
+        assertThat(streamNames(SearchRecipesRequest.getDefaultInstance())).hasSize(3);
+    }
+
+    @Test
+    void searchStopsWhenTheClientCancels() throws Exception {
+        IntStream.range(0, 30).forEach(i -> blockingStub.createRecipe(recipe("grpc dish " + i, true)));
+        final List<RecipeHeader> received = new CopyOnWriteArrayList<>();
+        final CompletableFuture<Status> end = new CompletableFuture<>();
+        RecipeApiGrpc.newStub(channel).searchRecipes(SearchRecipesRequest.getDefaultInstance(),
+                new ClientResponseObserver<SearchRecipesRequest, RecipeHeader>() {
+                    private ClientCallStreamObserver<SearchRecipesRequest> call;
+
+                    @Override
+                    public void beforeStart(ClientCallStreamObserver<SearchRecipesRequest> requestStream) {
+                        call = requestStream;
+                        requestStream.disableAutoRequestWithInitial(1); // read one header, then stop
+                    }
+
+                    @Override
+                    public void onNext(RecipeHeader header) {
+                        received.add(header);
+                        call.cancel("enough", null);
+                    }
+
+                    @Override
+                    public void onError(Throwable t) {
+                        end.complete(Status.fromThrowable(t));
+                    }
+
+                    @Override
+                    public void onCompleted() {
+                        end.complete(Status.OK);
+                    }
+                });
+        assertThat(end.get(10, TimeUnit.SECONDS).getCode()).isEqualTo(Status.Code.CANCELLED);
+        assertThat(received).hasSize(1);
+        // the server side search ended as well, the service is free for the next call
+        assertThat(streamNames(SearchRecipesRequest.getDefaultInstance())).hasSize(30);
+    }
+
+    @Test
+    void searchOverTheLimitIsUnavailableWhileCrudStillGoesThrough() throws InterruptedException {
+        final Recipe created = blockingStub.createRecipe(recipe("grpc broth", true));
+        // the same search permits as the rest api, the last attempt waits out the queue time and gets none
+        AdaptiveConcurrencyLimit.Permit permit;
+        while ((permit = searchLimit.acquire()) != null) heldPermits.add(permit);
+
+        assertThat(codeOf(() -> streamNames(SearchRecipesRequest.getDefaultInstance()))).isEqualTo(Status.Code.UNAVAILABLE);
+        assertThat(blockingStub.getRecipe(RecipeIdRequest.newBuilder().setId(created.getId()).build()).getName()).isEqualTo("Grpc Broth");
+
+        heldPermits.forEach(AdaptiveConcurrencyLimit.Permit::release);
+        heldPermits.clear();
+        assertThat(streamNames(SearchRecipesRequest.getDefaultInstance())).containsExactly("Grpc Broth");
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (searchLimit.getInFlight() > 0 && System.currentTimeMillis() < deadline) Thread.sleep(10);
+        assertThat(searchLimit.getInFlight()).isZero();
+    }
+
+    @Test
+    void servesOnItsOwnPortNextToRest() throws InterruptedException {
+        assertThat(grpcServer.isRunning()).isTrue();
+        final ManagedChannel network = Grpc.newChannelBuilderForAddress("localhost", grpcServer.getPort(),
+                InsecureChannelCredentials.create()).build();
+        try {
+            final Recipe created = RecipeApiGrpc.newBlockingStub(network).createRecipe(recipe("network pie", false));
+            assertThat(recipeService.findRecipeById(created.getId()).getName()).isEqualTo("Network Pie");
+        } finally {
+            network.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+
+    private List<String> streamNames(final SearchRecipesRequest request) {
+        final List<String> names = new CopyOnWriteArrayList<>();
+        blockingStub.searchRecipes(request).forEachRemaining(header -> names.add(header.getName()));
+        return names;
+    }
+
+    private static Status.Code codeOf(final Runnable call) {
+        try {
+            call.run();
+        } catch (StatusRuntimeException e) {
+            return e.getStatus().getCode();
+        }
+        return Status.Code.OK;
+    }
+
+    private static Recipe recipe(final String name, final boolean vegetarian) {
+        return Recipe.newBuilder().setName(name).setIsVegetarian(vegetarian).setServings(4).setInstructions("Boil for an hour.")
+                .addIngredients(Ingredient.newBuilder().setName("Leek").setVolume("2 pieces").build())
+                .addIngredients(Ingredient.newBuilder().setName("Potato").setVolume("500 gram").setRemark("floury").build())
+                .build();
+    }
+
+}
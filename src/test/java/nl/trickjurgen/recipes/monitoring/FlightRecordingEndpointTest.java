@@ -0,0 +1,100 @@
+package nl.trickjurgen.recipes.monitoring;
+
+import io.restassured.RestAssured;
+import io.restassured.http.ContentType;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import nl.trickjurgen.recipes.RecipeAppApplication;
+import nl.trickjurgen.recipes.dto.IngredientDto;
+import nl.trickjurgen.recipes.dto.RecipeDto;
+import nl.trickjurgen.recipes.repo.RecipeRepo;
+import nl.trickjurgen.recipes.service.RecipeService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+
+@SpringBootTest(webEnvironment = RANDOM_PORT, classes = {RecipeAppApplication.class})
+class FlightRecordingEndpointTest {
+
+    private static final String ENDPOINT = "/actuator/flightrecording";
+
+    @SuppressWarnings("unused")
+    @LocalServerPort
+    private int port;
+
+    private final RecipeService recipeService;
+    private final RecipeRepo recipeRepo;
+
+    @Autowired
+    FlightRecordingEndpointTest(RecipeService recipeService, RecipeRepo recipeRepo) {
+        this.recipeService = recipeService;
+        this.recipeRepo = recipeRepo;
+    }
+
+    @BeforeEach
+    void setUp() {
+        RestAssured.port = port;
+        RestAssured.baseURI = "http://localhost";
+    }
+
+    @Test
+    void recordsRecipeEventsAndDumpsThem() throws IOException {
+        final Path dump = Files.createTempFile("recording-test-", ".jfr");
+        try {
+            RestAssured.given().contentType(ContentType.JSON).body(Map.of("action", "start")).when().post(ENDPOINT)
+                    .then().statusCode(200);
+            RestAssured.given().contentType(ContentType.JSON).body(Map.of("action", "start")).when().post(ENDPOINT)
+                    .then().statusCode(400); // one recording at a time
+            assertThat(RestAssured.given().when().get(ENDPOINT).then().statusCode(200).extract().jsonPath().getBoolean("running")).isTrue();
+
+            final Long id = recipeService.saveNewRecipe(RecipeDto.builder().name("Toast").isVegetarian(true).servings(1)
+                    .instructions("Toast the bread.")
+                    .ingredients(Set.of(IngredientDto.builder().name("bread").volume("2 slices").build())).build()).getId();
+            RestAssured.given().when().get("/recipes/" + id).then().statusCode(200);
+            RestAssured.given().when().get("/recipesearch?includedIngredients=bread").then().statusCode(200);
+
+            Files.write(dump, RestAssured.given().when().get(ENDPOINT + "/dump").then().statusCode(200).extract().asByteArray());
+            final List<RecordedEvent> events = RecordingFile.readAllEvents(dump).stream()
+                    .filter(event -> event.getEventType().getName().startsWith("nl.trickjurgen.recipes."))
+                    .toList();
+
+            final List<RecordedEvent> operations = events.stream()
+                    .filter(event -> event.getEventType().getName().equals("nl.trickjurgen.recipes.RecipeOperation")).toList();
+            assertThat(operations).extracting(event -> event.getString("operation"))
+                    .contains("saveNewRecipe", "findRecipeById", "findRecipeHeadersWithGivenParams");
+            assertThat(operations).extracting(event -> event.getString("arguments"))
+                    .contains("[RecipeDto(id=null)]", "[" + id + "]")
+                    .noneMatch(arguments -> arguments.contains("bread") || arguments.contains("Toast"));
+            assertThat(RecordingFile.readAllEvents(dump)).extracting(event -> event.getEventType().getName())
+                    .doesNotContain("jdk.InitialEnvironmentVariable", "jdk.InitialSystemProperty", "jdk.JVMInformation");
+            assertThat(events).filteredOn(event -> event.getEventType().getName().equals("nl.trickjurgen.recipes.SearchPhase"))
+                    .extracting(event -> event.getString("phase"))
+                    .containsExactly("load", "filter");
+            assertThat(events).filteredOn(event -> event.getEventType().getName().equals("nl.trickjurgen.recipes.RecipeMapping"))
+                    .extracting(event -> event.getString("mapping"))
+                    .contains("recipeToDto", "recipeToHeader");
+            assertThat(events).filteredOn(event -> event.getEventType().getName().equals("nl.trickjurgen.recipes.Request"))
+                    .extracting(event -> event.getString("path"))
+                    .contains("/recipes/" + id, "/recipesearch");
+        } finally {
+            RestAssured.given().contentType(ContentType.JSON).body(Map.of("action", "stop")).when().post(ENDPOINT);
+            Files.deleteIfExists(dump);
+            recipeRepo.findAll().forEach(r -> recipeService.deleteRecipe(r.getId()));
+        }
+        RestAssured.given().contentType(ContentType.JSON).body(Map.of("action", "stop")).when().post(ENDPOINT)
+                .then().statusCode(404);
+    }
+
+}
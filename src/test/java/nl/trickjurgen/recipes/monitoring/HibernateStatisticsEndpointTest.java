@@ -0,0 +1,88 @@
+package nl.trickjurgen.recipes.monitoring;
+
+import io.restassured.RestAssured;
+import io.restassured.path.json.JsonPath;
+import jakarta.persistence.EntityManagerFactory;
+import nl.trickjurgen.recipes.RecipeAppApplication;
+import nl.trickjurgen.recipes.dto.IngredientDto;
+import nl.trickjurgen.recipes.dto.RecipeDto;
+import nl.trickjurgen.recipes.repo.RecipeRepo;
+import nl.trickjurgen.recipes.service.RecipeService;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.spi.StatisticsImplementor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+
+@SpringBootTest(webEnvironment = RANDOM_PORT, classes = {RecipeAppApplication.class})
+class HibernateStatisticsEndpointTest {
+
+    private static final String RECIPE_ENTITY = "nl.trickjurgen.recipes.datamodel.Recipe";
+
+    @SuppressWarnings("unused")
+    @LocalServerPort
+    private int port;
+
+    private final RecipeService recipeService;
+    private final RecipeRepo recipeRepo;
+    private final EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    HibernateStatisticsEndpointTest(RecipeService recipeService, RecipeRepo recipeRepo, EntityManagerFactory entityManagerFactory) {
+        this.recipeService = recipeService;
+        this.recipeRepo = recipeRepo;
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    @BeforeEach
+    void setUp() {
+        RestAssured.port = port;
+        RestAssured.baseURI = "http://localhost";
+        RestAssured.given().when().delete("/actuator/hibernate").then().statusCode(204);
+    }
+
+    @Test
+    void countsQueriesAndEntityLoads() {
+        try {
+            final Long id = recipeService.saveNewRecipe(RecipeDto.builder().name("Toast").isVegetarian(true).servings(1)
+                    .instructions("Toast the bread.")
+                    .ingredients(Set.of(IngredientDto.builder().name("bread").volume("2 slices").build())).build()).getId();
+            RestAssured.given().when().get("/recipes?ids=" + id).then().statusCode(200);
+
+            final JsonPath stats = RestAssured.given().when().get("/actuator/hibernate")
+                    .then().statusCode(200).extract().jsonPath();
+            assertThat(stats.getBoolean("enabled")).isTrue();
+            assertThat(stats.getLong("totals.queryExecutions")).isPositive();
+            assertThat(stats.getLong("totals.entityInserts")).isPositive();
+            assertThat(stats.getLong("entities['" + RECIPE_ENTITY + "'].inserts")).isEqualTo(1L);
+            assertThat(stats.getLong("entities['" + RECIPE_ENTITY + "'].loads")).isPositive();
+            assertThat(stats.getMap("queries")).isNotEmpty();
+            assertThat(stats.getString("totals.secondLevelCache.hitRatio")).isNull(); // no second level cache configured
+        } finally {
+            recipeRepo.findAll().forEach(r -> recipeService.deleteRecipe(r.getId()));
+        }
+    }
+
+    @Test
+    void slowQueriesAreListedWithTheirOrigin() {
+        // what hibernate calls for a statement slower than hibernate.log_slow_query
+        ((StatisticsImplementor) entityManagerFactory.unwrap(SessionFactory.class).getStatistics())
+                .slowQuery("select r.id from recipes r", 750L);
+
+        final JsonPath stats = RestAssured.given().when().get("/actuator/hibernate")
+                .then().statusCode(200).extract().jsonPath();
+        assertThat(stats.getLong("slowQueryThresholdMillis")).isEqualTo(200L);
+        assertThat(stats.getString("slowQueries[0].sql")).isEqualTo("select r.id from recipes r");
+        assertThat(stats.getLong("slowQueries[0].millis")).isEqualTo(750L);
+        // not called through RecipeService, so the first application frame is the origin
+        assertThat(stats.getString("slowQueries[0].origin")).isEqualTo("HibernateStatisticsEndpointTest.slowQueriesAreListedWithTheirOrigin");
+    }
+
+}
@@ -0,0 +1,96 @@
+package nl.trickjurgen.recipes.monitoring;
+
+import io.restassured.RestAssured;
+import io.restassured.path.json.JsonPath;
+import nl.trickjurgen.recipes.RecipeAppApplication;
+import nl.trickjurgen.recipes.dto.IngredientDto;
+import nl.trickjurgen.recipes.dto.RecipeDto;
+import nl.trickjurgen.recipes.repo.RecipeRepo;
+import nl.trickjurgen.recipes.service.RecipeService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+
+// tracing is off in spring boot tests unless asked for
+@AutoConfigureObservability
+@SpringBootTest(webEnvironment = RANDOM_PORT, classes = {RecipeAppApplication.class})
+class TracesEndpointTest {
+
+    @SuppressWarnings("unused")
+    @LocalServerPort
+    private int port;
+
+    private final RecipeService recipeService;
+    private final RecipeRepo recipeRepo;
+
+    @Autowired
+    TracesEndpointTest(RecipeService recipeService, RecipeRepo recipeRepo) {
+        this.recipeService = recipeService;
+        this.recipeRepo = recipeRepo;
+    }
+
+    @BeforeEach
+    void setUp() {
+        RestAssured.port = port;
+        RestAssured.baseURI = "http://localhost";
+    }
+
+    @Test
+    void requestIsTracedThroughAllLayers() throws InterruptedException {
+        try {
+            final Long id = recipeService.saveNewRecipe(RecipeDto.builder().name("Toast").isVegetarian(true).servings(1)
+                    .instructions("Toast the bread.")
+                    .ingredients(Set.of(IngredientDto.builder().name("bread").volume("2 slices").build(),
+                            IngredientDto.builder().name("butter").volume("1 knob").build())).build()).getId();
+            RestAssured.given().when().delete("/actuator/traces").then().statusCode(204);
+
+            RestAssured.given().when().get("/recipes/" + id).then().statusCode(200);
+
+            final String traceId = awaitTrace("http get /recipes/{recipeId}");
+            final JsonPath trace = RestAssured.given().when().get("/actuator/traces/" + traceId)
+                    .then().statusCode(200).extract().jsonPath();
+            final List<Map<String, Object>> spans = trace.getList("spans");
+            assertThat(spans).extracting(span -> span.get("name"))
+                    .contains("http get /recipes/{recipeId}", "recipe-controller.get-recipe-by-id",
+                            "recipe-service.find-recipe-by-id", "recipe-repo.find-with-ingredients-by-id", "query");
+            assertThat(spanField(trace, "recipe-service.find-recipe-by-id", "attributes['result.ingredients']")).isEqualTo("2");
+            assertThat(spanField(trace, "recipe-repo.find-with-ingredients-by-id", "attributes['result.size']")).isEqualTo("1");
+            // http request -> controller -> service, the statement under the repository call that ran it
+            assertThat(spanField(trace, "recipe-controller.get-recipe-by-id", "parentSpanId"))
+                    .isEqualTo(spanField(trace, "http get /recipes/{recipeId}", "spanId"));
+            assertThat(spanField(trace, "recipe-service.find-recipe-by-id", "parentSpanId"))
+                    .isEqualTo(spanField(trace, "recipe-controller.get-recipe-by-id", "spanId"));
+            final String repositorySpanId = spanField(trace, "recipe-repo.find-with-ingredients-by-id", "spanId");
+            assertThat(trace.getString("spans.find { it.parentSpanId == '" + repositorySpanId + "' }.attributes['jdbc.query[0]']"))
+                    .startsWith("select");
+        } finally {
+            recipeRepo.findAll().forEach(r -> recipeService.deleteRecipe(r.getId()));
+        }
+    }
+
+    private static String spanField(final JsonPath trace, final String name, final String field) {
+        return trace.getString("spans.find { it.name == '" + name + "' }." + field);
+    }
+
+    // the server span ends after the response is written, so it can show up just after the client got its answer
+    private String awaitTrace(final String name) throws InterruptedException {
+        for (int attempt = 0; attempt < 50; attempt++) {
+            final List<String> traceIds = RestAssured.given().when().get("/actuator/traces")
+                    .then().statusCode(200).extract().jsonPath().getList("findAll { it.name == '" + name + "' }.traceId");
+            if (!traceIds.isEmpty()) return traceIds.getFirst();
+            Thread.sleep(100);
+        }
+        throw new AssertionError("no trace named " + name);
+    }
+
+}
@@ -0,0 +1,130 @@
+package nl.trickjurgen.recipes.repo;
+
+import nl.trickjurgen.recipes.SqlStatementCounter;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * calls the main queries of the app through their repositories, takes the SQL hibernate generated for them (from the
+ * SqlStatementCounter) and runs EXPLAIN on it, with example values for the parameters. Fails when the database would
+ * answer one of them with a full table scan, so a missing or dropped index, or a change in the generated SQL that
+ * can't use one, shows up in the build
+ */
+@SpringBootTest
+class QueryPlanTest {
+
+    private final Logger logger = LoggerFactory.getLogger(QueryPlanTest.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final RecipeRepo recipeRepo;
+    private final IngredientTypeRepo ingredientTypeRepo;
+
+    @Autowired
+    QueryPlanTest(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager, RecipeRepo recipeRepo,
+                  IngredientTypeRepo ingredientTypeRepo) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.recipeRepo = recipeRepo;
+        this.ingredientTypeRepo = ingredientTypeRepo;
+    }
+
+    // a repository call, and the values for the parameters of the statement(s) it executes, in order (a limit as row count)
+    private record Query(String description, Consumer<QueryPlanTest> call, Object... parameters) {
+        @Override
+        public String toString() {
+            return description;
+        }
+    }
+
+    static Stream<Query> mainQueries() {
+        return Stream.of(
+                new Query("RecipeRepo.findByName, duplicate check on create",
+                        test -> test.recipeRepo.findByName("Hot Toddy"), "Hot Toddy"),
+                new Query("IngredientTypeRepo.findAndLockByNameIn, reuse of ingredient types",
+                        test -> test.ingredientTypeRepo.findAndLockByNameIn(List.of("Onion", "Garlic")), "Onion", "Garlic"),
+                new Query("RecipeRepo.findWithIngredientsById, a recipe by id",
+                        test -> test.recipeRepo.findWithIngredientsById(42L), 42L),
+                new Query("RecipeRepo.findAllWithIngredientsByIdIn, batch get and search details",
+                        test -> test.recipeRepo.findAllWithIngredientsByIdIn(List.of(1L, 2L, 3L)), 1L, 2L, 3L),
+                new Query("IngredientTypeRepo.findUnusedIdsAfter, batches of the ingredient type cleanup",
+                        test -> test.ingredientTypeRepo.findUnusedIdsAfter(0L, Limit.of(500)), 0L, 500),
+                new Query("RecipeFacetRepo.findMatchingIds, hits of the search details",
+                        test -> test.recipeRepo.findMatchingIds(
+                                RecipeSpecifications.matching(true, 2, 6, null, null, null), 10), true, 2, 6, 10),
+                new Query("RecipeFacetRepo.countPerServings, vegetarian + servings filter",
+                        test -> test.recipeRepo.countPerServings(
+                                RecipeSpecifications.matching(true, 2, 6, null, null, null)), true, 2, 6),
+                new Query("RecipeFacetRepo.countPerVegetarian, recipes using an ingredient type",
+                        test -> test.recipeRepo.countPerVegetarian(
+                                RecipeSpecifications.matching(null, null, null, List.of(List.of(7L)), null, null)), 7L)
+        );
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("mainQueries")
+    void mainQueriesUseIndexes(final Query query) {
+        final List<String> statements = generatedSql(query);
+        assertThat(statements).as("sql of %s", query).isNotEmpty();
+        for (String sql : statements) {
+            final Object[] parameters = withOffset(sql, query.parameters());
+            assertThat(sql.chars().filter(c -> c == '?').count()).as("parameters of: %s", sql).isEqualTo(parameters.length);
+            final List<String> fullScans = isMySql() ? mySqlFullScans(sql, parameters) : h2FullScans(sql, parameters);
+            assertThat(fullScans).as("full table scan(s) in plan of: %s", sql).isEmpty();
+        }
+    }
+
+    // in a transaction: the locking query needs one
+    private List<String> generatedSql(final Query query) {
+        SqlStatementCounter.reset();
+        transactionTemplate.executeWithoutResult(status -> query.call().accept(this));
+        return SqlStatementCounter.statements().stream()
+                .filter(sql -> !sql.contains("recipe_outbox")) // the background dispatcher polling meanwhile
+                .toList();
+    }
+
+    // h2 renders a limit as 'offset ? rows fetch first ? rows only', the offset goes before the row count (last parameter)
+    private static Object[] withOffset(final String sql, final Object[] parameters) {
+        if (!sql.contains("offset ? rows")) return parameters;
+        final Object[] withOffset = Arrays.copyOf(parameters, parameters.length + 1);
+        withOffset[parameters.length - 1] = 0;
+        withOffset[parameters.length] = parameters[parameters.length - 1];
+        return withOffset;
+    }
+
+    private boolean isMySql() {
+        final String product = jdbcTemplate.execute((ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName());
+        return "MySQL".equalsIgnoreCase(product);
+    }
+
+    private List<String> h2FullScans(final String sql, final Object[] parameters) {
+        final String plan = jdbcTemplate.queryForObject("EXPLAIN " + sql, String.class, parameters);
+        logger.info("plan: {}", plan);
+        return Objects.requireNonNull(plan).lines().filter(line -> line.contains(".tableScan")).map(String::trim).toList();
+    }
+
+    private List<String> mySqlFullScans(final String sql, final Object[] parameters) {
+        final List<Map<String, Object>> plan = jdbcTemplate.queryForList("EXPLAIN " + sql, parameters);
+        logger.info("plan: {}", plan);
+        return plan.stream().filter(row -> "ALL".equals(row.get("type"))).map(row -> String.valueOf(row.get("table"))).toList();
+    }
+
+}
@@ -0,0 +1,82 @@
+package nl.trickjurgen.recipes.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import nl.trickjurgen.recipes.datamodel.IngredientType;
+import nl.trickjurgen.recipes.dto.IngredientDto;
+import nl.trickjurgen.recipes.dto.RecipeDto;
+import nl.trickjurgen.recipes.repo.IngredientTypeRepo;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@Transactional
+class IngredientTypeCleanupServiceTest {
+
+    private final RecipeService recipeService;
+    private final IngredientTypeRepo ingredientTypeRepo;
+    private final PlatformTransactionManager transactionManager;
+
+    @Autowired
+    IngredientTypeCleanupServiceTest(RecipeService recipeService, IngredientTypeRepo ingredientTypeRepo,
+                                     PlatformTransactionManager transactionManager) {
+        this.recipeService = recipeService;
+        this.ingredientTypeRepo = ingredientTypeRepo;
+        this.transactionManager = transactionManager;
+    }
+
+    private static IngredientDto ingredient(final String name) {
+        return IngredientDto.builder().name(name).volume("1").build();
+    }
+
+    @Test
+    void deleteUnusedIngredientTypes() {
+        RecipeDto toast = recipeService.saveNewRecipe(RecipeDto.builder().name("Toast").isVegetarian(true).servings(1)
+                .instructions("Toast the bread, spread butter.")
+                .ingredients(Set.of(ingredient("bread"), ingredient("butter"), ingredient("jam"))).build());
+        recipeService.saveNewRecipe(RecipeDto.builder().name("Sandwich").isVegetarian(true).servings(1)
+                .instructions("Put cheese between bread.")
+                .ingredients(Set.of(ingredient("bread"), ingredient("cheese"))).build());
+        ingredientTypeRepo.save(IngredientType.builder().name("Never Used").build());
+        // drop jam from the toast, nothing else uses it
+        toast.setIngredients(new HashSet<>(Set.of(ingredient("bread"), ingredient("butter"))));
+        recipeService.updateRecipe(toast.getId(), toast);
+        final Long jamId = ingredientTypeRepo.findByName("Jam").orElseThrow().getId();
+        final Long neverUsedId = ingredientTypeRepo.findByName("Never Used").orElseThrow().getId();
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        // the test transaction is never committed, so record what would be taken out of the index
+        final List<Long> removedFromIndex = new ArrayList<>();
+        IngredientTypeIndex ingredientTypeIndex = new IngredientTypeIndex(ingredientTypeRepo, 0.4) {
+            @Override
+            public void removeDeleted(final Collection<Long> ids) {
+                removedFromIndex.addAll(ids);
+            }
+        };
+        // batch size 1 so the run has to go through several batches
+        IngredientTypeCleanupService cleanupService = new IngredientTypeCleanupService(ingredientTypeRepo, ingredientTypeIndex,
+                transactionManager, meterRegistry, 1);
+
+        assertThat(cleanupService.deleteUnusedIngredientTypes()).isEqualTo(2);
+        assertThat(ingredientTypeRepo.findByName("Jam")).isEmpty();
+        assertThat(ingredientTypeRepo.findByName("Never Used")).isEmpty();
+        assertThat(ingredientTypeRepo.findAll()).extracting("name").containsExactlyInAnyOrder("Bread", "Butter", "Cheese");
+        assertThat(removedFromIndex).containsExactlyInAnyOrder(jamId, neverUsedId);
+        assertThat(meterRegistry.get("recipes.ingredienttypes.cleanup.deleted").counter().count()).isEqualTo(2.0);
+        assertThat(meterRegistry.get("recipes.ingredienttypes.cleanup").timer().count()).isEqualTo(1L);
+
+        // nothing left to do
+        assertThat(cleanupService.deleteUnusedIngredientTypes()).isZero();
+    }
+
+}
@@ -0,0 +1,146 @@
+package nl.trickjurgen.recipes.service;
+
+import nl.trickjurgen.recipes.datamodel.IngredientType;
+import nl.trickjurgen.recipes.exception.RecipeParameterException;
+import nl.trickjurgen.recipes.repo.IngredientTypeRepo;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledInNativeImage;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+// mockito can't create its mocks in a native image
+@DisabledInNativeImage
+@ExtendWith(MockitoExtension.class)
+class IngredientTypeIndexTest {
+
+    @Mock
+    private IngredientTypeRepo ingredientTypeRepo;
+
+    private IngredientTypeIndex ingredientTypeIndex;
+
+    @BeforeEach
+    void init() {
+        ingredientTypeIndex = new IngredientTypeIndex(ingredientTypeRepo, 0.4);
+        lenient().when(ingredientTypeRepo.findAll()).thenReturn(List.of(type(1, "Onion"), type(2, "Red Onion"), type(3, "Garlic Cloves"),
+                type(4, "Canned Tomatoes"), type(5, "Cherry Tomatoes"), type(6, "Salt"), type(7, "Tomato Paste")));
+    }
+
+    private static IngredientType type(final long id, final String name) {
+        return IngredientType.builder().id(id).name(name).build();
+    }
+
+    @Test
+    void resolveExactAndSubstring() {
+        assertThat(ingredientTypeIndex.resolve("onion", IngredientMatch.EXACT)).containsOnly(1L);
+        assertThat(ingredientTypeIndex.resolve(" ONION ", IngredientMatch.SUBSTRING)).containsOnly(1L, 2L);
+        assertThat(ingredientTypeIndex.resolve("tomato", IngredientMatch.SUBSTRING)).containsOnly(4L, 5L, 7L);
+        assertThat(ingredientTypeIndex.resolve("d on", IngredientMatch.SUBSTRING)).containsOnly(2L);
+        // all trigrams of the term are in the name, but not in this order
+        assertThat(ingredientTypeIndex.resolve("tomatomato", IngredientMatch.SUBSTRING)).isEmpty();
+        // no match across names, like the old search on all names of a recipe joined had
+        assertThat(ingredientTypeIndex.resolve("onion garlic", IngredientMatch.SUBSTRING)).isEmpty();
+        // shorter than a trigram
+        assertThat(ingredientTypeIndex.resolve("lt", IngredientMatch.SUBSTRING)).containsOnly(6L);
+        assertThat(ingredientTypeIndex.resolve(" ", IngredientMatch.SUBSTRING)).isEmpty();
+        verify(ingredientTypeRepo, times(1)).findAll(); // loaded once
+    }
+
+    @Test
+    void resolveFuzzy() {
+        assertThat(ingredientTypeIndex.resolve("tomatos", IngredientMatch.SUBSTRING)).isEmpty();
+        assertThat(ingredientTypeIndex.resolve("tomatos", IngredientMatch.FUZZY)).containsOnly(4L, 5L, 7L);
+        assertThat(ingredientTypeIndex.resolve("garlic clove", IngredientMatch.FUZZY)).containsOnly(3L);
+        assertThat(ingredientTypeIndex.resolve("onions", IngredientMatch.FUZZY)).containsOnly(1L, 2L);
+        assertThat(ingredientTypeIndex.resolve("pepper", IngredientMatch.FUZZY)).isEmpty();
+
+        List<IngredientTypeIndex.ScoredType> similar = ingredientTypeIndex.findSimilar("tomatos", 3);
+        assertThat(similar).allSatisfy(type -> assertThat(type.score()).isBetween(0.4, 1.0));
+        assertThat(similar).extracting("name").containsExactly("Tomato Paste", "Canned Tomatoes", "Cherry Tomatoes");
+        assertThat(ingredientTypeIndex.findSimilar("tomatos", 1)).hasSize(1);
+    }
+
+    @Test
+    void addWrittenRollbackAndReuse() {
+        assertThat(ingredientTypeIndex.resolve("basil", IngredientMatch.SUBSTRING)).isEmpty();
+
+        // outside a transaction: indexed for good
+        ingredientTypeIndex.addWritten(List.of(type(8, "Fresh Basil")));
+        assertThat(ingredientTypeIndex.resolve("basil", IngredientMatch.SUBSTRING)).containsOnly(8L);
+
+        // in a transaction: found right away, gone again after a rollback
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            ingredientTypeIndex.addWritten(List.of(type(9, "Thai Basil"), type(1, "Onion")));
+            assertThat(ingredientTypeIndex.resolve("basil", IngredientMatch.SUBSTRING)).containsOnly(8L, 9L);
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        assertThat(ingredientTypeIndex.resolve("basil", IngredientMatch.FUZZY)).containsOnly(8L);
+        assertThat(ingredientTypeIndex.resolve("onion", IngredientMatch.EXACT)).containsOnly(1L); // was there before
+
+        // an id given out again after its type was deleted (a database restart can do that) gets the new name
+        ingredientTypeIndex.addWritten(List.of(type(8, "Bay Leaves")));
+        assertThat(ingredientTypeIndex.resolve("basil", IngredientMatch.SUBSTRING)).isEmpty();
+        assertThat(ingredientTypeIndex.resolve("bay leaf", IngredientMatch.FUZZY)).containsOnly(8L);
+
+        ingredientTypeIndex.reset();
+        assertThat(ingredientTypeIndex.resolve("basil", IngredientMatch.SUBSTRING)).isEmpty(); // not in the database
+        verify(ingredientTypeRepo, times(2)).findAll();
+    }
+
+    @Test
+    void removeDeletedAfterCommit() {
+        assertThat(ingredientTypeIndex.findSimilar("salty", 5)).extracting("name").containsExactly("Salt");
+
+        // in a transaction: still there until the commit
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            ingredientTypeIndex.removeDeleted(List.of(6L));
+            assertThat(ingredientTypeIndex.resolve("salt", IngredientMatch.EXACT)).containsOnly(6L);
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        assertThat(ingredientTypeIndex.findSimilar("salty", 5)).isEmpty();
+
+        // outside a transaction: right away
+        ingredientTypeIndex.removeDeleted(List.of(1L));
+        assertThat(ingredientTypeIndex.resolve("onion", IngredientMatch.SUBSTRING)).containsOnly(2L);
+    }
+
+    @Test
+    void missGoesToTheDatabase() {
+        // created on another instance, its change hasn't reached this one
+        when(ingredientTypeRepo.findByIdGreaterThan(7L)).thenReturn(List.of(type(8, "Dragon Fruit")));
+
+        assertThat(ingredientTypeIndex.resolve("Dragon Fruit", IngredientMatch.EXACT)).containsOnly(8L);
+        assertThat(ingredientTypeIndex.resolve("dragon", IngredientMatch.SUBSTRING)).containsOnly(8L); // indexed now
+        assertThat(ingredientTypeIndex.resolve("kiwi", IngredientMatch.FUZZY)).isEmpty();
+        // only the types after the newest one known, once per miss
+        verify(ingredientTypeRepo).findByIdGreaterThan(7L);
+        verify(ingredientTypeRepo).findByIdGreaterThan(8L);
+    }
+
+    @Test
+    void ingredientMatchFromParam() {
+        assertThat(IngredientMatch.fromParam(null)).isEqualTo(IngredientMatch.SUBSTRING);
+        assertThat(IngredientMatch.fromParam("Fuzzy")).isEqualTo(IngredientMatch.FUZZY);
+        assertThatThrownBy(() -> IngredientMatch.fromParam("sounds-like")).isInstanceOf(RecipeParameterException.class);
+    }
+
+}
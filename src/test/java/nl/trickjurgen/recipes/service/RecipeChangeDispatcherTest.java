@@ -0,0 +1,231 @@
+package nl.trickjurgen.recipes.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import nl.trickjurgen.recipes.datamodel.RecipeChangeEvent;
+import nl.trickjurgen.recipes.datamodel.RecipeChangeType;
+import nl.trickjurgen.recipes.dto.IngredientDto;
+import nl.trickjurgen.recipes.dto.RecipeDto;
+import nl.trickjurgen.recipes.repo.RecipeChangeEventRepo;
+import nl.trickjurgen.recipes.repo.RecipeRepo;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// the scheduled poll only runs once at startup in tests, the test dispatches itself
+@SpringBootTest
+class RecipeChangeDispatcherTest {
+
+    private final RecipeService recipeService;
+    private final RecipeChangeDispatcher recipeChangeDispatcher;
+    private final RecipeDetailCache recipeDetailCache;
+    private final RecipeChangeEventRepo recipeChangeEventRepo;
+    private final RecipeRepo recipeRepo;
+    private final TransactionTemplate transactionTemplate;
+
+    @Autowired
+    RecipeChangeDispatcherTest(RecipeService recipeService, RecipeChangeDispatcher recipeChangeDispatcher,
+                               RecipeDetailCache recipeDetailCache, RecipeChangeEventRepo recipeChangeEventRepo,
+                               RecipeRepo recipeRepo, PlatformTransactionManager transactionManager) {
+        this.recipeService = recipeService;
+        this.recipeChangeDispatcher = recipeChangeDispatcher;
+        this.recipeDetailCache = recipeDetailCache;
+        this.recipeChangeEventRepo = recipeChangeEventRepo;
+        this.recipeRepo = recipeRepo;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Test
+    void writesGoThroughOutboxToCache() {
+        try {
+            RecipeDto toast = recipeService.saveNewRecipe(RecipeDto.builder().name("Toast").isVegetarian(true).servings(1)
+                    .instructions("Toast the bread.")
+                    .ingredients(Set.of(IngredientDto.builder().name("bread").volume("2 slices").build())).build());
+            final Long id = toast.getId();
+            assertThat(recipeDetailCache.get(id)).isNull(); // not part of the write
+
+            assertThat(recipeChangeDispatcher.dispatchPending()).isEqualTo(1);
+            assertThat(recipeDetailCache.get(id).getServings()).isEqualTo(1);
+
+            toast.setServings(2);
+            recipeService.updateRecipe(id, toast);
+            assertThat(recipeDetailCache.get(id)).as("evicted on commit").isNull();
+            assertThat(recipeChangeDispatcher.dispatchPending()).isEqualTo(1);
+            assertThat(recipeDetailCache.get(id).getServings()).isEqualTo(2);
+
+            recipeService.deleteRecipe(id);
+            assertThat(recipeChangeDispatcher.dispatchPending()).isEqualTo(1);
+            assertThat(recipeDetailCache.get(id)).isNull();
+            assertThat(recipeChangeDispatcher.dispatchPending()).isZero();
+
+            assertThat(recipeChangeEventRepo.findAll()).extracting(RecipeChangeEvent::getChangeType)
+                    .containsExactly(RecipeChangeType.CREATED, RecipeChangeType.UPDATED, RecipeChangeType.DELETED);
+            assertThat(recipeChangeDispatcher.replayAll()).isEqualTo(3);
+            assertThat(recipeDetailCache.get(id)).isNull();
+        } finally {
+            recipeRepo.findAll().forEach(r -> recipeService.deleteRecipe(r.getId()));
+            recipeChangeEventRepo.deleteAll();
+        }
+    }
+
+    @Test
+    void aTransactionThatCommitsAfterAHigherIdIsNotSkipped() throws Exception {
+        final RecordingListener listener = new RecordingListener();
+        final RecipeChangeDispatcher dispatcher = dispatcher(listener);
+        dispatcher.dispatchPending();
+        final CountDownLatch inserted = new CountDownLatch(1);
+        final CountDownLatch commit = new CountDownLatch(1);
+        try (ExecutorService writer = Executors.newSingleThreadExecutor()) {
+            final Future<?> slowWrite = writer.submit(() -> transactionTemplate.executeWithoutResult(status -> {
+                recipeChangeEventRepo.saveAndFlush(event(101L));
+                inserted.countDown();
+                await(commit);
+            }));
+            assertThat(inserted.await(5, TimeUnit.SECONDS)).isTrue();
+            recipeChangeEventRepo.save(event(102L));
+
+            assertThat(dispatcher.dispatchPending()).isEqualTo(1);
+            assertThat(listener.recipeIds).containsExactly(102L);
+
+            commit.countDown();
+            slowWrite.get(5, TimeUnit.SECONDS);
+            assertThat(dispatcher.dispatchPending()).as("the gap filled").isEqualTo(1);
+            assertThat(listener.recipeIds).containsExactly(102L, 101L);
+            assertThat(dispatcher.dispatchPending()).isZero();
+        } finally {
+            recipeChangeEventRepo.deleteAll();
+        }
+    }
+
+    @Test
+    void aFreshInstanceStartsAtTheEventsOfTheLastGapTimeout() {
+        try {
+            recipeChangeEventRepo.save(event(201L, Instant.now().minus(Duration.ofMinutes(5))));
+            recipeChangeEventRepo.save(event(202L, Instant.now().minus(Duration.ofMinutes(2))));
+            recipeChangeEventRepo.save(event(203L)); // a write that was still running while the instance started
+            final RecordingListener listener = new RecordingListener();
+            assertThat(dispatcher(listener).dispatchPending()).isEqualTo(1);
+            assertThat(listener.recipeIds).containsExactly(203L);
+        } finally {
+            recipeChangeEventRepo.deleteAll();
+        }
+    }
+
+    @Test
+    void aFailingListenerIsRetriedAloneAndSkipsAfterItsAttempts() {
+        final RecordingListener healthy = new RecordingListener();
+        final FailingListener broken = new FailingListener();
+        final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        final RecipeChangeDispatcher dispatcher = dispatcher(List.of(healthy, broken), meterRegistry);
+        try {
+            dispatcher.dispatchPending();
+            recipeChangeEventRepo.save(event(401L));
+            recipeChangeEventRepo.save(event(402L));
+
+            // the healthy listener applies the events once, not again on every retry of the broken one
+            assertThat(dispatcher.dispatchPending()).isZero();
+            assertThat(dispatcher.dispatchPending()).isZero();
+            assertThat(healthy.recipeIds).containsExactly(401L, 402L);
+            assertThat(broken.attempts).hasValue(2);
+
+            // third attempt: skipped, the outbox moves on
+            assertThat(dispatcher.dispatchPending()).isEqualTo(2);
+            assertThat(broken.attempts).hasValue(3);
+            assertThat(meterRegistry.get("recipes.outbox.skipped").tag("listener", "FailingListener").counter().count())
+                    .isEqualTo(2.0);
+
+            // the next events get their own attempts
+            recipeChangeEventRepo.save(event(403L));
+            assertThat(dispatcher.dispatchPending()).isZero();
+            assertThat(healthy.recipeIds).containsExactly(401L, 402L, 403L);
+            assertThat(broken.attempts).hasValue(4);
+        } finally {
+            recipeChangeEventRepo.deleteAll();
+        }
+    }
+
+    @Test
+    void aLoadFromBeforeAnEvictDoesntGetCached() {
+        final RecipeDto stale = RecipeDto.builder().id(301L).name("Toast").servings(1).build();
+        final long loadStamp = recipeDetailCache.loadStamp(301L);
+        recipeDetailCache.evictAfterCommit(301L); // a write commits while the load runs
+        recipeDetailCache.putIfAbsent(stale, loadStamp);
+        assertThat(recipeDetailCache.get(301L)).isNull();
+
+        recipeDetailCache.putIfAbsent(stale, recipeDetailCache.loadStamp(301L));
+        assertThat(recipeDetailCache.get(301L)).isSameAs(stale);
+        recipeDetailCache.evictAfterCommit(301L);
+    }
+
+    // a dispatcher like a fresh app instance would have, with only the given listener
+    private RecipeChangeDispatcher dispatcher(final RecipeChangeListener listener) {
+        return dispatcher(List.of(listener), new SimpleMeterRegistry());
+    }
+
+    private RecipeChangeDispatcher dispatcher(final List<RecipeChangeListener> listeners, final MeterRegistry meterRegistry) {
+        return new RecipeChangeDispatcher(recipeChangeEventRepo, listeners, meterRegistry, 100, 3, Duration.ofMinutes(1),
+                Duration.ofDays(7));
+    }
+
+    private static RecipeChangeEvent event(final long recipeId) {
+        return event(recipeId, Instant.now());
+    }
+
+    private static RecipeChangeEvent event(final long recipeId, final Instant createdAt) {
+        return RecipeChangeEvent.builder().recipeId(recipeId).changeType(RecipeChangeType.UPDATED)
+                .createdAt(createdAt).build();
+    }
+
+    private static void await(final CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class FailingListener implements RecipeChangeListener {
+
+        final AtomicInteger attempts = new AtomicInteger();
+
+        @Override
+        public void onRecipeChanges(final List<RecipeChangeEvent> events) {
+            attempts.incrementAndGet();
+            throw new IllegalStateException("listener broken");
+        }
+
+    }
+
+    private static class RecordingListener implements RecipeChangeListener {
+
+        final List<Long> recipeIds = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void onRecipeChanges(final List<RecipeChangeEvent> events) {
+            events.forEach(event -> recipeIds.add(event.getRecipeId()));
+        }
+
+        @Override
+        public void reset() {
+            recipeIds.clear();
+        }
+
+    }
+
+}
@@ -2,48 +2,76 @@ package nl.trickjurgen.recipes.service;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
 import nl.trickjurgen.recipes.datamodel.Ingredient;
 import nl.trickjurgen.recipes.datamodel.IngredientType;
 import nl.trickjurgen.recipes.datamodel.Recipe;
+import nl.trickjurgen.recipes.datamodel.RecipeChangeType;
+import nl.trickjurgen.recipes.dto.RecipeBatchEntryDto;
 import nl.trickjurgen.recipes.dto.RecipeDto;
+import nl.trickjurgen.recipes.dto.RecipeFacetsDto;
 import nl.trickjurgen.recipes.dto.RecipeHeaderDto;
 import nl.trickjurgen.recipes.exception.DuplicateRecipeException;
 import nl.trickjurgen.recipes.exception.RecipeNotFoundException;
 import nl.trickjurgen.recipes.exception.RecipeParameterException;
 import nl.trickjurgen.recipes.mapper.RecepAndIngrMapper;
-import nl.trickjurgen.recipes.repo.IngredientRepo;
 import nl.trickjurgen.recipes.repo.IngredientTypeRepo;
+import nl.trickjurgen.recipes.repo.RecipeChangeEventRepo;
+import nl.trickjurgen.recipes.repo.RecipeFacetRepo;
 import nl.trickjurgen.recipes.repo.RecipeRepo;
 import nl.trickjurgen.recipes.utils.NameStringHelper;
 import org.assertj.core.util.Lists;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledInNativeImage;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
 
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
+import java.util.stream.LongStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.entry;
 import static org.assertj.core.api.Assertions.fail;
 import static org.mockito.AdditionalAnswers.returnsFirstArg;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+// mockito can't create its mocks in a native image
+@DisabledInNativeImage
 @ExtendWith(MockitoExtension.class)
 class RecipeServiceTest {
 
@@ -53,14 +81,24 @@ class RecipeServiceTest {
     private RecipeRepo recipeRepo;
 
     @Mock
-    private IngredientRepo ingredientRepo;
+    private IngredientTypeRepo ingredientTypeRepo;
 
     @Mock
-    private IngredientTypeRepo ingredientTypeRepo;
+    private RecipeChangeEventRepo recipeChangeEventRepo;
+
+    @Mock
+    private EntityManager entityManager;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
 
     // class under test
     public RecipeService recipeService;
 
+    private IngredientTypeIndex ingredientTypeIndex;
+    // the 'stored' ingredient types by name, so every recipe uses the same type for a name (as the database does)
+    private final Map<String, IngredientType> storedTypes = new HashMap<>();
+
     private static List<Recipe> baseRecipeData;
     private final ObjectMapper objectMapper = new ObjectMapper();
 
@@ -90,23 +128,37 @@ class RecipeServiceTest {
 
     @BeforeEach
     void init() {
-        recipeService = new RecipeService(recipeRepo, ingredientTypeRepo, ingredientRepo);
+        ingredientTypeIndex = new IngredientTypeIndex(ingredientTypeRepo, 0.4);
+        recipeService = new RecipeService(recipeRepo, ingredientTypeRepo, recipeChangeEventRepo,
+                new RecipeDetailCache(recipeRepo, 100), new RequestCoalescer(new SimpleMeterRegistry(), Duration.ofSeconds(5)), ingredientTypeIndex,
+                Runnable::run, transactionManager, entityManager);
     }
 
     @Test
     void findAllRecipes() {
-        when(recipeRepo.findAll()).thenReturn(baseRecipeData);
+        when(recipeRepo.findAllWithInstructionsBy()).thenReturn(baseRecipeData);
 
         List<RecipeDto> allRecipes = recipeService.findAllRecipes();
 
         assertThat(allRecipes).hasSize(1);
     }
 
+    @Test
+    void findAllRecipeHeaders() {
+        when(recipeRepo.findAll()).thenReturn(baseRecipeData);
+
+        List<RecipeHeaderDto> allHeaders = recipeService.findAllRecipeHeaders();
+
+        assertThat(allHeaders).hasSize(1);
+        assertThat(allHeaders.getFirst().getName()).contains("Curry");
+        verify(recipeRepo, never()).findAllWithInstructionsBy(); // listing doesn't need the instructions
+    }
+
     @Test
     void findRecipeById() {
         when(recipeRepo.existsById(anyLong())).thenReturn(false);
         when(recipeRepo.existsById(100L)).thenReturn(true);
-        when(recipeRepo.getReferenceById(100L)).thenReturn(baseRecipeData.getFirst());
+        when(recipeRepo.findWithIngredientsById(100L)).thenReturn(Optional.of(baseRecipeData.getFirst()));
 
         assertThatThrownBy(() -> recipeService.findRecipeById(101L)).isInstanceOf(RecipeNotFoundException.class);
         assertThatThrownBy(() -> recipeService.findRecipeById(-1L)).isInstanceOf(RecipeNotFoundException.class);
@@ -117,6 +169,24 @@ class RecipeServiceTest {
         assertThat(recipeById.getName()).contains("Curry");
     }
 
+    @Test
+    void findRecipesByIds() {
+        Recipe curry = baseRecipeData.getFirst();
+        when(recipeRepo.findAllWithIngredientsByIdIn(any())).thenReturn(List.of(curry));
+
+        List<RecipeBatchEntryDto> entries = recipeService.findRecipesByIds(Arrays.asList(404L, curry.getId(), -1L, null, curry.getId()));
+
+        assertThat(entries).extracting("id").containsExactly(404L, curry.getId(), -1L, null, curry.getId());
+        assertThat(entries).extracting("found").containsExactly(false, true, false, false, true);
+        assertThat(entries.get(1).getRecipe().getName()).contains("Curry");
+        assertThat(entries.getFirst().getRecipe()).isNull();
+        verify(recipeRepo, times(1)).findAllWithIngredientsByIdIn(any());
+
+        assertThatThrownBy(() -> recipeService.findRecipesByIds(List.of())).isInstanceOf(RecipeParameterException.class);
+        List<Long> tooMany = LongStream.rangeClosed(1, RecipeService.MAX_BATCH_GET_IDS + 1).boxed().toList();
+        assertThatThrownBy(() -> recipeService.findRecipesByIds(tooMany)).isInstanceOf(RecipeParameterException.class);
+    }
+
     private RecipeDto readDtoFromFile(final String fileName) {
         RecipeDto recipeDto;
         try {
@@ -147,8 +217,7 @@ class RecipeServiceTest {
             retVal.setId(100L); // part of the saving process is DB assigning an id
             return retVal;
         });
-        when(ingredientRepo.save(any())).then(returnsFirstArg());
-        when(ingredientTypeRepo.findByName(anyString())).thenReturn(Optional.empty());
+        when(ingredientTypeRepo.findAndLockByNameIn(any())).thenReturn(List.of());
         when(ingredientTypeRepo.save(any())).then(returnsFirstArg());
 
         assertThat(dto).isNotNull();
@@ -161,6 +230,7 @@ class RecipeServiceTest {
         assertThat(savedRecipe.getName()).contains("Bolognese");
         assertThat(savedRecipe.getId()).isNotNull();
         assertThat(savedRecipe.getIngredients()).hasSize(6);
+        verify(recipeChangeEventRepo).save(argThat(event -> event.getRecipeId() == 100L && event.getChangeType() == RecipeChangeType.CREATED));
     }
 
     @Test
@@ -221,12 +291,10 @@ class RecipeServiceTest {
         when(recipeRepo.save(any())).then(returnsFirstArg());
         when(recipeRepo.existsById(dbId)).thenReturn(true);
         when(recipeRepo.getReferenceById(dbId)).thenReturn(dbRecipe);
-        when(ingredientRepo.save(any())).then(returnsFirstArg());
-        // mock will take care of call to ingredientRepo.delete()
-        when(ingredientTypeRepo.findByName(anyString()))
+        when(ingredientTypeRepo.findAndLockByNameIn(any()))
                 .thenAnswer(i -> {
-                    String name = i.getArgument(0, String.class);
-                    return getIngTypeFromTestData(dbRecipe, name);
+                    Collection<String> names = i.getArgument(0);
+                    return names.stream().flatMap(name -> getIngTypeFromTestData(dbRecipe, name).stream()).toList();
                 });
         when(ingredientTypeRepo.save(any())).then(returnsFirstArg());
 
@@ -235,6 +303,7 @@ class RecipeServiceTest {
         assertThat(updatedRecipe.getIngredients()).hasSize(6); // 2 old, 1 deleted, 4 new
         assertThat(updatedRecipe.getServings()).isEqualTo(3);
         assertThat(updatedRecipe.getInstructions()).contains("Serve with rice");
+        verify(recipeChangeEventRepo).save(argThat(event -> event.getRecipeId() == 101L && event.getChangeType() == RecipeChangeType.UPDATED));
     }
 
     @Test
@@ -246,6 +315,7 @@ class RecipeServiceTest {
 
         assertThat(recipeService.deleteRecipe(404L)).isEqualTo(true);
         assertThatThrownBy(() -> recipeService.deleteRecipe(405L)).isInstanceOf(RecipeNotFoundException.class);
+        verify(recipeChangeEventRepo, times(1)).save(argThat(event -> event.getChangeType() == RecipeChangeType.DELETED));
     }
 
     private List<RecipeDto> readManyDtoFromFile() {
@@ -262,13 +332,21 @@ class RecipeServiceTest {
     private Recipe convertDtoToRecipe(RecipeDto rDto) {
         Recipe recipe = RecepAndIngrMapper.dtoToRecipeNoIngr(rDto);
         Set<Ingredient> newIngredients = rDto.getIngredients().stream().map(iDto ->
-                RecepAndIngrMapper.dtoToIngredientWithType(iDto,
-                        IngredientType.builder().name(NameStringHelper.toTitleCase(iDto.getName())).build())
+                RecepAndIngrMapper.dtoToIngredientWithType(iDto, storedType(NameStringHelper.toTitleCase(iDto.getName())))
         ).collect(Collectors.toSet());
         recipe.setIngredients(newIngredients);
         return recipe;
     }
 
+    // the searches find the ingredient types through the index, as if the recipe was saved
+    private IngredientType storedType(String name) {
+        return storedTypes.computeIfAbsent(name, n -> {
+            IngredientType type = IngredientType.builder().id(1000L + storedTypes.size()).name(n).build();
+            ingredientTypeIndex.addWritten(List.of(type));
+            return type;
+        });
+    }
+
     @Test
     void findRecipesWith_No_SpecificDetails() {
         List<RecipeDto> recipeDtoList = readManyDtoFromFile();
@@ -278,7 +356,7 @@ class RecipeServiceTest {
 
         when(recipeRepo.findAll()).thenReturn(readRecipesFromFile);
 
-        List<RecipeDto> foundItems = recipeService.findRecipesWithSpecificDetails(null, null, null, null, null, null);
+        List<RecipeDto> foundItems = recipeService.findRecipesWithSpecificDetails(null, null, null, null, null, null, null);
 
         assertThat(foundItems).hasSize(10);
     }
@@ -298,7 +376,7 @@ class RecipeServiceTest {
         List<String> incl = null;
         List<String> excl = null;
         String partOfInstructions = null;
-        List<RecipeDto> foundItems = recipeService.findRecipesWithSpecificDetails(veggie, minServ, maxServ, incl, excl, partOfInstructions);
+        List<RecipeDto> foundItems = recipeService.findRecipesWithSpecificDetails(veggie, minServ, maxServ, incl, excl, null, partOfInstructions);
 
         assertThat(foundItems).hasSize(5);
         assertThat(foundItems).extracting("name")
@@ -307,7 +385,7 @@ class RecipeServiceTest {
         // veggie true, minServ 0, incl null, excl null, partOfInstructions null
         minServ = null;
         maxServ = 6;
-        foundItems = recipeService.findRecipesWithSpecificDetails(veggie, minServ, maxServ, incl, excl, partOfInstructions);
+        foundItems = recipeService.findRecipesWithSpecificDetails(veggie, minServ, maxServ, incl, excl, null, partOfInstructions);
         assertThat(foundItems).hasSize(4);
         assertThat(foundItems).extracting("name")
                 .containsOnly("Stuffed Peppers", "Quinoa Salad", "Lentil Soup", "Mushroom Risotto");
@@ -318,7 +396,7 @@ class RecipeServiceTest {
     void findRecipesWithSpecificDetails_incl_excl() {
         List<Recipe> readRecipesFromFile = readManyDtoFromFile().stream().map(this::convertDtoToRecipe).toList();
         assertThat(readRecipesFromFile).hasSize(10);
-        when(recipeRepo.findAll()).thenReturn(readRecipesFromFile);
+        when(recipeRepo.findAllWithIngredientsBy()).thenReturn(readRecipesFromFile); // ingredients in the same select
 
         Boolean veggie = null;
         Integer minServ = null;
@@ -328,7 +406,7 @@ class RecipeServiceTest {
 
         List<String> incl = List.of("Onion"); //  onion in recipes[Mushroom Risotto, Beef Stroganoff, Lentil Soup, Chili Con Carne, Quinoa Salad]
         List<String> excl = List.of("Bell Peppers"); // bell peppers in recipes[Chili Con Carne, Stuffed Peppers]
-        foundItems = recipeService.findRecipesWithSpecificDetails(veggie, minServ, maxServ, incl, excl, partOfInstructions);
+        foundItems = recipeService.findRecipesWithSpecificDetails(veggie, minServ, maxServ, incl, excl, null, partOfInstructions);
         assertThat(foundItems).hasSize(4);
         assertThat(foundItems).extracting("name")
                 .containsOnly("Mushroom Risotto", "Beef Stroganoff", "Lentil Soup", "Quinoa Salad");
@@ -336,13 +414,13 @@ class RecipeServiceTest {
         // veggie null, minServ null, maxServ null, partOfInstructions null
         incl = List.of("Onion", "Arborio Rice");
         excl = Lists.newArrayList();
-        foundItems = recipeService.findRecipesWithSpecificDetails(veggie, minServ, maxServ, incl, excl, partOfInstructions);
+        foundItems = recipeService.findRecipesWithSpecificDetails(veggie, minServ, maxServ, incl, excl, null, partOfInstructions);
         assertThat(foundItems).hasSize(1);
         assertThat(foundItems).extracting("name").containsOnly("Mushroom Risotto");
 
         // veggie null, minServ null, maxServ null, incl = [onion, arborio rice], partOfInstructions null
         excl = List.of("mushrooms");
-        foundItems = recipeService.findRecipesWithSpecificDetails(veggie, minServ, maxServ, incl, excl, partOfInstructions);
+        foundItems = recipeService.findRecipesWithSpecificDetails(veggie, minServ, maxServ, incl, excl, null, partOfInstructions);
         assertThat(foundItems).isEmpty();
     }
 
@@ -350,7 +428,8 @@ class RecipeServiceTest {
     void findRecipesWithSpecificDetails_textInstructions() {
         List<Recipe> readRecipesFromFile = readManyDtoFromFile().stream().map(this::convertDtoToRecipe).toList();
         assertThat(readRecipesFromFile).hasSize(10);
-        when(recipeRepo.findAll()).thenReturn(readRecipesFromFile);
+        when(recipeRepo.findAllWithInstructionsBy()).thenReturn(readRecipesFromFile);
+        when(recipeRepo.findAllWithInstructionsAndIngredientsBy()).thenReturn(readRecipesFromFile);
 
         Boolean veggie = null;
         Integer minServ = null;
@@ -360,7 +439,7 @@ class RecipeServiceTest {
 
         String partOfInstructions = "Simmer";
 
-        List<RecipeDto> foundItems = recipeService.findRecipesWithSpecificDetails(veggie, minServ, maxServ, incl, excl, partOfInstructions);
+        List<RecipeDto> foundItems = recipeService.findRecipesWithSpecificDetails(veggie, minServ, maxServ, incl, excl, null, partOfInstructions);
 
         assertThat(foundItems).hasSize(3);
         assertThat(foundItems).extracting("name").containsOnly("Beef Stroganoff", "Lentil Soup","Chili Con Carne");
@@ -369,7 +448,7 @@ class RecipeServiceTest {
         incl = List.of("lemon juice"); // 2 result
         excl = List.of("tomatoes"); // -3 results
 
-        foundItems = recipeService.findRecipesWithSpecificDetails(veggie, minServ, maxServ, incl, excl, partOfInstructions);
+        foundItems = recipeService.findRecipesWithSpecificDetails(veggie, minServ, maxServ, incl, excl, null, partOfInstructions);
 
         assertThat(foundItems).hasSize(1);
         assertThat(foundItems).extracting("name").containsOnly("Shrimp Scampi");
@@ -391,26 +470,141 @@ class RecipeServiceTest {
         List<String> incl = null;
         List<String> excl = null;
         String partOfInstr = null;
-        List<RecipeHeaderDto> headers = recipeService.findRecipeHeadersWithGivenParams(veggie, minServ, maxServ, incl, excl, partOfInstr);
+        List<RecipeHeaderDto> headers = recipeService.findRecipeHeadersWithGivenParams(veggie, minServ, maxServ, incl, excl, null, partOfInstr);
 
         assertThat(headers).hasSize(5);
     }
 
     @Test
-    void flatListIngredients() {
-        Recipe noIngredients = Recipe.builder().name("bad example").servings(1).isVegetarian(false).instructions("no intel found").build();
-        Recipe recipeBeef = convertDtoToRecipe(readDtoFromFile("r4-beef-tacos.json"));
-
-        assertThat(recipeService.flattenIngredients(noIngredients)).isEmpty();
-
-        String flatted = recipeService.flattenIngredients(recipeBeef);
-        assertThat(flatted).isNotEmpty();
-        assertThat(flatted).contains("lettuce");
-        assertThat(flatted).contains("cheddar cheese");
-        assertThat(flatted).contains("cheddar");
-        assertThat(flatted).contains("water");
-        assertThat(flatted).contains("taco shells");
-        assertThat(flatted).contains("shells");
+    void findRecipeDetailsWithGivenParams() {
+        List<Recipe> readRecipesFromFile = readManyDtoFromFile().stream().map(this::convertDtoToRecipe).toList();
+        long baseId = 404L;
+        for (Recipe recipe : readRecipesFromFile) {
+            recipe.setId(baseId++);
+        }
+        // the database filters and limits the ids
+        when(recipeRepo.findMatchingIds(any(), eq(3))).thenReturn(readRecipesFromFile.stream()
+                .filter(Recipe::isVegetarian).map(Recipe::getId).limit(3).toList());
+        when(recipeRepo.findAllWithIngredientsByIdIn(any())).thenAnswer(i -> {
+            Collection<Long> ids = i.getArgument(0);
+            // return in reverse order, service should restore the search order
+            return readRecipesFromFile.reversed().stream().filter(r -> ids.contains(r.getId())).toList();
+        });
+
+        List<RecipeDto> details = recipeService.findRecipeDetailsWithGivenParams(true, null, null, null, null, null, null, 3);
+
+        assertThat(details).hasSize(3);
+        assertThat(details).extracting("name").containsExactly("Mushroom Risotto", "Lentil Soup", "Quinoa Salad");
+        assertThat(details).allSatisfy(dto -> assertThat(dto.getIngredients()).isNotEmpty());
+        verify(recipeRepo, never()).findAll(); // not the whole catalogue
+
+        assertThatThrownBy(() -> recipeService.findRecipeDetailsWithGivenParams(null, null, null, null, null, null, null, 0))
+                .isInstanceOf(RecipeParameterException.class);
+        assertThatThrownBy(() -> recipeService.findRecipeDetailsWithGivenParams(null, null, null, null, null, null, null, 101))
+                .isInstanceOf(RecipeParameterException.class);
+    }
+
+    @Test
+    void detailBatchesRunInReadOnlyTransactionsAndTheFirstFailureEndsTheFetch() throws InterruptedException {
+        final List<Long> ids = LongStream.rangeClosed(1, 25).boxed().toList(); // three batches
+        when(recipeRepo.findMatchingIds(any(), eq(25))).thenReturn(ids);
+        final CountDownLatch slowBatch = new CountDownLatch(1);
+        when(recipeRepo.findAllWithIngredientsByIdIn(any())).thenAnswer(i -> {
+            final Collection<Long> batchIds = i.getArgument(0);
+            if (batchIds.contains(1L)) throw new IllegalStateException("replica gone");
+            slowBatch.await(10, TimeUnit.SECONDS);
+            return List.of();
+        });
+        final ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            final RecipeService parallelService = new RecipeService(recipeRepo, ingredientTypeRepo, recipeChangeEventRepo,
+                    new RecipeDetailCache(recipeRepo, 100), new RequestCoalescer(new SimpleMeterRegistry(), Duration.ofSeconds(5)),
+                    ingredientTypeIndex, executor, transactionManager, entityManager);
+
+            final long start = System.nanoTime();
+            assertThatThrownBy(() -> parallelService.findRecipeDetailsWithGivenParams(null, null, null, null, null, null, null, 25))
+                    .isInstanceOf(IllegalStateException.class).hasMessage("replica gone");
+            assertThat(Duration.ofNanos(System.nanoTime() - start)).as("didn't wait for the slow batches").isLessThan(Duration.ofSeconds(5));
+        } finally {
+            slowBatch.countDown();
+            executor.shutdownNow();
+        }
+        verify(transactionManager, atLeastOnce()).getTransaction(argThat(TransactionDefinition::isReadOnly));
+        verify(transactionManager, never()).getTransaction(argThat(definition -> !definition.isReadOnly()));
+    }
+
+    @Test
+    void streamRecipeHeadersWithGivenParams() {
+        List<Recipe> readRecipesFromFile = readManyDtoFromFile().stream().map(this::convertDtoToRecipe).toList();
+        long baseId = 404L;
+        for (Recipe recipe : readRecipesFromFile) {
+            recipe.setId(baseId++);
+        }
+        when(recipeRepo.streamAllBy()).thenReturn(readRecipesFromFile.stream());
+
+        List<RecipeHeaderDto> streamed = new ArrayList<>();
+        recipeService.streamRecipeHeadersWithGivenParams(true, 0, 8, null, null, null, null, streamed::add);
+
+        assertThat(streamed).extracting("name")
+                .containsExactly("Mushroom Risotto", "Lentil Soup", "Quinoa Salad", "Stuffed Peppers", "Pancakes");
+    }
+
+    @Test
+    void countFacetsWithGivenParams() {
+        when(recipeRepo.countPerVegetarian(any())).thenReturn(Map.of(true, 3L, false, 4L));
+        when(recipeRepo.countPerServings(any())).thenReturn(Map.of(2, 1L, 4, 6L, 10, 1L, 12, 2L));
+        when(recipeRepo.countTopIngredients(any(), eq(2))).thenReturn(List.of(
+                new RecipeFacetRepo.NameCount("Onion", 5L), new RecipeFacetRepo.NameCount("Salt", 2L)));
+
+        RecipeFacetsDto facets = recipeService.countFacetsWithGivenParams(null, 2, null, List.of("onion"), null, null, null, 2);
+
+        assertThat(facets.getTotal()).isEqualTo(7L);
+        assertThat(facets.getVegetarian()).containsEntry(true, 3L);
+        assertThat(facets.getServings()).containsExactly(entry("1-2", 1L), entry("3-4", 6L), entry("5-8", 0L), entry("9+", 3L));
+        assertThat(facets.getTopIngredients()).extracting("name").containsExactly("Onion", "Salt");
+        verify(recipeRepo, never()).findAll(); // counting never loads recipes
+
+        assertThatThrownBy(() -> recipeService.countFacetsWithGivenParams(null, null, null, null, null, null, null, -1))
+                .isInstanceOf(RecipeParameterException.class);
+    }
+
+    @Test
+    void findRecipesWithSpecificDetails_ingredientMatch() {
+        List<Recipe> readRecipesFromFile = readManyDtoFromFile().stream().map(this::convertDtoToRecipe).toList();
+        when(recipeRepo.findAllWithIngredientsBy()).thenReturn(readRecipesFromFile);
+
+        // substring: red onion too, but no match across two names ("onion garlic" is not in any name)
+        assertThat(recipeService.findRecipesWithSpecificDetails(null, null, null, List.of("onion"), null, IngredientMatch.SUBSTRING, null))
+                .extracting("name").containsOnly("Mushroom Risotto", "Beef Stroganoff", "Lentil Soup", "Quinoa Salad", "Chili Con Carne");
+        assertThat(recipeService.findRecipesWithSpecificDetails(null, null, null, List.of("onion garlic"), null, IngredientMatch.SUBSTRING, null))
+                .isEmpty();
+        // exact: the whole name, not red onion
+        assertThat(recipeService.findRecipesWithSpecificDetails(null, null, null, List.of("Onion"), null, IngredientMatch.EXACT, null))
+                .extracting("name").containsOnly("Mushroom Risotto", "Beef Stroganoff", "Lentil Soup", "Chili Con Carne");
+        // fuzzy: a typo still finds the canned and cherry tomatoes
+        assertThat(recipeService.findRecipesWithSpecificDetails(null, null, null, List.of("tomatos"), null, IngredientMatch.SUBSTRING, null))
+                .isEmpty();
+        assertThat(recipeService.findRecipesWithSpecificDetails(null, null, null, List.of("tomatos"), null, IngredientMatch.FUZZY, null))
+                .extracting("name").containsOnly("Lentil Soup", "Quinoa Salad", "Chili Con Carne");
+        // an unknown ingredient to include matches nothing, without filtering the recipes at all
+        assertThat(recipeService.findRecipesWithSpecificDetails(null, null, null, List.of("dragon fruit"), null, null, null)).isEmpty();
+    }
+
+    @Test
+    void findRecipesWithSpecificDetails_typeAddedBehindTheIndex() {
+        // stored on another instance, its change didn't reach this one: the index doesn't know the type
+        IngredientType dragonFruit = IngredientType.builder().id(5000L).name("Dragon Fruit").build();
+        List<Recipe> recipes = new ArrayList<>(readManyDtoFromFile().stream().map(this::convertDtoToRecipe).toList());
+        recipes.add(Recipe.builder().id(4000L).name("Fruit Salad").isVegetarian(true).servings(2).instructions("Cut the fruit.")
+                .ingredients(Set.of(Ingredient.builder().ingredientType(dragonFruit).volume("1").build())).build());
+        when(recipeRepo.findAllWithIngredientsBy()).thenReturn(recipes);
+        when(ingredientTypeRepo.findByIdGreaterThan(anyLong())).thenReturn(List.of(dragonFruit));
+
+        // the database has the last word: not an empty result for the include, not an ignored exclude
+        assertThat(recipeService.findRecipesWithSpecificDetails(null, null, null, List.of("dragon fruit"), null, null, null))
+                .extracting("name").containsOnly("Fruit Salad");
+        assertThat(recipeService.findRecipesWithSpecificDetails(true, null, null, null, List.of("dragon fruit"), null, null))
+                .extracting("name").doesNotContain("Fruit Salad").hasSize(5);
     }
 
 }
\ No newline at end of file
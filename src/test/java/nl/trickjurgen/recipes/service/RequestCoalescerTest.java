@@ -0,0 +1,193 @@
+package nl.trickjurgen.recipes.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import nl.trickjurgen.recipes.datasource.ReplicaOrPinnedPrimaryDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RequestCoalescerTest {
+
+    // a lookup that blocks until released, so calls overlap for as long as the test wants
+    static class SlowLookup {
+
+        final AtomicInteger executions = new AtomicInteger();
+        volatile CountDownLatch release = new CountDownLatch(1);
+
+        @Coalesced
+        public String find(final String name) throws InterruptedException {
+            executions.incrementAndGet();
+            release.await(10, TimeUnit.SECONDS);
+            if (name.equals("missing")) throw new IllegalArgumentException("no " + name);
+            return new String("found " + name); // a new instance per execution
+        }
+
+    }
+
+    private static final Duration MAX_WAIT = Duration.ofSeconds(2);
+
+    private SimpleMeterRegistry meterRegistry;
+    private RequestCoalescer requestCoalescer;
+    private SlowLookup target;
+    private SlowLookup lookup;
+    private ExecutorService callers;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        requestCoalescer = new RequestCoalescer(meterRegistry, MAX_WAIT);
+        target = new SlowLookup();
+        final AspectJProxyFactory proxyFactory = new AspectJProxyFactory(target);
+        proxyFactory.setProxyTargetClass(true);
+        proxyFactory.addAspect(requestCoalescer);
+        lookup = proxyFactory.getProxy();
+        callers = Executors.newVirtualThreadPerTaskExecutor();
+    }
+
+    @AfterEach
+    void tearDown() {
+        target.release.countDown();
+        callers.shutdownNow();
+    }
+
+    @Test
+    void identicalConcurrentCallsShareOneExecution() throws Exception {
+        final List<Future<String>> results = callConcurrently("soup", 10);
+        awaitCoalesced(9);
+        final Future<String> other = callers.submit(() -> lookup.find("stew"));
+        target.release.countDown();
+
+        final String first = results.getFirst().get(5, TimeUnit.SECONDS);
+        for (Future<String> result : results) {
+            assertThat(result.get(5, TimeUnit.SECONDS)).isSameAs(first);
+        }
+        assertThat(other.get(5, TimeUnit.SECONDS)).isEqualTo("found stew");
+        assertThat(target.executions).hasValue(2);
+        assertThat(counted("executed")).isEqualTo(2.0);
+        assertThat(counted("coalesced")).isEqualTo(9.0);
+        assertThat(meterRegistry.get("recipes.coalescing.inflight").gauge().value()).isZero();
+    }
+
+    @Test
+    void anExceptionIsSharedAndTheNextCallRunsAgain() throws Exception {
+        final List<Future<String>> results = callConcurrently("missing", 3);
+        awaitCoalesced(2);
+        target.release.countDown();
+        for (Future<String> result : results) {
+            assertThatThrownBy(() -> result.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(IllegalArgumentException.class);
+        }
+
+        assertThat(lookup.find("soup")).isEqualTo("found soup");
+        assertThat(target.executions).hasValue(2);
+    }
+
+    @Test
+    void callsAfterAWriteDontJoinAnExecutionFromBeforeIt() throws Exception {
+        final Future<String> beforeWrite = callers.submit(() -> lookup.find("soup"));
+        while (target.executions.get() == 0) Thread.onSpinWait();
+        requestCoalescer.newGenerationAfterCommit(); // no transaction here, so right away
+        final Future<String> afterWrite = callers.submit(() -> lookup.find("soup"));
+        while (target.executions.get() < 2) Thread.onSpinWait();
+        target.release.countDown();
+
+        assertThat(afterWrite.get(5, TimeUnit.SECONDS)).isNotSameAs(beforeWrite.get(5, TimeUnit.SECONDS));
+        assertThat(counted("coalesced")).isZero();
+    }
+
+    @Test
+    void callsInsideATransactionRunOnTheirOwn() throws Exception {
+        final Future<String> outside = callers.submit(() -> lookup.find("soup"));
+        while (target.executions.get() == 0) Thread.onSpinWait();
+        final Future<String> inside = callers.submit(() -> {
+            TransactionSynchronizationManager.setActualTransactionActive(true);
+            try {
+                return lookup.find("soup");
+            } finally {
+                TransactionSynchronizationManager.setActualTransactionActive(false);
+            }
+        });
+        while (target.executions.get() < 2) Thread.onSpinWait();
+        target.release.countDown();
+
+        assertThat(inside.get(5, TimeUnit.SECONDS)).isNotSameAs(outside.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void callsPinnedToThePrimaryDontJoinAReplicaRead() throws Exception {
+        final Future<String> replica = callers.submit(() -> lookup.find("soup"));
+        while (target.executions.get() == 0) Thread.onSpinWait();
+        final List<Future<String>> pinned = new ArrayList<>();
+        for (int call = 0; call < 3; call++) {
+            pinned.add(callers.submit(() -> {
+                ReplicaOrPinnedPrimaryDataSource.pinToPrimary();
+                try {
+                    return lookup.find("soup");
+                } finally {
+                    ReplicaOrPinnedPrimaryDataSource.unpin();
+                }
+            }));
+        }
+        awaitCoalesced(2); // the pinned calls join each other
+        target.release.countDown();
+
+        final String fromReplica = replica.get(5, TimeUnit.SECONDS);
+        for (Future<String> result : pinned) {
+            assertThat(result.get(5, TimeUnit.SECONDS)).isNotSameAs(fromReplica);
+        }
+        assertThat(target.executions).hasValue(2);
+    }
+
+    @Test
+    void aCallThatWaitedTooLongRunsItself() throws Exception {
+        final Future<String> hanging = callers.submit(() -> lookup.find("soup"));
+        while (target.executions.get() == 0) Thread.onSpinWait();
+        final CountDownLatch hangingRelease = target.release;
+        target.release = new CountDownLatch(0); // executions from now on don't block
+
+        final long start = System.nanoTime();
+        assertThat(lookup.find("soup")).isEqualTo("found soup");
+        assertThat(System.nanoTime() - start).isGreaterThanOrEqualTo(MAX_WAIT.toNanos());
+        assertThat(target.executions).hasValue(2);
+        assertThat(counted("coalesced")).isEqualTo(1.0);
+        assertThat(counted("timeout")).isEqualTo(1.0);
+
+        hangingRelease.countDown();
+        assertThat(hanging.get(5, TimeUnit.SECONDS)).isEqualTo("found soup");
+    }
+
+    private List<Future<String>> callConcurrently(final String name, final int calls) {
+        final List<Future<String>> results = new ArrayList<>();
+        for (int call = 0; call < calls; call++) {
+            results.add(callers.submit(() -> lookup.find(name)));
+        }
+        return results;
+    }
+
+    private void awaitCoalesced(final int calls) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (counted("coalesced") < calls && System.currentTimeMillis() < deadline) Thread.sleep(5);
+        assertThat(counted("coalesced")).isEqualTo(calls);
+    }
+
+    private double counted(final String outcome) {
+        final Counter counter = meterRegistry.find("recipes.coalescing.calls").tag("outcome", outcome).counter();
+        return counter == null ? 0.0 : counter.count();
+    }
+
+}
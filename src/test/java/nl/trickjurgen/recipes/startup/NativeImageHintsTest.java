@@ -0,0 +1,30 @@
+package nl.trickjurgen.recipes.startup;
+
+import com.google.protobuf.Empty;
+import nl.trickjurgen.recipes.grpc.proto.Recipe;
+import nl.trickjurgen.recipes.grpc.proto.SearchRecipesRequest;
+import org.junit.jupiter.api.Test;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.TypeReference;
+import org.springframework.aot.hint.predicate.RuntimeHintsPredicates;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class NativeImageHintsTest {
+
+    private final RuntimeHints hints = new RuntimeHints();
+
+    @Test
+    void protobufMessagesAndTheirBuildersCanBeReflected() {
+        new NativeImageHints.GrpcHints().registerHints(hints, getClass().getClassLoader());
+        for (Class<?> type : new Class<?>[]{Recipe.class, Recipe.Builder.class, SearchRecipesRequest.Builder.class, Empty.class}) {
+            assertThat(RuntimeHintsPredicates.reflection().onType(type).withMemberCategory(MemberCategory.INVOKE_PUBLIC_METHODS))
+                    .as(type.getName()).accepts(hints);
+        }
+        assertThat(RuntimeHintsPredicates.reflection().onType(TypeReference.of("io.grpc.netty.shaded.io.grpc.netty.NettyServerProvider"))
+                .withMemberCategory(MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS)).accepts(hints);
+        assertThat(RuntimeHintsPredicates.resource().forResource("META-INF/services/io.grpc.ServerProvider")).accepts(hints);
+    }
+
+}
@@ -0,0 +1,173 @@
+package nl.trickjurgen.recipes.startup;
+
+import io.restassured.RestAssured;
+import nl.trickjurgen.recipes.RecipeAppApplication;
+import nl.trickjurgen.recipes.SqlStatementCounter;
+import nl.trickjurgen.recipes.dto.IngredientDto;
+import nl.trickjurgen.recipes.dto.RecipeDto;
+import nl.trickjurgen.recipes.grpc.GrpcServer;
+import nl.trickjurgen.recipes.repo.RecipeRepo;
+import nl.trickjurgen.recipes.service.RecipeChangeDispatcher;
+import nl.trickjurgen.recipes.service.RecipeDetailCache;
+import nl.trickjurgen.recipes.service.RecipeService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.availability.ApplicationAvailability;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Lazy;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+
+@SpringBootTest(webEnvironment = RANDOM_PORT, classes = {RecipeAppApplication.class, StartupWarmUpTest.ReadinessProbe.class})
+class StartupWarmUpTest {
+
+    // a warm-up task that notes the readiness of the app (and whether grpc calls are served) while it runs
+    @TestConfiguration
+    static class ReadinessProbe {
+
+        static final AtomicReference<ReadinessState> readinessDuringWarmUp = new AtomicReference<>();
+        static final AtomicReference<Boolean> grpcRunningDuringWarmUp = new AtomicReference<>();
+
+        @Bean
+        WarmUpTask readinessRecordingWarmUp(@Lazy ApplicationAvailability applicationAvailability, @Lazy GrpcServer grpcServer) {
+            return () -> {
+                readinessDuringWarmUp.set(applicationAvailability.getReadinessState());
+                grpcRunningDuringWarmUp.set(grpcServer.isRunning());
+            };
+        }
+
+    }
+
+    @SuppressWarnings("unused")
+    @LocalServerPort
+    private int port;
+
+    private final RecipeService recipeService;
+    private final RecipeRepo recipeRepo;
+    private final RecipeDetailCache recipeDetailCache;
+    private final RecipeCacheWarmUp recipeCacheWarmUp;
+    private final RecipeChangeDispatcher recipeChangeDispatcher;
+    private final GrpcServer grpcServer;
+    private final QueryWarmUp queryWarmUp;
+
+    @Autowired
+    StartupWarmUpTest(RecipeService recipeService, RecipeRepo recipeRepo, RecipeDetailCache recipeDetailCache,
+                      RecipeCacheWarmUp recipeCacheWarmUp, RecipeChangeDispatcher recipeChangeDispatcher, GrpcServer grpcServer,
+                      QueryWarmUp queryWarmUp) {
+        this.recipeService = recipeService;
+        this.recipeRepo = recipeRepo;
+        this.recipeDetailCache = recipeDetailCache;
+        this.recipeCacheWarmUp = recipeCacheWarmUp;
+        this.recipeChangeDispatcher = recipeChangeDispatcher;
+        this.grpcServer = grpcServer;
+        this.queryWarmUp = queryWarmUp;
+    }
+
+    @BeforeEach
+    void setUp() {
+        RestAssured.port = port;
+        RestAssured.baseURI = "http://localhost";
+    }
+
+    @Test
+    void notReadyWhileWarmingUpReadyAfter() {
+        assertThat(ReadinessProbe.readinessDuringWarmUp.get()).isEqualTo(ReadinessState.REFUSING_TRAFFIC);
+        RestAssured.given().when().get("/actuator/health/readiness").then().statusCode(200).body("status", equalTo("UP"));
+    }
+
+    @Test
+    void grpcStartsWhenTheWarmUpIsDone() {
+        assertThat(ReadinessProbe.grpcRunningDuringWarmUp.get()).isFalse();
+        assertThat(grpcServer.isRunning()).isTrue();
+    }
+
+    @Test
+    void newestRecipesArePreloadedIntoTheCache() {
+        try {
+            final List<Long> ids = IntStream.range(0, 3)
+                    .mapToObj(i -> recipeService.saveNewRecipe(RecipeDto.builder().name("Warm Dish " + i).isVegetarian(true)
+                            .servings(2).instructions("Heat.")
+                            .ingredients(Set.of(IngredientDto.builder().name("Stock").volume("1 l").build())).build()).getId())
+                    .toList();
+            recipeDetailCache.reset();
+
+            recipeCacheWarmUp.warmUp();
+
+            assertThat(ids).allSatisfy(id -> assertThat(recipeDetailCache.get(id)).isNotNull()
+                    .satisfies(recipe -> assertThat(recipe.getIngredients()).hasSize(1)));
+        } finally {
+            recipeRepo.findAll().forEach(r -> recipeService.deleteRecipe(r.getId()));
+        }
+    }
+
+    @Test
+    void queryWarmUpSearchesOnAKnownIngredient() {
+        try {
+            recipeService.saveNewRecipe(RecipeDto.builder().name("Warm Soup").isVegetarian(true).servings(2).instructions("Heat.")
+                    .ingredients(Set.of(IngredientDto.builder().name("Stock").volume("1 l").build())).build());
+            SqlStatementCounter.reset();
+
+            queryWarmUp.warmUp();
+
+            final List<String> statements = SqlStatementCounter.statements().stream().map(String::toLowerCase).toList();
+            // the search loaded recipes with their ingredients, the facets filtered on ingredient types
+            assertThat(statements).anySatisfy(sql -> assertThat(sql).contains("from recipes").contains("join ingredients"));
+            assertThat(statements).anySatisfy(sql -> assertThat(sql).contains("count(").contains("ingredient_type_id"));
+            // and the index didn't go to the database for a name it doesn't know
+            assertThat(statements).noneSatisfy(sql -> assertThat(sql).contains("from ingredient_types").contains(" like "));
+        } finally {
+            recipeRepo.findAll().forEach(r -> recipeService.deleteRecipe(r.getId()));
+        }
+    }
+
+    @Test
+    void tasksRunInParallelWithinTheTimeBudget() {
+        final CountDownLatch bothStarted = new CountDownLatch(2);
+        final WarmUpTask first = () -> awaitQuietly(bothStarted); // only finishes when the other one runs at the same time
+        final WarmUpTask second = () -> awaitQuietly(bothStarted);
+        final WarmUpTask slow = () -> {
+            try {
+                Thread.sleep(Duration.ofSeconds(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        final WarmUpTask failing = () -> {
+            throw new IllegalStateException("database gone");
+        };
+        final StartupWarmUp startupWarmUp = new StartupWarmUp(List.of(first, second, slow, failing), recipeChangeDispatcher,
+                Duration.ofMillis(500));
+
+        final long start = System.nanoTime();
+        final List<StartupWarmUp.TaskResult> results = startupWarmUp.warmUp();
+
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(5));
+        assertThat(results).extracting(StartupWarmUp.TaskResult::outcome).containsExactly(
+                StartupWarmUp.Outcome.WARM, StartupWarmUp.Outcome.WARM, StartupWarmUp.Outcome.TIMED_OUT, StartupWarmUp.Outcome.FAILED);
+    }
+
+    private static void awaitQuietly(final CountDownLatch latch) {
+        latch.countDown();
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}